@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -21,21 +21,24 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.schema.Schema;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 /**
- * Instance of a record structured by a {@link Schema}. Fields are accessible by name.
+ * Instance of a record structured by a {@link Schema}. Fields are accessible by name, or by their position in the
+ * schema fields as returned by {@link Schema#getFieldIndex(String)}. Accessing fields by position avoids looking up
+ * the field name for every record, which is useful when the same field is accessed in many records.
  */
 @Beta
 public class StructuredRecord implements Serializable {
   private final Schema schema;
-  private final Map<String, Object> fields;
+  // values of the fields, in the order of the schema fields
+  private final Object[] fields;
 
-  private static final long serialVersionUID = -4648752378975451591L;
+  private static final long serialVersionUID = 4602598961462478596L;
 
-  private StructuredRecord(Schema schema, Map<String, Object> fields) {
+  private StructuredRecord(Schema schema, Object[] fields) {
     this.schema = schema;
     this.fields = fields;
   }
@@ -58,7 +61,21 @@ public class StructuredRecord implements Serializable {
    */
   @SuppressWarnings("unchecked")
   public <T> T get(String fieldName) {
-    return (T) fields.get(fieldName);
+    int idx = schema.getFieldIndex(fieldName);
+    return idx < 0 ? null : (T) fields[idx];
+  }
+
+  /**
+   * Get the value of a field in the record by the position of the field in the schema.
+   *
+   * @param fieldIndex position of the field to get, as returned by {@link Schema#getFieldIndex(String)}.
+   * @param <T> type of object of the field value.
+   * @return value of the field.
+   * @throws IndexOutOfBoundsException if the index is not a valid field position in the schema.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(int fieldIndex) {
+    return (T) fields[fieldIndex];
   }
 
   /**
@@ -80,12 +97,16 @@ public class StructuredRecord implements Serializable {
    * TODO: enforce schema correctness?
    */
   public static class Builder {
+    // marks a field that is not set yet
+    private static final Object UNSET = new Object();
+
     private final Schema schema;
-    private Map<String, Object> fields;
+    private Object[] fields;
 
     private Builder(Schema schema) {
       this.schema = schema;
-      this.fields = new HashMap<>();
+      this.fields = new Object[schema.getFields().size()];
+      Arrays.fill(fields, UNSET);
     }
 
     /**
@@ -98,8 +119,22 @@ public class StructuredRecord implements Serializable {
      *                                   value is given.
      */
     public Builder set(String fieldName, Object value) {
-      validateAndGetField(fieldName, value);
-      fields.put(fieldName, value);
+      fields[validateAndGetFieldIndex(fieldName, value)] = value;
+      return this;
+    }
+
+    /**
+     * Set the field at the given position in the schema to the given value.
+     *
+     * @param fieldIndex Position of the field to set, as returned by {@link Schema#getFieldIndex(String)}.
+     * @param value Value for the field.
+     * @return This builder.
+     * @throws UnexpectedFormatException if the index is not a valid field position in the schema, or the field is not
+     *                                   nullable but a null value is given.
+     */
+    public Builder set(int fieldIndex, Object value) {
+      validateField(fieldIndex, value);
+      fields[fieldIndex] = value;
       return this;
     }
 
@@ -114,8 +149,8 @@ public class StructuredRecord implements Serializable {
      *                                   value is given, or the string cannot be converted to the type for the field.
      */
     public Builder convertAndSet(String fieldName, String strVal) throws UnexpectedFormatException {
-      Schema.Field field = validateAndGetField(fieldName, strVal);
-      fields.put(fieldName, convertString(field.getSchema(), strVal));
+      int idx = validateAndGetFieldIndex(fieldName, strVal);
+      fields[idx] = convertString(schema.getFields().get(idx).getSchema(), strVal);
       return this;
     }
 
@@ -127,15 +162,16 @@ public class StructuredRecord implements Serializable {
      */
     public StructuredRecord build() throws UnexpectedFormatException {
       // check that all non-nullable fields have a value.
-      for (Schema.Field field : schema.getFields()) {
-        String fieldName = field.getName();
-        if (!fields.containsKey(fieldName)) {
+      List<Schema.Field> schemaFields = schema.getFields();
+      for (int i = 0; i < fields.length; i++) {
+        if (fields[i] == UNSET) {
+          Schema.Field field = schemaFields.get(i);
           // if the field is not nullable and there is no value set for the field, this is invalid.
           if (!field.getSchema().isNullable()) {
-            throw new UnexpectedFormatException("Field " + fieldName + " must contain a value.");
+            throw new UnexpectedFormatException("Field " + field.getName() + " must contain a value.");
           } else {
             // otherwise, set the value for the field to null
-            fields.put(fieldName, null);
+            fields[i] = null;
           }
         }
       }
@@ -181,15 +217,23 @@ public class StructuredRecord implements Serializable {
       }
     }
 
-    private Schema.Field validateAndGetField(String fieldName, Object val) {
-      Schema.Field field = schema.getField(fieldName);
-      if (field == null) {
+    private int validateAndGetFieldIndex(String fieldName, Object val) {
+      int idx = schema.getFieldIndex(fieldName);
+      if (idx < 0) {
         throw new UnexpectedFormatException("field " + fieldName + " is not in the schema.");
       }
+      validateField(idx, val);
+      return idx;
+    }
+
+    private void validateField(int fieldIndex, Object val) {
+      if (fieldIndex < 0 || fieldIndex >= fields.length) {
+        throw new UnexpectedFormatException("field index " + fieldIndex + " is not in the schema.");
+      }
+      Schema.Field field = schema.getFields().get(fieldIndex);
       if (!field.getSchema().isNullable() && val == null) {
-        throw new UnexpectedFormatException("field " + fieldName + " cannot be set to a null value.");
+        throw new UnexpectedFormatException("field " + field.getName() + " cannot be set to a null value.");
       }
-      return field;
     }
   }
 
@@ -204,12 +248,12 @@ public class StructuredRecord implements Serializable {
 
     StructuredRecord that = (StructuredRecord) o;
 
-    return Objects.equals(schema, that.schema) && Objects.equals(fields, that.fields);
+    return Objects.equals(schema, that.schema) && Arrays.equals(fields, that.fields);
 
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(schema, fields);
+    return 31 * Objects.hashCode(schema) + Arrays.hashCode(fields);
   }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -382,6 +382,8 @@ public final class Schema implements Serializable {
   // It can be recomputed on demand (and usually it is not used in the context that serialization is used)
   private transient String schemaString;
   private SchemaHash schemaHash;
+  // Position of each record field in the fields list. Computed on demand, the same as the schemaString.
+  private transient Map<String, Integer> fieldIndexes;
 
   private Schema(Type type, Set<String> enumValues, Schema componentSchema, Schema keySchema, Schema valueSchema,
                  String recordName, Map<String, Field> fieldMap, List<Schema> unionSchemas) {
@@ -485,6 +487,32 @@ public final class Schema implements Serializable {
     return fieldMap.get(name);
   }
 
+  /**
+   * Returns the position of the record field of the given name in the list returned by {@link #getFields()}.
+   * The position can be used to access the field in a {@link co.cask.cdap.api.data.format.StructuredRecord}
+   * of this schema without looking up the field by name every time.
+   *
+   * @param name Name of the field
+   * @return The 0-base index of the field or {@code -1} if there is no such field in this record
+   *         or this is not a {@link Type#RECORD RECORD} schema.
+   */
+  public int getFieldIndex(String name) {
+    if (fields == null) {
+      return -1;
+    }
+    // The follow logic is thread safe, as the unmodifiable map is safely published through its final field.
+    Map<String, Integer> indexes = fieldIndexes;
+    if (indexes == null) {
+      Map<String, Integer> map = new HashMap<>();
+      for (int i = 0; i < fields.size(); i++) {
+        map.put(fields.get(i).getName(), i);
+      }
+      fieldIndexes = indexes = Collections.unmodifiableMap(map);
+    }
+    Integer idx = indexes.get(name);
+    return idx == null ? -1 : idx;
+  }
+
   /**
    * @return An immutable {@link List} of schemas inside this union
    *         or {@code null} if this is not a {@link Type#UNION UNION} schema.
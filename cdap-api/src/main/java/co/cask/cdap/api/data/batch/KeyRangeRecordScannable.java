@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.data.batch;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.api.data.schema.Schema;
+
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link RecordScannable} whose records are stored by a row key that is also a field of the records, such as
+ * a Table with a schema. It allows queries that restrict the row key field to only read the splits that cover
+ * the matching row keys.
+ * <p>
+ *   The row key is the encoding of the field value with {@link co.cask.cdap.api.common.Bytes}, for example
+ *   the UTF-8 bytes of a string field.
+ * </p>
+ * @param <RECORD> the type of objects that represents a single record
+ */
+@Beta
+public interface KeyRangeRecordScannable<RECORD> extends RecordScannable<RECORD> {
+
+  /**
+   * Returns the field of the records that holds the row key.
+   *
+   * @return the row key field, or {@code null} if the row key is not a field of the records
+   */
+  @Nullable
+  Schema.Field getKeyField();
+
+  /**
+   * Returns splits for a range of row keys.
+   *
+   * @param numSplits Desired number of splits. If greater than zero, at most this many splits will be returned.
+   *                  If less than or equal to zero, any number of splits can be returned.
+   * @param start if non-null, the returned splits will only cover keys that are greater or equal
+   * @param stop if non-null, the returned splits will only cover keys that are less
+   * @return list of {@link Split}
+   */
+  List<Split> getSplits(int numSplits, @Nullable byte[] start, @Nullable byte[] stop);
+}
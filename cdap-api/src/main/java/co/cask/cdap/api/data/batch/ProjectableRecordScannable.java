@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.data.batch;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.api.data.format.StructuredRecord;
+
+import java.util.Set;
+
+/**
+ * A {@link RecordScannable} that can read only some of the fields of its records, for queries that do not need
+ * all of them.
+ * @param <RECORD> the type of objects that represents a single record
+ */
+@Beta
+public interface ProjectableRecordScannable<RECORD> extends RecordScannable<RECORD> {
+
+  /**
+   * Creates a reader for the split of a dataset that only needs to read the given fields. The records returned
+   * by the reader may leave out the other fields. For a {@link StructuredRecord}, the fields that are left out
+   * must not be in the schema of the record.
+   *
+   * @param split The split to create a reader for.
+   * @param fieldNames The names of the fields to read. Names are matched ignoring case, because query engines
+   *                   such as Hive only use lower case names.
+   * @return The instance of a {@link RecordScanner}.
+   */
+  RecordScanner<RECORD> createSplitRecordScanner(Split split, Set<String> fieldNames);
+}
@@ -22,12 +22,13 @@ import co.cask.cdap.api.annotation.WriteOnly;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.batch.BatchReadable;
 import co.cask.cdap.api.data.batch.BatchWritable;
-import co.cask.cdap.api.data.batch.RecordScannable;
+import co.cask.cdap.api.data.batch.KeyRangeRecordScannable;
 import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.RecordWritable;
 import co.cask.cdap.api.data.batch.Scannables;
 import co.cask.cdap.api.data.batch.Split;
 import co.cask.cdap.api.data.batch.SplitReader;
+import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
@@ -47,10 +48,12 @@ import javax.annotation.Nullable;
  */
 public class KeyValueTable extends AbstractDataset implements
   BatchReadable<byte[], byte[]>, BatchWritable<byte[], byte[]>,
-  RecordScannable<KeyValue<byte[], byte[]>>, RecordWritable<KeyValue<byte[], byte[]>> {
+  KeyRangeRecordScannable<KeyValue<byte[], byte[]>>, RecordWritable<KeyValue<byte[], byte[]>> {
 
   // the fixed single column to use for the key
   static final byte[] KEY_COLUMN = { 'c' };
+  // the field of the KeyValue records that holds the key
+  private static final Schema.Field KEY_FIELD = Schema.Field.of("key", Schema.of(Schema.Type.BYTES));
 
   private final Table table;
 
@@ -202,6 +205,11 @@ public class KeyValueTable extends AbstractDataset implements
     return Scannables.splitRecordScanner(createSplitReader(split), new KeyValueRecordMaker());
   }
 
+  @Override
+  public Schema.Field getKeyField() {
+    return KEY_FIELD;
+  }
+
   /**
   * Returns splits for a range of keys in the table.
   *
@@ -211,6 +219,7 @@ public class KeyValueTable extends AbstractDataset implements
   * @param stop if non-null, the returned splits will only cover keys that are less
   * @return list of {@link Split}
   */
+  @Override
   public List<Split> getSplits(int numSplits, byte[] start, byte[] stop) {
     return table.getSplits(numSplits, start, stop);
   }
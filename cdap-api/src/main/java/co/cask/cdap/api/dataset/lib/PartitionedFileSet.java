@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -93,6 +93,16 @@ public interface PartitionedFileSet extends Dataset, InputFormatProvider, Output
    */
   Set<PartitionDetail> getPartitions(@Nullable PartitionFilter filter);
 
+  /**
+   * Return all partitions that have the given value for a metadata key. This is served from an index if the
+   * metadata key is declared as indexed with {@link PartitionedFileSetProperties#INDEXED_METADATA_KEYS},
+   * otherwise all partitions are scanned.
+   *
+   * @param metadataKey the metadata key
+   * @param metadataValue the metadata value to match
+   */
+  Set<PartitionDetail> getPartitionsByMetadata(String metadataKey, String metadataValue);
+
   /**
    * Incrementally consumes partitions. This method can be used to retrieve partitions that have been created since the
    * last call to this method. Note that it is the client's responsibility to maintain state of the partitions processed
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,7 +18,11 @@ package co.cask.cdap.api.dataset.lib;
 
 import co.cask.cdap.api.annotation.Beta;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -37,6 +41,18 @@ public class PartitionedFileSetProperties extends FileSetProperties {
    */
   public static final String PARTITIONING_FIELD_PREFIX = "partitioning.field.";
 
+  /**
+   * The property name for the comma-separated list of partitioning fields that are indexed. A filter with
+   * a value condition on an indexed field is served from the index, rather than by scanning all partitions.
+   */
+  public static final String INDEXED_FIELDS = "partitioning.indexed.fields";
+
+  /**
+   * The property name for the comma-separated list of partition metadata keys that are indexed, for looking up
+   * partitions by metadata value.
+   */
+  public static final String INDEXED_METADATA_KEYS = "partitioning.indexed.metadata";
+
   /**
    * Read the partitioning for a PartitionedFileSet from its properties.
    *
@@ -70,6 +86,33 @@ public class PartitionedFileSetProperties extends FileSetProperties {
     return builder.build();
   }
 
+  /**
+   * Read the names of the indexed partitioning fields from the properties of a PartitionedFileSet.
+   *
+   * @param properties the dataset properties
+   * @return the indexed field names, or an empty set if no fields are indexed
+   */
+  public static Set<String> getIndexedFields(Map<String, String> properties) {
+    return splitList(properties.get(INDEXED_FIELDS));
+  }
+
+  /**
+   * Read the indexed metadata keys from the properties of a PartitionedFileSet.
+   *
+   * @param properties the dataset properties
+   * @return the indexed metadata keys, or an empty set if no metadata keys are indexed
+   */
+  public static Set<String> getIndexedMetadataKeys(Map<String, String> properties) {
+    return splitList(properties.get(INDEXED_METADATA_KEYS));
+  }
+
+  private static Set<String> splitList(@Nullable String list) {
+    if (list == null || list.isEmpty()) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(list.split(","))));
+  }
+
   /**
    * @return a properties builder
    */
@@ -103,5 +146,31 @@ public class PartitionedFileSetProperties extends FileSetProperties {
       }
       return this;
     }
+
+    /**
+     * Sets the partitioning fields to index. The fields must be part of the partitioning.
+     */
+    public Builder setIndexedFields(String... fieldNames) {
+      add(INDEXED_FIELDS, join(fieldNames));
+      return this;
+    }
+
+    /**
+     * Sets the partition metadata keys to index. The keys must not contain commas.
+     */
+    public Builder setIndexedMetadataKeys(String... metadataKeys) {
+      add(INDEXED_METADATA_KEYS, join(metadataKeys));
+      return this;
+    }
+
+    private static String join(String... values) {
+      StringBuilder builder = new StringBuilder();
+      String sep = "";
+      for (String value : values) {
+        builder.append(sep).append(value);
+        sep = ",";
+      }
+      return builder.toString();
+    }
   }
 }
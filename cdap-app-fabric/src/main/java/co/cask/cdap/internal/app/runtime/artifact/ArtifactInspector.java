@@ -34,7 +34,7 @@ import co.cask.cdap.common.InvalidArtifactException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
-import co.cask.cdap.common.lang.jar.BundleJarUtil;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.internal.app.runtime.plugin.PluginInstantiator;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
@@ -120,11 +120,11 @@ final class ArtifactInspector {
 
     Path stageDir = Files.createTempDirectory(tmpDir, artifactFile.getName());
     try {
-      File unpackedDir = BundleJarUtil.unJar(artifactLocation,
-                                             Files.createTempDirectory(stageDir, "unpacked-").toFile());
-
-      ArtifactClasses.Builder builder = inspectApplications(artifactId, ArtifactClasses.builder(),
-                                                            artifactLocation, unpackedDir);
+      ArtifactClasses.Builder builder;
+      try (UnpackedJarCache.UnpackedJar unpackedJar = UnpackedJarCache.getInstance(cConf).acquire(artifactLocation)) {
+        builder = inspectApplications(artifactId, ArtifactClasses.builder(),
+                                      artifactLocation, unpackedJar.getDirectory());
+      }
 
       try (PluginInstantiator pluginInstantiator =
              new PluginInstantiator(cConf, parentClassLoader,
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import javax.annotation.Nullable;
+
+/**
+ * Default implementation of {@link ProcessMethod.ProcessResult}.
+ *
+ * @param <V> Type of the event.
+ */
+final class DefaultProcessResult<V> implements ProcessMethod.ProcessResult<V> {
+
+  private final V event;
+  private final Throwable cause;
+
+  DefaultProcessResult(V event, @Nullable Throwable cause) {
+    this.event = event;
+    this.cause = cause;
+  }
+
+  @Override
+  public V getEvent() {
+    return event;
+  }
+
+  @Override
+  public boolean isSuccess() {
+    return cause == null;
+  }
+
+  @Override
+  public Throwable getCause() {
+    return cause;
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.flow.flowlet.InputContext;
+
+import javax.annotation.Nullable;
+
+/**
+ * Invokes a flowlet process method. Implementations are generated by {@link ProcessMethodInvokerGenerator} to call
+ * the process method directly. This interface has to be public as the generated classes are loaded by a different
+ * {@link ClassLoader}.
+ */
+public interface ProcessMethodInvoker {
+
+  /**
+   * Calls the process method on the given flowlet.
+   *
+   * @param flowlet the flowlet instance
+   * @param event the event to process, or the {@link java.util.Iterator} of events for a batch process method.
+   *              It is ignored if the process method has no parameter
+   * @param inputContext the {@link InputContext} of the event. It is ignored if the process method doesn't take it
+   * @throws Exception if the process method throws
+   */
+  void invoke(Object flowlet, @Nullable Object event, InputContext inputContext) throws Exception;
+}
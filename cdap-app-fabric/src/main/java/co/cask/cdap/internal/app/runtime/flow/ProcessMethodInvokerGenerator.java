@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.lang.reflect.Modifier;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Generates a class bytecode that implements {@link ProcessMethodInvoker} for a given flowlet process method.
+ * The generated class calls the process method directly, which avoids the cost of reflection on every event.
+ *
+ * The generated class is loaded by a different {@link ClassLoader} than the flowlet class, hence only public
+ * methods of public classes are supported.
+ */
+@NotThreadSafe
+final class ProcessMethodInvokerGenerator {
+
+  /**
+   * Generates the {@link ProcessMethodInvoker} class for the given process method.
+   *
+   * @param method the process method
+   * @return the {@link ClassDefinition} of the generated class
+   * @throws IllegalArgumentException if the method cannot be called directly from the generated class
+   */
+  ClassDefinition generate(java.lang.reflect.Method method) {
+    Class<?> declaringClass = method.getDeclaringClass();
+    Preconditions.checkArgument(!Modifier.isStatic(method.getModifiers()),
+                                "Static process method is not supported: %s", method);
+    Preconditions.checkArgument(Modifier.isPublic(method.getModifiers()) && isPublic(declaringClass),
+                                "Process method is not public: %s", method);
+    Class<?>[] paramTypes = method.getParameterTypes();
+    Preconditions.checkArgument(paramTypes.length <= 2, "Too many parameters in process method: %s", method);
+    for (Class<?> paramType : paramTypes) {
+      Preconditions.checkArgument(isPublic(paramType),
+                                  "Parameter type %s of process method %s is not public", paramType, method);
+    }
+
+    String className = String.format("%s$ProcessMethodInvoker$%s", declaringClass.getName(), method.getName());
+    if (className.startsWith("java.") || className.startsWith("javax.")) {
+      className = "co.cask.cdap." + className;
+    }
+    String internalName = className.replace('.', '/');
+
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_SYNTHETIC,
+                      internalName, null, Type.getInternalName(Object.class),
+                      new String[] { Type.getInternalName(ProcessMethodInvoker.class) });
+
+    generateConstructor(classWriter);
+    generateInvoke(classWriter, method);
+
+    classWriter.visitEnd();
+
+    ClassDefinition classDefinition = new ClassDefinition(classWriter.toByteArray(), internalName,
+                                                          ImmutableList.of(ProcessMethodInvoker.class,
+                                                                           InputContext.class));
+    // DEBUG block. Uncomment for debug
+//    co.cask.cdap.internal.asm.Debugs.debugByteCode(classDefinition, new java.io.PrintWriter(System.out));
+    // End DEBUG block
+    return classDefinition;
+  }
+
+  private void generateConstructor(ClassWriter classWriter) {
+    Method constructor = Methods.getMethod(void.class, "<init>");
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, new Type[0], classWriter);
+    mg.loadThis();
+    mg.invokeConstructor(Type.getType(Object.class), constructor);
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link ProcessMethodInvoker#invoke(Object, Object, InputContext)} method, which is
+   *
+   * <pre>
+   * public void invoke(Object flowlet, Object event, InputContext inputContext) throws Exception {
+   *   ((FlowletClass) flowlet).process((EventType) event, (ContextType) inputContext);
+   * }
+   * </pre>
+   */
+  private void generateInvoke(ClassWriter classWriter, java.lang.reflect.Method method) {
+    Method invokeMethod = Methods.getMethod(void.class, "invoke", Object.class, Object.class, InputContext.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, invokeMethod, null,
+                                               new Type[] { Type.getType(Exception.class) }, classWriter);
+
+    Type declaringType = Type.getType(method.getDeclaringClass());
+    mg.loadArg(0);
+    mg.checkCast(declaringType);
+
+    Class<?>[] paramTypes = method.getParameterTypes();
+    for (int i = 0; i < paramTypes.length; i++) {
+      // First parameter is the event, second one is the InputContext.
+      mg.loadArg(i + 1);
+      Type paramType = Type.getType(paramTypes[i]);
+      if (paramTypes[i].isPrimitive()) {
+        mg.unbox(paramType);
+      } else {
+        mg.checkCast(paramType);
+      }
+    }
+
+    Method targetMethod = Method.getMethod(method);
+    if (method.getDeclaringClass().isInterface()) {
+      mg.invokeInterface(declaringType, targetMethod);
+    } else {
+      mg.invokeVirtual(declaringType, targetMethod);
+    }
+
+    // Discard the return value
+    Type returnType = targetMethod.getReturnType();
+    if (returnType.getSize() == 2) {
+      mg.pop2();
+    } else if (returnType.getSize() == 1) {
+      mg.pop();
+    }
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns {@code true} if the given class can be accessed from classes in any package.
+   */
+  private boolean isPublic(Class<?> cls) {
+    while (cls.isArray()) {
+      cls = cls.getComponentType();
+    }
+    return cls.isPrimitive() || Modifier.isPublic(cls.getModifiers());
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -121,32 +121,6 @@ public final class ReflectionProcessMethod<T> implements ProcessMethod<T> {
   private ProcessResult<T> createResult(InputDatum<T> input, Throwable failureCause) {
     // If the method has param, then object for the result would be iterator or the first event (batch vs no-batch)
     T event = hasParam ? (batch ? (T) input.iterator() : input.iterator().next()) : null;
-    return new ReflectionProcessResult<>(event, failureCause);
-  }
-
-  private static final class ReflectionProcessResult<V> implements ProcessResult<V> {
-
-    private final V event;
-    private final Throwable cause;
-
-    private ReflectionProcessResult(V event, Throwable cause) {
-      this.event = event;
-      this.cause = cause;
-    }
-
-    @Override
-    public V getEvent() {
-      return event;
-    }
-
-    @Override
-    public boolean isSuccess() {
-      return cause == null;
-    }
-
-    @Override
-    public Throwable getCause() {
-      return cause;
-    }
+    return new DefaultProcessResult<>(event, failureCause);
   }
 }
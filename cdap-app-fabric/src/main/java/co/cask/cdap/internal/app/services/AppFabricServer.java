@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -30,6 +30,7 @@ import co.cask.cdap.internal.app.namespace.DefaultNamespaceEnsurer;
 import co.cask.cdap.internal.app.runtime.artifact.SystemArtifactLoader;
 import co.cask.cdap.internal.app.runtime.plugin.PluginService;
 import co.cask.cdap.internal.app.runtime.schedule.SchedulerService;
+import co.cask.cdap.internal.app.store.RunRecordTimeIndexBuilder;
 import co.cask.cdap.notifications.service.NotificationService;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.authorization.PrivilegesFetcherProxyService;
@@ -77,6 +78,7 @@ public class AppFabricServer extends AbstractIdleService {
   private final SystemArtifactLoader systemArtifactLoader;
   private final PluginService pluginService;
   private final PrivilegesFetcherProxyService privilegesFetcherProxyService;
+  private final RunRecordTimeIndexBuilder runRecordTimeIndexBuilder;
 
   private NettyHttpService httpService;
   private Set<HttpHandler> handlers;
@@ -101,7 +103,8 @@ public class AppFabricServer extends AbstractIdleService {
                          DefaultNamespaceEnsurer defaultNamespaceEnsurer,
                          SystemArtifactLoader systemArtifactLoader,
                          PluginService pluginService,
-                         PrivilegesFetcherProxyService privilegesFetcherProxyService) {
+                         PrivilegesFetcherProxyService privilegesFetcherProxyService,
+                         RunRecordTimeIndexBuilder runRecordTimeIndexBuilder) {
     this.hostname = hostname;
     this.discoveryService = discoveryService;
     this.schedulerService = schedulerService;
@@ -119,6 +122,7 @@ public class AppFabricServer extends AbstractIdleService {
     this.systemArtifactLoader = systemArtifactLoader;
     this.pluginService = pluginService;
     this.privilegesFetcherProxyService = privilegesFetcherProxyService;
+    this.runRecordTimeIndexBuilder = runRecordTimeIndexBuilder;
   }
 
   /**
@@ -221,10 +225,12 @@ public class AppFabricServer extends AbstractIdleService {
 
     httpService.startAndWait();
     defaultNamespaceEnsurer.startAndWait();
+    runRecordTimeIndexBuilder.startAndWait();
   }
 
   @Override
   protected void shutDown() throws Exception {
+    runRecordTimeIndexBuilder.stopAndWait();
     defaultNamespaceEnsurer.stopAndWait();
     httpService.stopAndWait();
     programRuntimeService.stopAndWait();
@@ -83,6 +83,14 @@ public class AppMetadataStore extends MetadataStoreDataset {
   private static final String TYPE_WORKFLOW_NODE_STATE = "wns";
   private static final String TYPE_WORKFLOW_TOKEN = "wft";
   private static final String TYPE_NAMESPACE = "namespace";
+  private static final String TYPE_RUN_RECORD_TIME = "runRecordTime";
+  private static final String TYPE_RUN_RECORD_TIME_LONG = "runRecordTimeLong";
+  private static final String TYPE_RUN_RECORD_TIME_INDEXED = "runRecordTimeIndexed";
+
+  // Size of the time buckets of the run record time index
+  private static final long RUN_RECORD_TIME_BUCKET_SECS = TimeUnit.HOURS.toSeconds(1);
+  // Runs that span more buckets than this are indexed by their start time only
+  private static final long MAX_RUN_RECORD_TIME_BUCKETS = 24 * 7;
 
   private final CConfiguration cConf;
 
@@ -320,7 +328,9 @@ public class AppMetadataStore extends MetadataStoreDataset {
       .add(getInvertedTsKeyPart(started.getStartTs()))
       .add(pid).build();
 
-    write(key, new RunRecordMeta(started, stopTs, runStatus));
+    RunRecordMeta completed = new RunRecordMeta(started, stopTs, runStatus);
+    write(key, completed);
+    addToRunTimeIndex(program, completed);
   }
 
   public List<RunRecordMeta> getRuns(ProgramRunStatus status, Predicate<RunRecordMeta> filter) {
@@ -529,12 +539,14 @@ public class AppMetadataStore extends MetadataStoreDataset {
   }
 
   public void deleteProgramHistory(String namespaceId, String appId) {
+    deleteFromRunTimeIndex(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId, appId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_STARTED, namespaceId, appId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId, appId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_SUSPENDED, namespaceId, appId).build());
   }
 
   public void deleteProgramHistory(String namespaceId) {
+    deleteFromRunTimeIndex(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_STARTED, namespaceId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_SUSPENDED, namespaceId).build());
@@ -608,8 +620,12 @@ public class AppMetadataStore extends MetadataStoreDataset {
     LOG.trace("Scan timeout = {}ms", scanTimeoutMills);
 
     Set<RunId> runIds = new HashSet<>();
-    Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_COMPLETED, startTimeInSecs, endTimeInSecs,
-                                                        scanTimeoutMills));
+    if (isRunTimeIndexed()) {
+      addCompletedInRange(runIds, startTimeInSecs, endTimeInSecs);
+    } else {
+      Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_COMPLETED, startTimeInSecs, endTimeInSecs,
+                                                          scanTimeoutMills));
+    }
     Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_SUSPENDED, startTimeInSecs, endTimeInSecs,
                                                         scanTimeoutMills));
     Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_STARTED, startTimeInSecs, endTimeInSecs,
@@ -657,6 +673,174 @@ public class AppMetadataStore extends MetadataStoreDataset {
     return batches;
   }
 
+  /**
+   * Returns whether all completed run records are in the run record time index, which is the case after
+   * {@link #buildRunTimeIndex(byte[], int)} completed.
+   */
+  public boolean isRunTimeIndexed() {
+    return exists(new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME_INDEXED).build());
+  }
+
+  /**
+   * Adds a batch of the completed run records to the run record time index. Completed run records are added to
+   * the index when they are written, so this only needs to be done once, for the records written before the index
+   * was introduced.
+   *
+   * @param startRowKey the key of the completed run record to start from, or {@code null} to start from the first one
+   * @param limit maximum number of run records to add in this batch
+   * @return the key to continue from in the next batch, or {@code null} if all run records are in the index
+   */
+  @Nullable
+  public byte[] buildRunTimeIndex(@Nullable byte[] startRowKey, final int limit) {
+    MDSKey startKey = startRowKey == null ? new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED).build()
+                                          : new MDSKey(startRowKey);
+    MDSKey stopKey = new MDSKey(Bytes.stopKeyForPrefix(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED)
+                                                         .build().getKey()));
+    final List<MDSKey> lastKey = new ArrayList<>(1);
+    scan(startKey, stopKey, RunRecordMeta.class, new Function<KeyValue<RunRecordMeta>, Boolean>() {
+      private int count;
+
+      @Override
+      public Boolean apply(KeyValue<RunRecordMeta> input) {
+        addToRunTimeIndex(getProgramFromCompletedKey(input.getKey()), input.getValue());
+        if (++count < limit) {
+          return true;
+        }
+        lastKey.add(input.getKey());
+        return false;
+      }
+    });
+
+    if (lastKey.isEmpty()) {
+      write(new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME_INDEXED).build(), Boolean.TRUE);
+      return null;
+    }
+    // key for next batch is the last key + 1 from this batch
+    return Bytes.stopKeyForPrefix(lastKey.get(0).getKey());
+  }
+
+  /**
+   * Adds the completed runs that were running in the given time range to the given set, using the run record
+   * time index. Only the time buckets that overlap with the range, and the runs that were too long to be put into
+   * buckets, are scanned.
+   */
+  private void addCompletedInRange(Set<RunId> runIds, final long startTimeInSecs, final long endTimeInSecs) {
+    // A run that overlaps with [startTime, endTime) is running at either startTime or its own start time,
+    // which is before endTime. Hence it has an entry in one of the buckets from startTime to endTime.
+    long fromBucket = getRunTimeBucket(startTimeInSecs);
+    long toBucket = getRunTimeBucket(Math.max(startTimeInSecs, endTimeInSecs - 1));
+    MDSKey startKey = new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME).add(fromBucket).build();
+    MDSKey stopKey = new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME).add(toBucket + 1).build();
+    Predicate<RunTimeRange> timeFilter = new Predicate<RunTimeRange>() {
+      @Override
+      public boolean apply(RunTimeRange range) {
+        return range.startTs < endTimeInSecs && range.stopTs >= startTimeInSecs;
+      }
+    };
+    addRunIds(runIds, startKey, stopKey, timeFilter);
+
+    // Long runs are keyed by start time, so all of them that started before endTime need to be looked at
+    startKey = new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME_LONG).add(0L).build();
+    stopKey = new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME_LONG).add(Math.max(0L, endTimeInSecs)).build();
+    addRunIds(runIds, startKey, stopKey, timeFilter);
+  }
+
+  private void addRunIds(final Set<RunId> runIds, MDSKey startKey, MDSKey stopKey,
+                         final Predicate<RunTimeRange> filter) {
+    scan(startKey, stopKey, RunTimeRange.class, new Function<KeyValue<RunTimeRange>, Boolean>() {
+      @Override
+      public Boolean apply(KeyValue<RunTimeRange> input) {
+        if (filter.apply(input.getValue())) {
+          runIds.add(RunIds.fromString(input.getValue().pid));
+        }
+        return true;
+      }
+    });
+  }
+
+  private void addToRunTimeIndex(Id.Program program, RunRecordMeta completed) {
+    RunTimeRange range = new RunTimeRange(completed);
+    for (MDSKey key : getRunTimeIndexKeys(program, range)) {
+      write(key, range);
+    }
+  }
+
+  /**
+   * Removes the completed run records with the given key prefix from the run record time index.
+   */
+  private void deleteFromRunTimeIndex(MDSKey completedPrefix) {
+    scan(completedPrefix, null, RunRecordMeta.class, new Function<KeyValue<RunRecordMeta>, Boolean>() {
+      @Override
+      public Boolean apply(KeyValue<RunRecordMeta> input) {
+        Id.Program program = getProgramFromCompletedKey(input.getKey());
+        for (MDSKey key : getRunTimeIndexKeys(program, new RunTimeRange(input.getValue()))) {
+          delete(key);
+        }
+        return true;
+      }
+    });
+  }
+
+  /**
+   * Returns the keys of the run record time index for a completed run. A run has one key in each of the time
+   * buckets it was running in, with the bucket in the key. Runs that were running in too many buckets have a
+   * single key with the start time instead.
+   */
+  private List<MDSKey> getRunTimeIndexKeys(Id.Program program, RunTimeRange range) {
+    long fromBucket = getRunTimeBucket(range.startTs);
+    long toBucket = getRunTimeBucket(Math.max(range.startTs, range.stopTs));
+    if (toBucket - fromBucket >= MAX_RUN_RECORD_TIME_BUCKETS) {
+      return Collections.singletonList(getRunTimeIndexKey(TYPE_RUN_RECORD_TIME_LONG, range.startTs, program,
+                                                          range.pid));
+    }
+    List<MDSKey> keys = new ArrayList<>();
+    for (long bucket = fromBucket; bucket <= toBucket; bucket++) {
+      keys.add(getRunTimeIndexKey(TYPE_RUN_RECORD_TIME, bucket, program, range.pid));
+    }
+    return keys;
+  }
+
+  private MDSKey getRunTimeIndexKey(String recordType, long time, Id.Program program, String pid) {
+    return new MDSKey.Builder()
+      .add(recordType)
+      .add(time)
+      .add(program.getNamespaceId())
+      .add(program.getApplicationId())
+      .add(program.getType().name())
+      .add(program.getId())
+      .add(pid)
+      .build();
+  }
+
+  private long getRunTimeBucket(long timeInSecs) {
+    return Math.max(0L, timeInSecs) / RUN_RECORD_TIME_BUCKET_SECS;
+  }
+
+  private Id.Program getProgramFromCompletedKey(MDSKey key) {
+    // Key is [runRecordCompleted][namespace][app][type][program][inverted start time][pid]
+    MDSKey.Splitter splitter = key.split();
+    splitter.skipString();
+    String namespaceId = splitter.getString();
+    String appId = splitter.getString();
+    ProgramType type = ProgramType.valueOf(splitter.getString());
+    return Id.Program.from(namespaceId, appId, type, splitter.getString());
+  }
+
+  /**
+   * Value of the run record time index, which has what is needed to filter the runs by time.
+   */
+  private static final class RunTimeRange {
+    private final String pid;
+    private final long startTs;
+    private final long stopTs;
+
+    RunTimeRange(RunRecordMeta completed) {
+      this.pid = completed.getPid();
+      this.startTs = completed.getStartTs();
+      this.stopTs = completed.getStopTs() == null ? completed.getStartTs() : completed.getStopTs();
+    }
+  }
+
   private static class ScanFunction implements Function<MetadataStoreDataset.KeyValue<RunRecordMeta>, Boolean> {
     private final Predicate<RunRecordMeta> filter;
     private final Stopwatch stopwatch;
@@ -102,6 +102,7 @@ public class DefaultStore implements Store {
   private static final Gson GSON = new Gson();
   private static final Map<String, String> EMPTY_STRING_MAP = ImmutableMap.of();
   private static final Type STRING_MAP_TYPE = new TypeToken<Map<String, String>>() { }.getType();
+  private static final int RUN_TIME_INDEX_BATCH_SIZE = 1000;
 
   private final CConfiguration configuration;
   private final DatasetFramework dsFramework;
@@ -1012,6 +1013,8 @@ public class DefaultStore implements Store {
   }
 
   public Set<RunId> getRunningInRange(final long startTimeInSecs, final long endTimeInSecs) {
+    // Until the RunRecordTimeIndexBuilder or the upgrade tool built the run record time index,
+    // all completed run records are scanned
     return txExecute(transactional, new TxCallable<Set<RunId>>() {
       @Override
       public Set<RunId> call(DatasetContext context) throws Exception {
@@ -1020,6 +1023,43 @@ public class DefaultStore implements Store {
     });
   }
 
+  /**
+   * Adds the completed run records written before the run record time index was introduced to the index,
+   * if that wasn't done yet. The run records are added in batches, each in its own transaction. If the calling
+   * thread is interrupted, this returns after the current batch, without completing the index.
+   */
+  public void buildRunTimeIndex() {
+    boolean indexed = txExecute(transactional, new TxCallable<Boolean>() {
+      @Override
+      public Boolean call(DatasetContext context) throws Exception {
+        return getAppMetadataStore(context).isRunTimeIndexed();
+      }
+    });
+    if (indexed) {
+      return;
+    }
+    byte[] row = null;
+    do {
+      if (Thread.currentThread().isInterrupted()) {
+        LOG.info("Stopped building the run record time index before completion.");
+        return;
+      }
+      row = buildRunTimeIndex(row);
+      LOG.debug("Completed a batch for building the run record time index.");
+    } while (row != null);
+    LOG.info("Built the run record time index.");
+  }
+
+  @Nullable
+  private byte[] buildRunTimeIndex(@Nullable final byte[] startRowKey) {
+    return txExecute(transactional, new TxCallable<byte[]>() {
+      @Override
+      public byte[] call(DatasetContext context) throws Exception {
+        return getAppMetadataStore(context).buildRunTimeIndex(startRowKey, RUN_TIME_INDEX_BATCH_SIZE);
+      }
+    });
+  }
+
   /**
    * Executes the given callable with a transaction. Any exception will result in {@link RuntimeException}.
    */
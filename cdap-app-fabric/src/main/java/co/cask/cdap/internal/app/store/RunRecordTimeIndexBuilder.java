@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.store;
+
+import co.cask.cdap.common.service.RetryOnStartFailureService;
+import co.cask.cdap.common.service.RetryStrategies;
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.AbstractService;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.Inject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service that adds the completed run records written before the run record time index was introduced to the index,
+ * in the background. Until that is done, {@link DefaultStore#getRunningInRange(long, long)} scans all completed run
+ * records instead of using the index.
+ */
+public final class RunRecordTimeIndexBuilder extends AbstractService {
+
+  private final Service serviceDelegate;
+
+  @Inject
+  public RunRecordTimeIndexBuilder(final DefaultStore store) {
+    this.serviceDelegate = new RetryOnStartFailureService(new Supplier<Service>() {
+      @Override
+      public Service get() {
+        return new AbstractService() {
+          @Override
+          protected void doStart() {
+            try {
+              store.buildRunTimeIndex();
+              notifyStarted();
+            } catch (Exception e) {
+              notifyFailed(e);
+            }
+          }
+
+          @Override
+          protected void doStop() {
+            notifyStopped();
+          }
+        };
+      }
+    }, RetryStrategies.exponentialDelay(1, 60, TimeUnit.SECONDS));
+  }
+
+  @Override
+  protected void doStart() {
+    serviceDelegate.start();
+    notifyStarted();
+  }
+
+  @Override
+  protected void doStop() {
+    serviceDelegate.stop();
+    notifyStopped();
+  }
+}
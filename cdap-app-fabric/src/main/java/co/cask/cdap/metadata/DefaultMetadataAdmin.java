@@ -28,6 +28,7 @@ import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.cdap.proto.security.Principal;
@@ -40,6 +41,7 @@ import com.google.inject.Inject;
 
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link MetadataAdmin} that interacts directly with {@link MetadataStore}.
@@ -170,6 +172,22 @@ public class DefaultMetadataAdmin implements MetadataAdmin {
     return filterAuthorizedSearchResult(metadataStore.searchMetadataOnType(scope, namespaceId, searchQuery, types));
   }
 
+  @Override
+  public MetadataSearchResponse searchMetadata(String namespaceId, String searchQuery,
+                                               Set<MetadataSearchTargetType> types, @Nullable String cursor,
+                                               int limit) throws Exception {
+    Principal principal = authenticationContext.getPrincipal();
+    final Predicate<EntityId> filter = authorizationEnforcer.createFilter(principal);
+    // Filter while paging, so that pages are filled with authorized results and the cursor refers to one of them
+    return metadataStore.searchMetadataOnType(
+      namespaceId, searchQuery, types, cursor, limit, new com.google.common.base.Predicate<Id.NamespacedId>() {
+        @Override
+        public boolean apply(Id.NamespacedId entityId) {
+          return filter.apply(entityId.toEntityId());
+        }
+      });
+  }
+
   /**
    * Filter a list of {@link MetadataSearchResultRecord} that ensures the logged-in user has a privilege on
    *
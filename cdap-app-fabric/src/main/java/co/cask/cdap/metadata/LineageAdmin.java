@@ -19,6 +19,8 @@ package co.cask.cdap.metadata;
 import co.cask.cdap.app.store.Store;
 import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.common.app.RunIds;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.entity.EntityExistenceVerifier;
 import co.cask.cdap.data2.metadata.lineage.AccessType;
 import co.cask.cdap.data2.metadata.lineage.Lineage;
@@ -26,28 +28,47 @@ import co.cask.cdap.data2.metadata.lineage.LineageStore;
 import co.cask.cdap.data2.metadata.lineage.LineageStoreReader;
 import co.cask.cdap.data2.metadata.lineage.Relation;
 import co.cask.cdap.data2.metadata.store.MetadataStore;
+import co.cask.cdap.internal.app.store.RunRecordMeta;
 import co.cask.cdap.proto.Id;
+import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.inject.Inject;
 import org.apache.twill.api.RunId;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -55,22 +76,8 @@ import java.util.concurrent.TimeUnit;
  */
 public class LineageAdmin {
   private static final Logger LOG = LoggerFactory.getLogger(LineageAdmin.class);
-
-  private static final Function<Relation, Id.Program> RELATION_TO_PROGRAM_FUNCTION =
-    new Function<Relation, Id.Program>() {
-      @Override
-      public Id.Program apply(Relation input) {
-        return input.getProgram();
-      }
-    };
-
-  private static final Function<Relation, Id.NamespacedId> RELATION_TO_DATA_FUNCTION =
-    new Function<Relation, Id.NamespacedId>() {
-      @Override
-      public Id.NamespacedId apply(Relation input) {
-        return input.getData();
-      }
-    };
+  // Maximum number of sets of runs to cache relations for
+  private static final int MAX_CACHED_RUN_SETS = 20;
 
   private static final Predicate<Relation> UNKNOWN_TYPE_FILTER = new Predicate<Relation>() {
     @Override
@@ -95,14 +102,40 @@ public class LineageAdmin {
   private final Store store;
   private final MetadataStore metadataStore;
   private final EntityExistenceVerifier entityExistenceVerifier;
+  private final int fetchThreads;
+  private final ExecutorService fetchExecutor;
+  private final boolean cacheEnabled;
+  // Relations of datasets, streams and programs fetched for a set of completed runs. The set of runs determines the
+  // scan range and the filter used to fetch relations, so the relations can be reused by queries with the same runs.
+  private final Cache<Set<RunId>, ConcurrentMap<Id.NamespacedId, Set<Relation>>> relationsCache;
 
-  @Inject
+  @VisibleForTesting
   LineageAdmin(LineageStoreReader lineageStoreReader, Store store, MetadataStore metadataStore,
                EntityExistenceVerifier entityExistenceVerifier) {
+    this(lineageStoreReader, store, metadataStore, entityExistenceVerifier, CConfiguration.create());
+  }
+
+  @Inject
+  LineageAdmin(LineageStoreReader lineageStoreReader, Store store, MetadataStore metadataStore,
+               EntityExistenceVerifier entityExistenceVerifier, CConfiguration cConf) {
     this.lineageStoreReader = lineageStoreReader;
     this.store = store;
     this.metadataStore = metadataStore;
     this.entityExistenceVerifier = entityExistenceVerifier;
+    this.fetchThreads = Math.max(1, cConf.getInt(Constants.Metadata.LINEAGE_FETCH_THREADS));
+
+    // Creates a thread pool that will shrink inactive threads
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(fetchThreads, fetchThreads, 60, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(),
+                                                         Threads.createDaemonThreadFactory("lineage-fetch-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    this.fetchExecutor = executor;
+    long cacheExpirySecs = Math.max(0L, cConf.getLong(Constants.Metadata.LINEAGE_CACHE_EXPIRY_SECS));
+    this.cacheEnabled = cacheExpirySecs > 0;
+    this.relationsCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(cacheExpirySecs, TimeUnit.SECONDS)
+      .maximumSize(MAX_CACHED_RUN_SETS)
+      .build();
   }
 
   /**
@@ -133,6 +166,13 @@ public class LineageAdmin {
     return doComputeLineage(sourceStream, startMillis, endMillis, levels);
   }
 
+  /**
+   * Stops the threads used to fetch relations. Lineage cannot be computed after this is called.
+   */
+  public void shutdown() {
+    fetchExecutor.shutdownNow();
+  }
+
   /**
    * @return metadata associated with a run
    */
@@ -171,6 +211,8 @@ public class LineageAdmin {
     ScanRangeWithFilter scanRange = getScanRange(runningInRange);
     LOG.trace("Using scan start = {}, scan end = {}", scanRange.getStart(), scanRange.getEnd());
 
+    ConcurrentMap<Id.NamespacedId, Set<Relation>> cachedRelations = getCachedRelations(runningInRange);
+
     Multimap<RelationKey, Relation> relations = HashMultimap.create();
     Set<Id.NamespacedId> visitedDatasets = new HashSet<>();
     Set<Id.NamespacedId> toVisitDatasets = new HashSet<>();
@@ -180,35 +222,36 @@ public class LineageAdmin {
     toVisitDatasets.add(sourceData);
     for (int i = 0; i < levels; ++i) {
       LOG.trace("Level {}", i);
+      toVisitDatasets.removeAll(visitedDatasets);
+      if (toVisitDatasets.isEmpty()) {
+        // Nothing new to visit at this level, hence the lineage cannot change anymore
+        LOG.trace("No more datasets to visit");
+        break;
+      }
+      visitedDatasets.addAll(toVisitDatasets);
+      LOG.trace("Visiting datasets {}", toVisitDatasets);
+
+      // Fetch related programs of all datasets of this level
       toVisitPrograms.clear();
-      for (Id.NamespacedId d : toVisitDatasets) {
-        if (visitedDatasets.add(d)) {
-          LOG.trace("Visiting dataset {}", d);
-          // Fetch related programs
-          Iterable<Relation> programRelations = getProgramRelations(d, scanRange.getStart(), scanRange.getEnd(),
-                                                                    scanRange.getFilter());
-          LOG.trace("Got program relations {}", programRelations);
-          for (Relation relation : programRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitPrograms, Iterables.transform(programRelations, RELATION_TO_PROGRAM_FUNCTION));
+      for (Set<Relation> programRelations : getRelations(toVisitDatasets, scanRange, cachedRelations).values()) {
+        LOG.trace("Got program relations {}", programRelations);
+        for (Relation relation : programRelations) {
+          relations.put(new RelationKey(relation), relation);
+          toVisitPrograms.add(relation.getProgram());
         }
       }
 
+      toVisitPrograms.removeAll(visitedPrograms);
+      visitedPrograms.addAll(toVisitPrograms);
+      LOG.trace("Visiting programs {}", toVisitPrograms);
+
+      // Fetch related datasets of all programs of this level
       toVisitDatasets.clear();
-      for (Id.Program p : toVisitPrograms) {
-        if (visitedPrograms.add(p)) {
-          LOG.trace("Visiting program {}", p);
-          // Fetch related datasets
-          Iterable<Relation> datasetRelations = lineageStoreReader.getRelations(p, scanRange.getStart(),
-                                                                                scanRange.getEnd(),
-                                                                                scanRange.getFilter());
-          LOG.trace("Got data relations {}", datasetRelations);
-          for (Relation relation : datasetRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitDatasets,
-                           Iterables.transform(datasetRelations, RELATION_TO_DATA_FUNCTION));
+      for (Set<Relation> datasetRelations : getRelations(toVisitPrograms, scanRange, cachedRelations).values()) {
+        LOG.trace("Got data relations {}", datasetRelations);
+        for (Relation relation : datasetRelations) {
+          relations.put(new RelationKey(relation), relation);
+          toVisitDatasets.add(relation.getData());
         }
       }
     }
@@ -220,17 +263,107 @@ public class LineageAdmin {
     return lineage;
   }
 
-  private Iterable<Relation> getProgramRelations(Id.NamespacedId data, long start, long end,
-                                                 Predicate<Relation> filter) {
-    if (data instanceof Id.DatasetInstance) {
-      return lineageStoreReader.getRelations((Id.DatasetInstance) data, start, end, filter);
+  /**
+   * Returns the relations cached for the given set of runs. Programs that are still running can access more datasets
+   * and streams, so if any of the runs is still active, a new map only used by the current query is returned.
+   */
+  private ConcurrentMap<Id.NamespacedId, Set<Relation>> getCachedRelations(Set<RunId> runIds) {
+    if (!cacheEnabled || hasActiveRun(runIds)) {
+      return new ConcurrentHashMap<>();
+    }
+    try {
+      return relationsCache.get(runIds, new Callable<ConcurrentMap<Id.NamespacedId, Set<Relation>>>() {
+        @Override
+        public ConcurrentMap<Id.NamespacedId, Set<Relation>> call() throws Exception {
+          return new ConcurrentHashMap<>();
+        }
+      });
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private boolean hasActiveRun(final Set<RunId> runIds) {
+    if (runIds.isEmpty()) {
+      return false;
+    }
+    Predicate<RunRecordMeta> filter = new Predicate<RunRecordMeta>() {
+      @Override
+      public boolean apply(RunRecordMeta record) {
+        return runIds.contains(RunIds.fromString(record.getPid()));
+      }
+    };
+    return !store.getRuns(ProgramRunStatus.RUNNING, filter).isEmpty()
+      || !store.getRuns(ProgramRunStatus.SUSPENDED, filter).isEmpty();
+  }
+
+  /**
+   * Returns the relations of the given datasets, streams or programs. Relations that are not in the given cache are
+   * fetched from the lineage store in up to {@link #fetchThreads} concurrent batches, each in a single transaction,
+   * and added to the cache.
+   */
+  private <T extends Id.NamespacedId> Map<T, Set<Relation>> getRelations(
+    Set<T> entities, final ScanRangeWithFilter scanRange, ConcurrentMap<Id.NamespacedId, Set<Relation>> cache) {
+
+    Map<T, Set<Relation>> result = new HashMap<>();
+    List<T> toFetch = new ArrayList<>();
+    for (T entity : entities) {
+      Set<Relation> cached = cache.get(entity);
+      if (cached == null) {
+        toFetch.add(entity);
+      } else {
+        result.put(entity, cached);
+      }
+    }
+    if (toFetch.isEmpty()) {
+      return result;
+    }
+
+    List<List<T>> batches = Lists.partition(toFetch, (toFetch.size() + fetchThreads - 1) / fetchThreads);
+    if (batches.size() == 1) {
+      result.putAll(fetchRelations(toFetch, scanRange));
+    } else {
+      List<Future<Map<T, Set<Relation>>>> futures = new ArrayList<>(batches.size());
+      for (final List<T> batch : batches) {
+        futures.add(fetchExecutor.submit(new Callable<Map<T, Set<Relation>>>() {
+          @Override
+          public Map<T, Set<Relation>> call() throws Exception {
+            return fetchRelations(batch, scanRange);
+          }
+        }));
+      }
+      try {
+        for (Future<Map<T, Set<Relation>>> future : futures) {
+          result.putAll(future.get());
+        }
+      } catch (ExecutionException e) {
+        cancel(futures);
+        throw Throwables.propagate(e.getCause());
+      } catch (InterruptedException e) {
+        cancel(futures);
+        Thread.currentThread().interrupt();
+        throw Throwables.propagate(e);
+      }
     }
 
-    if (data instanceof Id.Stream) {
-      return lineageStoreReader.getRelations((Id.Stream) data, start, end, filter);
+    for (T entity : toFetch) {
+      cache.put(entity, result.get(entity));
     }
+    return result;
+  }
 
-    throw new IllegalStateException("Unknown data type " + data);
+  private <T extends Id.NamespacedId> Map<T, Set<Relation>> fetchRelations(Collection<T> entities,
+                                                                          ScanRangeWithFilter scanRange) {
+    Map<T, Set<Relation>> relations = lineageStoreReader.getRelations(new HashSet<>(entities), scanRange.getStart(),
+                                                                      scanRange.getEnd(), scanRange.getFilter());
+    LOG.trace("Fetched relations of {} entities", relations.size());
+    return relations;
+  }
+
+  private void cancel(Iterable<? extends Future<?>> futures) {
+    for (Future<?> future : futures) {
+      future.cancel(true);
+    }
   }
 
   /**
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -28,6 +28,7 @@ import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.lineage.CollapseType;
 import co.cask.cdap.proto.metadata.lineage.LineageRecord;
 import co.cask.http.AbstractHttpHandler;
+import co.cask.http.HandlerContext;
 import co.cask.http.HttpResponder;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
@@ -66,6 +67,11 @@ public class LineageHandler extends AbstractHttpHandler {
     this.lineageAdmin = lineageAdmin;
   }
 
+  @Override
+  public void destroy(HandlerContext context) {
+    lineageAdmin.shutdown();
+  }
+
   @GET
   @Path("/namespaces/{namespace-id}/datasets/{dataset-id}/lineage")
   public void datasetLineage(HttpRequest request, HttpResponder responder,
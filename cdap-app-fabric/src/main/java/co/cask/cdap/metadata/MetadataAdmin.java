@@ -21,11 +21,13 @@ import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Interface that the {@link MetadataHttpHandler} uses to interact with Metadata.
@@ -174,4 +176,20 @@ public interface MetadataAdmin {
    */
   Set<MetadataSearchResultRecord> searchMetadata(MetadataScope scope, String namespaceId, String searchQuery,
                                                  Set<MetadataSearchTargetType> types) throws Exception;
+
+  /**
+   * Executes a search for CDAP entities in the specified namespace with the specified search query and
+   * an optional set of {@link MetadataSearchTargetType entity types} in both
+   * {@link MetadataScope#USER} and {@link MetadataScope#SYSTEM}, and returns one page of the results.
+   * A page may contain fewer results than the limit if some results are not visible to the current user.
+   *
+   * @param namespaceId The namespace to filter the search by
+   * @param searchQuery The search query
+   * @param types The types of CDAP entity to be searched. If empty all possible types will be searched
+   * @param cursor The cursor returned with the previous page, or {@code null} to get the first page
+   * @param limit The maximum number of results to return
+   * @return a {@link MetadataSearchResponse} containing the results and the cursor for the next page
+   */
+  MetadataSearchResponse searchMetadata(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types,
+                                        @Nullable String cursor, int limit) throws Exception;
 }
@@ -24,6 +24,7 @@ import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.codec.NamespacedIdCodec;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.http.AbstractHttpHandler;
@@ -51,6 +52,7 @@ import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -838,12 +840,30 @@ public class MetadataHttpHandler extends AbstractHttpHandler {
   public void searchMetadata(HttpRequest request, HttpResponder responder,
                              @PathParam("namespace-id") String namespaceId,
                              @QueryParam("query") String searchQuery,
-                             @QueryParam("target") List<String> targets) throws Exception {
+                             @QueryParam("target") List<String> targets,
+                             @QueryParam("cursor") String cursor,
+                             @QueryParam("limit") @DefaultValue("0") int limit) throws Exception {
     Set<MetadataSearchTargetType> types = ImmutableSet.of();
     if (targets != null) {
       types = ImmutableSet.copyOf(Iterables.transform(targets, STRING_TO_TARGET_TYPE));
     }
 
+    // Only return a page of results if a limit is given, otherwise return all results as before
+    if (limit < 0 || (cursor != null && limit == 0)) {
+      throw new BadRequestException(String.format("Limit should be a positive number, but is %d.", limit));
+    }
+    if (limit > 0) {
+      MetadataSearchResponse response;
+      try {
+        response = metadataAdmin.searchMetadata(namespaceId, URLDecoder.decode(searchQuery, "UTF-8"), types,
+                                                cursor, limit);
+      } catch (IllegalArgumentException e) {
+        throw new BadRequestException(e.getMessage(), e);
+      }
+      responder.sendJson(HttpResponseStatus.OK, response, MetadataSearchResponse.class, GSON);
+      return;
+    }
+
     Set<MetadataSearchResultRecord> results = metadataAdmin.searchMetadata(namespaceId,
                                                                            URLDecoder.decode(searchQuery, "UTF-8"),
                                                                            types);
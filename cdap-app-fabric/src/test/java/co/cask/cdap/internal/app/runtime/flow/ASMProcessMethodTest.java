@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.annotation.Batch;
+import co.cask.cdap.api.annotation.ProcessInput;
+import co.cask.cdap.api.flow.flowlet.AbstractFlowlet;
+import co.cask.cdap.api.flow.flowlet.Flowlet;
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import co.cask.cdap.app.queue.InputDatum;
+import co.cask.cdap.common.queue.QueueName;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Tests for {@link ASMProcessMethod}.
+ */
+public class ASMProcessMethodTest {
+
+  @Test
+  public void testProcess() throws Exception {
+    TestFlowlet flowlet = new TestFlowlet();
+    ProcessMethod<String> processMethod = createProcessMethod(flowlet, "process", String.class);
+    Assert.assertTrue(processMethod.needsInput());
+
+    ProcessMethod.ProcessResult<String> result = processMethod.invoke(new TestInputDatum<>("a", "b", "c"));
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertEquals("a", result.getEvent());
+    Assert.assertEquals(ImmutableList.of("a", "b", "c"), flowlet.events);
+  }
+
+  @Test
+  public void testPrimitiveAndContext() throws Exception {
+    TestFlowlet flowlet = new TestFlowlet();
+    ProcessMethod<Integer> processMethod = createProcessMethod(flowlet, "processInt", int.class, InputContext.class);
+
+    ProcessMethod.ProcessResult<Integer> result = processMethod.invoke(new TestInputDatum<>(1, 2));
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertEquals(ImmutableList.of("1:origin", "2:origin"), flowlet.events);
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    TestFlowlet flowlet = new TestFlowlet();
+    ProcessMethod<Object> processMethod = createProcessMethod(flowlet, "processBatch", Iterator.class);
+
+    ProcessMethod.ProcessResult<Object> result = processMethod.invoke(new TestInputDatum<Object>("a", "b"));
+    Assert.assertTrue(result.isSuccess());
+    // For batch process method, the event in the result is the iterator of events
+    Assert.assertTrue(result.getEvent() instanceof Iterator);
+    Assert.assertEquals(ImmutableList.of("a", "b"), flowlet.events);
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    TestFlowlet flowlet = new TestFlowlet();
+    ProcessMethod<String> processMethod = createProcessMethod(flowlet, "fail", String.class);
+
+    ProcessMethod.ProcessResult<String> result = processMethod.invoke(new TestInputDatum<>("a"));
+    Assert.assertFalse(result.isSuccess());
+    Assert.assertEquals("a", result.getEvent());
+    // The cause should be the exception thrown by the process method, same as the reflection based invocation
+    Assert.assertTrue(result.getCause() instanceof IllegalStateException);
+    Assert.assertEquals("a", result.getCause().getMessage());
+
+    result = ReflectionProcessMethod.<String>create(flowlet, TestFlowlet.class.getMethod("fail", String.class), 0)
+      .invoke(new TestInputDatum<>("a"));
+    Assert.assertFalse(result.isSuccess());
+    Assert.assertTrue(result.getCause() instanceof IllegalStateException);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonPublicMethod() throws Exception {
+    PrivateFlowlet flowlet = new PrivateFlowlet();
+    ASMProcessMethod.create(flowlet, PrivateFlowlet.class.getDeclaredMethod("process", String.class), 0);
+  }
+
+  private <T> ProcessMethod<T> createProcessMethod(Flowlet flowlet, String name,
+                                                   Class<?>...paramTypes) throws Exception {
+    Method method = flowlet.getClass().getMethod(name, paramTypes);
+    ProcessMethod<T> processMethod = ASMProcessMethod.create(flowlet, method, 10);
+    Assert.assertEquals(10, processMethod.getMaxRetries());
+    return processMethod;
+  }
+
+  /**
+   * Flowlet with different kinds of process methods.
+   */
+  public static final class TestFlowlet extends AbstractFlowlet {
+
+    private final List<String> events = new ArrayList<>();
+
+    @ProcessInput
+    public void process(String event) {
+      events.add(event);
+    }
+
+    @ProcessInput
+    public long processInt(int event, InputContext context) {
+      events.add(event + ":" + context.getOrigin());
+      return event;
+    }
+
+    @Batch(10)
+    @ProcessInput
+    public void processBatch(Iterator<String> events) {
+      while (events.hasNext()) {
+        this.events.add(events.next());
+      }
+    }
+
+    @ProcessInput
+    public void fail(String event) {
+      throw new IllegalStateException(event);
+    }
+  }
+
+  /**
+   * Flowlet that is not public, which cannot be called directly.
+   */
+  private static final class PrivateFlowlet extends AbstractFlowlet {
+
+    @ProcessInput
+    public void process(String event) {
+      // no-op
+    }
+  }
+
+  /**
+   * A {@link InputDatum} that contains a fixed list of events.
+   */
+  private static final class TestInputDatum<T> implements InputDatum<T> {
+
+    private final List<T> events;
+
+    @SafeVarargs
+    TestInputDatum(T...events) {
+      this.events = ImmutableList.copyOf(events);
+    }
+
+    @Override
+    public boolean needProcess() {
+      return !events.isEmpty();
+    }
+
+    @Override
+    public void incrementRetry() {
+      // no-op
+    }
+
+    @Override
+    public int getRetry() {
+      return 0;
+    }
+
+    @Override
+    public InputContext getInputContext() {
+      return new InputContext() {
+        @Override
+        public String getOrigin() {
+          return "origin";
+        }
+
+        @Override
+        public int getRetryCount() {
+          return 0;
+        }
+      };
+    }
+
+    @Override
+    public QueueName getQueueName() {
+      return null;
+    }
+
+    @Override
+    public void reclaim() {
+      // no-op
+    }
+
+    @Override
+    public int size() {
+      return events.size();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return events.iterator();
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -33,9 +33,12 @@ import com.google.inject.Injector;
 import org.apache.twill.api.RunId;
 import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
@@ -108,6 +111,144 @@ public class AppMetadataStoreTest {
             TimeUnit.MILLISECONDS.toSeconds(1000), TimeUnit.MILLISECONDS.toSeconds(10000));
   }
 
+  @Test
+  public void testRunningInRangeWithTimeIndex() throws Exception {
+    AppMetadataStore store = createStore("testRunningInRangeWithTimeIndex");
+    Id.Application app1 = Id.Application.from(defaultNamespace, "app1");
+    Id.Application app2 = Id.Application.from(defaultNamespace, "app2");
+    long hour = TimeUnit.HOURS.toSeconds(1);
+    long day = TimeUnit.DAYS.toSeconds(1);
+
+    // {start, stop} of completed runs, with short runs, runs across buckets and runs longer than a week
+    long[][] times = {
+      {10, 20}, {hour - 1, hour}, {hour, hour}, {hour + 5, 3 * hour + 5}, {2 * hour, 2 * hour + 1},
+      {100, 30 * day}, {day, 8 * day}, {7 * day + 1, 7 * day + 10}, {3 * day, 3 * day}, {50 * day, 60 * day}
+    };
+    String[] runIds = new String[times.length];
+    for (int i = 0; i < times.length; i++) {
+      Id.Program program = Id.Program.from(i % 2 == 0 ? app1 : app2, ProgramType.WORKER, "worker" + i % 3);
+      runIds[i] = RunIds.generate(TimeUnit.SECONDS.toMillis(times[i][0])).getId();
+      store.recordProgramStart(program, runIds[i], times[i][0], null, null, null);
+      store.recordProgramStop(program, runIds[i], times[i][1], ProgramRunStatus.COMPLETED, null);
+    }
+    // A run that is still running
+    long runningStart = 5 * day;
+    String running = RunIds.generate(TimeUnit.SECONDS.toMillis(runningStart)).getId();
+    store.recordProgramStart(Id.Program.from(app2, ProgramType.FLOW, "flow"), running, runningStart,
+                             null, null, null);
+
+    long[] points = {0, 10, 19, 20, 21, hour - 1, hour, hour + 1, 2 * hour, 3 * hour + 5, 3 * hour + 6,
+      day, 3 * day, 5 * day, 7 * day + 5, 8 * day, 30 * day, 31 * day, 55 * day, 100 * day, Long.MAX_VALUE};
+
+    // Without the index, all run records are scanned
+    Assert.assertFalse(store.isRunTimeIndexed());
+    assertRunningInRange(store, times, runIds, runningStart, running, points);
+
+    byte[] row = null;
+    int batches = 0;
+    while ((row = store.buildRunTimeIndex(row, 3)) != null) {
+      batches++;
+    }
+    Assert.assertEquals(times.length / 3, batches);
+    Assert.assertTrue(store.isRunTimeIndexed());
+    assertRunningInRange(store, times, runIds, runningStart, running, points);
+
+    // Deleting the run records also removes them from the index
+    store.deleteProgramHistory(defaultNamespace.getId(), app1.getId());
+    Set<String> expected = new HashSet<>();
+    for (int i = 1; i < runIds.length; i += 2) {
+      expected.add(runIds[i]);
+    }
+    expected.add(running);
+    Assert.assertEquals(expected, toIds(store.getRunningInRange(0, Long.MAX_VALUE)));
+  }
+
+  /**
+   * Compares the time it takes to find the runs in a range by scanning all run records and with the
+   * run record time index, with one million run records.
+   */
+  @Ignore
+  @Test
+  public void testRunningInRangeSpeed() throws Exception {
+    AppMetadataStore store = createStore("testRunningInRangeSpeed");
+    Id.Application app = Id.Application.from(defaultNamespace, "app");
+    Random random = new Random(0);
+    int numRuns = 1000000;
+    long maxTime = TimeUnit.DAYS.toSeconds(365);
+    for (int i = 0; i < numRuns; i++) {
+      Id.Program program = Id.Program.from(app, ProgramType.WORKER, "worker" + i % 100);
+      long startTime = (long) (random.nextDouble() * maxTime);
+      // mostly short runs, with some long running ones
+      long duration = i % 1000 == 0 ? TimeUnit.DAYS.toSeconds(30) : random.nextInt(7200);
+      RunId runId = RunIds.generate(TimeUnit.SECONDS.toMillis(startTime));
+      store.recordProgramStart(program, runId.getId(), startTime, null, null, null);
+      store.recordProgramStop(program, runId.getId(), startTime + duration, ProgramRunStatus.COMPLETED, null);
+    }
+
+    long startNanos = System.nanoTime();
+    byte[] row = null;
+    int batches = 0;
+    while ((row = store.buildRunTimeIndex(row, 1000)) != null) {
+      batches++;
+    }
+    System.out.printf("Index built in %d batches, %d ms%n", batches,
+                      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+    for (int i = 0; i < 5; i++) {
+      long start = (long) (random.nextDouble() * maxTime);
+      long end = start + TimeUnit.DAYS.toSeconds(1);
+
+      startNanos = System.nanoTime();
+      Set<RunId> scanned = new HashSet<>();
+      Iterables.addAll(scanned, Iterables.concat(
+        store.getRunningInRangeForStatus("runRecordCompleted", start, end, Long.MAX_VALUE, Ticker.systemTicker())));
+      long scanNanos = System.nanoTime() - startNanos;
+
+      startNanos = System.nanoTime();
+      Set<RunId> indexed = store.getRunningInRange(start, end);
+      long indexNanos = System.nanoTime() - startNanos;
+
+      Assert.assertEquals(toIds(scanned), toIds(indexed));
+      System.out.printf("%d runs in range. Scan: %d ms, index: %d ms%n", indexed.size(),
+                        TimeUnit.NANOSECONDS.toMillis(scanNanos), TimeUnit.NANOSECONDS.toMillis(indexNanos));
+    }
+  }
+
+  private void assertRunningInRange(AppMetadataStore store, long[][] times, String[] runIds,
+                                    long runningStart, String running, long[] points) {
+    for (long start : points) {
+      for (long end : points) {
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < times.length; i++) {
+          if (times[i][0] < end && times[i][1] >= start) {
+            expected.add(runIds[i]);
+          }
+        }
+        if (runningStart < end) {
+          expected.add(running);
+        }
+        Assert.assertEquals("Range [" + start + ", " + end + ")", expected,
+                            toIds(store.getRunningInRange(start, end)));
+      }
+    }
+  }
+
+  private AppMetadataStore createStore(String name) throws Exception {
+    Id.DatasetInstance storeTable = Id.DatasetInstance.from(defaultNamespace, name);
+    datasetFramework.addInstance(Table.class.getName(), storeTable, DatasetProperties.EMPTY);
+    Table table = datasetFramework.getDataset(storeTable, ImmutableMap.<String, String>of(), null);
+    Assert.assertNotNull(table);
+    return new AppMetadataStore(table, cConf);
+  }
+
+  private Set<String> toIds(Set<RunId> runIds) {
+    Set<String> ids = new HashSet<>();
+    for (RunId runId : runIds) {
+      ids.add(runId.getId());
+    }
+    return ids;
+  }
+
   private void runScan(AppMetadataStore metadataStoreDataset, Set<Long> expected, long startTime, long stopTime) {
     // Run the scan
     Set<Long> actual = new TreeSet<>();
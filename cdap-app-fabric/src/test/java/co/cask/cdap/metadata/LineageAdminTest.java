@@ -19,6 +19,8 @@ package co.cask.cdap.metadata;
 import co.cask.cdap.app.store.Store;
 import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.common.app.RunIds;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.entity.EntityExistenceVerifier;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.data2.metadata.lineage.AccessType;
@@ -28,6 +30,7 @@ import co.cask.cdap.data2.metadata.lineage.Relation;
 import co.cask.cdap.data2.metadata.store.MetadataStore;
 import co.cask.cdap.internal.app.services.http.AppFabricTestBase;
 import co.cask.cdap.proto.Id;
+import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.id.NamespaceId;
@@ -42,6 +45,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -490,6 +494,100 @@ public class LineageAdminTest extends AppFabricTestBase {
     );
   }
 
+  @Test
+  public void testWideLineage() throws Exception {
+    // Lineage for S1 -> P(i) -> D(i) -> P -> D, with many programs and datasets on the same level
+
+    LineageStore lineageStore = new LineageStore(getTxExecFactory(), getDatasetFramework(),
+                                                 Id.DatasetInstance.from("default", "testWideLineage"));
+    Store store = getInjector().getInstance(Store.class);
+    MetadataStore metadataStore = getInjector().getInstance(MetadataStore.class);
+
+    // Fetches relations sequentially without caching
+    CConfiguration sequentialConf = CConfiguration.create();
+    sequentialConf.setInt(Constants.Metadata.LINEAGE_FETCH_THREADS, 1);
+    sequentialConf.setLong(Constants.Metadata.LINEAGE_CACHE_EXPIRY_SECS, 0);
+    LineageAdmin sequentialAdmin = new LineageAdmin(lineageStore, store, metadataStore,
+                                                    new NoOpEntityExistenceVerifier(), sequentialConf);
+
+    // Fetches relations in parallel with caching
+    CConfiguration parallelConf = CConfiguration.create();
+    parallelConf.setInt(Constants.Metadata.LINEAGE_FETCH_THREADS, 4);
+    parallelConf.setLong(Constants.Metadata.LINEAGE_CACHE_EXPIRY_SECS, 60);
+    LineageAdmin parallelAdmin = new LineageAdmin(lineageStore, store, metadataStore,
+                                                  new NoOpEntityExistenceVerifier(), parallelConf);
+
+    Id.Program sinkProgram = Id.Program.from("default", "wideApp", ProgramType.SERVICE, "sink");
+    Id.Run sinkRun = new Id.Run(sinkProgram, RunIds.generate(1000).getId());
+    Id.DatasetInstance sinkDataset = Id.DatasetInstance.from("default", "wideSink");
+    addRuns(store, sinkRun);
+    lineageStore.addAccess(sinkRun, sinkDataset, AccessType.WRITE, System.currentTimeMillis());
+
+    Set<Relation> expectedRelations = new HashSet<>();
+    expectedRelations.add(new Relation(sinkDataset, sinkProgram, AccessType.WRITE, twillRunId(sinkRun)));
+    for (int i = 0; i < 25; i++) {
+      Id.Program program = Id.Program.from("default", "wideApp", ProgramType.FLOW, "flow" + i);
+      Id.Run run = new Id.Run(program, RunIds.generate(1000 + i).getId());
+      Id.DatasetInstance dataset = Id.DatasetInstance.from("default", "wide" + i);
+      addRuns(store, run);
+
+      lineageStore.addAccess(run, stream1, AccessType.READ, System.currentTimeMillis(), flowlet1);
+      lineageStore.addAccess(run, dataset, AccessType.WRITE, System.currentTimeMillis(), flowlet1);
+      lineageStore.addAccess(sinkRun, dataset, AccessType.READ, System.currentTimeMillis());
+
+      expectedRelations.add(new Relation(stream1, program, AccessType.READ, twillRunId(run), toSet(flowlet1)));
+      expectedRelations.add(new Relation(dataset, program, AccessType.WRITE, twillRunId(run), toSet(flowlet1)));
+      expectedRelations.add(new Relation(dataset, sinkProgram, AccessType.READ, twillRunId(sinkRun)));
+    }
+
+    Lineage expectedLineage = new Lineage(expectedRelations);
+    Assert.assertEquals(expectedLineage, sequentialAdmin.computeLineage(stream1, 500, 20000, 100));
+    Assert.assertEquals(expectedLineage, parallelAdmin.computeLineage(stream1, 500, 20000, 100));
+    // Computing again uses the cached relations
+    Assert.assertEquals(expectedLineage, parallelAdmin.computeLineage(stream1, 500, 20000, 100));
+    Assert.assertEquals(expectedLineage, parallelAdmin.computeLineage(sinkDataset, 500, 20000, 100));
+
+    // Lineage for one level should not contain the sink
+    Assert.assertEquals(sequentialAdmin.computeLineage(stream1, 500, 20000, 1),
+                        parallelAdmin.computeLineage(stream1, 500, 20000, 1));
+    Assert.assertFalse(parallelAdmin.computeLineage(stream1, 500, 20000, 1).getRelations().contains(
+      new Relation(sinkDataset, sinkProgram, AccessType.WRITE, twillRunId(sinkRun))));
+  }
+
+  @Test
+  public void testLineageCacheWithActiveRuns() throws Exception {
+    LineageStore lineageStore = new LineageStore(getTxExecFactory(), getDatasetFramework(),
+                                                 Id.DatasetInstance.from("default", "testLineageCacheWithActiveRuns"));
+    Store store = getInjector().getInstance(Store.class);
+    MetadataStore metadataStore = getInjector().getInstance(MetadataStore.class);
+
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setLong(Constants.Metadata.LINEAGE_CACHE_EXPIRY_SECS, 60);
+    LineageAdmin lineageAdmin = new LineageAdmin(lineageStore, store, metadataStore,
+                                                 new NoOpEntityExistenceVerifier(), cConf);
+    try {
+      addRuns(store, run1);
+      lineageStore.addAccess(run1, stream1, AccessType.READ, System.currentTimeMillis(), flowlet1);
+      Relation readRelation = new Relation(stream1, program1, AccessType.READ, twillRunId(run1), toSet(flowlet1));
+      Assert.assertEquals(new Lineage(ImmutableSet.of(readRelation)),
+                          lineageAdmin.computeLineage(stream1, 500, 20000, 100));
+
+      // Accesses made by a running program are included, even if the same runs were queried before
+      lineageStore.addAccess(run1, dataset1, AccessType.WRITE, System.currentTimeMillis(), flowlet1);
+      Relation writeRelation = new Relation(dataset1, program1, AccessType.WRITE, twillRunId(run1), toSet(flowlet1));
+      Lineage expectedLineage = new Lineage(ImmutableSet.of(readRelation, writeRelation));
+      Assert.assertEquals(expectedLineage, lineageAdmin.computeLineage(stream1, 500, 20000, 100));
+
+      // Once the run has completed, its accesses are cached
+      store.setStop(program1, run1.getId(), 15, ProgramRunStatus.COMPLETED);
+      Assert.assertEquals(expectedLineage, lineageAdmin.computeLineage(stream1, 500, 20000, 100));
+      lineageStore.addAccess(run1, dataset2, AccessType.WRITE, System.currentTimeMillis(), flowlet1);
+      Assert.assertEquals(expectedLineage, lineageAdmin.computeLineage(stream1, 500, 20000, 100));
+    } finally {
+      lineageAdmin.shutdown();
+    }
+  }
+
   @Test
   public void testScanRange() {
     Set<RunId> runIds = ImmutableSet.of(
@@ -0,0 +1,325 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes the field values of a {@link StructuredRecord} in a compact binary format. Fields are written
+ * positionally in the order of the schema fields, without any field names. Numbers are written as variable length
+ * integers or fixed length floating points, and strings as UTF-8 bytes prefixed with the length.
+ * <p>
+ * The encoding is deterministic, so that two equal records are encoded to the same bytes. Map entries are
+ * written in the order of their encoded keys for that reason.
+ */
+final class StructuredRecordCodec {
+
+  private StructuredRecordCodec() {
+  }
+
+  /**
+   * Writes the field values of the given record. The schema is not written.
+   */
+  static void encode(DataOutput out, StructuredRecord record) throws IOException {
+    encodeRecord(out, record.getSchema(), record);
+  }
+
+  /**
+   * Reads the field values written by {@link #encode(DataOutput, StructuredRecord)} into a new record
+   * with the given schema.
+   */
+  static StructuredRecord decode(DataInput in, Schema schema) throws IOException {
+    return decodeRecord(in, schema);
+  }
+
+  private static void encodeValue(DataOutput out, Schema schema, @Nullable Object value) throws IOException {
+    Schema.Type type = schema.getType();
+    if (value == null && type != Schema.Type.NULL && type != Schema.Type.UNION) {
+      throw new IOException("Null value is not allowed for schema " + schema);
+    }
+
+    switch (type) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        out.writeBoolean((Boolean) value);
+        break;
+      case INT:
+        WritableUtils.writeVInt(out, ((Number) value).intValue());
+        break;
+      case LONG:
+        WritableUtils.writeVLong(out, ((Number) value).longValue());
+        break;
+      case FLOAT:
+        out.writeFloat(((Number) value).floatValue());
+        break;
+      case DOUBLE:
+        out.writeDouble(((Number) value).doubleValue());
+        break;
+      case BYTES:
+        encodeBytes(out, value);
+        break;
+      case STRING:
+        byte[] bytes = Bytes.toBytes((String) value);
+        WritableUtils.writeVInt(out, bytes.length);
+        out.write(bytes);
+        break;
+      case ENUM:
+        String symbol = value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+        int idx = schema.getEnumIndex(symbol);
+        if (idx < 0) {
+          throw new IOException("Value " + symbol + " is not in the enum schema " + schema);
+        }
+        WritableUtils.writeVInt(out, idx);
+        break;
+      case ARRAY:
+        encodeArray(out, schema.getComponentSchema(), value);
+        break;
+      case MAP:
+        encodeMap(out, schema.getMapSchema(), value);
+        break;
+      case RECORD:
+        if (!(value instanceof StructuredRecord)) {
+          throw new IOException("Expects StructuredRecord. Got: " + value.getClass());
+        }
+        encodeRecord(out, schema, (StructuredRecord) value);
+        break;
+      case UNION:
+        int unionIdx = findUnionIndex(schema, value);
+        WritableUtils.writeVInt(out, unionIdx);
+        encodeValue(out, schema.getUnionSchema(unionIdx), value);
+        break;
+    }
+  }
+
+  private static void encodeRecord(DataOutput out, Schema schema, StructuredRecord record) throws IOException {
+    List<Schema.Field> fields = schema.getFields();
+    for (int i = 0; i < fields.size(); i++) {
+      encodeValue(out, fields.get(i).getSchema(), record.get(i));
+    }
+  }
+
+  private static void encodeBytes(DataOutput out, Object value) throws IOException {
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = (ByteBuffer) value;
+      WritableUtils.writeVInt(out, buffer.remaining());
+      if (buffer.hasArray()) {
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      } else {
+        out.write(Bytes.toBytes(buffer));
+      }
+    } else if (value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      WritableUtils.writeVInt(out, bytes.length);
+      out.write(bytes);
+    } else {
+      throw new IOException("Expects either ByteBuffer or byte[]. Got " + value.getClass());
+    }
+  }
+
+  private static void encodeArray(DataOutput out, Schema elementSchema, Object value) throws IOException {
+    if (value instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      WritableUtils.writeVInt(out, collection.size());
+      for (Object element : collection) {
+        encodeValue(out, elementSchema, element);
+      }
+    } else if (value instanceof Object[]) {
+      Object[] array = (Object[]) value;
+      WritableUtils.writeVInt(out, array.length);
+      for (Object element : array) {
+        encodeValue(out, elementSchema, element);
+      }
+    } else {
+      throw new IOException("Expects either Collection or array. Got: " + value.getClass());
+    }
+  }
+
+  private static void encodeMap(DataOutput out, Map.Entry<Schema, Schema> mapSchema,
+                                Object value) throws IOException {
+    if (!(value instanceof Map)) {
+      throw new IOException("Expects Map. Got: " + value.getClass());
+    }
+
+    // Sort the entries by the encoded key, so that equal maps are always encoded the same way
+    Map<byte[], Object> sorted = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+    DataOutput keyOut = new DataOutputStream(keyBytes);
+    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+      keyBytes.reset();
+      encodeValue(keyOut, mapSchema.getKey(), entry.getKey());
+      sorted.put(keyBytes.toByteArray(), entry.getValue());
+    }
+
+    WritableUtils.writeVInt(out, sorted.size());
+    for (Map.Entry<byte[], Object> entry : sorted.entrySet()) {
+      out.write(entry.getKey());
+      encodeValue(out, mapSchema.getValue(), entry.getValue());
+    }
+  }
+
+  private static int findUnionIndex(Schema unionSchema, @Nullable Object value) throws IOException {
+    Schema.Type type = getSchemaType(value);
+    List<Schema> schemas = unionSchema.getUnionSchemas();
+    for (int i = 0; i < schemas.size(); i++) {
+      // Just match the type, not matching the detail schema as it'd be too expensive.
+      if (schemas.get(i).getType() == type) {
+        return i;
+      }
+    }
+    // Enum values are usually represented as strings
+    if (type == Schema.Type.STRING) {
+      for (int i = 0; i < schemas.size(); i++) {
+        if (schemas.get(i).getType() == Schema.Type.ENUM) {
+          return i;
+        }
+      }
+    }
+    throw new IOException("Value type " + type + " not valid in union: " + unionSchema);
+  }
+
+  private static Schema.Type getSchemaType(@Nullable Object value) throws IOException {
+    if (value == null) {
+      return Schema.Type.NULL;
+    }
+    if (value instanceof Boolean) {
+      return Schema.Type.BOOLEAN;
+    }
+    if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return Schema.Type.INT;
+    }
+    if (value instanceof Long) {
+      return Schema.Type.LONG;
+    }
+    if (value instanceof Float) {
+      return Schema.Type.FLOAT;
+    }
+    if (value instanceof Double) {
+      return Schema.Type.DOUBLE;
+    }
+    if (value instanceof String) {
+      return Schema.Type.STRING;
+    }
+    if (value instanceof ByteBuffer || value instanceof byte[]) {
+      return Schema.Type.BYTES;
+    }
+    if (value instanceof StructuredRecord) {
+      return Schema.Type.RECORD;
+    }
+    if (value instanceof Enum) {
+      return Schema.Type.ENUM;
+    }
+    if (value instanceof Collection || value instanceof Object[]) {
+      return Schema.Type.ARRAY;
+    }
+    if (value instanceof Map) {
+      return Schema.Type.MAP;
+    }
+    throw new IOException("Unsupported type found in StructuredRecord: " + value.getClass());
+  }
+
+  @Nullable
+  private static Object decodeValue(DataInput in, Schema schema) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return in.readBoolean();
+      case INT:
+        return WritableUtils.readVInt(in);
+      case LONG:
+        return WritableUtils.readVLong(in);
+      case FLOAT:
+        return in.readFloat();
+      case DOUBLE:
+        return in.readDouble();
+      case BYTES:
+        return readBytes(in);
+      case STRING:
+        return Bytes.toString(readBytes(in));
+      case ENUM:
+        // Currently there is no standard container to represent enum type
+        int idx = WritableUtils.readVInt(in);
+        String symbol = schema.getEnumValue(idx);
+        if (symbol == null) {
+          throw new IOException("Invalid index " + idx + " for enum schema " + schema);
+        }
+        return symbol;
+      case ARRAY:
+        return decodeArray(in, schema.getComponentSchema());
+      case MAP:
+        return decodeMap(in, schema.getMapSchema());
+      case RECORD:
+        return decodeRecord(in, schema);
+      case UNION:
+        return decodeValue(in, schema.getUnionSchema(WritableUtils.readVInt(in)));
+    }
+
+    throw new IOException("Unsupported schema: " + schema);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[WritableUtils.readVInt(in)];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static List<Object> decodeArray(DataInput in, Schema elementSchema) throws IOException {
+    int size = WritableUtils.readVInt(in);
+    List<Object> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(decodeValue(in, elementSchema));
+    }
+    return result;
+  }
+
+  private static Map<Object, Object> decodeMap(DataInput in, Map.Entry<Schema, Schema> mapSchema) throws IOException {
+    int size = WritableUtils.readVInt(in);
+    Map<Object, Object> result = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      Object key = decodeValue(in, mapSchema.getKey());
+      result.put(key, decodeValue(in, mapSchema.getValue()));
+    }
+    return result;
+  }
+
+  private static StructuredRecord decodeRecord(DataInput in, Schema schema) throws IOException {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    List<Schema.Field> fields = schema.getFields();
+    for (int i = 0; i < fields.size(); i++) {
+      builder.set(i, decodeValue(in, fields.get(i).getSchema()));
+    }
+    return builder.build();
+  }
+}
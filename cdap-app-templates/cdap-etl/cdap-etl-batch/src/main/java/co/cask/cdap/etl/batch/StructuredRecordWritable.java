@@ -19,21 +19,63 @@ package co.cask.cdap.etl.batch;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Wrapper around a {@link StructuredRecord} so that it can be used as the output key and/or value of a mapper.
- * This is not very performant and must be improved soon (CDAP-5347).
+ * <p>
+ * A record is serialized as {@code [flag][schema hash][schema json if inline][field values]}. The schema is
+ * identified by its {@link SchemaHash}. Schemas registered through {@link #registerSchemas(Iterable)} are known
+ * to all tasks of a job and are written with the hash only. Other schemas are written inline after the hash and
+ * parsed once per task. Field values are encoded positionally with {@link StructuredRecordCodec}.
+ * <p>
+ * The {@link Comparator} compares serialized records without deserializing them.
  */
 public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable> {
+
+  private static final byte SCHEMA_REGISTERED = 0;
+  private static final byte SCHEMA_INLINE = 1;
+  private static final int SCHEMA_HASH_SIZE = 16;
+
+  // Schemas known to both the writers and the readers of a job
+  private static final ConcurrentMap<SchemaHash, Schema> REGISTERED_SCHEMAS = new ConcurrentHashMap<>();
+  // Schemas that were read inline, so that each of them is only parsed once
+  private static final Cache<SchemaHash, Schema> INLINE_SCHEMAS = CacheBuilder.newBuilder().maximumSize(1000).build();
+  private static final Comparator COMPARATOR = new Comparator();
+
+  static {
+    WritableComparator.define(StructuredRecordWritable.class, COMPARATOR);
+  }
+
   private StructuredRecord record;
 
+  /**
+   * Registers schemas that are known to all writers and readers of {@link StructuredRecordWritable} in a job.
+   * Records with these schemas are serialized with the schema hash only. This must be done with the same schemas
+   * before any record is written or read in every task of the job.
+   */
+  public static void registerSchemas(Iterable<Schema> schemas) {
+    for (Schema schema : schemas) {
+      REGISTERED_SCHEMAS.put(schema.getSchemaHash(), schema);
+    }
+  }
+
   // required by Hadoop
   @SuppressWarnings("unused")
   public StructuredRecordWritable() {
@@ -54,33 +96,56 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
   @SuppressWarnings("ConstantConditions")
   @Override
   public void write(DataOutput out) throws IOException {
-    byte[] schemaBytes = Bytes.toBytes(record.getSchema().toString());
-    out.writeInt(schemaBytes.length);
-    out.write(schemaBytes);
-
-    byte[] recordBytes = Bytes.toBytes(StructuredRecordStringConverter.toJsonString(record));
-    out.writeInt(recordBytes.length);
-    out.write(recordBytes);
+    Schema schema = record.getSchema();
+    SchemaHash schemaHash = schema.getSchemaHash();
+    if (REGISTERED_SCHEMAS.containsKey(schemaHash)) {
+      out.writeByte(SCHEMA_REGISTERED);
+      out.write(schemaHash.toByteArray());
+    } else {
+      out.writeByte(SCHEMA_INLINE);
+      out.write(schemaHash.toByteArray());
+      byte[] schemaBytes = Bytes.toBytes(schema.toString());
+      WritableUtils.writeVInt(out, schemaBytes.length);
+      out.write(schemaBytes);
+    }
+    StructuredRecordCodec.encode(out, record);
   }
 
   @Override
   public void readFields(DataInput in) throws IOException {
-    int schemaLen = in.readInt();
-    byte[] schemaBytes = new byte[schemaLen];
-    in.readFully(schemaBytes, 0, schemaLen);
-    String schemaStr = Bytes.toString(schemaBytes);
-    Schema schema = Schema.parseJson(schemaStr);
-
-    int recordLen = in.readInt();
-    byte[] recordBytes = new byte[recordLen];
-    in.readFully(recordBytes, 0, recordLen);
-    String recordStr = Bytes.toString(recordBytes);
-    this.record = StructuredRecordStringConverter.fromJsonString(recordStr, schema);
+    byte flag = in.readByte();
+    byte[] hashBytes = new byte[SCHEMA_HASH_SIZE];
+    in.readFully(hashBytes);
+    SchemaHash schemaHash = new SchemaHash(ByteBuffer.wrap(hashBytes));
+
+    Schema schema;
+    if (flag == SCHEMA_REGISTERED) {
+      schema = REGISTERED_SCHEMAS.get(schemaHash);
+      if (schema == null) {
+        throw new IOException("Schema with hash " + schemaHash + " is not registered.");
+      }
+    } else if (flag == SCHEMA_INLINE) {
+      int schemaLen = WritableUtils.readVInt(in);
+      schema = INLINE_SCHEMAS.getIfPresent(schemaHash);
+      if (schema == null) {
+        byte[] schemaBytes = new byte[schemaLen];
+        in.readFully(schemaBytes, 0, schemaLen);
+        schema = Schema.parseJson(Bytes.toString(schemaBytes));
+        INLINE_SCHEMAS.put(schemaHash, schema);
+      } else {
+        WritableUtils.skipFully(in, schemaLen);
+      }
+    } else {
+      throw new IOException("Unknown schema flag " + flag);
+    }
+    this.record = StructuredRecordCodec.decode(in, schema);
   }
 
   @Override
   public int compareTo(StructuredRecordWritable o) {
-    return Integer.compare(hashCode(), o.hashCode());
+    byte[] bytes1 = toBytes();
+    byte[] bytes2 = o.toBytes();
+    return COMPARATOR.compare(bytes1, 0, bytes1.length, bytes2, 0, bytes2.length);
   }
 
   @Override
@@ -101,4 +166,52 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
   public int hashCode() {
     return record != null ? record.hashCode() : 0;
   }
+
+  private byte[] toBytes() {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try {
+      write(new DataOutputStream(os));
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    return os.toByteArray();
+  }
+
+  /**
+   * A raw comparator that compares serialized {@link StructuredRecordWritable} without deserializing them.
+   * Records are ordered by schema hash and then by the encoded field values. The order doesn't follow the natural
+   * order of the values, but two records compare equal if and only if they have the same schema and field values,
+   * which is what grouping by key requires.
+   */
+  public static final class Comparator extends WritableComparator {
+
+    public Comparator() {
+      super(StructuredRecordWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      int cmp = compareBytes(b1, s1 + 1, SCHEMA_HASH_SIZE, b2, s2 + 1, SCHEMA_HASH_SIZE);
+      if (cmp != 0) {
+        return cmp;
+      }
+      try {
+        int valuesOffset1 = getValuesOffset(b1, s1);
+        int valuesOffset2 = getValuesOffset(b2, s2);
+        return compareBytes(b1, valuesOffset1, l1 - (valuesOffset1 - s1),
+                            b2, valuesOffset2, l2 - (valuesOffset2 - s2));
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+
+    private int getValuesOffset(byte[] bytes, int start) throws IOException {
+      int offset = start + 1 + SCHEMA_HASH_SIZE;
+      if (bytes[start] == SCHEMA_INLINE) {
+        int schemaLen = readVInt(bytes, offset);
+        offset += WritableUtils.decodeVIntSize(bytes[offset]) + schemaLen;
+      }
+      return offset;
+    }
+  }
 }
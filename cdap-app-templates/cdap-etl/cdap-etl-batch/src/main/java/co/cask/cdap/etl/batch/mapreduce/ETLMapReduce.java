@@ -359,6 +359,16 @@ public class ETLMapReduce extends AbstractMapReduce {
       }
     }
 
+    @Override
+    protected void cleanup(Mapper.Context context) throws IOException, InterruptedException {
+      // the last batch has to be written before the outputs are closed, which happens before destroy is called
+      try {
+        transformRunner.flush();
+      } catch (Exception e) {
+        Throwables.propagate(e);
+      }
+    }
+
     @Override
     public void destroy() {
       transformRunner.destroy();
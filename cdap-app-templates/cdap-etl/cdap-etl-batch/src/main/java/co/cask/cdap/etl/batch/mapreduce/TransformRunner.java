@@ -26,6 +26,7 @@ import co.cask.cdap.etl.api.batch.BatchAggregator;
 import co.cask.cdap.etl.api.batch.BatchJoiner;
 import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
 import co.cask.cdap.etl.batch.TransformExecutorFactory;
 import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.Destroyables;
@@ -56,6 +57,12 @@ import java.util.Set;
  * Initializes a TransformExecutor and runs transforms. This is used in both the mapper and reducer since they
  * do mostly the same thing, except the mapper needs to write to an aggregator or to sinks, whereas the reducer
  * needs to read from an aggregator and write to sinks.
+ * <p>
+ * The mapper can run the transforms on batches of records, as configured by the
+ * {@link Constants#TRANSFORM_BATCH_SIZE} runtime argument. The source stage still transforms every record as it is
+ * read, and the rest of the transforms run once per batch. This requires that the source does not emit objects
+ * that are reused by the input format, so batching is disabled by default. {@link #flush()} must be called after
+ * the last record.
  *
  * @param <KEY>   the type of key to send into the transform executor
  * @param <VALUE> the type of value to send into the transform executor
@@ -70,6 +77,8 @@ public class TransformRunner<KEY, VALUE> {
   private final Map<String, ErrorOutputWriter<Object, Object>> transformErrorSinkMap;
   private final TransformExecutor<KeyValue<KEY, VALUE>> transformExecutor;
   private final OutputWriter<Object, Object> outputWriter;
+  private final int batchSize;
+  private int batchCount;
 
   public TransformRunner(MapReduceTaskContext<Object, Object> context,
                          Metrics metrics) throws Exception {
@@ -79,6 +88,8 @@ public class TransformRunner<KEY, VALUE> {
     // figure out whether we are writing to a single output or to multiple outputs
     Map<String, String> properties = context.getSpecification().getProperties();
     BatchPhaseSpec phaseSpec = GSON.fromJson(properties.get(Constants.PIPELINEID), BatchPhaseSpec.class);
+    // register the schemas of the whole phase, so that the mapper and the reducer know the same schemas
+    StructuredRecordWritable.registerSchemas(getSchemas(phaseSpec.getPhase()));
     this.outputWriter = getSinkWriter(context, phaseSpec.getPhase(), hConf);
 
     // instantiate and initialize all transformations and setup the TransformExecutor
@@ -111,6 +122,12 @@ public class TransformRunner<KEY, VALUE> {
       new MapReduceTransformExecutorFactory<>(context, pluginInstantiator, metrics, runtimeArgs, sourceStage);
     this.transformExecutor = transformExecutorFactory.create(phase);
 
+    // the reducer input is only valid during the reduce call, so the reducer never batches
+    String batchSize = context.getRuntimeArguments().get(Constants.TRANSFORM_BATCH_SIZE);
+    this.batchSize = (batchSize != null && jobContext instanceof Mapper.Context) ? Integer.parseInt(batchSize) : 1;
+    Preconditions.checkArgument(this.batchSize > 0, "Invalid value %s for runtime argument %s. It must be positive.",
+                                batchSize, Constants.TRANSFORM_BATCH_SIZE);
+
     // setup error dataset information
     this.transformsWithoutErrorDataset = new HashSet<>();
     this.transformErrorSinkMap = new HashMap<>();
@@ -122,6 +139,21 @@ public class TransformRunner<KEY, VALUE> {
     }
   }
 
+  private Set<Schema> getSchemas(PipelinePhase phase) {
+    Set<Schema> schemas = new HashSet<>();
+    for (StageInfo stageInfo : phase) {
+      for (Schema schema : stageInfo.getInputSchemas().values()) {
+        if (schema != null) {
+          schemas.add(schema);
+        }
+      }
+      if (stageInfo.getOutputSchema() != null) {
+        schemas.add(stageInfo.getOutputSchema());
+      }
+    }
+    return schemas;
+  }
+
   // this is needed because we need to write to the context differently depending on the number of outputs
   private OutputWriter<Object, Object> getSinkWriter(MapReduceTaskContext<Object, Object> context,
                                                      PipelinePhase pipelinePhase,
@@ -161,8 +193,21 @@ public class TransformRunner<KEY, VALUE> {
   }
 
   public void transform(KEY key, VALUE value) throws Exception {
-    KeyValue<KEY, VALUE> input = new KeyValue<>(key, value);
-    TransformResponse transformResponse = transformExecutor.runOneIteration(input);
+    transformExecutor.addInput(new KeyValue<>(key, value));
+    if (++batchCount >= batchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Runs the records of the current batch through the rest of the transforms and writes the results.
+   */
+  public void flush() throws Exception {
+    if (batchCount == 0) {
+      return;
+    }
+    batchCount = 0;
+    TransformResponse transformResponse = transformExecutor.flush();
     for (Map.Entry<String, Collection<Object>> transformedEntry : transformResponse.getSinksResults().entrySet()) {
       for (Object transformedRecord : transformedEntry.getValue()) {
         outputWriter.write(transformedEntry.getKey(), (KeyValue<Object, Object>) transformedRecord);
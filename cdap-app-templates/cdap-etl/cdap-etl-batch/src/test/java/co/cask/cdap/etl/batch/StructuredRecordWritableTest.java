@@ -16,9 +16,16 @@
 
 package co.cask.cdap.etl.batch;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.format.StructuredRecordStringConverter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.hadoop.io.WritableComparator;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
@@ -28,6 +35,10 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  */
@@ -51,4 +62,192 @@ public class StructuredRecordWritableTest {
 
     Assert.assertEquals(writableIn.get(), record);
   }
+
+  @Test
+  public void testAllTypes() throws IOException {
+    Schema innerSchema = Schema.recordOf("inner",
+                                         Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+                                         Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    Schema schema = Schema.recordOf(
+      "all",
+      Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
+      Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("long", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+      Schema.Field.of("double", Schema.of(Schema.Type.DOUBLE)),
+      Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("null", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("enum", Schema.enumWith("a", "b", "c")),
+      Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.INT))),
+      Schema.Field.of("record", innerSchema),
+      Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.INT), Schema.of(Schema.Type.STRING))));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("boolean", true)
+      .set("int", -5)
+      .set("long", Long.MAX_VALUE)
+      .set("float", 1.5f)
+      .set("double", -2.25d)
+      .set("string", "идыло")
+      .set("enum", "b")
+      .set("array", ImmutableList.of("x", "y"))
+      .set("map", ImmutableMap.of("k1", 1, "k2", 2))
+      .set("record", StructuredRecord.builder(innerSchema).set("i", 3).build())
+      .set("union", "u")
+      .build();
+
+    // with the schema inline
+    Assert.assertEquals(record, roundTrip(record));
+
+    // with the schema registered
+    StructuredRecordWritable.registerSchemas(ImmutableList.of(schema));
+    Assert.assertEquals(record, roundTrip(record));
+    // registered schemas are written with the hash only
+    Assert.assertTrue(toBytes(record).length < Bytes.toBytes(schema.toString()).length);
+  }
+
+  @Test
+  public void testBytes() throws IOException {
+    Schema schema = Schema.recordOf("binary",
+                                    Schema.Field.of("b1", Schema.of(Schema.Type.BYTES)),
+                                    Schema.Field.of("b2", Schema.of(Schema.Type.BYTES)));
+    ByteBuffer buffer = ByteBuffer.wrap(Bytes.toBytes("0123456789"));
+    buffer.position(2);
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("b1", Bytes.toBytes("value"))
+      .set("b2", buffer)
+      .build();
+
+    StructuredRecord result = roundTrip(record);
+    Assert.assertArrayEquals(Bytes.toBytes("value"), (byte[]) result.get("b1"));
+    Assert.assertArrayEquals(Bytes.toBytes("23456789"), (byte[]) result.get("b2"));
+    // the buffer is not consumed
+    Assert.assertEquals(2, buffer.position());
+  }
+
+  @Test
+  public void testRawComparator() throws IOException {
+    Schema schema = Schema.recordOf("key",
+                                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("tags", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                                         Schema.of(Schema.Type.STRING))));
+    Schema otherSchema = Schema.recordOf("otherKey", Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+    StructuredRecordWritable.registerSchemas(ImmutableSet.of(otherSchema));
+
+    // maps with the same entries in different iteration order
+    Map<String, String> tags1 = new LinkedHashMap<>();
+    tags1.put("a", "1");
+    tags1.put("b", "2");
+    Map<String, String> tags2 = new LinkedHashMap<>();
+    tags2.put("b", "2");
+    tags2.put("a", "1");
+
+    StructuredRecord record1 = StructuredRecord.builder(schema).set("name", "n1").set("tags", tags1).build();
+    StructuredRecord record2 = StructuredRecord.builder(schema).set("name", "n1").set("tags", tags2).build();
+    StructuredRecord record3 = StructuredRecord.builder(schema).set("name", "n2").set("tags", tags1).build();
+    StructuredRecord record4 = StructuredRecord.builder(otherSchema).set("name", "n1").build();
+
+    WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+    Assert.assertTrue(comparator instanceof StructuredRecordWritable.Comparator);
+    Assert.assertEquals(0, compare(comparator, record1, record2));
+    Assert.assertEquals(0, new StructuredRecordWritable(record1).compareTo(new StructuredRecordWritable(record2)));
+
+    int cmp = compare(comparator, record1, record3);
+    Assert.assertNotEquals(0, cmp);
+    Assert.assertEquals(-cmp, compare(comparator, record3, record1));
+    Assert.assertEquals(cmp, new StructuredRecordWritable(record1).compareTo(new StructuredRecordWritable(record3)));
+
+    Assert.assertNotEquals(0, compare(comparator, record1, record4));
+    Assert.assertNotEquals(0, compare(comparator, record4, record1));
+  }
+
+  /**
+   * Compares the serialized size and the time to serialize and deserialize records against the schema json and
+   * record json encoding that {@link StructuredRecordWritable} used before.
+   */
+  @Ignore
+  @Test
+  public void testSpeed() throws IOException {
+    Schema schema = Schema.recordOf("purchase",
+                                    Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("item", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("count", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)),
+                                    Schema.Field.of("ts", Schema.of(Schema.Type.LONG)),
+                                    Schema.Field.of("coupon", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecordWritable.registerSchemas(ImmutableList.of(schema));
+    int count = 100000;
+    StructuredRecord[] records = new StructuredRecord[count];
+    for (int i = 0; i < count; i++) {
+      records[i] = StructuredRecord.builder(schema)
+        .set("user", "user" + (i % 1000))
+        .set("item", "item" + (i % 37))
+        .set("count", i % 10)
+        .set("price", i * 0.01d)
+        .set("ts", 1451606400000L + i)
+        .build();
+    }
+
+    for (int round = 0; round < 3; round++) {
+      long startTime = System.nanoTime();
+      long size = 0;
+      for (StructuredRecord record : records) {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(toJsonBytes(record)));
+        size += input.available();
+        Schema readSchema = Schema.parseJson(Bytes.toString(readBytes(input)));
+        StructuredRecordStringConverter.fromJsonString(Bytes.toString(readBytes(input)), readSchema);
+      }
+      System.out.printf("Json: %d bytes, %d ms%n", size,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+      startTime = System.nanoTime();
+      size = 0;
+      StructuredRecordWritable writable = new StructuredRecordWritable();
+      for (StructuredRecord record : records) {
+        byte[] bytes = toBytes(record);
+        size += bytes.length;
+        writable.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+      }
+      System.out.printf("Binary: %d bytes, %d ms%n", size,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+  }
+
+  private int compare(WritableComparator comparator,
+                      StructuredRecord record1, StructuredRecord record2) throws IOException {
+    // serialize with some leading bytes to make sure the offsets are honored
+    byte[] bytes1 = Bytes.add(new byte[3], toBytes(record1));
+    byte[] bytes2 = Bytes.add(new byte[5], toBytes(record2));
+    return comparator.compare(bytes1, 3, bytes1.length - 3, bytes2, 5, bytes2.length - 5);
+  }
+
+  private StructuredRecord roundTrip(StructuredRecord record) throws IOException {
+    StructuredRecordWritable writable = new StructuredRecordWritable();
+    writable.readFields(new DataInputStream(new ByteArrayInputStream(toBytes(record))));
+    return writable.get();
+  }
+
+  private byte[] toBytes(StructuredRecord record) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new StructuredRecordWritable(record).write(new DataOutputStream(os));
+    return os.toByteArray();
+  }
+
+  private byte[] toJsonBytes(StructuredRecord record) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(os);
+    byte[] schemaBytes = Bytes.toBytes(record.getSchema().toString());
+    output.writeInt(schemaBytes.length);
+    output.write(schemaBytes);
+    byte[] recordBytes = Bytes.toBytes(StructuredRecordStringConverter.toJsonString(record));
+    output.writeInt(recordBytes.length);
+    output.write(recordBytes);
+    return os.toByteArray();
+  }
+
+  private byte[] readBytes(DataInputStream input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return bytes;
+  }
 }
@@ -27,6 +27,8 @@ public final class Constants {
   public static final String PIPELINE_SPEC_KEY = "pipeline.spec";
   public static final String STAGE_LOGGING_ENABLED = "stage.logging.enabled";
   public static final String CONNECTOR_TYPE = "connector";
+  // runtime argument for the number of records the mapper of a batch pipeline runs through the transforms at once
+  public static final String TRANSFORM_BATCH_SIZE = "pipeline.transform.batch.size";
   public static final Schema ERROR_SCHEMA = Schema.recordOf(
     "error",
     Schema.Field.of(ErrorDataset.ERRCODE, Schema.of(Schema.Type.INT)),
@@ -47,4 +47,8 @@ public class TrackedEmitter<T> implements Emitter<T> {
     delegate.emitError(value);
     stageMetrics.count("records.error", 1);
   }
+
+  Emitter<T> getDelegate() {
+    return delegate;
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -37,6 +37,8 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
   private final StageMetrics metrics;
   private final String metricInName;
   private final String metricOutName;
+  // the tracked emitter is cached, since the transform is usually called with the same emitter
+  private TrackedEmitter<OUT> trackedEmitter;
 
   public TrackedTransform(Transformation<IN, OUT> transform, StageMetrics metrics) {
     this(transform, metrics, RECORDS_IN, RECORDS_OUT);
@@ -55,7 +57,16 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
     if (metricInName != null) {
       metrics.count(metricInName, 1);
     }
-    transform.transform(input, metricOutName == null ? emitter : new TrackedEmitter<>(emitter, metrics, metricOutName));
+    transform.transform(input, metricOutName == null ? emitter : getTrackedEmitter(emitter));
+  }
+
+  private Emitter<OUT> getTrackedEmitter(Emitter<OUT> emitter) {
+    TrackedEmitter<OUT> trackedEmitter = this.trackedEmitter;
+    if (trackedEmitter == null || trackedEmitter.getDelegate() != emitter) {
+      trackedEmitter = new TrackedEmitter<>(emitter, metrics, metricOutName);
+      this.trackedEmitter = trackedEmitter;
+    }
+    return trackedEmitter;
   }
 
   @Override
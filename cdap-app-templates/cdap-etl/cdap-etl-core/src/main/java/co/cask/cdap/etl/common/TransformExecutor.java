@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,10 +19,13 @@ package co.cask.cdap.etl.common;
 import co.cask.cdap.etl.api.Destroyable;
 import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.Transformation;
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Preconditions;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -30,69 +33,156 @@ import java.util.Set;
 /**
  * Executes Transforms one iteration at a time, tracking how many records were input into and output from
  * each transform.
+ * <p>
+ * The traversal of the stages is compiled into a flat list of steps when the executor is created. Each step
+ * runs one stage over the entries emitted by its input stage, in the same order as a depth first traversal
+ * from the starting points would. Inputs can also be processed in batches with {@link #addInput(Object)} and
+ * {@link #flush()}, which runs the starting stages for every input, and the rest of the stages once per batch.
  *
  * @param <IN> the type of input object to the first transform
  *
  */
 public class TransformExecutor<IN> implements Destroyable {
 
-  private final Set<String> startingPoints;
   private final Map<String, TransformDetail> transformDetailMap;
+  // the stage to run and the step that emits its input, or -1 if the input is the executor input, for each step
+  private final TransformDetail[] stepStages;
+  private final int[] stepInputs;
+  // number of steps at the start of the plan that run on the executor input
+  private final int startSteps;
+  // whether the steps after the starting ones can be deferred to flush
+  private final boolean batchable;
+  private final List<IN> input;
+  private final Map<String, Collection<InvalidEntry<Object>>> errors;
+  private final TransformResponse response;
+  private int pendingInputs;
 
   public TransformExecutor(Map<String, TransformDetail> transformDetailMap, Set<String> startingPoints) {
     this.transformDetailMap = transformDetailMap;
-    this.startingPoints = startingPoints;
-  }
 
-  public TransformResponse runOneIteration(IN input) throws Exception {
+    List<TransformDetail> stages = new ArrayList<>();
+    List<Integer> inputs = new ArrayList<>();
     for (String stageName : startingPoints) {
-      // no prevStage for starting points
-      executeTransformation(stageName, ImmutableList.of(input));
+      stages.add(getTransformDetail(stageName));
+      inputs.add(-1);
+    }
+    this.startSteps = stages.size();
+    for (int i = 0; i < startSteps; i++) {
+      addNextSteps(i, stages, inputs);
     }
 
-    Map<String, Collection<Object>> terminalNodeEntriesMap = new HashMap<>();
-    Map<String, Collection<InvalidEntry<Object>>> errors = new HashMap<>();
+    // if a starting stage is also fed by another stage, it can't be run independently of the rest of the pipeline
+    this.batchable = Collections.disjoint(stages.subList(0, startSteps), stages.subList(startSteps, stages.size()));
 
+    this.stepStages = stages.toArray(new TransformDetail[stages.size()]);
+    this.stepInputs = new int[inputs.size()];
+    for (int i = 0; i < stepInputs.length; i++) {
+      stepInputs[i] = inputs.get(i);
+    }
+
+    Map<String, Collection<Object>> terminalNodeEntriesMap = new HashMap<>();
     for (Map.Entry<String, TransformDetail> transformDetailEntry : transformDetailMap.entrySet()) {
       if (transformDetailEntry.getValue().getNextStages().isEmpty()) {
-        // terminal node
-        Collection<Object> entries = transformDetailEntry.getValue().getEntries();
-        if (entries != null) {
-          terminalNodeEntriesMap.put(transformDetailEntry.getKey(), entries);
-        }
+        terminalNodeEntriesMap.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getEntries());
       }
+    }
+    this.input = new ArrayList<>(1);
+    this.errors = new HashMap<>();
+    this.response = new TransformResponse(Collections.unmodifiableMap(terminalNodeEntriesMap),
+                                          Collections.unmodifiableMap(errors));
+  }
 
-      if (!transformDetailEntry.getValue().getErrors().isEmpty()) {
-        errors.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getErrors());
+  /**
+   * Runs all transforms on the given input. The returned response contains the entries of the terminal stages
+   * and the errors of all stages emitted since the last {@link #resetEmitter()}. It is reused by the executor, so
+   * it is only valid until the next call to this method or {@link #flush()}.
+   */
+  public TransformResponse runOneIteration(IN input) throws Exception {
+    addInput(input);
+    return flush();
+  }
+
+  /**
+   * Runs the starting transforms on the given input. The output of the starting transforms is kept until
+   * {@link #flush()} runs the rest of the transforms on it. The starting transforms must not emit objects that
+   * are reused across inputs. Transforms with multiple inputs may receive the records of a batch in a different
+   * order than if the inputs were run one by one.
+   */
+  public void addInput(IN input) throws Exception {
+    this.input.add(input);
+    try {
+      if (!batchable) {
+        executeSteps(0, stepStages.length);
+      } else if (pendingInputs++ == 0) {
+        executeSteps(0, startSteps);
+      } else {
+        // keep the output of the previous inputs of the batch
+        for (int i = 0; i < startSteps; i++) {
+          transform(stepStages[i], this.input);
+        }
       }
+    } finally {
+      this.input.clear();
     }
-    return new TransformResponse(terminalNodeEntriesMap, errors);
   }
 
-  private <T> void executeTransformation(final String stageName,
-                                         Collection<T> input) throws Exception {
-    if (input == null) {
-      return;
+  /**
+   * Runs the rest of the transforms on the output of the starting transforms for all inputs added with
+   * {@link #addInput(Object)} since the last flush.
+   *
+   * @return the response, with the same content and lifetime as the one returned by {@link #runOneIteration(Object)}
+   */
+  public TransformResponse flush() throws Exception {
+    if (batchable && pendingInputs > 0) {
+      pendingInputs = 0;
+      executeSteps(startSteps, stepStages.length);
     }
 
-    TransformDetail transformDetail = transformDetailMap.get(stageName);
-    Transformation<T, Object> transformation = transformDetail.getTransformation();
+    errors.clear();
+    for (Map.Entry<String, TransformDetail> transformDetailEntry : transformDetailMap.entrySet()) {
+      if (!transformDetailEntry.getValue().getErrors().isEmpty()) {
+        errors.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getErrors());
+      }
+    }
+    return response;
+  }
 
+  private void executeSteps(int from, int to) throws Exception {
+    for (int i = from; i < to; i++) {
+      TransformDetail transformDetail = stepStages[i];
+      Collection<?> stepInput = stepInputs[i] < 0 ? input : stepStages[stepInputs[i]].getEntries();
 
-    // clear old data for this stageName if its not a terminal node
-    if (!transformDetail.getNextStages().isEmpty()) {
-      transformDetail.getEntries().clear();
+      // clear old data for this stage if its not a terminal node
+      if (!transformDetail.getNextStages().isEmpty()) {
+        transformDetail.getEntries().clear();
+      }
+      transform(transformDetail, stepInput);
     }
+  }
 
+  @SuppressWarnings("unchecked")
+  private <T> void transform(TransformDetail transformDetail, Collection<T> input) throws Exception {
+    Transformation<T, Object> transformation = transformDetail.getTransformation();
     for (T inputEntry : input) {
       transformation.transform(inputEntry, transformDetail);
     }
+  }
 
-    Collection<String> nextStages = transformDetail.getNextStages();
-    for (String nextStage : nextStages) {
-      executeTransformation(nextStage, transformDetail.getEntries());
+  /**
+   * Appends the steps for the next stages of the given step, in depth first order.
+   */
+  private void addNextSteps(int step, List<TransformDetail> stages, List<Integer> inputs) {
+    for (String nextStage : stages.get(step).getNextStages()) {
+      stages.add(getTransformDetail(nextStage));
+      inputs.add(step);
+      addNextSteps(stages.size() - 1, stages, inputs);
     }
+  }
 
+  private TransformDetail getTransformDetail(String stageName) {
+    TransformDetail transformDetail = transformDetailMap.get(stageName);
+    Preconditions.checkArgument(transformDetail != null, "Transform detail of stage %s is missing.", stageName);
+    return transformDetail;
   }
 
   public void resetEmitter() {
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,16 +19,22 @@ package co.cask.cdap.etl.common;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.Transform;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multiset;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  */
@@ -271,6 +277,134 @@ public class TransformExecutorTest {
     Assert.assertEquals(3, mockMetrics.getCount("sink3.records.out"));
   }
 
+  @Test
+  public void testBatch() throws Exception {
+    // running a batch must give the same results and metrics as running the records one by one, except that
+    // stages with multiple inputs may receive the records in a different order
+    assertBatchResults(ImmutableSet.of("conversion"), ImmutableList.of(1, 10, 200, 2000, 20000, 100));
+  }
+
+  @Test
+  public void testBatchWithReachableStart() throws Exception {
+    // limiter1 is both a starting point and the output of filter1, so it can't run ahead of filter1
+    assertBatchResults(ImmutableSet.of("filter1", "limiter1"), ImmutableList.of(1d, 200d, 6000d, 2000d, 20000d, 10d));
+  }
+
+  @Test
+  public void testEmptyFlush() throws Exception {
+    TransformExecutor<Integer> executor = new TransformExecutor<>(createMergePipeline(new MockMetrics()),
+                                                                  ImmutableSet.of("conversion"));
+    TransformResponse transformResponse = executor.flush();
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink1", 0, "sink2", 0, "sink3", 0));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), new HashMap<String, Integer>());
+  }
+
+  /**
+   * Compares the time spent on running records through the transforms one by one, against running them in batches.
+   */
+  @Ignore
+  @Test
+  public void testBatchSpeed() throws Exception {
+    int records = 2000000;
+    int batchSize = 100;
+    TransformExecutor<Integer> executor = new TransformExecutor<>(createMergePipeline(new MockMetrics()),
+                                                                  ImmutableSet.of("conversion"));
+    for (int round = 0; round < 3; round++) {
+      long startTime = System.nanoTime();
+      for (int i = 0; i < records; i++) {
+        executor.runOneIteration(i);
+        executor.resetEmitter();
+      }
+      System.out.println("One by one time spent: "
+                           + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+      startTime = System.nanoTime();
+      for (int i = 0; i < records; i++) {
+        executor.addInput(i);
+        if ((i + 1) % batchSize == 0) {
+          executor.flush();
+          executor.resetEmitter();
+        }
+      }
+      System.out.println("Batch of " + batchSize + " time spent: "
+                           + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+  }
+
+  private <T> void assertBatchResults(Set<String> startingPoints, List<T> inputs) throws Exception {
+    MockMetrics expectedMetrics = new MockMetrics();
+    TransformExecutor<T> executor = new TransformExecutor<>(createMergePipeline(expectedMetrics),
+                                                                  startingPoints);
+    Map<String, Multiset<Object>> expectedResults = new HashMap<>();
+    Map<String, Multiset<Object>> expectedErrors = new HashMap<>();
+    for (T input : inputs) {
+      TransformResponse transformResponse = executor.runOneIteration(input);
+      collect(transformResponse.getSinksResults(), expectedResults);
+      collect(transformResponse.getMapTransformIdToErrorEmitter(), expectedErrors);
+      executor.resetEmitter();
+    }
+
+    MockMetrics batchMetrics = new MockMetrics();
+    executor = new TransformExecutor<>(createMergePipeline(batchMetrics), startingPoints);
+    Map<String, Multiset<Object>> batchResults = new HashMap<>();
+    Map<String, Multiset<Object>> batchErrors = new HashMap<>();
+    // batches of different sizes
+    for (List<T> batch : ImmutableList.of(inputs.subList(0, 1), inputs.subList(1, 4), inputs.subList(4, 6))) {
+      for (T input : batch) {
+        executor.addInput(input);
+      }
+      TransformResponse transformResponse = executor.flush();
+      collect(transformResponse.getSinksResults(), batchResults);
+      collect(transformResponse.getMapTransformIdToErrorEmitter(), batchErrors);
+      executor.resetEmitter();
+    }
+
+    Assert.assertEquals(expectedResults, batchResults);
+    Assert.assertEquals(expectedErrors, batchErrors);
+    for (String stage : ImmutableList.of("conversion", "filter1", "filter2", "limiter1", "sink1", "sink2", "sink3")) {
+      for (String metric : ImmutableList.of("records.in", "records.out", "records.error")) {
+        Assert.assertEquals(expectedMetrics.getCount(stage + "." + metric),
+                            batchMetrics.getCount(stage + "." + metric));
+      }
+    }
+  }
+
+  private <T> void collect(Map<String, Collection<T>> results, Map<String, Multiset<Object>> collected) {
+    for (Map.Entry<String, Collection<T>> entry : results.entrySet()) {
+      Multiset<Object> values = collected.get(entry.getKey());
+      if (values == null) {
+        values = HashMultiset.create();
+        collected.put(entry.getKey(), values);
+      }
+      for (T value : entry.getValue()) {
+        // invalid entries don't implement equals
+        values.add(value instanceof InvalidEntry ? ((InvalidEntry) value).getInvalidRecord() : value);
+      }
+    }
+  }
+
+  private Map<String, TransformDetail> createMergePipeline(MockMetrics mockMetrics) {
+    Map<String, TransformDetail> transformationMap = new HashMap<>();
+    transformationMap.put("conversion", createDetail(new IntToDouble(), mockMetrics, "conversion",
+                                                     "filter1", "filter2"));
+    transformationMap.put("filter1", createDetail(new Filter(100d, Threshold.LOWER), mockMetrics, "filter1",
+                                                  "limiter1", "sink1"));
+    transformationMap.put("filter2", createDetail(new Filter(1000d, Threshold.LOWER), mockMetrics, "filter2",
+                                                  "limiter1", "sink2"));
+    transformationMap.put("limiter1", createDetail(new Filter(5000d, Threshold.UPPER), mockMetrics, "limiter1",
+                                                   "sink3"));
+    transformationMap.put("sink1", createDetail(new DoubleToString(), mockMetrics, "sink1"));
+    transformationMap.put("sink2", createDetail(new DoubleToString(), mockMetrics, "sink2"));
+    transformationMap.put("sink3", createDetail(new DoubleToString(), mockMetrics, "sink3"));
+    return transformationMap;
+  }
+
+  private <IN, OUT> TransformDetail createDetail(Transform<IN, OUT> transform, MockMetrics mockMetrics,
+                                                 String stageName, String... nextStages) {
+    return new TransformDetail(new TrackedTransform<>(transform, new DefaultStageMetrics(mockMetrics, stageName)),
+                               ImmutableList.copyOf(nextStages));
+  }
+
   private <T> void assertResults(Map<String, Collection<T>> results, Map<String, Integer> expectedListsSize) {
     Assert.assertEquals(expectedListsSize.size(), results.size());
     for (Map.Entry<String, Integer> entry : expectedListsSize.entrySet()) {
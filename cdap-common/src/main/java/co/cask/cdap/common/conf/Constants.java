@@ -137,6 +137,8 @@ public final class Constants {
     public static final String MAPREDUCE_INCLUDE_CUSTOM_CLASSES = "mapreduce.include.custom.format.classes";
     public static final String PROGRAM_RUNID_CORRECTOR_INTERVAL_SECONDS = "app.program.runid.corrector.interval";
     public static final String SYSTEM_ARTIFACTS_DIR = "app.artifact.dir";
+    public static final String ARTIFACT_UNPACK_CACHE_DIR = "app.artifact.unpack.cache.dir";
+    public static final String ARTIFACT_UNPACK_CACHE_SIZE_MB = "app.artifact.unpack.cache.size.mb";
     public static final String PROGRAM_EXTRA_CLASSPATH = "app.program.extra.classpath";
     public static final String SPARK_YARN_CLIENT_REWRITE = "app.program.spark.yarn.client.rewrite.enabled";
     public static final String RUNTIME_EXT_DIR = "app.program.runtime.extensions.dir";
@@ -250,11 +252,19 @@ public final class Constants {
     // tables. Constant could be moved to Table after that is changed. See CDAP-1193 for more info
     public static final String TABLE_TX_DISABLED = "dataset.table.tx.disabled";
 
+    // Table dataset property that defines the type of in-memory buffer for the changes of a transaction,
+    // either "map" (default) or "log". See TableProperties.WriteBuffer for details.
+    public static final String TABLE_WRITE_BUFFER = "dataset.table.write.buffer";
+
     public static final String DATA_DIR = "dataset.data.dir";
     public static final String DEFAULT_DATA_DIR = "data";
 
     public static final String DATASET_UNCHECKED_UPGRADE = "dataset.unchecked.upgrade";
 
+    // Expiry and maximum size of the cache of dataset metadata in clients of the dataset service
+    public static final String META_CACHE_EXPIRY_SECS = "dataset.meta.cache.expiry.secs";
+    public static final String META_CACHE_SIZE = "dataset.meta.cache.size";
+
     /**
      * Constants for PartitionedFileSet's DynamicPartitioner
      */
@@ -341,6 +351,9 @@ public final class Constants {
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
     public static final String NOTIFICATION_THRESHOLD = "stream.notification.threshold";
+    public static final String CODEC = "stream.codec";
+    public static final String GROUP_COMMIT_MAX_EVENTS = "stream.group.commit.max.events";
+    public static final String GROUP_COMMIT_LINGER = "stream.group.commit.linger.us";
 
     // Stream http service configurations.
     public static final String STREAM_HANDLER = "stream.handler";
@@ -428,6 +441,7 @@ public final class Constants {
     public static final String CLIENT_BOSS_THREADS = "router.client.boss.threads";
     public static final String CLIENT_WORKER_THREADS = "router.client.worker.threads";
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
+    public static final String CONNECTION_POOL_MAX_IDLE_PER_ENDPOINT = "router.connection.pool.max.idle.per.endpoint";
 
     /**
      * Defaults.
@@ -463,6 +477,8 @@ public final class Constants {
     public static final String SERVICE_DESCRIPTION = "Service to handle metrics requests.";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
+    public static final String ENTITY_CACHE_SIZE = "metrics.data.entity.cache.size";
+    public static final String ENTITY_ID_BATCH_SIZE = "metrics.data.entity.id.batch.size";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
     public static final String TIME_SERIES_TABLE_ROLL_TIME = "metrics.data.table.ts.rollTime";
 
@@ -482,6 +498,8 @@ public final class Constants {
 
     // NOTE: "v2" to avoid conflict with data of older metrics system
     public static final String DEFAULT_ENTITY_TABLE_NAME = "metrics.v2.entity";
+    public static final int DEFAULT_ENTITY_CACHE_SIZE = 100000;
+    public static final int DEFAULT_ENTITY_ID_BATCH_SIZE = 16;
     public static final String DEFAULT_METRIC_TABLE_PREFIX = "metrics.v2.table";
     public static final int DEFAULT_TIME_SERIES_TABLE_ROLL_TIME = 3600;
     public static final long DEFAULT_RETENTION_HOURS = 2;
@@ -577,6 +595,27 @@ public final class Constants {
         public static final String OP_COUNT = "dataset.store.ops";
         public static final String WRITE_COUNT = "dataset.store.writes";
         public static final String WRITE_BYTES = "dataset.store.bytes";
+        public static final String META_CACHE_HITS = "dataset.meta.cache.hits";
+        public static final String META_CACHE_MISSES = "dataset.meta.cache.misses";
+        public static final String META_LOAD_MILLIS = "dataset.meta.load.ms";
+      }
+
+      /**
+       * Notification metrics
+       */
+      public static final class Notification {
+        public static final String PUBLISH_QUEUE_SIZE = "notification.publish.queue.size";
+        public static final String PUBLISH_COUNT = "notification.publish.count";
+        public static final String PUBLISH_LATENCY_MILLIS = "notification.publish.latency.ms";
+      }
+
+      /**
+       * Router metrics
+       */
+      public static final class Router {
+        public static final String CONNECTION_POOL_HITS = "router.connection.pool.hits";
+        public static final String CONNECTION_POOL_MISSES = "router.connection.pool.misses";
+        public static final String CONNECTION_WAIT_MILLIS = "router.connection.wait.ms";
       }
 
       /**
@@ -670,6 +709,11 @@ public final class Constants {
     public static final String TOKEN_DIGEST_KEY_LENGTH = "security.token.digest.keylength";
     /** Time duration in milliseconds after which an active secret key should be retired. */
     public static final String TOKEN_DIGEST_KEY_EXPIRATION = "security.token.digest.key.expiration.ms";
+    /** Maximum number of access tokens for which the validation result is cached. Zero disables the cache. */
+    public static final String TOKEN_VALIDATION_CACHE_SIZE = "security.token.validation.cache.size";
+    /** Time duration in milliseconds for which failed access token validations are cached. */
+    public static final String TOKEN_VALIDATION_CACHE_INVALID_TTL =
+      "security.token.validation.cache.invalid.ttl.ms";
     /** Parent znode used for secret key distribution in ZooKeeper. */
     public static final String DIST_KEY_PARENT_ZNODE = "security.token.distributed.parent.znode";
     /** Deprecated. Use AUTH_SERVER_BIND_ADDRESS instead. **/
@@ -849,6 +893,9 @@ public final class Constants {
   public static final class Notification {
     public static final String TRANSPORT_SYSTEM = "notification.transport.system";
     public static final String KAFKA_TOPIC = "notification.kafka.topic";
+    public static final String KAFKA_PUBLISH_BATCH_SIZE = "notification.kafka.publish.batch.size";
+    public static final String KAFKA_PUBLISH_LINGER_MS = "notification.kafka.publish.linger.ms";
+    public static final String SUBSCRIBER_MAX_PENDING = "notification.subscriber.max.pending";
 
     /**
      * Notifications in Streams constants.
@@ -859,6 +906,14 @@ public final class Constants {
       public static final String STREAM_HEARTBEAT_FEED_NAME = "heartbeat";
       public static final String STREAM_SIZE_SCHEDULE_POLLING_DELAY = "stream.size.schedule.polling.delay";
     }
+
+    /**
+     * Notifications in Datasets constants.
+     */
+    public static final class Dataset {
+      public static final String DATASET_INTERNAL_FEED_CATEGORY = "datasetInternal";
+      public static final String DATASET_CHANGE_FEED_NAME = "change";
+    }
   }
 
   public static final String CFG_LOCAL_DATA_DIR = "local.data.dir";
@@ -972,6 +1027,8 @@ public final class Constants {
     public static final String SERVICE_EXEC_THREADS = "metadata.service.exec.threads";
     public static final String HANDLERS_NAME = "metadata.handlers";
     public static final String MAX_CHARS_ALLOWED = "metadata.max.allowed.chars";
+    public static final String LINEAGE_FETCH_THREADS = "metadata.lineage.fetch.threads";
+    public static final String LINEAGE_CACHE_EXPIRY_SECS = "metadata.lineage.cache.expiry.secs";
   }
 
   /**
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,12 +16,12 @@
 
 package co.cask.cdap.common.guice;
 
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
 import co.cask.cdap.internal.io.ASMDatumWriterFactory;
 import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
 import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.DatumWriterFactory;
 import co.cask.cdap.internal.io.FieldAccessorFactory;
-import co.cask.cdap.internal.io.ReflectionDatumReaderFactory;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
 import co.cask.cdap.internal.io.SchemaGenerator;
 import com.google.inject.PrivateModule;
@@ -42,8 +42,8 @@ public class IOModule extends PrivateModule {
 
     expose(DatumWriterFactory.class);
 
-    // Note: Need to add the DatumReader counter parts when those are refactored to use ASM as well.
-    bind(DatumReaderFactory.class).to(ReflectionDatumReaderFactory.class).in(Scopes.SINGLETON);
+    // Singleton so that all injection points share the cache of resolved readers
+    bind(DatumReaderFactory.class).to(ASMDatumReaderFactory.class).in(Scopes.SINGLETON);
     expose(DatumReaderFactory.class);
   }
 }
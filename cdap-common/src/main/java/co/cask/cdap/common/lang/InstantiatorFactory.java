@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,7 +16,6 @@
 
 package co.cask.cdap.common.lang;
 
-import co.cask.cdap.internal.lang.Reflections;
 import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -178,9 +177,8 @@ public final class InstantiatorFactory {
       @Override
       public T create() {
         try {
-          Object instance = UNSAFE.allocateInstance(type.getRawType());
-          Reflections.visit(instance, type.getType(), new FieldInitializer());
-          return (T) instance;
+          // Fields of the instance allocated are already initialized with default values
+          return (T) UNSAFE.allocateInstance(type.getRawType());
         } catch (InstantiationException e) {
           throw Throwables.propagate(e);
         }
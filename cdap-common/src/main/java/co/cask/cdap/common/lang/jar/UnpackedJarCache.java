@@ -0,0 +1,427 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.lang.jar;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A host local cache of expanded jar files, which lets class loaders of the same artifact or plugin share one
+ * expanded copy of the jar instead of expanding it again every time.
+ * <p>
+ * Jars are cached by the checksum of their content. Every expanded jar is a directory in the cache directory, along
+ * with a lock file. A process holds a shared lock on the lock file while it uses the directory, and a jar is expanded
+ * and removed under an exclusive lock, so that the cache can be shared by all processes on the same host.
+ * Within a process, the uses of an expanded jar are reference counted.
+ * <p>
+ * Expanded jars that are not in use are removed in least recently used order when their total size exceeds the
+ * configured disk budget.
+ */
+public final class UnpackedJarCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UnpackedJarCache.class);
+  private static final ConcurrentMap<File, UnpackedJarCache> INSTANCES = new ConcurrentHashMap<>();
+  private static final String LOCK_FILE_SUFFIX = ".lock";
+  private static final String TEMP_DIR_PREFIX = ".tmp-";
+  // Temporary directories older than this are left over by a failed process, and are removed
+  private static final long STALE_TEMP_DIR_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+  private static final FileFilter ENTRY_FILTER = new FileFilter() {
+    @Override
+    public boolean accept(File file) {
+      return file.isDirectory() && !file.getName().startsWith(TEMP_DIR_PREFIX);
+    }
+  };
+
+  private final File cacheDir;
+  private final long maxSizeBytes;
+  // Expanded jars in use by this process, by the name of the directory. Guarded by this.
+  private final Map<String, CacheEntry> entries = new HashMap<>();
+  // Sizes of expanded jars, which never change once a jar is expanded
+  private final ConcurrentMap<String, Long> entrySizes = new ConcurrentHashMap<>();
+  // Checksums of jars, by location, last modified time and length
+  private final Cache<String, String> checksums = CacheBuilder.newBuilder().maximumSize(10000).build();
+
+  /**
+   * Returns the cache for the cache directory in the given configuration. All callers in the same process that
+   * use the same cache directory share the same instance.
+   */
+  public static UnpackedJarCache getInstance(CConfiguration cConf) {
+    File cacheDir = new File(cConf.get(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_DIR));
+    if (!cacheDir.isAbsolute()) {
+      cacheDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR), cacheDir.getPath());
+    }
+    cacheDir = cacheDir.getAbsoluteFile();
+
+    UnpackedJarCache cache = INSTANCES.get(cacheDir);
+    if (cache != null) {
+      return cache;
+    }
+    long maxSizeBytes = cConf.getLong(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_SIZE_MB) * 1024 * 1024;
+    INSTANCES.putIfAbsent(cacheDir, new UnpackedJarCache(cacheDir, maxSizeBytes));
+    return INSTANCES.get(cacheDir);
+  }
+
+  @VisibleForTesting
+  UnpackedJarCache(File cacheDir, long maxSizeBytes) {
+    Preconditions.checkArgument(maxSizeBytes >= 0, "The maximum size must not be negative: %s", maxSizeBytes);
+    this.cacheDir = cacheDir;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Returns the expanded content of the given jar, expanding it if it is not in the cache. The returned
+   * {@link UnpackedJar} must be closed when the directory is not used anymore. The directory and its content must
+   * not be modified.
+   *
+   * @param jarLocation location of the jar
+   * @return an {@link UnpackedJar} for the directory that contains the expanded jar
+   * @throws IOException if failed to read or to expand the jar
+   */
+  public UnpackedJar acquire(Location jarLocation) throws IOException {
+    String name = getChecksum(jarLocation);
+    CacheEntry entry;
+    synchronized (this) {
+      entry = entries.get(name);
+      if (entry == null) {
+        entry = new CacheEntry(name);
+        entries.put(name, entry);
+      }
+      entry.refCount++;
+    }
+
+    boolean expanded;
+    try {
+      expanded = entry.open(jarLocation);
+      // Keep track of the last use, which is shared by all processes, to remove the least recently used jars first
+      Files.setLastModifiedTime(entry.dir.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException | RuntimeException e) {
+      release(entry);
+      throw e;
+    }
+    if (expanded) {
+      evict();
+    }
+    return new UnpackedJar(entry);
+  }
+
+  /**
+   * Returns the checksum of the given jar. The checksum is only computed again if the jar has changed.
+   */
+  private String getChecksum(Location jarLocation) throws IOException {
+    String key = jarLocation.toURI() + ":" + jarLocation.lastModified() + ":" + jarLocation.length();
+    String checksum = checksums.getIfPresent(key);
+    if (checksum == null) {
+      checksum = ByteStreams.hash(Locations.newInputSupplier(jarLocation), Hashing.sha256()).toString();
+      checksums.put(key, checksum);
+    }
+    return checksum;
+  }
+
+  private void release(CacheEntry entry) {
+    synchronized (this) {
+      if (--entry.refCount > 0) {
+        return;
+      }
+      entries.remove(entry.name);
+      entry.close();
+    }
+    evict();
+  }
+
+  /**
+   * Removes the least recently used expanded jars that are not used by any process, until the total size of the
+   * expanded jars is within the budget.
+   */
+  private synchronized void evict() {
+    File[] dirs = cacheDir.listFiles(ENTRY_FILTER);
+    if (dirs == null) {
+      return;
+    }
+    removeStaleTempDirs();
+
+    long totalSize = 0;
+    for (File dir : dirs) {
+      totalSize += getSize(dir);
+    }
+    if (totalSize <= maxSizeBytes) {
+      return;
+    }
+
+    final Map<File, Long> lastUsed = new HashMap<>();
+    for (File dir : dirs) {
+      lastUsed.put(dir, dir.lastModified());
+    }
+    Arrays.sort(dirs, new Comparator<File>() {
+      @Override
+      public int compare(File o1, File o2) {
+        return Long.compare(lastUsed.get(o1), lastUsed.get(o2));
+      }
+    });
+
+    for (File dir : dirs) {
+      if (totalSize <= maxSizeBytes) {
+        break;
+      }
+      // Entries used by this process hold a shared lock, which would overlap with the exclusive lock
+      if (entries.containsKey(dir.getName())) {
+        continue;
+      }
+      long size = getSize(dir);
+      try {
+        if (tryDelete(dir)) {
+          LOG.debug("Removed expanded jar {} of size {} from the unpack cache", dir, size);
+          entrySizes.remove(dir.getName());
+          totalSize -= size;
+        }
+      } catch (IOException e) {
+        LOG.warn("Failed to remove expanded jar {} from the unpack cache", dir, e);
+      }
+    }
+  }
+
+  /**
+   * Deletes the given expanded jar if no process is using it.
+   *
+   * @return {@code true} if the expanded jar was deleted
+   */
+  private boolean tryDelete(File dir) throws IOException {
+    try (FileChannel channel = openLockFile(dir.getName())) {
+      FileLock lock = channel.tryLock();
+      if (lock == null) {
+        return false;
+      }
+      File tempDir;
+      try {
+        // Move it out of the way first, so that no process sees a partially deleted directory
+        tempDir = new File(cacheDir, TEMP_DIR_PREFIX + dir.getName() + "-" + System.nanoTime());
+        Files.move(dir.toPath(), tempDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        lock.release();
+      }
+      DirUtils.deleteDirectoryContents(tempDir);
+      return true;
+    }
+  }
+
+  private void removeStaleTempDirs() {
+    File[] files = cacheDir.listFiles();
+    if (files == null) {
+      return;
+    }
+    long staleTime = System.currentTimeMillis() - STALE_TEMP_DIR_MILLIS;
+    for (File file : files) {
+      if (file.getName().startsWith(TEMP_DIR_PREFIX) && file.lastModified() < staleTime) {
+        try {
+          DirUtils.deleteDirectoryContents(file);
+        } catch (IOException e) {
+          LOG.warn("Failed to delete temporary directory {}", file, e);
+        }
+      }
+    }
+  }
+
+  private long getSize(File dir) {
+    Long size = entrySizes.get(dir.getName());
+    if (size != null) {
+      return size;
+    }
+    final long[] total = new long[1];
+    try {
+      Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+          total[0] += attrs.size();
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      // The directory might be removed concurrently by another process. Just don't remember the size.
+      LOG.debug("Failed to compute the size of {}", dir, e);
+      return total[0];
+    }
+    entrySizes.put(dir.getName(), total[0]);
+    return total[0];
+  }
+
+  /**
+   * Opens the lock file of the given expanded jar. It is opened for both read and write, which is needed for
+   * shared and exclusive locks respectively.
+   */
+  private FileChannel openLockFile(String name) throws IOException {
+    return FileChannel.open(new File(cacheDir, name + LOCK_FILE_SUFFIX).toPath(),
+                            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /**
+   * An expanded jar in the cache, which is released when closed.
+   */
+  public final class UnpackedJar implements Closeable {
+
+    private final CacheEntry entry;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private UnpackedJar(CacheEntry entry) {
+      this.entry = entry;
+    }
+
+    /**
+     * Returns the directory that contains the expanded jar.
+     */
+    public File getDirectory() {
+      return entry.dir;
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        release(entry);
+      }
+    }
+  }
+
+  /**
+   * An expanded jar used by this process. While in use, it holds a shared lock on the lock file of the jar.
+   */
+  private final class CacheEntry {
+
+    private final String name;
+    private final File dir;
+    // Guarded by UnpackedJarCache.this
+    private int refCount;
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    CacheEntry(String name) {
+      this.name = name;
+      this.dir = new File(cacheDir, name);
+    }
+
+    /**
+     * Locks the expanded jar for use by this process, expanding the jar first if needed.
+     *
+     * @return {@code true} if the jar was expanded by this call
+     */
+    synchronized boolean open(Location jarLocation) throws IOException {
+      if (lock != null) {
+        return false;
+      }
+
+      Files.createDirectories(cacheDir.toPath());
+      FileChannel channel = openLockFile(name);
+      boolean expanded = false;
+      try {
+        while (true) {
+          if (dir.isDirectory()) {
+            FileLock sharedLock = channel.lock(0L, Long.MAX_VALUE, true);
+            // The jar might have been removed by another process before the lock was acquired
+            if (dir.isDirectory()) {
+              lockChannel = channel;
+              lock = sharedLock;
+              return expanded;
+            }
+            sharedLock.release();
+          }
+
+          // Expand the jar under an exclusive lock, so that only one process expands it
+          FileLock exclusiveLock = channel.lock();
+          try {
+            if (!dir.isDirectory()) {
+              expand(jarLocation);
+              expanded = true;
+            }
+          } finally {
+            exclusiveLock.release();
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    private void expand(Location jarLocation) throws IOException {
+      File tempDir = Files.createTempDirectory(cacheDir.toPath(), TEMP_DIR_PREFIX).toFile();
+      try {
+        BundleJarUtil.unJar(jarLocation, tempDir);
+        Files.move(tempDir.toPath(), dir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        LOG.debug("Expanded jar {} to {}", jarLocation, dir);
+      } finally {
+        if (tempDir.exists()) {
+          DirUtils.deleteDirectoryContents(tempDir);
+        }
+      }
+    }
+
+    /**
+     * Releases the lock of this process on the expanded jar.
+     */
+    void close() {
+      try {
+        if (lock != null) {
+          lock.release();
+        }
+      } catch (IOException e) {
+        LOG.warn("Failed to release lock of {}", dir, e);
+      } finally {
+        lock = null;
+        if (lockChannel != null) {
+          try {
+            lockChannel.close();
+          } catch (IOException e) {
+            LOG.warn("Failed to close lock file of {}", dir, e);
+          }
+          lockChannel = null;
+        }
+      }
+    }
+  }
+}
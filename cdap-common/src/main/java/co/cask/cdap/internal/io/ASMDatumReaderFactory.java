@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.reflect.TypeToken;
+
+import javax.inject.Inject;
+
+/**
+ * A factory class for creating {@link DatumReader} instance for different data type and schema, the counterpart
+ * of {@link ASMDatumWriterFactory}. The {@link DatumReader} created resolves each source schema against the
+ * data type and schema once, and sets fields through the {@link FieldAccessor} provided by the
+ * {@link FieldAccessorFactory}, which generates the field accessor classes using ASM.
+ * The {@link DatumReader} instances are thread safe and are cached per data type and schema.
+ */
+public final class ASMDatumReaderFactory implements DatumReaderFactory {
+
+  private final LoadingCache<CacheKey, DatumReader<?>> datumReaders;
+
+  @Inject
+  public ASMDatumReaderFactory(final FieldAccessorFactory fieldAccessorFactory) {
+    this.datumReaders = CacheBuilder.newBuilder().build(new CacheLoader<CacheKey, DatumReader<?>>() {
+      @Override
+      public DatumReader<?> load(CacheKey key) throws Exception {
+        return new ResolvingDatumReader<>(key.getSchema(), key.getType(), fieldAccessorFactory);
+      }
+    });
+  }
+
+  /**
+   * Creates a {@link DatumReader} that is able to decode given data type with the given {@link Schema}.
+   * The instance created is thread safe and reusable.
+   *
+   * @param type Type information of the data type to be decoded.
+   * @param schema Schema of the data type.
+   * @param <T> Type of the data type.
+   * @return A {@link DatumReader} instance.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> DatumReader<T> create(TypeToken<T> type, Schema schema) {
+    return (DatumReader<T>) datumReaders.getUnchecked(new CacheKey(schema, type));
+  }
+
+  private static final class CacheKey {
+    private final Schema schema;
+    private final TypeToken<?> type;
+
+    private CacheKey(Schema schema, TypeToken<?> type) {
+      this.schema = schema;
+      this.type = type;
+    }
+
+    public Schema getSchema() {
+      return schema;
+    }
+
+    public TypeToken<?> getType() {
+      return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CacheKey cacheKey = (CacheKey) o;
+      return schema.equals(cacheKey.schema) && type.equals(cacheKey.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(schema, type);
+    }
+  }
+}
@@ -0,0 +1,992 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Longs;
+import com.google.common.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link DatumReader} that resolves the source schema against the target schema and type once, and
+ * decodes through the resolved readers afterwards. It reads the same data as {@link ReflectionDatumReader},
+ * but doesn't need to walk the schemas, look up field accessors and instantiators or try union branches for
+ * every object being decoded. Fields are set through the {@link FieldAccessor} from the given
+ * {@link FieldAccessorFactory}, without boxing for primitive fields of the same type as in the source schema.
+ *
+ * Resolved readers are kept per source schema, hence the same instance can be used to read data written
+ * with different schemas. Instances of this class are thread safe.
+ *
+ * @param <T> type T reader
+ */
+final class ResolvingDatumReader<T> implements DatumReader<T> {
+
+  private final Schema schema;
+  private final TypeToken<T> type;
+  private final FieldAccessorFactory fieldAccessorFactory;
+  private final InstantiatorFactory instantiatorFactory;
+  private final ConcurrentMap<Schema, ValueReader> readers;
+  // The last resolved reader, to avoid the schema hash lookup when reading with the same source schema instance
+  private volatile ResolvedReader lastReader;
+
+  ResolvingDatumReader(Schema schema, TypeToken<T> type, FieldAccessorFactory fieldAccessorFactory) {
+    this.schema = schema;
+    this.type = type;
+    this.fieldAccessorFactory = fieldAccessorFactory;
+    this.instantiatorFactory = new InstantiatorFactory(true);
+    this.readers = Maps.newConcurrentMap();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T read(Decoder decoder, Schema sourceSchema) throws IOException {
+    ResolvedReader lastReader = this.lastReader;
+    if (lastReader == null || lastReader.sourceSchema != sourceSchema) {
+      ValueReader reader = readers.get(sourceSchema);
+      if (reader == null) {
+        reader = new Resolver().resolveOrFail(sourceSchema, schema, type);
+        ValueReader existing = readers.putIfAbsent(sourceSchema, reader);
+        reader = existing == null ? reader : existing;
+      }
+      lastReader = new ResolvedReader(sourceSchema, reader);
+      this.lastReader = lastReader;
+    }
+    return (T) lastReader.reader.read(decoder);
+  }
+
+  /**
+   * Reads a value of a resolved schema.
+   */
+  private interface ValueReader {
+    Object read(Decoder decoder) throws IOException;
+  }
+
+  /**
+   * Reads a record field value and sets it to the record.
+   */
+  private interface FieldReader {
+    void read(Decoder decoder, Object record) throws IOException;
+  }
+
+  /**
+   * Pair of source schema and the {@link ValueReader} resolved for it.
+   */
+  private static final class ResolvedReader {
+    private final Schema sourceSchema;
+    private final ValueReader reader;
+
+    private ResolvedReader(Schema sourceSchema, ValueReader reader) {
+      this.sourceSchema = sourceSchema;
+      this.reader = reader;
+    }
+  }
+
+  /**
+   * Resolves source schema to target schema and type into {@link ValueReader}. Resolution follows the same rules
+   * as {@link ReflectionReader}. A schema that cannot be resolved results in an {@link IOException}, except for
+   * union branches and the top level schema, which are only failed when data of such schema is being read.
+   */
+  private final class Resolver {
+
+    // Readers for records that are being resolved, to support recursive record schemas.
+    private final Map<ResolveKey, DelegateReader> resolving = Maps.newHashMap();
+
+    ValueReader resolveOrFail(Schema sourceSchema, Schema targetSchema, TypeToken<?> targetType) {
+      try {
+        return resolve(sourceSchema, targetSchema, targetType);
+      } catch (IOException e) {
+        return new FailureReader(e.getMessage());
+      }
+    }
+
+    ValueReader resolve(Schema sourceSchema, Schema targetSchema, TypeToken<?> targetType) throws IOException {
+      if (sourceSchema.getType() != Schema.Type.UNION && targetSchema.getType() == Schema.Type.UNION) {
+        // Try every target schemas
+        for (Schema schema : targetSchema.getUnionSchemas()) {
+          try {
+            return doResolve(sourceSchema, schema, targetType);
+          } catch (IOException e) {
+            // Continue;
+          }
+        }
+        throw new IOException(String.format("No matching schema to resolve %s to %s", sourceSchema, targetSchema));
+      }
+      return doResolve(sourceSchema, targetSchema, targetType);
+    }
+
+    private ValueReader doResolve(Schema sourceSchema, Schema targetSchema,
+                                  TypeToken<?> targetType) throws IOException {
+      Schema.Type sourceType = sourceSchema.getType();
+      Schema.Type targetSchemaType = targetSchema.getType();
+
+      if (sourceType == Schema.Type.UNION) {
+        return resolveUnion(sourceSchema, targetSchema, targetType);
+      }
+      if (!sourceType.isSimpleType() || sourceType == Schema.Type.NULL || sourceType == Schema.Type.BYTES) {
+        check(sourceType == targetSchemaType, "Fails to resolve %s to %s", sourceType, targetSchemaType);
+      }
+
+      switch (sourceType) {
+        case NULL:
+          return SimpleReader.NULL;
+        case BYTES:
+          Class<?> rawType = targetType.getRawType();
+          if (rawType.equals(byte[].class)) {
+            return SimpleReader.BYTES_TO_BYTE_ARRAY;
+          }
+          return rawType.equals(UUID.class) ? SimpleReader.BYTES_TO_UUID : SimpleReader.BYTES;
+        case ENUM:
+          return resolveEnum(sourceSchema, targetSchema, targetType);
+        case ARRAY:
+          return resolveArray(sourceSchema, targetSchema, targetType);
+        case MAP:
+          return resolveMap(sourceSchema, targetSchema, targetType);
+        case RECORD:
+          return resolveRecord(sourceSchema, targetSchema, targetType);
+      }
+      return resolveSimpleType(sourceType, targetSchemaType, targetType);
+    }
+
+    private ValueReader resolveSimpleType(Schema.Type sourceType, Schema.Type targetType,
+                                          TypeToken<?> targetTypeToken) throws IOException {
+      Class<?> targetClass = targetTypeToken.getRawType();
+      switch (sourceType) {
+        case BOOLEAN:
+          switch (targetType) {
+            case BOOLEAN:
+              return SimpleReader.BOOLEAN;
+            case STRING:
+              return SimpleReader.BOOLEAN_TO_STRING;
+          }
+          break;
+        case INT:
+          switch (targetType) {
+            case INT:
+              if (targetClass.equals(byte.class) || targetClass.equals(Byte.class)) {
+                return SimpleReader.INT_TO_BYTE;
+              }
+              if (targetClass.equals(char.class) || targetClass.equals(Character.class)) {
+                return SimpleReader.INT_TO_CHAR;
+              }
+              if (targetClass.equals(short.class) || targetClass.equals(Short.class)) {
+                return SimpleReader.INT_TO_SHORT;
+              }
+              return SimpleReader.INT;
+            case LONG:
+              return SimpleReader.INT_TO_LONG;
+            case FLOAT:
+              return SimpleReader.INT_TO_FLOAT;
+            case DOUBLE:
+              return SimpleReader.INT_TO_DOUBLE;
+            case STRING:
+              return SimpleReader.INT_TO_STRING;
+          }
+          break;
+        case LONG:
+          switch (targetType) {
+            case LONG:
+              return SimpleReader.LONG;
+            case FLOAT:
+              return SimpleReader.LONG_TO_FLOAT;
+            case DOUBLE:
+              return SimpleReader.LONG_TO_DOUBLE;
+            case STRING:
+              return SimpleReader.LONG_TO_STRING;
+          }
+          break;
+        case FLOAT:
+          switch (targetType) {
+            case FLOAT:
+              return SimpleReader.FLOAT;
+            case DOUBLE:
+              return SimpleReader.FLOAT_TO_DOUBLE;
+            case STRING:
+              return SimpleReader.FLOAT_TO_STRING;
+          }
+          break;
+        case DOUBLE:
+          switch (targetType) {
+            case DOUBLE:
+              return SimpleReader.DOUBLE;
+            case STRING:
+              return SimpleReader.DOUBLE_TO_STRING;
+          }
+          break;
+        case STRING:
+          if (targetType == Schema.Type.STRING) {
+            if (targetClass.equals(URI.class)) {
+              return SimpleReader.STRING_TO_URI;
+            }
+            if (targetClass.equals(URL.class)) {
+              return SimpleReader.STRING_TO_URL;
+            }
+            return SimpleReader.STRING;
+          }
+          break;
+      }
+      throw new IOException("Fail to resolve type " + sourceType + " to type " + targetType);
+    }
+
+    private ValueReader resolveEnum(Schema sourceSchema, Schema targetSchema,
+                                    TypeToken<?> targetType) throws IOException {
+      List<String> sourceValues = Lists.newArrayList();
+      List<Object> targetValues = Lists.newArrayList();
+      for (int idx = 0; idx < sourceSchema.getEnumValues().size(); idx++) {
+        String enumValue = sourceSchema.getEnumValue(idx);
+        sourceValues.add(enumValue);
+        if (!targetSchema.getEnumValues().contains(enumValue)) {
+          // Only fails when the value is being read
+          targetValues.add(null);
+          continue;
+        }
+        try {
+          targetValues.add(targetType.getRawType().getMethod("valueOf", String.class).invoke(null, enumValue));
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+      }
+      return new EnumReader(sourceValues.toArray(new String[sourceValues.size()]), targetValues.toArray());
+    }
+
+    private ValueReader resolveArray(Schema sourceSchema, Schema targetSchema,
+                                     TypeToken<?> targetType) throws IOException {
+      TypeToken<?> componentType = null;
+      if (targetType.isArray()) {
+        componentType = targetType.getComponentType();
+      } else if (Collection.class.isAssignableFrom(targetType.getRawType())) {
+        Type type = targetType.getType();
+        check(type instanceof ParameterizedType, "Only parameterized type is supported for collection.");
+        componentType = TypeToken.of(((ParameterizedType) type).getActualTypeArguments()[0]);
+      }
+      check(componentType != null, "Only array or collection type is support for array value.");
+
+      ValueReader componentReader = resolve(sourceSchema.getComponentSchema(),
+                                            targetSchema.getComponentSchema(), componentType);
+      if (targetType.isArray()) {
+        return new ArrayReader(componentType.getRawType(), componentReader);
+      }
+      return new CollectionReader(instantiatorFactory.get(targetType), componentReader);
+    }
+
+    private ValueReader resolveMap(Schema sourceSchema, Schema targetSchema,
+                                   TypeToken<?> targetType) throws IOException {
+      check(Map.class.isAssignableFrom(targetType.getRawType()), "Only map type is supported for map data.");
+      Type type = targetType.getType();
+      check(type instanceof ParameterizedType, "Only parameterized map is supported.");
+      Type[] typeArgs = ((ParameterizedType) type).getActualTypeArguments();
+
+      Map.Entry<Schema, Schema> sourceEntry = sourceSchema.getMapSchema();
+      Map.Entry<Schema, Schema> targetEntry = targetSchema.getMapSchema();
+      return new MapReader(instantiatorFactory.get(targetType),
+                           resolve(sourceEntry.getKey(), targetEntry.getKey(), TypeToken.of(typeArgs[0])),
+                           resolve(sourceEntry.getValue(), targetEntry.getValue(), TypeToken.of(typeArgs[1])));
+    }
+
+    private ValueReader resolveUnion(Schema sourceSchema, Schema targetSchema, TypeToken<?> targetType) {
+      List<Schema> sourceSchemas = sourceSchema.getUnionSchemas();
+      ValueReader[] readers = new ValueReader[sourceSchemas.size()];
+      for (int idx = 0; idx < readers.length; idx++) {
+        Schema sourceValueSchema = sourceSchemas.get(idx);
+        ValueReader reader = null;
+
+        if (targetSchema.getType() == Schema.Type.UNION) {
+          // Try the target schema of the same index first before resorting to linearly try the union schema.
+          Schema targetValueSchema = idx < targetSchema.getUnionSchemas().size()
+            ? targetSchema.getUnionSchema(idx) : null;
+          if (targetValueSchema != null && targetValueSchema.getType() == sourceValueSchema.getType()) {
+            reader = resolveOrNull(sourceValueSchema, targetValueSchema, targetType);
+          }
+          for (int i = 0; reader == null && i < targetSchema.getUnionSchemas().size(); i++) {
+            reader = resolveOrNull(sourceValueSchema, targetSchema.getUnionSchema(i), targetType);
+          }
+          if (reader == null) {
+            reader = new FailureReader(String.format("Fail to resolve %s to %s", sourceSchema, targetSchema));
+          }
+        } else {
+          reader = resolveOrFail(sourceValueSchema, targetSchema, targetType);
+        }
+        readers[idx] = reader;
+      }
+      return new UnionReader(readers);
+    }
+
+    private ValueReader resolveOrNull(Schema sourceSchema, Schema targetSchema, TypeToken<?> targetType) {
+      try {
+        return resolve(sourceSchema, targetSchema, targetType);
+      } catch (IOException e) {
+        return null;
+      }
+    }
+
+    private ValueReader resolveRecord(Schema sourceSchema, Schema targetSchema,
+                                      TypeToken<?> targetType) throws IOException {
+      ResolveKey key = new ResolveKey(sourceSchema, targetSchema, targetType);
+      DelegateReader reader = resolving.get(key);
+      if (reader != null) {
+        // Recursive record, the reader will be available when the resolution of the outer record completed.
+        return reader;
+      }
+
+      reader = new DelegateReader();
+      resolving.put(key, reader);
+      try {
+        List<FieldReader> fieldReaders = Lists.newArrayList();
+        for (Schema.Field sourceField : sourceSchema.getFields()) {
+          Schema.Field targetField = targetSchema.getField(sourceField.getName());
+          if (targetField == null) {
+            fieldReaders.add(new SkipFieldReader(sourceField.getSchema()));
+            continue;
+          }
+          fieldReaders.add(resolveField(sourceField, targetField, targetType));
+        }
+        reader.delegate = new RecordReader(instantiatorFactory.get(targetType),
+                                           fieldReaders.toArray(new FieldReader[fieldReaders.size()]));
+        return reader;
+      } finally {
+        resolving.remove(key);
+      }
+    }
+
+    private FieldReader resolveField(Schema.Field sourceField, Schema.Field targetField,
+                                     TypeToken<?> targetType) throws IOException {
+      FieldAccessor fieldAccessor;
+      TypeToken<?> fieldType;
+      try {
+        Field field = Fields.findField(targetType.getType(), sourceField.getName());
+        fieldType = targetType.resolveType(field.getGenericType());
+        fieldAccessor = fieldAccessorFactory.getFieldAccessor(targetType, sourceField.getName());
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+
+      ValueReader valueReader = resolve(sourceField.getSchema(), targetField.getSchema(), fieldType);
+      Class<?> fieldClass = fieldType.getRawType();
+      if (valueReader == SimpleReader.BOOLEAN && fieldClass.equals(boolean.class)) {
+        return new BooleanFieldReader(fieldAccessor);
+      }
+      if (valueReader == SimpleReader.INT && fieldClass.equals(int.class)) {
+        return new IntFieldReader(fieldAccessor);
+      }
+      if (valueReader == SimpleReader.LONG && fieldClass.equals(long.class)) {
+        return new LongFieldReader(fieldAccessor);
+      }
+      if (valueReader == SimpleReader.FLOAT && fieldClass.equals(float.class)) {
+        return new FloatFieldReader(fieldAccessor);
+      }
+      if (valueReader == SimpleReader.DOUBLE && fieldClass.equals(double.class)) {
+        return new DoubleFieldReader(fieldAccessor);
+      }
+      return new ObjectFieldReader(fieldAccessor, valueReader);
+    }
+
+    private void check(boolean condition, String message, Object... objs) throws IOException {
+      if (!condition) {
+        throw new IOException(String.format(message, objs));
+      }
+    }
+  }
+
+  /**
+   * Key for identifying a record resolution. Schemas are compared by identity, as recursive record schemas
+   * refer to the same schema instance.
+   */
+  private static final class ResolveKey {
+    private final Schema sourceSchema;
+    private final Schema targetSchema;
+    private final TypeToken<?> targetType;
+
+    private ResolveKey(Schema sourceSchema, Schema targetSchema, TypeToken<?> targetType) {
+      this.sourceSchema = sourceSchema;
+      this.targetSchema = targetSchema;
+      this.targetType = targetType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ResolveKey other = (ResolveKey) o;
+      return sourceSchema == other.sourceSchema && targetSchema == other.targetSchema
+        && targetType.equals(other.targetType);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = System.identityHashCode(sourceSchema);
+      result = 31 * result + System.identityHashCode(targetSchema);
+      return 31 * result + targetType.hashCode();
+    }
+  }
+
+  /**
+   * {@link ValueReader} for simple types, including conversions between them.
+   */
+  private enum SimpleReader implements ValueReader {
+    NULL {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return decoder.readNull();
+      }
+    },
+    BOOLEAN {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return decoder.readBool();
+      }
+    },
+    BOOLEAN_TO_STRING {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return String.valueOf(decoder.readBool());
+      }
+    },
+    INT {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return decoder.readInt();
+      }
+    },
+    INT_TO_BYTE {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return (byte) decoder.readInt();
+      }
+    },
+    INT_TO_CHAR {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return (char) decoder.readInt();
+      }
+    },
+    INT_TO_SHORT {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return (short) decoder.readInt();
+      }
+    },
+    INT_TO_LONG {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return (long) decoder.readInt();
+      }
+    },
+    INT_TO_FLOAT {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return (float) decoder.readInt();
+      }
+    },
+    INT_TO_DOUBLE {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return (double) decoder.readInt();
+      }
+    },
+    INT_TO_STRING {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return String.valueOf(decoder.readInt());
+      }
+    },
+    LONG {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return decoder.readLong();
+      }
+    },
+    LONG_TO_FLOAT {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return (float) decoder.readLong();
+      }
+    },
+    LONG_TO_DOUBLE {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return (double) decoder.readLong();
+      }
+    },
+    LONG_TO_STRING {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return String.valueOf(decoder.readLong());
+      }
+    },
+    FLOAT {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return decoder.readFloat();
+      }
+    },
+    FLOAT_TO_DOUBLE {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return (double) decoder.readFloat();
+      }
+    },
+    FLOAT_TO_STRING {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return String.valueOf(decoder.readFloat());
+      }
+    },
+    DOUBLE {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return decoder.readDouble();
+      }
+    },
+    DOUBLE_TO_STRING {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return String.valueOf(decoder.readDouble());
+      }
+    },
+    STRING {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return decoder.readString();
+      }
+    },
+    STRING_TO_URI {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return URI.create(decoder.readString());
+      }
+    },
+    STRING_TO_URL {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return new URL(decoder.readString());
+      }
+    },
+    BYTES {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return decoder.readBytes();
+      }
+    },
+    BYTES_TO_BYTE_ARRAY {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        ByteBuffer buffer = decoder.readBytes();
+        if (buffer.hasArray()) {
+          byte[] array = buffer.array();
+          if (buffer.remaining() == array.length) {
+            return array;
+          }
+          byte[] bytes = new byte[buffer.remaining()];
+          System.arraycopy(array, buffer.arrayOffset() + buffer.position(), bytes, 0, buffer.remaining());
+          return bytes;
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+      }
+    },
+    BYTES_TO_UUID {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        ByteBuffer buffer = decoder.readBytes();
+        if (buffer.remaining() == Longs.BYTES * 2) {
+          return new UUID(buffer.getLong(), buffer.getLong());
+        }
+        return buffer;
+      }
+    }
+  }
+
+  /**
+   * {@link ValueReader} that always fails, for schemas that cannot be resolved.
+   */
+  private static final class FailureReader implements ValueReader {
+    private final String message;
+
+    private FailureReader(String message) {
+      this.message = message;
+    }
+
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      throw new IOException(message);
+    }
+  }
+
+  /**
+   * {@link ValueReader} that delegates to another reader, for resolving recursive records.
+   */
+  private static final class DelegateReader implements ValueReader {
+    private ValueReader delegate;
+
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      return delegate.read(decoder);
+    }
+  }
+
+  /**
+   * {@link ValueReader} for enum.
+   */
+  private static final class EnumReader implements ValueReader {
+    private final String[] sourceValues;
+    // Target enum value for each source enum index, or null if the value is missing in the target.
+    private final Object[] targetValues;
+
+    private EnumReader(String[] sourceValues, Object[] targetValues) {
+      this.sourceValues = sourceValues;
+      this.targetValues = targetValues;
+    }
+
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      int idx = decoder.readInt();
+      if (idx < 0 || idx >= targetValues.length) {
+        throw new IOException("Invalid enum index " + idx);
+      }
+      Object value = targetValues[idx];
+      if (value == null) {
+        throw new IOException(String.format("Enum value '%s' missing in target.", sourceValues[idx]));
+      }
+      return value;
+    }
+  }
+
+  /**
+   * {@link ValueReader} for reading array data into {@link Collection}.
+   */
+  private static final class CollectionReader implements ValueReader {
+    private final Instantiator<?> instantiator;
+    private final ValueReader componentReader;
+
+    private CollectionReader(Instantiator<?> instantiator, ValueReader componentReader) {
+      this.instantiator = instantiator;
+      this.componentReader = componentReader;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      Collection<Object> collection = (Collection<Object>) instantiator.create();
+      int len = decoder.readInt();
+      while (len != 0) {
+        for (int i = 0; i < len; i++) {
+          collection.add(componentReader.read(decoder));
+        }
+        len = decoder.readInt();
+      }
+      return collection;
+    }
+  }
+
+  /**
+   * {@link ValueReader} for reading array data into java array.
+   */
+  private static final class ArrayReader implements ValueReader {
+    private final Class<?> componentType;
+    private final ValueReader componentReader;
+
+    private ArrayReader(Class<?> componentType, ValueReader componentReader) {
+      this.componentType = componentType;
+      this.componentReader = componentReader;
+    }
+
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      List<Object> values = Lists.newArrayList();
+      int len = decoder.readInt();
+      while (len != 0) {
+        for (int i = 0; i < len; i++) {
+          values.add(componentReader.read(decoder));
+        }
+        len = decoder.readInt();
+      }
+
+      Object array = Array.newInstance(componentType, values.size());
+      for (int i = 0; i < values.size(); i++) {
+        Array.set(array, i, values.get(i));
+      }
+      return array;
+    }
+  }
+
+  /**
+   * {@link ValueReader} for map.
+   */
+  private static final class MapReader implements ValueReader {
+    private final Instantiator<?> instantiator;
+    private final ValueReader keyReader;
+    private final ValueReader valueReader;
+
+    private MapReader(Instantiator<?> instantiator, ValueReader keyReader, ValueReader valueReader) {
+      this.instantiator = instantiator;
+      this.keyReader = keyReader;
+      this.valueReader = valueReader;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      Map<Object, Object> map = (Map<Object, Object>) instantiator.create();
+      int len = decoder.readInt();
+      while (len != 0) {
+        for (int i = 0; i < len; i++) {
+          Object key = keyReader.read(decoder);
+          map.put(key, valueReader.read(decoder));
+        }
+        len = decoder.readInt();
+      }
+      return map;
+    }
+  }
+
+  /**
+   * {@link ValueReader} for union.
+   */
+  private static final class UnionReader implements ValueReader {
+    private final ValueReader[] readers;
+
+    private UnionReader(ValueReader[] readers) {
+      this.readers = readers;
+    }
+
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      int idx = decoder.readInt();
+      if (idx < 0 || idx >= readers.length) {
+        throw new IOException("Invalid union index " + idx);
+      }
+      return readers[idx].read(decoder);
+    }
+  }
+
+  /**
+   * {@link ValueReader} for record.
+   */
+  private static final class RecordReader implements ValueReader {
+    private final Instantiator<?> instantiator;
+    private final FieldReader[] fieldReaders;
+
+    private RecordReader(Instantiator<?> instantiator, FieldReader[] fieldReaders) {
+      this.instantiator = instantiator;
+      this.fieldReaders = fieldReaders;
+    }
+
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      try {
+        Object record = instantiator.create();
+        for (FieldReader fieldReader : fieldReaders) {
+          fieldReader.read(decoder, record);
+        }
+        return record;
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+    }
+  }
+
+  /**
+   * {@link FieldReader} that skips a field that is not in the target schema.
+   */
+  private static final class SkipFieldReader implements FieldReader {
+    private final Schema schema;
+
+    private SkipFieldReader(Schema schema) {
+      this.schema = schema;
+    }
+
+    @Override
+    public void read(Decoder decoder, Object record) throws IOException {
+      skip(decoder, schema);
+    }
+
+    private void skip(Decoder decoder, Schema schema) throws IOException {
+      switch (schema.getType()) {
+        case NULL:
+          break;
+        case BOOLEAN:
+          decoder.readBool();
+          break;
+        case INT:
+        case ENUM:
+          decoder.readInt();
+          break;
+        case LONG:
+          decoder.readLong();
+          break;
+        case FLOAT:
+          decoder.skipFloat();
+          break;
+        case DOUBLE:
+          decoder.skipDouble();
+          break;
+        case BYTES:
+          decoder.skipBytes();
+          break;
+        case STRING:
+          decoder.skipString();
+          break;
+        case ARRAY:
+          for (int len = decoder.readInt(); len != 0; len = decoder.readInt()) {
+            for (int i = 0; i < len; i++) {
+              skip(decoder, schema.getComponentSchema());
+            }
+          }
+          break;
+        case MAP:
+          Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+          for (int len = decoder.readInt(); len != 0; len = decoder.readInt()) {
+            for (int i = 0; i < len; i++) {
+              skip(decoder, mapSchema.getKey());
+              skip(decoder, mapSchema.getValue());
+            }
+          }
+          break;
+        case RECORD:
+          for (Schema.Field field : schema.getFields()) {
+            skip(decoder, field.getSchema());
+          }
+          break;
+        case UNION:
+          skip(decoder, schema.getUnionSchema(decoder.readInt()));
+          break;
+      }
+    }
+  }
+
+  /**
+   * {@link FieldReader} that sets the field with the value returned by a {@link ValueReader}.
+   */
+  private static final class ObjectFieldReader implements FieldReader {
+    private final FieldAccessor fieldAccessor;
+    private final ValueReader valueReader;
+
+    private ObjectFieldReader(FieldAccessor fieldAccessor, ValueReader valueReader) {
+      this.fieldAccessor = fieldAccessor;
+      this.valueReader = valueReader;
+    }
+
+    @Override
+    public void read(Decoder decoder, Object record) throws IOException {
+      fieldAccessor.set(record, valueReader.read(decoder));
+    }
+  }
+
+  /**
+   * {@link FieldReader} for {@code boolean} field.
+   */
+  private static final class BooleanFieldReader implements FieldReader {
+    private final FieldAccessor fieldAccessor;
+
+    private BooleanFieldReader(FieldAccessor fieldAccessor) {
+      this.fieldAccessor = fieldAccessor;
+    }
+
+    @Override
+    public void read(Decoder decoder, Object record) throws IOException {
+      fieldAccessor.setBoolean(record, decoder.readBool());
+    }
+  }
+
+  /**
+   * {@link FieldReader} for {@code int} field.
+   */
+  private static final class IntFieldReader implements FieldReader {
+    private final FieldAccessor fieldAccessor;
+
+    private IntFieldReader(FieldAccessor fieldAccessor) {
+      this.fieldAccessor = fieldAccessor;
+    }
+
+    @Override
+    public void read(Decoder decoder, Object record) throws IOException {
+      fieldAccessor.setInt(record, decoder.readInt());
+    }
+  }
+
+  /**
+   * {@link FieldReader} for {@code long} field.
+   */
+  private static final class LongFieldReader implements FieldReader {
+    private final FieldAccessor fieldAccessor;
+
+    private LongFieldReader(FieldAccessor fieldAccessor) {
+      this.fieldAccessor = fieldAccessor;
+    }
+
+    @Override
+    public void read(Decoder decoder, Object record) throws IOException {
+      fieldAccessor.setLong(record, decoder.readLong());
+    }
+  }
+
+  /**
+   * {@link FieldReader} for {@code float} field.
+   */
+  private static final class FloatFieldReader implements FieldReader {
+    private final FieldAccessor fieldAccessor;
+
+    private FloatFieldReader(FieldAccessor fieldAccessor) {
+      this.fieldAccessor = fieldAccessor;
+    }
+
+    @Override
+    public void read(Decoder decoder, Object record) throws IOException {
+      fieldAccessor.setFloat(record, decoder.readFloat());
+    }
+  }
+
+  /**
+   * {@link FieldReader} for {@code double} field.
+   */
+  private static final class DoubleFieldReader implements FieldReader {
+    private final FieldAccessor fieldAccessor;
+
+    private DoubleFieldReader(FieldAccessor fieldAccessor) {
+      this.fieldAccessor = fieldAccessor;
+    }
+
+    @Override
+    public void read(Decoder decoder, Object record) throws IOException {
+      fieldAccessor.setDouble(record, decoder.readDouble());
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.lang.jar;
+
+import co.cask.cdap.common.io.Locations;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Unit tests for {@link UnpackedJarCache}.
+ */
+public class UnpackedJarCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testShared() throws IOException {
+    UnpackedJarCache cache = new UnpackedJarCache(TEMP_FOLDER.newFolder(), Long.MAX_VALUE);
+
+    Location jar1 = createJar("test1.jar", "content");
+    // A copy of the same jar at a different location
+    Location jar2 = createJar("test2.jar", "content");
+    Location jar3 = createJar("test3.jar", "other");
+
+    try (
+      UnpackedJarCache.UnpackedJar unpacked1 = cache.acquire(jar1);
+      UnpackedJarCache.UnpackedJar unpacked2 = cache.acquire(jar2);
+      UnpackedJarCache.UnpackedJar unpacked3 = cache.acquire(jar3)
+    ) {
+      Assert.assertEquals(unpacked1.getDirectory(), unpacked2.getDirectory());
+      Assert.assertNotEquals(unpacked1.getDirectory(), unpacked3.getDirectory());
+      Assert.assertEquals("content", Files.toString(new File(unpacked1.getDirectory(), "file"), Charsets.UTF_8));
+      Assert.assertEquals("other", Files.toString(new File(unpacked3.getDirectory(), "file"), Charsets.UTF_8));
+    }
+
+    // Acquire again after release would reuse the expanded jar
+    try (UnpackedJarCache.UnpackedJar unpacked = cache.acquire(jar1)) {
+      Assert.assertTrue(unpacked.getDirectory().isDirectory());
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    // A cache without any space can only keep the jars in use
+    UnpackedJarCache cache = new UnpackedJarCache(TEMP_FOLDER.newFolder(), 0L);
+
+    Location jar1 = createJar("evict1.jar", "first");
+    Location jar2 = createJar("evict2.jar", "second");
+
+    UnpackedJarCache.UnpackedJar unpacked1 = cache.acquire(jar1);
+    File dir1 = unpacked1.getDirectory();
+    File dir2;
+    try (UnpackedJarCache.UnpackedJar unpacked2 = cache.acquire(jar2)) {
+      dir2 = unpacked2.getDirectory();
+      // Both are in use, hence nothing can be removed
+      Assert.assertTrue(dir1.isDirectory());
+      Assert.assertTrue(dir2.isDirectory());
+    }
+    Assert.assertFalse(dir2.exists());
+    Assert.assertTrue(dir1.isDirectory());
+
+    // Closing multiple times has no effect on the other users of the same jar
+    try (UnpackedJarCache.UnpackedJar unpacked = cache.acquire(jar1)) {
+      unpacked1.close();
+      unpacked1.close();
+      Assert.assertTrue(unpacked.getDirectory().isDirectory());
+    }
+    Assert.assertFalse(dir1.exists());
+
+    // An evicted jar is expanded again when needed
+    try (UnpackedJarCache.UnpackedJar unpacked = cache.acquire(jar2)) {
+      Assert.assertEquals("second", Files.toString(new File(unpacked.getDirectory(), "file"), Charsets.UTF_8));
+    }
+  }
+
+  private Location createJar(String name, String content) throws IOException {
+    File jarFile = new File(TEMP_FOLDER.newFolder(), name);
+    try (JarOutputStream output = new JarOutputStream(new FileOutputStream(jarFile))) {
+      JarEntry entry = new JarEntry("file");
+      // Use a fixed time so that jars with the same content are identical
+      entry.setTime(0L);
+      output.putNextEntry(entry);
+      output.write(content.getBytes(Charsets.UTF_8));
+      output.closeEntry();
+    }
+    return Locations.toLocation(jarFile);
+  }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.DatumWriter;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the {@link DatumReader} created by {@link ASMDatumReaderFactory}.
+ */
+public class ASMDatumReaderFactoryTest {
+
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY
+    = new ASMDatumReaderFactory(new ASMFieldAccessorFactory());
+
+  /**
+   *
+   */
+  public enum TestEnum {
+    VALUE1, VALUE2, VALUE3
+  }
+
+  /**
+   *
+   */
+  public static final class Record {
+    private int i;
+    private long l;
+    private boolean b;
+    private double d;
+    private String s;
+    private byte[] bytes;
+    private UUID uuid;
+    private TestEnum e;
+    private List<String> list;
+    private Map<String, Inner> map;
+    private Inner[] inners;
+    private Inner nullInner;
+
+    Record(int i, String s, TestEnum e, List<String> list, Map<String, Inner> map, Inner[] inners) {
+      this.i = i;
+      this.l = i * 1000L;
+      this.b = i % 2 == 0;
+      this.d = i / 3.0d;
+      this.s = s;
+      this.bytes = s.getBytes(Charsets.UTF_8);
+      this.uuid = UUID.randomUUID();
+      this.e = e;
+      this.list = list;
+      this.map = map;
+      this.inners = inners;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Record other = (Record) o;
+      return i == other.i && l == other.l && b == other.b && d == other.d && s.equals(other.s)
+        && Arrays.equals(bytes, other.bytes) && uuid.equals(other.uuid) && e == other.e
+        && list.equals(other.list) && map.equals(other.map) && Arrays.equals(inners, other.inners)
+        && Objects.equal(nullInner, other.nullInner);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(i, s, e, list, map);
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class Inner {
+    private short value;
+    private URI uri;
+
+    Inner(short value, URI uri) {
+      this.value = value;
+      this.uri = uri;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Inner other = (Inner) o;
+      return value == other.value && uri.equals(other.uri);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(value, uri);
+    }
+  }
+
+  /**
+   * Projection of {@link Record} with fields removed, added and promoted.
+   */
+  public static final class ProjectedRecord {
+    private long i;
+    private double l;
+    private String d;
+    private Set<String> list;
+    private Map<String, Inner> map;
+    private List<Inner> inners;
+    private String added;
+  }
+
+  /**
+   *
+   */
+  public static final class Node {
+    private int data;
+    private Node left;
+    private Node right;
+
+    Node(int data, Node left, Node right) {
+      this.data = data;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Node node = (Node) o;
+      return data == node.data && Objects.equal(left, node.left) && Objects.equal(right, node.right);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(data, left, right);
+    }
+  }
+
+  @Test
+  public void testRecord() throws Exception {
+    TypeToken<Record> type = TypeToken.of(Record.class);
+    Schema schema = getSchema(type);
+    Record record = createRecord(10);
+
+    byte[] bytes = encode(record, schema);
+    DatumReader<Record> reader = DATUM_READER_FACTORY.create(type, schema);
+    Assert.assertEquals(record, reader.read(decoder(bytes), schema));
+
+    // The reader is reusable, and should read the same as the reflection reader
+    Assert.assertEquals(new ReflectionDatumReader<>(schema, type).read(decoder(bytes), schema),
+                        reader.read(decoder(bytes), schema));
+
+    // Readers are cached
+    Assert.assertSame(reader, DATUM_READER_FACTORY.create(type, schema));
+  }
+
+  @Test
+  public void testProjection() throws Exception {
+    Schema sourceSchema = getSchema(TypeToken.of(Record.class));
+    TypeToken<ProjectedRecord> type = TypeToken.of(ProjectedRecord.class);
+    Schema targetSchema = getSchema(type);
+
+    Record record = createRecord(7);
+    ProjectedRecord projected = DATUM_READER_FACTORY.create(type, targetSchema)
+      .read(decoder(encode(record, sourceSchema)), sourceSchema);
+
+    Assert.assertEquals(7L, projected.i);
+    Assert.assertEquals(7000d, projected.l, 0d);
+    Assert.assertEquals(String.valueOf(record.d), projected.d);
+    Assert.assertEquals(ImmutableSet.copyOf(record.list), projected.list);
+    Assert.assertEquals(record.map, projected.map);
+    Assert.assertEquals(ImmutableList.copyOf(record.inners), projected.inners);
+    Assert.assertNull(projected.added);
+  }
+
+  @Test
+  public void testTree() throws Exception {
+    TypeToken<Node> type = TypeToken.of(Node.class);
+    Schema schema = getSchema(type);
+    Node root = new Node(1, new Node(2, null, new Node(3, null, null)), new Node(4, new Node(5, null, null), null));
+
+    Assert.assertEquals(root, DATUM_READER_FACTORY.create(type, schema).read(decoder(encode(root, schema)), schema));
+  }
+
+  @Test
+  public void testStreamEvent() throws Exception {
+    TypeToken<StreamEvent> type = TypeToken.of(StreamEvent.class);
+    Schema schema = getSchema(type);
+    StreamEvent event = new StreamEvent(ImmutableMap.of("key", "value"),
+                                        ByteBuffer.wrap("Testing message".getBytes(Charsets.UTF_8)));
+
+    StreamEvent value = DATUM_READER_FACTORY.create(type, schema).read(decoder(encode(event, schema)), schema);
+    Assert.assertEquals(event.getHeaders(), value.getHeaders());
+    Assert.assertEquals(event.getBody(), value.getBody());
+  }
+
+  @Test
+  public void testUnion() throws Exception {
+    // Nullable int read as nullable string
+    Schema sourceSchema = Schema.nullableOf(Schema.of(Schema.Type.INT));
+    Schema targetSchema = Schema.unionOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.NULL));
+    DatumReader<String> reader = DATUM_READER_FACTORY.create(TypeToken.of(String.class), targetSchema);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = new BinaryEncoder(os);
+    encoder.writeInt(0).writeInt(10);
+    encoder.writeInt(1).writeNull();
+
+    BinaryDecoder decoder = decoder(os.toByteArray());
+    Assert.assertEquals("10", reader.read(decoder, sourceSchema));
+    Assert.assertNull(reader.read(decoder, sourceSchema));
+  }
+
+  @Test
+  public void testEnumProjection() throws Exception {
+    Schema sourceSchema = Schema.enumWith("VALUE1", "VALUE2", "VALUE3", "VALUE4");
+    TypeToken<TestEnum> type = TypeToken.of(TestEnum.class);
+    DatumReader<TestEnum> reader = DATUM_READER_FACTORY.create(type, getSchema(type));
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new BinaryEncoder(os).writeInt(2).writeInt(3);
+
+    BinaryDecoder decoder = decoder(os.toByteArray());
+    Assert.assertEquals(TestEnum.VALUE3, reader.read(decoder, sourceSchema));
+    try {
+      reader.read(decoder, sourceSchema);
+      Assert.fail("Expected failure for enum value missing in target");
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testIncompatible() throws Exception {
+    Schema sourceSchema = Schema.of(Schema.Type.STRING);
+    DatumReader<Integer> reader = DATUM_READER_FACTORY.create(TypeToken.of(Integer.class),
+                                                              Schema.of(Schema.Type.INT));
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new BinaryEncoder(os).writeString("10");
+    reader.read(decoder(os.toByteArray()), sourceSchema);
+  }
+
+  @Ignore
+  @Test
+  public void testSpeed() throws Exception {
+    TypeToken<Record> type = TypeToken.of(Record.class);
+    Schema schema = getSchema(type);
+    byte[] bytes = encode(createRecord(10), schema);
+
+    DatumReader<Record> asmReader = DATUM_READER_FACTORY.create(type, schema);
+    DatumReader<Record> reflectionReader = new ReflectionDatumReader<>(schema, type);
+
+    for (int round = 0; round < 2; round++) {
+      long startTime = System.nanoTime();
+      for (int i = 0; i < 100000; i++) {
+        asmReader.read(decoder(bytes), schema);
+      }
+      long endTime = System.nanoTime();
+      System.out.println("ASM reader time spent: "
+                           + TimeUnit.MILLISECONDS.convert(endTime - startTime, TimeUnit.NANOSECONDS));
+
+      startTime = System.nanoTime();
+      for (int i = 0; i < 100000; i++) {
+        reflectionReader.read(decoder(bytes), schema);
+      }
+      endTime = System.nanoTime();
+      System.out.println("Reflection reader time spent: "
+                           + TimeUnit.MILLISECONDS.convert(endTime - startTime, TimeUnit.NANOSECONDS));
+    }
+  }
+
+  private Record createRecord(int i) {
+    return new Record(i, "record" + i, TestEnum.VALUE2, ImmutableList.of("a", "b", "c"),
+                      ImmutableMap.of("k1", createInner(1), "k2", createInner(2)),
+                      new Inner[] { createInner(3), createInner(4) });
+  }
+
+  private Inner createInner(int i) {
+    return new Inner((short) i, URI.create("http://cdap.io/" + i));
+  }
+
+  private <T> Schema getSchema(TypeToken<T> type) throws UnsupportedTypeException {
+    return new ReflectionSchemaGenerator().generate(type.getType());
+  }
+
+  private <T> byte[] encode(T value, Schema schema) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DatumWriter<T> writer = new ReflectionDatumWriter<>(schema);
+    writer.encode(value, new BinaryEncoder(os));
+    return os.toByteArray();
+  }
+
+  private BinaryDecoder decoder(byte[] bytes) {
+    return new BinaryDecoder(new ByteArrayInputStream(bytes));
+  }
+}
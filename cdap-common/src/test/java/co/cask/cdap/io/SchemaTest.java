@@ -362,9 +362,30 @@ public class SchemaTest {
       Schema restoredSchema = (Schema) ois.readObject();
       Assert.assertEquals(schema, restoredSchema);
       Assert.assertEquals(schemaString, restoredSchema.toString());
+      // The field indexes are not serialized, but computed again
+      Assert.assertEquals(10, restoredSchema.getFieldIndex("union"));
     }
   }
 
+  @Test
+  public void testFieldIndex() {
+    Schema schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("a", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("b", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("c", Schema.nullableOf(Schema.of(Schema.Type.LONG)))
+    );
+
+    for (int i = 0; i < schema.getFields().size(); i++) {
+      Assert.assertEquals(i, schema.getFieldIndex(schema.getFields().get(i).getName()));
+    }
+    Assert.assertEquals(-1, schema.getFieldIndex("d"));
+
+    // Non record schema has no fields
+    Assert.assertEquals(-1, Schema.of(Schema.Type.STRING).getFieldIndex("a"));
+    Assert.assertEquals(-1, Schema.arrayOf(schema).getFieldIndex("a"));
+  }
+
   private void verifyThrowsException(String toParse) {
     try {
       Schema.parseSQL(toParse);
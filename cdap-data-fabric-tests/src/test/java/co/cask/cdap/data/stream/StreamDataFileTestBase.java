@@ -993,6 +993,77 @@ public abstract class StreamDataFileTestBase {
     reader.close();
   }
 
+  /**
+   * This unit test is to test the v3 file format that compresses data blocks.
+   */
+  @Test
+  public void testCompressedDataBlocks() throws IOException, InterruptedException {
+    for (String codec : ImmutableList.of(StreamDataFileConstants.Property.Value.CODEC_DEFLATE,
+                                         StreamDataFileConstants.Property.Value.CODEC_SNAPPY)) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+
+      StreamDataFileWriter writer = new StreamDataFileWriter(
+        Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10L,
+        ImmutableMap.of(StreamDataFileConstants.Property.Key.CODEC, codec));
+
+      // Write 1000 compressible events, with 10 events per timestamp
+      List<String> bodies = Lists.newArrayList();
+      for (int i = 0; i < 1000; i++) {
+        String body = "{\"user\":\"user" + (i % 7) + "\",\"action\":\"click\",\"seq\":" + i + "}";
+        writer.append(StreamFileTestUtils.createEvent(i / 10, body));
+        bodies.add(body);
+      }
+      // Write a data block of empty events, which compresses to less bytes than the number of events
+      for (int i = 0; i < 1000; i++) {
+        writer.append(StreamFileTestUtils.createEvent(100, ""));
+        bodies.add("");
+      }
+      writer.close();
+
+      // Read all events
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      Assert.assertEquals(2000, reader.read(events, 2000, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(-1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+
+      long position = 0;
+      for (int i = 0; i < events.size(); i++) {
+        Assert.assertEquals(bodies.get(i), Charsets.UTF_8.decode(events.get(i).getBody()).toString());
+        Assert.assertTrue(events.get(i).getStart() > position);
+        position = events.get(i).getStart();
+      }
+      Assert.assertTrue(position < eventFile.length());
+
+      // Read the events again by seeking to the event positions and to arbitrary offsets
+      Random random = new Random();
+      for (PositionStreamEvent event : ImmutableList.copyOf(events)) {
+        long offset = random.nextBoolean() ? event.getStart() : event.getStart() - random.nextInt(5);
+        reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                       Locations.newInputSupplier(indexFile), offset);
+        List<PositionStreamEvent> result = Lists.newArrayList();
+        Assert.assertEquals(1, reader.read(result, 1, 0, TimeUnit.SECONDS));
+        reader.close();
+
+        PositionStreamEvent expected = offset == event.getStart() ? event : null;
+        if (expected == null) {
+          // Find the first event at or after the offset
+          for (PositionStreamEvent e : events) {
+            if (e.getStart() >= offset) {
+              expected = e;
+              break;
+            }
+          }
+        }
+        Assert.assertNotNull(expected);
+        Assert.assertEquals(expected.getStart(), result.get(0).getStart());
+        Assert.assertEquals(expected.getBody(), result.get(0).getBody());
+      }
+    }
+  }
+
   private FileWriter<StreamEvent> createWriter(StreamConfig config, String prefix) {
     return new TimePartitionedStreamFileWriter(config.getLocation(), config.getPartitionDuration(),
                                                prefix, config.getIndexInterval(), config.getStreamId().toEntityId(),
@@ -136,6 +136,71 @@ public abstract class ConcurrentStreamWriterTestBase {
     streamWriter.close();
   }
 
+  @Test
+  public void testGroupCommit() throws Exception {
+    final String streamName = "testGroupCommit";
+    String namespace = "namespace";
+    Id.Stream streamId = Id.Stream.from(namespace, streamName);
+    // Linger for up to 20ms for a batch of 100 events
+    StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000, 100, 20000L);
+    int threads = 20;
+
+    StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
+    TestMetricsCollectorFactory metricsCollectorFactory = new TestMetricsCollectorFactory();
+    ConcurrentStreamWriter streamWriter = createStreamWriter(streamId, streamAdmin, threads,
+                                                             fileWriterFactory, metricsCollectorFactory);
+
+    final int msgPerThread = 100;
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch completion = new CountDownLatch(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      executor.execute(createWriterTask(streamId, streamWriter, i, msgPerThread, 1, startLatch, completion));
+    }
+    startLatch.countDown();
+    Assert.assertTrue(completion.await(120, TimeUnit.SECONDS));
+
+    // Verify all events are written.
+    Location partitionLocation = streamAdmin.getConfig(streamId).getLocation().list().get(0);
+    Location streamLocation = StreamUtils.createStreamLocation(partitionLocation,
+                                                               fileWriterFactory.getFileNamePrefix(),
+                                                               0, StreamFileType.EVENT);
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(streamLocation));
+    List<StreamEvent> events = Lists.newArrayListWithCapacity(threads * msgPerThread);
+    Assert.assertEquals(threads * msgPerThread, reader.read(events, Integer.MAX_VALUE, 0, TimeUnit.SECONDS));
+    Assert.assertTrue(verifyEvents(threads, msgPerThread, events));
+    reader.close();
+    streamWriter.close();
+    executor.shutdown();
+
+    // Concurrent writes should be committed in batches, with no batch larger than the maximum
+    Assert.assertEquals(threads * msgPerThread, metricsCollectorFactory.committedEvents.get());
+    Assert.assertTrue(metricsCollectorFactory.commits.get() < threads * msgPerThread);
+    Assert.assertTrue(metricsCollectorFactory.maxBatchSize.get() <= 100);
+  }
+
+  @Test(timeout = 60000L)
+  public void testGroupCommitBatchSize() throws Exception {
+    String streamName = "testGroupCommitBatchSize";
+    Id.Stream streamId = Id.Stream.from("namespace", streamName);
+    // Linger for much longer than the test timeout, for a batch of 100 events
+    StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000, 100,
+                                                  TimeUnit.MINUTES.toMicros(10));
+    StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
+    ConcurrentStreamWriter streamWriter = createStreamWriter(streamId, streamAdmin, 1, fileWriterFactory);
+
+    // A single batch of known size that fills the batch is written without lingering
+    List<StreamEventData> events = Lists.newArrayList();
+    for (int i = 0; i < 100; i++) {
+      events.add(new StreamEventData(ImmutableMap.<String, String>of(), Charsets.UTF_8.encode("Message " + i)));
+    }
+    streamWriter.enqueue(streamId, events.iterator(), events.size());
+
+    // So is a batch of unknown size
+    streamWriter.enqueue(streamId, events.subList(0, 10).iterator());
+    streamWriter.close();
+  }
+
   @Test
   public void testConcurrentAppendFile() throws Exception {
     final String streamName = "testConcurrentFile";
@@ -208,11 +273,18 @@ public abstract class ConcurrentStreamWriterTestBase {
   private ConcurrentStreamWriter createStreamWriter(Id.Stream streamId, StreamAdmin streamAdmin,
                                                     int threads, StreamFileWriterFactory writerFactory)
     throws Exception {
+    return createStreamWriter(streamId, streamAdmin, threads, writerFactory, new TestMetricsCollectorFactory());
+  }
+
+  private ConcurrentStreamWriter createStreamWriter(Id.Stream streamId, StreamAdmin streamAdmin,
+                                                    int threads, StreamFileWriterFactory writerFactory,
+                                                    StreamMetricsCollectorFactory metricsCollectorFactory)
+    throws Exception {
     StreamConfig streamConfig = streamAdmin.getConfig(streamId);
     streamConfig.getLocation().mkdirs();
 
     return new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin,
-                                      writerFactory, threads, new TestMetricsCollectorFactory(), impersonator);
+                                      writerFactory, threads, metricsCollectorFactory, impersonator);
   }
 
   private Runnable createWriterTask(final Id.Stream streamId,
@@ -323,12 +395,21 @@ public abstract class ConcurrentStreamWriterTestBase {
     private final NamespacedLocationFactory namespacedLocationFactory;
     private final long partitionDuration;
     private final long indexInterval;
+    private final int groupCommitMaxEvents;
+    private final long groupCommitLingerMicros;
 
     private TestStreamAdmin(NamespacedLocationFactory namespacedLocationFactory, long partitionDuration,
                             long indexInterval) {
+      this(namespacedLocationFactory, partitionDuration, indexInterval, 0, 0L);
+    }
+
+    private TestStreamAdmin(NamespacedLocationFactory namespacedLocationFactory, long partitionDuration,
+                            long indexInterval, int groupCommitMaxEvents, long groupCommitLingerMicros) {
       this.namespacedLocationFactory = namespacedLocationFactory;
       this.partitionDuration = partitionDuration;
       this.indexInterval = indexInterval;
+      this.groupCommitMaxEvents = groupCommitMaxEvents;
+      this.groupCommitLingerMicros = groupCommitLingerMicros;
     }
 
     @Override
@@ -339,11 +420,17 @@ public abstract class ConcurrentStreamWriterTestBase {
     @Override
     public StreamConfig getConfig(Id.Stream streamId) throws IOException {
       Location streamLocation = StreamFileTestUtils.getStreamBaseLocation(namespacedLocationFactory, streamId);
-      return new StreamConfig(streamId, partitionDuration, indexInterval, Long.MAX_VALUE, streamLocation, null, 1000);
+      return new StreamConfig(streamId, partitionDuration, indexInterval, Long.MAX_VALUE, streamLocation, null, 1000,
+                              null, groupCommitMaxEvents, groupCommitLingerMicros);
     }
   }
 
   private static final class TestMetricsCollectorFactory implements StreamMetricsCollectorFactory {
+
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger committedEvents = new AtomicInteger();
+    private final AtomicInteger maxBatchSize = new AtomicInteger();
+
     @Override
     public StreamMetricsCollector createMetricsCollector(Id.Stream streamId) {
       return new StreamMetricsCollector() {
@@ -351,6 +438,16 @@ public abstract class ConcurrentStreamWriterTestBase {
         public void emitMetrics(long bytesWritten, long eventsWritten) {
           // No-op
         }
+
+        @Override
+        public void emitCommitMetrics(int batchSize, long latencyMicros) {
+          commits.incrementAndGet();
+          committedEvents.addAndGet(batchSize);
+          int max = maxBatchSize.get();
+          while (batchSize > max && !maxBatchSize.compareAndSet(max, batchSize)) {
+            max = maxBatchSize.get();
+          }
+        }
       };
     }
   }
@@ -70,7 +70,7 @@ public final class LocationStreamFileWriterFactory implements StreamFileWriterFa
       });
 
       return new TimePartitionedStreamFileWriter(baseLocation, config.getPartitionDuration(),
-                                                 filePrefix, config.getIndexInterval(),
+                                                 filePrefix, config.getIndexInterval(), config.getCodec(),
                                                  config.getStreamId().toEntityId(), impersonator);
     } catch (Exception e) {
       Throwables.propagateIfPossible(e, IOException.class);
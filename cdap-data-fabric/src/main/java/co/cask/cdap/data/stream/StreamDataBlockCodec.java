@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Codec for compressing and decompressing data blocks in stream files of format version 3.
+ * Instances may hold native resources, hence must be closed after use.
+ *
+ * @see StreamDataFileWriter
+ */
+@NotThreadSafe
+public abstract class StreamDataBlockCodec implements Closeable {
+
+  /**
+   * Creates a new instance of {@link StreamDataBlockCodec} for the given codec name.
+   *
+   * @param name name of the codec; {@code null} is treated as
+   *             {@link StreamDataFileConstants.Property.Value#CODEC_NONE}
+   * @return a new {@link StreamDataBlockCodec} or {@code null} if the codec is
+   *         {@link StreamDataFileConstants.Property.Value#CODEC_NONE}
+   * @throws IllegalArgumentException if the codec is not supported
+   */
+  @Nullable
+  static StreamDataBlockCodec create(@Nullable String name) {
+    if (name == null || StreamDataFileConstants.Property.Value.CODEC_NONE.equals(name)) {
+      return null;
+    }
+    if (StreamDataFileConstants.Property.Value.CODEC_DEFLATE.equals(name)) {
+      return new DeflateCodec();
+    }
+    if (StreamDataFileConstants.Property.Value.CODEC_SNAPPY.equals(name)) {
+      return new SnappyCodec();
+    }
+    throw new IllegalArgumentException("Unsupported stream codec " + name);
+  }
+
+  /**
+   * Returns {@code true} if the given codec name is supported.
+   */
+  public static boolean isSupported(@Nullable String name) {
+    return name == null
+      || StreamDataFileConstants.Property.Value.CODEC_NONE.equals(name)
+      || StreamDataFileConstants.Property.Value.CODEC_DEFLATE.equals(name)
+      || StreamDataFileConstants.Property.Value.CODEC_SNAPPY.equals(name);
+  }
+
+  /**
+   * Compresses the given input into the given output.
+   *
+   * @param input the bytes to compress
+   * @param length number of bytes in the input to compress
+   * @param output buffer for the compressed bytes
+   * @param maxLength maximum number of compressed bytes to write to the output
+   * @return number of compressed bytes written or {@code -1} if the compressed size would exceed {@code maxLength}
+   */
+  abstract int compress(byte[] input, int length, byte[] output, int maxLength) throws IOException;
+
+  /**
+   * Decompresses the given input into the given output.
+   *
+   * @param input buffer of the compressed bytes
+   * @param offset offset in the input buffer to start decompressing from
+   * @param length number of compressed bytes
+   * @param output buffer for the decompressed bytes
+   * @param outputLength expected number of bytes after decompression
+   * @throws IOException if the input is corrupted or doesn't decompress to exactly {@code outputLength} bytes
+   */
+  abstract void decompress(byte[] input, int offset, int length,
+                           byte[] output, int outputLength) throws IOException;
+
+  @Override
+  public void close() {
+    // No-op by default
+  }
+
+  /**
+   * Codec that uses {@link Deflater} and {@link Inflater}.
+   */
+  private static final class DeflateCodec extends StreamDataBlockCodec {
+
+    private Deflater deflater;
+    private Inflater inflater;
+
+    @Override
+    int compress(byte[] input, int length, byte[] output, int maxLength) {
+      if (deflater == null) {
+        deflater = new Deflater(Deflater.BEST_SPEED);
+      }
+      deflater.reset();
+      deflater.setInput(input, 0, length);
+      deflater.finish();
+
+      int size = 0;
+      while (!deflater.finished() && size < maxLength) {
+        size += deflater.deflate(output, size, maxLength - size);
+      }
+      return deflater.finished() ? size : -1;
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException {
+      if (inflater == null) {
+        inflater = new Inflater();
+      }
+      inflater.reset();
+      inflater.setInput(input, offset, length);
+
+      try {
+        int size = 0;
+        while (!inflater.finished()) {
+          int len = inflater.inflate(output, size, outputLength - size);
+          if (len == 0 && (inflater.needsInput() || inflater.needsDictionary() || size == outputLength)) {
+            break;
+          }
+          size += len;
+        }
+        if (!inflater.finished() || size != outputLength) {
+          throw new IOException("Corrupted data block. Expected " + outputLength
+                                  + " bytes after decompression, but got " + size);
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupted data block.", e);
+      }
+    }
+
+    @Override
+    public void close() {
+      if (deflater != null) {
+        deflater.end();
+      }
+      if (inflater != null) {
+        inflater.end();
+      }
+    }
+  }
+
+  /**
+   * Codec that uses Snappy.
+   */
+  private static final class SnappyCodec extends StreamDataBlockCodec {
+
+    private byte[] compressBuffer = new byte[0];
+
+    @Override
+    int compress(byte[] input, int length, byte[] output, int maxLength) throws IOException {
+      int maxCompressedLength = Snappy.maxCompressedLength(length);
+      if (compressBuffer.length < maxCompressedLength) {
+        compressBuffer = new byte[maxCompressedLength];
+      }
+      int size = Snappy.compress(input, 0, length, compressBuffer, 0);
+      if (size > maxLength) {
+        return -1;
+      }
+      System.arraycopy(compressBuffer, 0, output, 0, size);
+      return size;
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException {
+      if (!Snappy.isValidCompressedBuffer(input, offset, length)
+        || Snappy.uncompressedLength(input, offset, length) != outputLength) {
+        throw new IOException("Corrupted data block. Expected " + outputLength + " bytes after decompression.");
+      }
+      Snappy.uncompress(input, offset, length, output, 0);
+    }
+  }
+}
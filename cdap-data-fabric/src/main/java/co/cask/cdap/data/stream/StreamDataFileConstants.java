@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -25,9 +25,14 @@ public final class StreamDataFileConstants {
   static final int MAGIC_HEADER_SIZE = 2;
   static final byte[] MAGIC_HEADER_V1 = {'E', '1'};
   static final byte[] MAGIC_HEADER_V2 = {'E', '2'};
+  static final byte[] MAGIC_HEADER_V3 = {'E', '3'};
 
   static final byte[] INDEX_MAGIC_HEADER_V1 = {'I', '1'};
 
+  // Flags for the data block encoding in file version 3
+  static final int BLOCK_RAW = 0;
+  static final int BLOCK_COMPRESSED = 1;
+
   /**
    * Sets of constants related to accessing Stream data file properties.
    */
@@ -45,6 +50,9 @@ public final class StreamDataFileConstants {
 
       // Key prefix for properties that will be defaulted to all events' header
       public static final String EVENT_HEADER_PREFIX = "event.";
+
+      // Key for the codec used for compressing data blocks
+      public static final String CODEC = "stream.codec";
     }
 
     /**
@@ -53,6 +61,11 @@ public final class StreamDataFileConstants {
     public static final class Value {
       // Special value for Key.UNI_TIMESTAMP to indicate using the file close time timestamp for all events
       public static final String CLOSE_TIMESTAMP = "close.timestamp";
+
+      // Values for Key.CODEC
+      public static final String CODEC_NONE = "none";
+      public static final String CODEC_DEFLATE = "deflate";
+      public static final String CODEC_SNAPPY = "snappy";
     }
   }
 
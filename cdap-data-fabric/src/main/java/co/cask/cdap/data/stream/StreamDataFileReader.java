@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -67,6 +67,8 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   private boolean eof;
   private Decoder decoder;
   private StreamEvent eventTemplate;
+  // Codec for decompressing data blocks, only set for file version 3 with compression
+  private StreamDataBlockCodec codec;
 
   /**
    * Opens a new {@link StreamDataFileReader} with the given inputs.
@@ -157,6 +159,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
       }
     } finally {
       closed = true;
+      closeCodec();
     }
   }
 
@@ -300,6 +303,20 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
 
     verifySchema(properties);
 
+    // Create the codec for decompressing data blocks
+    closeCodec();
+    if (fileVersion >= 3) {
+      String codecName = properties.get(StreamDataFileConstants.Property.Key.CODEC);
+      try {
+        codec = StreamDataBlockCodec.create(codecName);
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Unsupported stream codec '" + codecName + "'", e);
+      }
+      if (codec == null) {
+        throw new IOException("Missing stream codec for file version " + fileVersion);
+      }
+    }
+
     // Create event template
     if (fileVersion >= 2) {
       eventTemplate = createEventTemplate(properties);
@@ -323,10 +340,14 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V2)) {
       return 2;
     }
+    if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V3)) {
+      return 3;
+    }
     throw new IOException(
-      String.format("Unsupported stream file format. First two bytes must be %s or %s",
+      String.format("Unsupported stream file format. First two bytes must be %s, %s or %s",
                     Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V1),
-                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2))
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2),
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V3))
     );
   }
 
@@ -485,7 +506,11 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     // Use the template timestamp if available
     timestamp = eventTemplate.getTimestamp() >= 0 ? eventTemplate.getTimestamp() : timestamp;
     if (acceptTimestamp(filter, timestamp)) {
-      streamEventBuffer.fillBuffer(eventInput, readLength());
+      if (codec == null) {
+        streamEventBuffer.fillBuffer(eventInput, readLength());
+      } else {
+        streamEventBuffer.fillBuffer(eventInput, readLength(), codec);
+      }
       this.timestamp = timestamp;
       return;
     }
@@ -531,6 +556,13 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     return event;
   }
 
+  private void closeCodec() {
+    if (codec != null) {
+      codec.close();
+      codec = null;
+    }
+  }
+
   private boolean acceptTimestamp(ReadFilter filter, long timestamp) {
     filter.reset();
     return filter.acceptTimestamp(timestamp);
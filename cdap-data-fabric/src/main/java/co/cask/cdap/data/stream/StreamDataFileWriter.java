@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -32,11 +32,13 @@ import com.google.common.io.OutputSupplier;
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.fs.Syncable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -48,7 +50,7 @@ import javax.annotation.concurrent.NotThreadSafe;
  * {@code
  *
  * event_file = <header> <data>* <end_marker>
- * header = "E" "1" <properties>
+ * header = "E" "2" <properties>
  * properties = Avro encoded with the properties schema
  * data = <timestamp> <length> <stream_event>+
  * timestamp = 8 bytes int64 for timestamp in milliseconds
@@ -59,6 +61,30 @@ import javax.annotation.concurrent.NotThreadSafe;
  * }
  * </pre>
  *
+ * If the "stream.codec" property is set to a codec other than "none", the event file is written in version 3,
+ * which has the data blocks encoded as follows:
+ *
+ * <pre>
+ * {@code
+ *
+ * header = "E" "3" <properties>
+ * data = <timestamp> <length> <block>
+ * length = Avro encoded int32 for size in bytes of the <block>
+ * block = <raw_block> | <compressed_block>
+ * raw_block = 0x00 <stream_event>+
+ * compressed_block = 0x01 <uncompressed_length> <compressed_events>
+ * uncompressed_length = 4 bytes int32 for size in bytes for all <stream_event>s before compression
+ * compressed_events = all <stream_event>s compressed with the codec
+ *
+ * }
+ * </pre>
+ *
+ * The position of an event in a raw block is its offset in the file. Since events in a compressed block
+ * can't be addressed by file offset, the position of the n-th event in a compressed block is the offset of
+ * {@code <uncompressed_length>} plus n. A compressed block is only written if the number of events in it is no
+ * larger than the size of {@code <uncompressed_length> <compressed_events>}, so that event positions always fall
+ * within the block and block boundaries stay seekable.
+ *
  * Stream index file:
  *
  * <pre>
@@ -84,9 +110,16 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private final long indexInterval;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  @Nullable
+  private final StreamDataBlockCodec codec;
+  @Nullable
+  private final BlockOutputStream blockOutput;
+  private byte[] compressedBuffer;
 
   // Timestamp for the current block
   private long currentTimestamp;
+  // Number of events in the current block
+  private int eventCount;
   private long position;
   private long nextIndexTime;
   private boolean synced;
@@ -110,17 +143,24 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
    * @param eventOutputSupplier the provider of the {@link OutputStream} for writing events
    * @param indexOutputSupplier the provider of the {@link OutputStream} for writing the index
    * @param indexInterval the time interval in milliseconds for emitting a new index entry
-   * @param properties the property set that will be stored as file properties
+   * @param properties the property set that will be stored as file properties. If it contains the
+   *                   {@link StreamDataFileConstants.Property.Key#CODEC} property, data blocks will be
+   *                   compressed with the given codec
    * @throws IOException if there is an error in preparing the output streams
+   * @throws IllegalArgumentException if the codec in the properties is not supported
    */
   public StreamDataFileWriter(OutputSupplier<? extends OutputStream> eventOutputSupplier,
                               OutputSupplier<? extends OutputStream> indexOutputSupplier,
                               long indexInterval, Map<String, String> properties) throws IOException {
+    this.codec = StreamDataBlockCodec.create(properties.get(StreamDataFileConstants.Property.Key.CODEC));
+    this.blockOutput = codec == null ? null : new BlockOutputStream(BUFFER_SIZE);
+    this.compressedBuffer = new byte[0];
     this.eventOutput = eventOutputSupplier.getOutput();
     try {
       this.indexOutput = indexOutputSupplier.getOutput();
     } catch (IOException e) {
       Closeables.closeQuietly(this.eventOutput);
+      closeCodec();
       throw e;
     }
     this.indexInterval = indexInterval;
@@ -136,6 +176,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     } catch (IOException e) {
       Closeables.closeQuietly(eventOutput);
       Closeables.closeQuietly(indexOutput);
+      closeCodec();
       throw e;
     }
   }
@@ -178,7 +219,11 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       try {
         eventOutput.close();
       } finally {
-        indexOutput.close();
+        try {
+          indexOutput.close();
+        } finally {
+          closeCodec();
+        }
       }
     }
   }
@@ -222,6 +267,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
       // Encodes the event data into buffer.
       StreamEventDataCodec.encode(event, encoder);
+      eventCount++;
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -235,9 +281,13 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
   private void init(Map<String, String> properties) throws IOException {
     // Writes the header for event file
-    encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
+    encoder.writeRaw(codec == null ? StreamDataFileConstants.MAGIC_HEADER_V2 : StreamDataFileConstants.MAGIC_HEADER_V3);
 
     Map<String, String> headers = Maps.newHashMap(properties);
+    if (codec == null) {
+      // Files without compression stay in version 2, hence no need to have the codec property.
+      headers.remove(StreamDataFileConstants.Property.Key.CODEC);
+    }
     headers.put(StreamDataFileConstants.Property.Key.SCHEMA, StreamEventDataCodec.STREAM_DATA_SCHEMA.toString());
     StreamUtils.encodeMap(headers, encoder);
 
@@ -278,16 +328,22 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       indexOffset = position - Bytes.SIZEOF_LONG;
     }
 
-    // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
-    int size = lengthEncoder.size();
-    lengthEncoder.writeTo(eventOutput);
-    position += size;
+    if (codec == null) {
+      // Writes the size of the encoded event
+      lengthEncoder.writeInt(encoder.size());
+      int size = lengthEncoder.size();
+      lengthEncoder.writeTo(eventOutput);
+      position += size;
+
+      // Writes all encoded data from the buffer to the output.
+      size = encoder.size();
+      encoder.writeTo(eventOutput);
+      position += size;
+    } else {
+      writeCompressedBlock();
+    }
+    eventCount = 0;
 
-    // Writes all encoded data from the buffer to the output.
-    size = encoder.size();
-    encoder.writeTo(eventOutput);
-    position += size;
     if (sync) {
       sync(eventOutput);
     }
@@ -310,6 +366,47 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     synced = sync;
   }
 
+  /**
+   * Writes the buffered events as a data block of file version 3. The block is compressed unless compression
+   * doesn't reduce the size or the compressed size is smaller than the number of events in the block.
+   */
+  private void writeCompressedBlock() throws IOException {
+    blockOutput.reset();
+    encoder.writeTo(blockOutput);
+    int rawSize = blockOutput.size();
+
+    // Only accept compressed output that is smaller than the raw block.
+    int maxLength = rawSize - Bytes.SIZEOF_INT - 1;
+    int size = -1;
+    if (maxLength > 0) {
+      if (compressedBuffer.length < maxLength) {
+        compressedBuffer = new byte[rawSize];
+      }
+      size = codec.compress(blockOutput.getBuffer(), rawSize, compressedBuffer, maxLength);
+    }
+
+    if (size >= 0 && size + Bytes.SIZEOF_INT >= eventCount) {
+      lengthEncoder.writeInt(1 + Bytes.SIZEOF_INT + size);
+      lengthEncoder.writeRaw(new byte[] { StreamDataFileConstants.BLOCK_COMPRESSED });
+      lengthEncoder.writeRaw(Bytes.toBytes(rawSize));
+      position += lengthEncoder.size() + size;
+      lengthEncoder.writeTo(eventOutput);
+      eventOutput.write(compressedBuffer, 0, size);
+    } else {
+      lengthEncoder.writeInt(1 + rawSize);
+      lengthEncoder.writeRaw(new byte[] { StreamDataFileConstants.BLOCK_RAW });
+      position += lengthEncoder.size() + rawSize;
+      lengthEncoder.writeTo(eventOutput);
+      eventOutput.write(blockOutput.getBuffer(), 0, rawSize);
+    }
+  }
+
+  private void closeCodec() {
+    if (codec != null) {
+      codec.close();
+    }
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -326,6 +423,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     closed = true;
     Closeables.closeQuietly(eventOutput);
     Closeables.closeQuietly(indexOutput);
+    closeCodec();
     throw ex;
   }
 
@@ -337,4 +435,18 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       }
     };
   }
+
+  /**
+   * A {@link ByteArrayOutputStream} that exposes its internal buffer to avoid copying.
+   */
+  private static final class BlockOutputStream extends ByteArrayOutputStream {
+
+    BlockOutputStream(int size) {
+      super(size);
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.io.BinaryDecoder;
 import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.common.io.Decoder;
@@ -33,6 +34,9 @@ import javax.annotation.concurrent.NotThreadSafe;
 /**
  * A buffer for holding encoded stream events. It is used by {@link StreamDataFileReader} for holding
  * encoded stream events in each data block.
+ *
+ * For compressed data blocks, event positions are the block position plus the index of the event in the block,
+ * as described in {@link StreamDataFileWriter}.
  */
 @NotThreadSafe
 final class StreamEventBuffer {
@@ -41,13 +45,21 @@ final class StreamEventBuffer {
   private final Decoder decoder;
 
   private ByteBuffer buffer;
+  private byte[] compressedBuffer;
   private long basePosition;
+  private long endPosition;
+  // Whether the buffer is filled by a compressed data block
+  private boolean compressed;
+  // Index of the next event in the buffer
+  private int eventIndex;
 
   StreamEventBuffer() {
     this.buffer = ByteBuffers.EMPTY_BUFFER;
     this.bufferInput = new ByteBufferInputStream(buffer);
     this.decoder = new BinaryDecoder(bufferInput);
+    this.compressedBuffer = new byte[0];
     this.basePosition = -1L;
+    this.endPosition = -1L;
   }
 
   /**
@@ -64,20 +76,60 @@ final class StreamEventBuffer {
 
     try {
       basePosition = input.getPos();
-      int bytesRead = 0;
-      while (bytesRead != size) {
-        int len = input.read(buffer.array(), bytesRead, size - bytesRead);
-        if (len < 0) {
-          throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
-        }
-        bytesRead += len;
-      }
+      readFully(input, buffer.array(), size);
       buffer.limit(size);
       bufferInput.reset(buffer);
+      endPosition = basePosition + size;
+      compressed = false;
     } catch (IOException e) {
       // Make the buffer has nothing to read
-      buffer.position(buffer.limit());
-      basePosition = -1L;
+      resetOnError();
+      throw e;
+    }
+  }
+
+  /**
+   * Fills the internal buffer by reading a data block of file version 3 from the given input stream.
+   *
+   * @param input input stream to read from
+   * @param size number of bytes in the data block
+   * @param codec the codec for decompressing the data block
+   * @throws IOException if failed to read from the stream or to decompress the data block
+   * @throws EOFException if failed to read the given number of bytes from the input
+   */
+  void fillBuffer(SeekableInputStream input, int size, StreamDataBlockCodec codec) throws IOException {
+    int flag = input.read();
+    if (flag < 0) {
+      throw new EOFException("Expected to read data block flag");
+    }
+    if (flag == StreamDataFileConstants.BLOCK_RAW) {
+      fillBuffer(input, size - 1);
+      return;
+    }
+    if (flag != StreamDataFileConstants.BLOCK_COMPRESSED) {
+      throw new IOException("Unsupported data block flag " + flag);
+    }
+
+    buffer.clear();
+    try {
+      basePosition = input.getPos();
+      int compressedSize = size - 1;
+      if (compressedBuffer.length < compressedSize) {
+        compressedBuffer = new byte[compressedSize];
+      }
+      readFully(input, compressedBuffer, compressedSize);
+
+      int uncompressedSize = Bytes.toInt(compressedBuffer, 0);
+      buffer = ensureCapacity(buffer, uncompressedSize);
+      codec.decompress(compressedBuffer, Bytes.SIZEOF_INT, compressedSize - Bytes.SIZEOF_INT,
+                       buffer.array(), uncompressedSize);
+      buffer.limit(uncompressedSize);
+      bufferInput.reset(buffer);
+      endPosition = basePosition + compressedSize;
+      compressed = true;
+      eventIndex = 0;
+    } catch (IOException e) {
+      resetOnError();
       throw e;
     }
   }
@@ -94,7 +146,13 @@ final class StreamEventBuffer {
    * read from the stream.
    */
   long getPosition() {
-    return basePosition >= 0 ? basePosition + buffer.position() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    if (compressed) {
+      return hasEvent() ? basePosition + eventIndex : endPosition;
+    }
+    return basePosition + buffer.position();
   }
 
   /**
@@ -102,7 +160,7 @@ final class StreamEventBuffer {
    * been read from the stream.
    */
   long getEndPosition() {
-    return basePosition >= 0 ? basePosition + buffer.limit() : -1L;
+    return basePosition >= 0 ? endPosition : -1L;
   }
 
   /**
@@ -120,7 +178,8 @@ final class StreamEventBuffer {
       throw new IOException("No more event in the buffer");
     }
 
-    long eventPos = basePosition + buffer.position();
+    long eventPos = getPosition();
+    eventIndex++;
     if (filter.acceptOffset(eventPos)) {
       return new PositionStreamEvent(StreamEventDataCodec.decode(decoder, defaultHeaders), timestamp, eventPos);
     }
@@ -128,6 +187,23 @@ final class StreamEventBuffer {
     return null;
   }
 
+  private void readFully(SeekableInputStream input, byte[] bytes, int size) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead != size) {
+      int len = input.read(bytes, bytesRead, size - bytesRead);
+      if (len < 0) {
+        throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      }
+      bytesRead += len;
+    }
+  }
+
+  private void resetOnError() {
+    buffer.position(buffer.limit());
+    basePosition = -1L;
+    endPosition = -1L;
+  }
+
   /**
    * Ensures that the given {@link ByteBuffer} is of sufficient size.
    *
@@ -60,7 +60,9 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -76,24 +78,32 @@ import javax.annotation.concurrent.ThreadSafe;
  * <pre>
  * 1. Constructs a StreamEventData locally and enqueue it to a ConcurrentLinkedQueue.
  * 2. Use CAS to set an AtomicBoolean flag to true.
- * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-7.
- * 4. Keep polling StreamEventData from the concurrent queue and write to FileWriter with the current timestamp until
- *    the queue is empty.
- * 5. Perform a writer flush to make sure all data written are persisted.
- * 6. Set the state of each StreamEventData that are written to COMPLETED (succeed/failure).
- * 7. Set the AtomicBoolean flag back to false.
- * 8. If the StreamEventData enqueued by this thread is NOT COMPLETED, go back to step 2.
+ * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-8.
+ * 4. If group commit linger is configured for the stream, wait until either the linger time has passed since the
+ *    oldest StreamEventData in the queue was enqueued, or the queue has accumulated the maximum batch size.
+ * 5. Keep polling StreamEventData from the concurrent queue and write to FileWriter with the current timestamp until
+ *    the queue is empty or the maximum batch size is reached.
+ * 6. Perform a writer flush to make sure all data written are persisted.
+ * 7. Set the state of each StreamEventData that are written to COMPLETED (succeed/failure).
+ * 8. Set the AtomicBoolean flag back to false.
+ * 9. If the StreamEventData enqueued by this thread is NOT COMPLETED, go back to step 2.
  * </pre>
  *
- * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
+ * The spin lock between step 2 to step 9 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
  *
+ * The maximum batch size and linger time are taken from the {@link StreamConfig} of each stream. With a linger time,
+ * concurrent writes are committed with a single flush at the cost of up to the linger time of extra latency, which
+ * reduces the number of flushes to the file system under high write rate.
  */
 @ThreadSafe
 public final class ConcurrentStreamWriter implements Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentStreamWriter.class);
 
+  // Maximum time to park while waiting for a group commit, so that a full batch is detected promptly
+  private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final StreamAdmin streamAdmin;
   private final int workerThreads;
@@ -178,8 +188,23 @@ public final class ConcurrentStreamWriter implements Closeable {
    */
   public void enqueue(Id.Stream streamId,
                       Iterator<? extends StreamEventData> events) throws IOException, NotFoundException {
+    enqueue(streamId, events, -1);
+  }
+
+  /**
+   * Writes a list of events to the given stream.
+   *
+   * @param streamId identifier of the stream
+   * @param events list of events to write
+   * @param eventCount number of events in the list, or a negative number if unknown. A list of unknown size is
+   *                   considered to fill a group commit batch by itself
+   * @throws IOException if failed to write to stream
+   * @throws NotFoundException If the stream doesn't exists
+   */
+  public void enqueue(Id.Stream streamId, Iterator<? extends StreamEventData> events,
+                      int eventCount) throws IOException, NotFoundException {
     EventQueue eventQueue = getEventQueue(streamId);
-    WriteRequest writeRequest = eventQueue.append(events);
+    WriteRequest writeRequest = eventQueue.append(events, eventCount);
     persistUntilCompleted(streamId, eventQueue, writeRequest);
   }
 
@@ -273,7 +298,8 @@ public final class ConcurrentStreamWriter implements Closeable {
         cancellables.add(streamCoordinatorClient.addListener(streamId, streamFileFactory));
       }
 
-      eventQueue = new EventQueue(streamId, metricsCollectorFactory.createMetricsCollector(streamId));
+      eventQueue = new EventQueue(streamId, streamAdmin.getConfig(streamId),
+                                  metricsCollectorFactory.createMetricsCollector(streamId));
       eventQueues.put(streamId, eventQueue);
 
       return eventQueue;
@@ -298,7 +324,7 @@ public final class ConcurrentStreamWriter implements Closeable {
     throws IOException {
     while (!request.isCompleted()) {
       if (!eventQueue.tryWrite()) {
-        Thread.yield();
+        eventQueue.awaitWriter();
       }
     }
     if (!request.isSuccess()) {
@@ -435,18 +461,27 @@ public final class ConcurrentStreamWriter implements Closeable {
     private final Id.Stream streamId;
     private final StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector;
     private final Queue<WriteRequest> queue;
+    // Number of events in the queue
+    private final AtomicLong queuedEvents;
     private final AtomicBoolean writerFlag;
+    private final int maxBatchEvents;
+    private final long lingerNanos;
     private final WriteRequest.Metrics metrics;
     private final MutableStreamEvent streamEvent;
     private final Function<StreamEventData, StreamEvent> eventTransformer;
     private FileWriter<StreamEventData> fileWriter;
     private boolean closed;
 
-    EventQueue(Id.Stream streamId, StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
+    EventQueue(Id.Stream streamId, StreamConfig streamConfig,
+               StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
       this.streamId = streamId;
       this.streamEvent = new MutableStreamEvent();
       this.queue = new ConcurrentLinkedQueue<>();
+      this.queuedEvents = new AtomicLong();
       this.writerFlag = new AtomicBoolean(false);
+      this.maxBatchEvents = streamConfig.getGroupCommitMaxEvents() > 0
+        ? streamConfig.getGroupCommitMaxEvents() : Integer.MAX_VALUE;
+      this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0L, streamConfig.getGroupCommitLingerMicros()));
       this.metrics = new WriteRequest.Metrics();
       this.metricsCollector = metricsCollector;
       this.eventTransformer = new Function<StreamEventData, StreamEvent>() {
@@ -466,6 +501,7 @@ public final class ConcurrentStreamWriter implements Closeable {
      */
     WriteRequest append(Map<String, String> headers, ByteBuffer body) {
       WriteRequest request = new SingleWriteRequest(headers, body);
+      queuedEvents.incrementAndGet();
       queue.add(request);
       return request;
     }
@@ -475,10 +511,12 @@ public final class ConcurrentStreamWriter implements Closeable {
      * same event timestamp and are guaranteed to be written in the same data block inside a stream file.
      *
      * @param events an {@link Iterator} of {@link StreamEventData} containing the list of events to be written
+     * @param eventCount number of events in the list, or a negative number if unknown
      * @return A {@link WriteRequest} that contains the status of the request
      */
-    WriteRequest append(Iterator<? extends StreamEventData> events) {
-      WriteRequest request = new BatchWriteRequest(events);
+    WriteRequest append(Iterator<? extends StreamEventData> events, int eventCount) {
+      WriteRequest request = new BatchWriteRequest(events, eventCount < 0 ? maxBatchEvents : eventCount);
+      queuedEvents.addAndGet(request.getEventCount());
       queue.add(request);
       return request;
     }
@@ -529,6 +567,7 @@ public final class ConcurrentStreamWriter implements Closeable {
     boolean tryWrite() {
       int bytesWritten = 0;
       int eventsWritten = 0;
+      long commitLatencyNanos = -1L;
 
       if (!writerFlag.compareAndSet(false, true)) {
         return false;
@@ -542,12 +581,13 @@ public final class ConcurrentStreamWriter implements Closeable {
         List<WriteRequest> processQueue = Lists.newArrayListWithExpectedSize(workerThreads);
         try {
           FileWriter<StreamEventData> writer = getFileWriter();
-          WriteRequest request = queue.poll();
+          linger();
+          WriteRequest request = pollRequest();
           streamEvent.setTimestamp(System.currentTimeMillis());
           while (request != null) {
             processQueue.add(request);
             request.write(writer, metrics);
-            request = queue.poll();
+            request = metrics.eventsWritten < maxBatchEvents ? pollRequest() : null;
           }
           writer.flush();
           for (WriteRequest processed : processQueue) {
@@ -555,6 +595,9 @@ public final class ConcurrentStreamWriter implements Closeable {
           }
           bytesWritten = metrics.bytesWritten;
           eventsWritten = metrics.eventsWritten;
+          if (!processQueue.isEmpty()) {
+            commitLatencyNanos = System.nanoTime() - processQueue.get(0).getEnqueueTime();
+          }
         } catch (Throwable t) {
           // On exception, remove this EventQueue from the map and close this event queue
           eventQueues.remove(streamId, this);
@@ -569,9 +612,56 @@ public final class ConcurrentStreamWriter implements Closeable {
       }
 
       metricsCollector.emitMetrics(bytesWritten, eventsWritten);
+      if (commitLatencyNanos >= 0) {
+        metricsCollector.emitCommitMetrics(eventsWritten, TimeUnit.NANOSECONDS.toMicros(commitLatencyNanos));
+      }
       return true;
     }
 
+    /**
+     * Waits for the current writer to make progress. It is called by threads that are waiting for their requests
+     * to be completed by another thread.
+     */
+    void awaitWriter() {
+      if (lingerNanos > 0) {
+        // The writer is likely lingering for a group commit, hence no need to spin.
+        LockSupport.parkNanos(Math.min(lingerNanos, MAX_PARK_NANOS));
+      } else {
+        Thread.yield();
+      }
+    }
+
+    /**
+     * Waits until either the linger time has passed since the oldest request in the queue was enqueued, or the queue
+     * has accumulated enough events to fill a batch. This method should only be called from the writer leader thread.
+     */
+    private void linger() {
+      if (lingerNanos <= 0) {
+        return;
+      }
+      WriteRequest oldest = queue.peek();
+      if (oldest == null) {
+        return;
+      }
+      long deadline = oldest.getEnqueueTime() + lingerNanos;
+      long now = System.nanoTime();
+      while (queuedEvents.get() < maxBatchEvents && now - deadline < 0) {
+        LockSupport.parkNanos(Math.min(deadline - now, MAX_PARK_NANOS));
+        now = System.nanoTime();
+      }
+    }
+
+    /**
+     * Removes and returns the oldest request in the queue, or {@code null} if the queue is empty.
+     */
+    private WriteRequest pollRequest() {
+      WriteRequest request = queue.poll();
+      if (request != null) {
+        queuedEvents.addAndGet(-request.getEventCount());
+      }
+      return request;
+    }
+
     /**
      * Attempts to refresh the underlying FileWriter, if it is {@link Refreshable}.
      */
@@ -633,11 +723,11 @@ public final class ConcurrentStreamWriter implements Closeable {
       // Drain the queue with failure. This could happen when
       // 1. Shutting down of http service, which is fine to set to failure as all connections are closed already.
       // 2. When stream generation change. In this case, the client would received failure.
-      WriteRequest data = queue.poll();
+      WriteRequest data = pollRequest();
       Throwable writerClosedException = new IOException("Stream writer closed").fillInStackTrace();
       while (data != null) {
         data.completed(writerClosedException);
-        data = queue.poll();
+        data = pollRequest();
       }
       closed = true;
     }
@@ -722,9 +812,17 @@ public final class ConcurrentStreamWriter implements Closeable {
       }
     }
 
+    private final long enqueueTime = System.nanoTime();
     private State state = State.PENDING;
     private Throwable failure;
 
+    /**
+     * Returns the {@link System#nanoTime()} when this request was created.
+     */
+    long getEnqueueTime() {
+      return enqueueTime;
+    }
+
     boolean isCompleted() {
       return state != State.PENDING;
     }
@@ -742,6 +840,11 @@ public final class ConcurrentStreamWriter implements Closeable {
       return failure;
     }
 
+    /**
+     * Returns the number of events in this request.
+     */
+    abstract int getEventCount();
+
     /**
      * Writes the data contained in this request to the given file writer.
      *
@@ -763,6 +866,11 @@ public final class ConcurrentStreamWriter implements Closeable {
       this.eventData = new StreamEventData(headers, body);
     }
 
+    @Override
+    int getEventCount() {
+      return 1;
+    }
+
     @Override
     void write(FileWriter<StreamEventData> writer, Metrics metrics) throws IOException {
       metrics.increment(eventData.getBody().remaining());
@@ -776,10 +884,17 @@ public final class ConcurrentStreamWriter implements Closeable {
   private static final class BatchWriteRequest extends WriteRequest implements Iterator<StreamEventData> {
 
     private final Iterator<? extends StreamEventData> events;
+    private final int eventCount;
     private Metrics metrics;
 
-    private BatchWriteRequest(Iterator<? extends StreamEventData> events) {
+    private BatchWriteRequest(Iterator<? extends StreamEventData> events, int eventCount) {
       this.events = events;
+      this.eventCount = eventCount;
+    }
+
+    @Override
+    int getEventCount() {
+      return eventCount;
     }
 
     @Override
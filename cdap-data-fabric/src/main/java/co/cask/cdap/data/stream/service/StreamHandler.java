@@ -368,6 +368,13 @@ public final class StreamHandler extends AbstractHttpHandler {
               childCollector.increment("collect.events", eventsWritten);
             }
           }
+
+          @Override
+          public void emitCommitMetrics(int batchSize, long latencyMicros) {
+            childCollector.increment("collect.commits", 1);
+            childCollector.gauge("collect.commit.batch.size", batchSize);
+            childCollector.gauge("collect.commit.latency.us", latencyMicros);
+          }
         };
       }
     };
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -35,6 +35,15 @@ public interface StreamMetricsCollectorFactory {
      * @param eventsWritten number of events written to the stream
      */
     void emitMetrics(long bytesWritten, long eventsWritten);
+
+    /**
+     * Emit metrics about a flush of events to the stream.
+     *
+     * @param batchSize number of events persisted by the flush
+     * @param latencyMicros time in microseconds from the oldest event in the batch being enqueued to the flush
+     *                      completion
+     */
+    void emitCommitMetrics(int batchSize, long latencyMicros);
   }
 
   /**
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -69,7 +69,7 @@ final class BufferedContentWriter implements ContentWriter, Iterable<ByteBuffer>
   @Override
   public void close() throws IOException {
     try {
-      streamWriter.enqueue(streamId, new StreamEventDataIterator(headers, bodies.iterator()));
+      streamWriter.enqueue(streamId, new StreamEventDataIterator(headers, bodies.iterator()), bodies.size());
     } catch (NotFoundException e) {
       throw Throwables.propagate(e);
     }
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.datafabric.dataset;
+
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.proto.Id;
+
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Notification published by the dataset service when a dataset instance, or the dataset modules of a namespace,
+ * have changed.
+ */
+public final class DatasetChangeNotification {
+
+  /**
+   * The feed that the dataset service publishes the changes to.
+   */
+  public static final Id.NotificationFeed FEED = new Id.NotificationFeed.Builder()
+    .setNamespaceId(Id.Namespace.SYSTEM.getId())
+    .setCategory(Constants.Notification.Dataset.DATASET_INTERNAL_FEED_CATEGORY)
+    .setName(Constants.Notification.Dataset.DATASET_CHANGE_FEED_NAME)
+    .setDescription("Changes of dataset instances and modules")
+    .build();
+
+  private final String namespace;
+  private final String instance;
+
+  /**
+   * Creates a notification for a change of the given dataset instance.
+   */
+  public static DatasetChangeNotification of(Id.DatasetInstance instance) {
+    return new DatasetChangeNotification(instance.getNamespaceId(), instance.getId());
+  }
+
+  /**
+   * Creates a notification for a change of the dataset modules, and hence the types, of the given namespace.
+   */
+  public static DatasetChangeNotification of(Id.Namespace namespace) {
+    return new DatasetChangeNotification(namespace.getId(), null);
+  }
+
+  private DatasetChangeNotification(String namespace, @Nullable String instance) {
+    this.namespace = namespace;
+    this.instance = instance;
+  }
+
+  public Id.Namespace getNamespace() {
+    return Id.Namespace.from(namespace);
+  }
+
+  /**
+   * @return the changed dataset instance, or {@code null} if the dataset modules of the namespace have changed
+   */
+  @Nullable
+  public Id.DatasetInstance getInstance() {
+    return instance == null ? null : Id.DatasetInstance.from(namespace, instance);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    DatasetChangeNotification that = (DatasetChangeNotification) o;
+    return Objects.equals(namespace, that.namespace) && Objects.equals(instance, that.instance);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(namespace, instance);
+  }
+
+  @Override
+  public String toString() {
+    return "DatasetChangeNotification{" +
+      "namespace='" + namespace + '\'' +
+      ", instance='" + instance + '\'' +
+      '}';
+  }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.datafabric.dataset;
+
+import co.cask.cdap.api.dataset.DatasetManagementException;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.notifications.feeds.NotificationFeedException;
+import co.cask.cdap.notifications.feeds.NotificationFeedNotFoundException;
+import co.cask.cdap.notifications.service.NotificationContext;
+import co.cask.cdap.notifications.service.NotificationHandler;
+import co.cask.cdap.notifications.service.NotificationService;
+import co.cask.cdap.proto.DatasetMeta;
+import co.cask.cdap.proto.DatasetTypeMeta;
+import co.cask.cdap.proto.Id;
+import co.cask.cdap.proto.security.Principal;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.twill.common.Cancellable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A process-wide cache of the {@link DatasetMeta} of dataset instances and the {@link DatasetTypeMeta} of dataset
+ * types that {@link RemoteDatasetFramework} fetches from the dataset service.
+ * <p>
+ * Entries are invalidated when the dataset framework of this process changes an instance or a module, and when a
+ * {@link DatasetChangeNotification} is received, if a {@link NotificationService} is available. Since not every
+ * process can receive notifications, entries also expire after {@link Constants.Dataset#META_CACHE_EXPIRY_SECS}.
+ * Only existing instances and types are cached.
+ */
+@Singleton
+public class DatasetMetaCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetMetaCache.class);
+  private static final long SUBSCRIBE_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private final boolean enabled;
+  private final Cache<InstanceKey, DatasetMeta> instances;
+  private final Cache<Id.DatasetType, DatasetTypeMeta> types;
+  private final NotificationHandler<DatasetChangeNotification> changeHandler;
+
+  // Incremented on every invalidation, to not cache what was loaded while the invalidation happened
+  private long generation;
+
+  private volatile MetricsContext metricsContext;
+  private volatile NotificationService notificationService;
+  private volatile Cancellable subscription;
+  private volatile long nextSubscribeMillis;
+
+  @Inject
+  public DatasetMetaCache(CConfiguration cConf) {
+    this(cConf.getLong(Constants.Dataset.META_CACHE_EXPIRY_SECS), cConf.getInt(Constants.Dataset.META_CACHE_SIZE));
+  }
+
+  @VisibleForTesting
+  DatasetMetaCache(long expirySecs, int maxSize) {
+    this.enabled = expirySecs > 0 && maxSize > 0;
+    this.instances = CacheBuilder.newBuilder()
+      .expireAfterWrite(Math.max(expirySecs, 1L), TimeUnit.SECONDS)
+      .maximumSize(Math.max(maxSize, 0))
+      .build();
+    this.types = CacheBuilder.newBuilder()
+      .expireAfterWrite(Math.max(expirySecs, 1L), TimeUnit.SECONDS)
+      .maximumSize(Math.max(maxSize, 0))
+      .build();
+    this.changeHandler = new NotificationHandler<DatasetChangeNotification>() {
+      @Override
+      public Type getNotificationType() {
+        return DatasetChangeNotification.class;
+      }
+
+      @Override
+      public void received(DatasetChangeNotification notification, NotificationContext notificationContext) {
+        changed(notification);
+      }
+    };
+  }
+
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsContext = metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId()));
+  }
+
+  /**
+   * Sets the {@link NotificationService} to receive the {@link DatasetChangeNotification}s from. The subscription
+   * happens once the service is running and the dataset service has created the feed.
+   */
+  @Inject(optional = true)
+  public void setNotificationService(NotificationService notificationService) {
+    this.notificationService = notificationService;
+  }
+
+  /**
+   * Returns the {@link DatasetMeta} of a dataset instance for the given owners and principal, using the given loader
+   * if it is not cached. Since fetching the meta for a set of owners registers the usage of the instance by the
+   * owners, the usage is registered again at the latest when the cached entry expires. Since the dataset service
+   * only returns the meta to a principal that is authorized to access the instance, a meta fetched for one principal
+   * is never returned to another one.
+   *
+   * @return the {@link DatasetMeta} or {@code null} if the instance does not exist
+   */
+  @Nullable
+  public DatasetMeta getInstance(Id.DatasetInstance instance, @Nullable Iterable<? extends Id> owners,
+                                 @Nullable Principal principal,
+                                 Loader<DatasetMeta> loader) throws DatasetManagementException {
+    return get(instances, new InstanceKey(instance, owners, principal), loader);
+  }
+
+  /**
+   * Returns the {@link DatasetTypeMeta} of a dataset type, using the given loader if it is not cached.
+   *
+   * @return the {@link DatasetTypeMeta} or {@code null} if the type does not exist
+   */
+  @Nullable
+  public DatasetTypeMeta getType(Id.DatasetType type, Loader<DatasetTypeMeta> loader)
+    throws DatasetManagementException {
+    return get(types, type, loader);
+  }
+
+  /**
+   * Invalidates the cached meta of a dataset instance.
+   */
+  public synchronized void invalidate(Id.DatasetInstance instance) {
+    generation++;
+    Iterator<InstanceKey> iterator = instances.asMap().keySet().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().instance.equals(instance)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Invalidates the cached types of a namespace and the instances that can use them. Since the types of the system
+   * namespace are available in all namespaces, invalidating the system namespace invalidates everything.
+   */
+  public synchronized void invalidate(Id.Namespace namespace) {
+    generation++;
+    if (Id.Namespace.SYSTEM.equals(namespace)) {
+      instances.invalidateAll();
+      types.invalidateAll();
+      return;
+    }
+    Iterator<InstanceKey> instanceIterator = instances.asMap().keySet().iterator();
+    while (instanceIterator.hasNext()) {
+      if (instanceIterator.next().instance.getNamespace().equals(namespace)) {
+        instanceIterator.remove();
+      }
+    }
+    Iterator<Id.DatasetType> typeIterator = types.asMap().keySet().iterator();
+    while (typeIterator.hasNext()) {
+      if (typeIterator.next().getNamespace().equals(namespace)) {
+        typeIterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Invalidates the entries affected by the given change.
+   */
+  @VisibleForTesting
+  void changed(DatasetChangeNotification notification) {
+    Id.DatasetInstance instance = notification.getInstance();
+    if (instance == null) {
+      invalidate(notification.getNamespace());
+    } else {
+      invalidate(instance);
+    }
+  }
+
+  @Nullable
+  private <K, V> V get(Cache<K, V> cache, K key, Loader<V> loader) throws DatasetManagementException {
+    if (!enabled) {
+      return loader.load();
+    }
+    subscribeIfNeeded();
+
+    V value = cache.getIfPresent(key);
+    if (value != null) {
+      increment(Constants.Metrics.Name.Dataset.META_CACHE_HITS, 1);
+      return value;
+    }
+
+    long loadGeneration;
+    synchronized (this) {
+      loadGeneration = generation;
+    }
+    long startTime = System.currentTimeMillis();
+    value = loader.load();
+    increment(Constants.Metrics.Name.Dataset.META_CACHE_MISSES, 1);
+    increment(Constants.Metrics.Name.Dataset.META_LOAD_MILLIS, System.currentTimeMillis() - startTime);
+
+    if (value != null) {
+      synchronized (this) {
+        if (generation == loadGeneration) {
+          cache.put(key, value);
+        }
+      }
+    }
+    return value;
+  }
+
+  private void increment(String metricName, long delta) {
+    MetricsContext context = metricsContext;
+    if (context != null) {
+      context.increment(metricName, delta);
+    }
+  }
+
+  /**
+   * Subscribes to the {@link DatasetChangeNotification}s if a running {@link NotificationService} is available.
+   * Failed attempts are retried after {@link #SUBSCRIBE_RETRY_MILLIS}, since the feed is only created when the
+   * dataset service publishes the first change.
+   */
+  private void subscribeIfNeeded() {
+    NotificationService service = notificationService;
+    if (service == null || subscription != null || System.currentTimeMillis() < nextSubscribeMillis) {
+      return;
+    }
+    synchronized (changeHandler) {
+      long now = System.currentTimeMillis();
+      if (subscription != null || now < nextSubscribeMillis || !service.isRunning()) {
+        return;
+      }
+      nextSubscribeMillis = now + SUBSCRIBE_RETRY_MILLIS;
+      try {
+        subscription = service.subscribe(DatasetChangeNotification.FEED, changeHandler);
+        LOG.debug("Subscribed to dataset changes in feed {}", DatasetChangeNotification.FEED);
+      } catch (NotificationFeedNotFoundException | NotificationFeedException e) {
+        LOG.debug("Unable to subscribe to dataset changes in feed {}. Will retry later.",
+                  DatasetChangeNotification.FEED, e);
+      } catch (RuntimeException e) {
+        LOG.warn("Failed to subscribe to dataset changes in feed {}. Will retry later.",
+                 DatasetChangeNotification.FEED, e);
+      }
+    }
+  }
+
+  /**
+   * Fetches a meta from the dataset service.
+   *
+   * @param <T> type of the meta
+   */
+  public interface Loader<T> {
+
+    /**
+     * @return the meta or {@code null} if it does not exist
+     */
+    @Nullable
+    T load() throws DatasetManagementException;
+  }
+
+  /**
+   * Cache key of a dataset instance meta, which depends on the owners and the principal that it was fetched for.
+   */
+  private static final class InstanceKey {
+    private final Id.DatasetInstance instance;
+    private final Set<Id> owners;
+    private final Principal principal;
+
+    InstanceKey(Id.DatasetInstance instance, @Nullable Iterable<? extends Id> owners, @Nullable Principal principal) {
+      this.instance = instance;
+      this.owners = owners == null ? ImmutableSet.<Id>of() : ImmutableSet.<Id>copyOf(owners);
+      this.principal = principal;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      InstanceKey that = (InstanceKey) o;
+      return instance.equals(that.instance) && owners.equals(that.owners)
+        && Objects.equal(principal, that.principal);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(instance, owners, principal);
+    }
+  }
+}
@@ -40,6 +40,7 @@ import co.cask.cdap.proto.DatasetModuleMeta;
 import co.cask.cdap.proto.DatasetSpecificationSummary;
 import co.cask.cdap.proto.DatasetTypeMeta;
 import co.cask.cdap.proto.Id;
+import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.security.spi.authentication.AuthenticationContext;
 import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
@@ -78,11 +79,19 @@ public class RemoteDatasetFramework implements DatasetFramework {
   private final CConfiguration cConf;
   private final LoadingCache<Id.Namespace, DatasetServiceClient> clientCache;
   private final DatasetDefinitionRegistryFactory registryFactory;
+  private final DatasetMetaCache metaCache;
+  private final AuthenticationContext authenticationContext;
+
+  public RemoteDatasetFramework(CConfiguration cConf, DiscoveryServiceClient discoveryClient,
+                                DatasetDefinitionRegistryFactory registryFactory,
+                                AuthenticationContext authenticationContext) {
+    this(cConf, discoveryClient, registryFactory, authenticationContext, new DatasetMetaCache(cConf));
+  }
 
   @Inject
   public RemoteDatasetFramework(final CConfiguration cConf, final DiscoveryServiceClient discoveryClient,
                                 DatasetDefinitionRegistryFactory registryFactory,
-                                final AuthenticationContext authenticationContext) {
+                                final AuthenticationContext authenticationContext, DatasetMetaCache metaCache) {
     this.cConf = cConf;
     this.clientCache = CacheBuilder.newBuilder().build(new CacheLoader<Id.Namespace, DatasetServiceClient>() {
       @Override
@@ -91,6 +100,8 @@ public class RemoteDatasetFramework implements DatasetFramework {
       }
     });
     this.registryFactory = registryFactory;
+    this.metaCache = metaCache;
+    this.authenticationContext = authenticationContext;
   }
 
   @Override
@@ -101,6 +112,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
       try {
         clientCache.getUnchecked(moduleId.getNamespace())
           .addModule(moduleId.getId(), moduleClass.getName(), deploymentJar);
+        metaCache.invalidate(moduleId.getNamespace());
       } finally {
         try {
           deploymentJar.delete();
@@ -122,16 +134,19 @@ public class RemoteDatasetFramework implements DatasetFramework {
                         Location jarLocation) throws DatasetManagementException {
     clientCache.getUnchecked(moduleId.getNamespace())
       .addModule(moduleId.getId(), DatasetModules.getDatasetModuleClass(module).getName(), jarLocation);
+    metaCache.invalidate(moduleId.getNamespace());
   }
 
   @Override
   public void deleteModule(Id.DatasetModule moduleId) throws DatasetManagementException {
     clientCache.getUnchecked(moduleId.getNamespace()).deleteModule(moduleId.getId());
+    metaCache.invalidate(moduleId.getNamespace());
   }
 
   @Override
   public void deleteAllModules(Id.Namespace namespaceId) throws DatasetManagementException {
     clientCache.getUnchecked(namespaceId).deleteModules();
+    metaCache.invalidate(namespaceId);
   }
 
   @Override
@@ -139,6 +154,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getNamespace())
       .addInstance(datasetInstanceId.getId(), datasetType, props);
+    metaCache.invalidate(datasetInstanceId);
   }
 
   @Override
@@ -146,6 +162,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getNamespace())
       .updateInstance(datasetInstanceId.getId(), props);
+    metaCache.invalidate(datasetInstanceId);
   }
 
   @Override
@@ -157,14 +174,13 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Nullable
   @Override
   public DatasetSpecification getDatasetSpec(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
-    DatasetMeta meta = clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .getInstance(datasetInstanceId.getId());
+    DatasetMeta meta = getInstance(datasetInstanceId, null);
     return meta == null ? null : meta.getSpec();
   }
 
   @Override
   public boolean hasInstance(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
-    return clientCache.getUnchecked(datasetInstanceId.getNamespace()).getInstance(datasetInstanceId.getId()) != null;
+    return getInstance(datasetInstanceId, null) != null;
   }
 
   @Override
@@ -174,12 +190,17 @@ public class RemoteDatasetFramework implements DatasetFramework {
 
   @Override
   public boolean hasType(Id.DatasetType datasetTypeId) throws DatasetManagementException {
-    return clientCache.getUnchecked(datasetTypeId.getNamespace()).getType(datasetTypeId.getTypeName()) != null;
+    return getTypeInfo(datasetTypeId) != null;
   }
 
   @Override
-  public DatasetTypeMeta getTypeInfo(Id.DatasetType datasetTypeId) throws DatasetManagementException {
-    return clientCache.getUnchecked(datasetTypeId.getNamespace()).getType(datasetTypeId.getTypeName());
+  public DatasetTypeMeta getTypeInfo(final Id.DatasetType datasetTypeId) throws DatasetManagementException {
+    return metaCache.getType(datasetTypeId, new DatasetMetaCache.Loader<DatasetTypeMeta>() {
+      @Override
+      public DatasetTypeMeta load() throws DatasetManagementException {
+        return clientCache.getUnchecked(datasetTypeId.getNamespace()).getType(datasetTypeId.getTypeName());
+      }
+    });
   }
 
   @Override
@@ -190,11 +211,13 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Override
   public void deleteInstance(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getNamespace()).deleteInstance(datasetInstanceId.getId());
+    metaCache.invalidate(datasetInstanceId);
   }
 
   @Override
   public void deleteAllInstances(Id.Namespace namespaceId) throws DatasetManagementException, IOException {
     clientCache.getUnchecked(namespaceId).deleteInstances();
+    metaCache.invalidate(namespaceId);
   }
 
   @Override
@@ -209,8 +232,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
                                              @Nullable ClassLoader parentClassLoader,
                                              DatasetClassLoaderProvider classLoaderProvider)
     throws DatasetManagementException, IOException {
-    DatasetMeta instanceInfo = clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .getInstance(datasetInstanceId.getId());
+    DatasetMeta instanceInfo = getInstance(datasetInstanceId, null);
     if (instanceInfo == null) {
       return null;
     }
@@ -236,7 +258,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
                                           @Nullable Iterable<? extends Id> owners, AccessType accessType)
     throws DatasetManagementException, IOException {
 
-    DatasetMeta datasetMeta = clientCache.getUnchecked(id.getNamespace()).getInstance(id.getId(), owners);
+    DatasetMeta datasetMeta = getInstance(id, owners);
     if (datasetMeta == null) {
       return null;
     }
@@ -250,6 +272,23 @@ public class RemoteDatasetFramework implements DatasetFramework {
     // no-op. The RemoteDatasetFramework doesn't need to do anything. The lineage should be recorded before this point.
   }
 
+  /**
+   * Returns the {@link DatasetMeta} of a dataset instance from the {@link DatasetMetaCache}, fetching it from the
+   * dataset service if it is not cached for the current principal.
+   */
+  @Nullable
+  private DatasetMeta getInstance(final Id.DatasetInstance datasetInstanceId,
+                                  @Nullable final Iterable<? extends Id> owners) throws DatasetManagementException {
+    Principal principal = authenticationContext.getPrincipal();
+    return metaCache.getInstance(datasetInstanceId, owners, principal, new DatasetMetaCache.Loader<DatasetMeta>() {
+      @Override
+      public DatasetMeta load() throws DatasetManagementException {
+        return clientCache.getUnchecked(datasetInstanceId.getNamespace())
+          .getInstance(datasetInstanceId.getId(), owners);
+      }
+    });
+  }
+
   private Location createDeploymentJar(Class<?> clz) throws IOException {
     File tempDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
                             cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.datafabric.dataset.service;
+
+import co.cask.cdap.data2.datafabric.dataset.DatasetChangeNotification;
+import co.cask.cdap.data2.datafabric.dataset.DatasetMetaCache;
+import co.cask.cdap.notifications.feeds.NotificationFeedManager;
+import co.cask.cdap.notifications.service.NotificationException;
+import co.cask.cdap.notifications.service.NotificationService;
+import co.cask.cdap.proto.Id;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes {@link DatasetChangeNotification}s, so that the {@link DatasetMetaCache} of other processes drop the
+ * changed entries. Nothing is published if there is no running {@link NotificationService}.
+ */
+@Singleton
+public class DatasetChangePublisher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetChangePublisher.class);
+
+  private NotificationService notificationService;
+  private NotificationFeedManager feedManager;
+  private volatile boolean feedCreated;
+
+  @Inject(optional = true)
+  public void setNotificationService(NotificationService notificationService) {
+    this.notificationService = notificationService;
+  }
+
+  @Inject(optional = true)
+  public void setNotificationFeedManager(NotificationFeedManager feedManager) {
+    this.feedManager = feedManager;
+  }
+
+  /**
+   * Publishes that a dataset instance was created, updated or deleted.
+   */
+  void instanceChanged(Id.DatasetInstance instance) {
+    publish(DatasetChangeNotification.of(instance));
+  }
+
+  /**
+   * Publishes that the dataset modules of a namespace were added or deleted.
+   */
+  void modulesChanged(Id.Namespace namespace) {
+    publish(DatasetChangeNotification.of(namespace));
+  }
+
+  private void publish(DatasetChangeNotification notification) {
+    if (notificationService == null || feedManager == null || !notificationService.isRunning()) {
+      return;
+    }
+    try {
+      if (!feedCreated) {
+        // Returns false if the feed already exists
+        feedManager.createFeed(DatasetChangeNotification.FEED);
+        feedCreated = true;
+      }
+      notificationService.publish(DatasetChangeNotification.FEED, notification);
+    } catch (NotificationException e) {
+      // Caches of other processes are still refreshed when their entries expire
+      LOG.warn("Failed to publish {} to feed {}", notification, DatasetChangeNotification.FEED, e);
+    }
+  }
+}
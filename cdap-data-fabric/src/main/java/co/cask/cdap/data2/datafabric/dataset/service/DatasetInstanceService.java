@@ -88,6 +88,7 @@ public class DatasetInstanceService {
   private final AuthenticationContext authenticationContext;
 
   private AuditPublisher auditPublisher;
+  private DatasetChangePublisher changePublisher = new DatasetChangePublisher();
 
   @VisibleForTesting
   @Inject
@@ -120,6 +121,11 @@ public class DatasetInstanceService {
     this.auditPublisher = auditPublisher;
   }
 
+  @Inject(optional = true)
+  public void setChangePublisher(DatasetChangePublisher changePublisher) {
+    this.changePublisher = changePublisher;
+  }
+
   /**
    * Lists all dataset instances in a namespace. If perimeter security and authorization are enabled, only returns the
    * dataset instances that the current user has access to.
@@ -265,6 +271,7 @@ public class DatasetInstanceService {
                                                             .build());
       instanceManager.add(namespace, spec);
       metaCache.invalidate(newInstance);
+      changePublisher.instanceChanged(newInstance);
       publishAudit(newInstance, AuditType.CREATE);
 
       // Enable explore
@@ -309,6 +316,7 @@ public class DatasetInstanceService {
     DatasetSpecification spec = opExecutorClient.update(instance, typeMeta, DatasetProperties.of(properties), existing);
     instanceManager.add(instance.getNamespace(), spec);
     metaCache.invalidate(instance);
+    changePublisher.instanceChanged(instance);
 
     DatasetInstanceConfiguration creationProperties =
       new DatasetInstanceConfiguration(existing.getType(), properties, null);
@@ -455,6 +463,7 @@ public class DatasetInstanceService {
       throw new DatasetNotFoundException(instance);
     }
     metaCache.invalidate(instance);
+    changePublisher.instanceChanged(instance);
 
     DatasetTypeMeta typeMeta = getTypeInfo(instance.getNamespace(), spec.getType());
     if (typeMeta == null) {
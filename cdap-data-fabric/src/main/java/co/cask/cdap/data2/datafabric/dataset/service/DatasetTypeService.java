@@ -111,6 +111,8 @@ public class DatasetTypeService extends AbstractIdleService {
   private final Map<String, DatasetModule> defaultModules;
   private final Map<String, DatasetModule> extensionModules;
 
+  private DatasetChangePublisher changePublisher = new DatasetChangePublisher();
+
   @Inject
   @VisibleForTesting
   public DatasetTypeService(DatasetTypeManager typeManager, NamespaceQueryAdmin namespaceQueryAdmin,
@@ -144,6 +146,11 @@ public class DatasetTypeService extends AbstractIdleService {
     this.extensionModules = getExtensionModules(cConf);
   }
 
+  @Inject(optional = true)
+  public void setChangePublisher(DatasetChangePublisher changePublisher) {
+    this.changePublisher = changePublisher;
+  }
+
   @Override
   protected void startUp() throws Exception {
     txClientService.startAndWait();
@@ -274,6 +281,7 @@ public class DatasetTypeService extends AbstractIdleService {
     } catch (DatasetModuleConflictException e) {
       throw new DatasetModuleCannotBeDeletedException(datasetModuleId, e.getMessage());
     }
+    changePublisher.modulesChanged(module.getNamespace());
 
     // revoke all privileges on the module to be deleted
     revokeAllPrivilegesOnModule(datasetModuleId, moduleMeta);
@@ -301,6 +309,7 @@ public class DatasetTypeService extends AbstractIdleService {
     } catch (DatasetModuleConflictException e) {
       throw new ConflictException(e.getMessage(), e);
     }
+    changePublisher.modulesChanged(namespace);
   }
 
   /**
@@ -429,6 +438,7 @@ public class DatasetTypeService extends AbstractIdleService {
           }
 
           typeManager.addModule(datasetModuleId.toId(), className, archive, forceUpdate);
+          changePublisher.modulesChanged(datasetModuleId.getParent().toId());
           // todo: response with DatasetModuleMeta of just added module (and log this info)
           // Ideally this should have been done before, but we cannot grant privileges on types until they've been
           // added to the type MDS. First revoke any orphaned privileges for types left behind by past failed revokes
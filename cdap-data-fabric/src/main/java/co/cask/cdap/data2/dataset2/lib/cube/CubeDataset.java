@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -105,18 +105,19 @@ public class CubeDataset extends AbstractDataset implements Cube {
   }
 
   private static final class FactTableSupplierImpl implements FactTableSupplier {
-    private final MetricsTable entityTable;
+    private final EntityTable entityTable;
     private final Map<Integer, Table> resolutionTables;
 
     private FactTableSupplierImpl(MetricsTable entityTable, Map<Integer, Table> resolutionTables) {
-      this.entityTable = entityTable;
+      // all resolutions share the same entity table and its cache
+      this.entityTable = new EntityTable(entityTable);
       this.resolutionTables = resolutionTables;
     }
 
     @Override
     public FactTable get(int resolution, int rollTime) {
       return new FactTable(new MetricsTableOnTable(resolutionTables.get(resolution)),
-                           new EntityTable(entityTable),
+                           entityTable,
                            resolution, rollTime);
     }
   }
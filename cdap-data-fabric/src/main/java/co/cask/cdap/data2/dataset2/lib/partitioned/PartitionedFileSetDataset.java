@@ -44,14 +44,18 @@ import co.cask.cdap.api.dataset.lib.PartitionMetadata;
 import co.cask.cdap.api.dataset.lib.PartitionOutput;
 import co.cask.cdap.api.dataset.lib.PartitionedFileSet;
 import co.cask.cdap.api.dataset.lib.PartitionedFileSetArguments;
+import co.cask.cdap.api.dataset.lib.PartitionedFileSetProperties;
 import co.cask.cdap.api.dataset.lib.Partitioning;
 import co.cask.cdap.api.dataset.lib.Partitioning.FieldType;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.file.FileSetDataset;
+import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.explore.client.ExploreFacade;
 import co.cask.cdap.proto.Id;
 import com.google.common.annotations.VisibleForTesting;
@@ -69,6 +73,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -88,6 +93,8 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
 
   private static final Logger LOG = LoggerFactory.getLogger(PartitionedFileSetDataset.class);
   private static final String QUARANTINE_DIR = ".quarantine";
+  // the maximum number of fuzzy keys to enumerate the values of bounded int and long conditions into
+  private static final int MAX_FUZZY_KEYS = 128;
 
   // column keys
   protected static final byte[] RELATIVE_PATH = { 'p' };
@@ -106,6 +113,8 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
   protected boolean ignoreInvalidRowsSilently = false;
 
   private final Id.DatasetInstance datasetInstanceId;
+  private final Set<String> indexedFields;
+  private final Set<String> indexedMetadataKeys;
 
   // In this map we keep track of the partitions that were added in the same transaction.
   // If the exact same partition is added again, we will not throw an error but only log a message that
@@ -137,6 +146,8 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
     this.partitioning = partitioning;
     this.exploreFacadeProvider = exploreFacadeProvider;
     this.datasetInstanceId = Id.DatasetInstance.from(datasetContext.getNamespaceId(), name);
+    this.indexedFields = PartitionedFileSetProperties.getIndexedFields(spec.getProperties());
+    this.indexedMetadataKeys = PartitionedFileSetProperties.getIndexedMetadataKeys(spec.getProperties());
   }
 
   @Override
@@ -271,8 +282,8 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
     byte[] nowInMillis = Bytes.toBytes(System.currentTimeMillis());
     put.add(CREATION_TIME_COL, nowInMillis);
     for (Map.Entry<String, ? extends Comparable> entry : key.getFields().entrySet()) {
-      put.add(Bytes.add(FIELD_PREFIX, Bytes.toBytes(entry.getKey())), // "f.<field name>"
-              Bytes.toBytes(entry.getValue().toString()));            // "<string rep. of value>"
+      put.add(columnKeyFromFieldName(entry.getKey()),     // "f.<field name>"
+              Bytes.toBytes(entry.getValue().toString())); // "<string rep. of value>"
     }
 
     addMetadataToPut(metadata, put);
@@ -561,6 +572,35 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
     return partitionDetails;
   }
 
+  @ReadOnly
+  @Override
+  public Set<PartitionDetail> getPartitionsByMetadata(String metadataKey, String metadataValue) {
+    byte[] columnKey = columnKeyFromMetadataKey(metadataKey);
+    byte[] value = Bytes.toBytes(metadataValue);
+    Set<PartitionDetail> partitionDetails = Sets.newHashSet();
+    // without an index, all partitions need to be scanned for the metadata value
+    try (Scanner scanner = indexedMetadataKeys.contains(metadataKey)
+      ? partitionsTable.readByIndex(columnKey, value) : partitionsTable.scan(null, null)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        byte[] pathBytes = row.get(RELATIVE_PATH);
+        if (pathBytes == null || !Bytes.equals(value, row.get(columnKey))) {
+          continue;
+        }
+        PartitionKey key;
+        try {
+          key = parseRowKey(row.getRow(), partitioning);
+        } catch (IllegalArgumentException e) {
+          LOG.debug(String.format("Failed to parse row key for partitioned file set '%s': %s",
+                                  getName(), Bytes.toStringBinary(row.getRow())));
+          continue;
+        }
+        partitionDetails.add(new BasicPartitionDetail(this, Bytes.toString(pathBytes), key, metadataFromRow(row)));
+      }
+    }
+    return partitionDetails;
+  }
+
   @VisibleForTesting
   Collection<String> getPartitionPaths(@Nullable PartitionFilter filter) {
     // this avoids constructing the Partition object for every partition.
@@ -582,6 +622,13 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
   // if decodeMetadata is false, null is passed as the PartitionMetadata to the PartitionConsumer,
   // for efficiency reasons, since the metadata is not always needed
   protected void getPartitions(@Nullable PartitionFilter filter, PartitionConsumer consumer, boolean decodeMetadata) {
+    ImmutablePair<byte[], byte[]> indexLookup = getIndexLookup(filter);
+    if (indexLookup != null) {
+      try (Scanner scanner = partitionsTable.readByIndex(indexLookup.getFirst(), indexLookup.getSecond())) {
+        consumeRows(scanner, filter, consumer, decodeMetadata, Long.MAX_VALUE);
+      }
+      return;
+    }
     byte[] startKey = generateStartKey(filter);
     byte[] endKey = generateStopKey(filter);
     getPartitions(filter, consumer, decodeMetadata, startKey, endKey, Long.MAX_VALUE);
@@ -589,32 +636,40 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
 
   private void getPartitions(@Nullable PartitionFilter filter, PartitionConsumer consumer, boolean decodeMetadata,
                              @Nullable byte[] startKey, @Nullable byte[] endKey, long limit) {
+    // the fuzzy row filter skips the rows that don't match the conditions on fields after the leading ones,
+    // which only restrict the start and end key
+    FuzzyRowFilter fuzzyRowFilter = filter == null ? null : generateFuzzyRowFilter(filter);
+    try (Scanner scanner = partitionsTable.scan(new Scan(startKey, endKey, fuzzyRowFilter))) {
+      consumeRows(scanner, filter, consumer, decodeMetadata, limit);
+    }
+  }
+
+  private void consumeRows(Scanner scanner, @Nullable PartitionFilter filter, PartitionConsumer consumer,
+                           boolean decodeMetadata, long limit) {
     long count = 0L;
-    try (Scanner scanner = partitionsTable.scan(startKey, endKey)) {
-      while (count < limit) {
-        Row row = scanner.next();
-        if (row == null) {
-          break;
-        }
-        PartitionKey key;
-        try {
-          key = parseRowKey(row.getRow(), partitioning);
-        } catch (IllegalArgumentException e) {
-          if (!ignoreInvalidRowsSilently) {
-            LOG.debug(String.format("Failed to parse row key for partitioned file set '%s': %s",
-                                    getName(), Bytes.toStringBinary(row.getRow())));
-          }
-          continue;
-        }
-        if (filter != null && !filter.match(key)) {
-          continue;
-        }
-        byte[] pathBytes = row.get(RELATIVE_PATH);
-        if (pathBytes != null) {
-          consumer.consume(key, Bytes.toString(pathBytes), decodeMetadata ? metadataFromRow(row) : null);
+    while (count < limit) {
+      Row row = scanner.next();
+      if (row == null) {
+        break;
+      }
+      PartitionKey key;
+      try {
+        key = parseRowKey(row.getRow(), partitioning);
+      } catch (IllegalArgumentException e) {
+        if (!ignoreInvalidRowsSilently) {
+          LOG.debug(String.format("Failed to parse row key for partitioned file set '%s': %s",
+                                  getName(), Bytes.toStringBinary(row.getRow())));
         }
-        count++;
+        continue;
       }
+      if (filter != null && !filter.match(key)) {
+        continue;
+      }
+      byte[] pathBytes = row.get(RELATIVE_PATH);
+      if (pathBytes != null) {
+        consumer.consume(key, Bytes.toString(pathBytes), decodeMetadata ? metadataFromRow(row) : null);
+      }
+      count++;
     }
   }
 
@@ -635,10 +690,16 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
     return Bytes.toString(columnKey, METADATA_PREFIX.length, columnKey.length - METADATA_PREFIX.length);
   }
 
-  private byte[] columnKeyFromMetadataKey(String metadataKey) {
+  // package visible for PartitionedFileSetDefinition
+  static byte[] columnKeyFromMetadataKey(String metadataKey) {
     return Bytes.add(METADATA_PREFIX, Bytes.toBytes(metadataKey));
   }
 
+  // package visible for PartitionedFileSetDefinition
+  static byte[] columnKeyFromFieldName(String fieldName) {
+    return Bytes.add(FIELD_PREFIX, Bytes.toBytes(fieldName));
+  }
+
 
   /**
    * Generate an output path for a given partition key.
@@ -1051,6 +1112,150 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
     return stopKey;
   }
 
+  /**
+   * Returns the index column and value to look up the partitions matching a filter, or null if the filter has no
+   * value condition on an indexed field, or if it has a value condition on the first field of the partitioning,
+   * which already restricts the scan to the matching partitions.
+   */
+  @Nullable
+  private ImmutablePair<byte[], byte[]> getIndexLookup(@Nullable PartitionFilter filter) {
+    if (filter == null || indexedFields.isEmpty()) {
+      return null;
+    }
+    String firstFieldName = partitioning.getFields().keySet().iterator().next();
+    PartitionFilter.Condition<? extends Comparable> firstCondition = filter.getCondition(firstFieldName);
+    if (firstCondition != null && firstCondition.isSingleValue()) {
+      return null;
+    }
+    for (String fieldName : indexedFields) {
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+      if (condition != null && condition.isSingleValue()) {
+        Comparable value = condition.getValue();
+        FieldType fieldType = partitioning.getFieldType(fieldName);
+        if (!FieldTypes.validateType(value, fieldType)) {
+          throw new IllegalArgumentException(
+            String.format("Invalid partition filter: value for %s field '%s' has incompatible type %s",
+                          fieldType.name(), fieldName, value.getClass().getName()));
+        }
+        // the field columns hold the string representation of the values
+        return ImmutablePair.of(columnKeyFromFieldName(fieldName), Bytes.toBytes(value.toString()));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Generates a fuzzy row filter for the conditions on fields that follow a field without a value condition,
+   * which the start and stop key of the scan cannot account for. A field can only be part of the fuzzy keys if
+   * all preceding fields have a fixed length in the row key, that is, if they are int or long fields, or string
+   * fields with a value condition. Bounded conditions on int and long fields are enumerated into multiple fuzzy
+   * keys, as long as the number of keys stays small.
+   *
+   * @return the fuzzy row filter, or null if it would not skip any rows beyond those skipped by the start and
+   *         stop key
+   */
+  @Nullable
+  private FuzzyRowFilter generateFuzzyRowFilter(PartitionFilter filter) {
+    List<byte[]> keys = Lists.<byte[]>newArrayList(new byte[0]);
+    byte[] mask = new byte[0];
+    int length = 0; // length of the fuzzy keys up to the last field with a condition
+    boolean skipsRows = false;
+    boolean allSingleValue = true;
+    boolean first = true;
+    for (Map.Entry<String, FieldType> entry : partitioning.getFields().entrySet()) {
+      String fieldName = entry.getKey();
+      FieldType fieldType = entry.getValue();
+      if (!first) {
+        // the \0 separator between fields
+        keys = appendToAll(keys, new byte[1]);
+        mask = Bytes.add(mask, new byte[1]);
+      }
+      first = false;
+
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+      List<byte[]> values = null;
+      if (condition != null && condition.isSingleValue()) {
+        if (!FieldTypes.validateType(condition.getValue(), fieldType)) {
+          return null; // this is reported by the match() of the filter
+        }
+        values = Collections.singletonList(FieldTypes.toBytes(condition.getValue(), fieldType));
+      } else if (fieldType != FieldType.STRING) {
+        values = enumerateValues(condition, fieldType, MAX_FUZZY_KEYS / keys.size());
+      }
+
+      if (values != null) {
+        // the values are in ascending order, hence the keys stay sorted
+        List<byte[]> newKeys = new ArrayList<>(keys.size() * values.size());
+        for (byte[] key : keys) {
+          for (byte[] value : values) {
+            newKeys.add(Bytes.add(key, value));
+          }
+        }
+        keys = newKeys;
+        mask = Bytes.add(mask, new byte[values.get(0).length]);
+        length = mask.length;
+        skipsRows |= !allSingleValue;
+        allSingleValue &= condition.isSingleValue();
+      } else if (fieldType != FieldType.STRING) {
+        // any value of this field matches
+        int size = fieldType == FieldType.INT ? Bytes.SIZEOF_INT : Bytes.SIZEOF_LONG;
+        keys = appendToAll(keys, new byte[size]);
+        byte[] fuzzy = new byte[size];
+        Arrays.fill(fuzzy, (byte) 1);
+        mask = Bytes.add(mask, fuzzy);
+        allSingleValue = false;
+      } else {
+        // the length of this field is not known, hence the position of the following fields neither
+        break;
+      }
+    }
+    if (!skipsRows) {
+      return null;
+    }
+    List<ImmutablePair<byte[], byte[]>> fuzzyKeys = new ArrayList<>(keys.size());
+    byte[] fuzzyMask = Arrays.copyOf(mask, length);
+    for (byte[] key : keys) {
+      fuzzyKeys.add(ImmutablePair.of(Arrays.copyOf(key, length), fuzzyMask));
+    }
+    return new FuzzyRowFilter(fuzzyKeys);
+  }
+
+  /**
+   * Returns the encoded values of a bounded condition on an int or long field, or null if the condition is not
+   * bounded or matches more than the given number of values.
+   */
+  @Nullable
+  private static List<byte[]> enumerateValues(@Nullable PartitionFilter.Condition<? extends Comparable> condition,
+                                              FieldType fieldType, int maxValues) {
+    if (condition == null || condition.getLower() == null || condition.getUpper() == null
+      || !FieldTypes.validateType(condition.getLower(), fieldType)
+      || !FieldTypes.validateType(condition.getUpper(), fieldType)) {
+      return null;
+    }
+    long lower = ((Number) condition.getLower()).longValue();
+    long upper = ((Number) condition.getUpper()).longValue();
+    // the upper bound is exclusive. If the difference of two longs overflows, it is negative
+    long count = upper - lower;
+    if (count <= 0 || count > maxValues) {
+      return null;
+    }
+    List<byte[]> values = new ArrayList<>((int) count);
+    for (long value = lower; value < upper; value++) {
+      values.add(fieldType == FieldType.INT
+                   ? FieldTypes.toBytes(Integer.valueOf((int) value), fieldType)
+                   : FieldTypes.toBytes(Long.valueOf(value), fieldType));
+    }
+    return values;
+  }
+
+  private static List<byte[]> appendToAll(List<byte[]> keys, byte[] bytes) {
+    List<byte[]> result = new ArrayList<>(keys.size());
+    for (byte[] key : keys) {
+      result.add(Bytes.add(key, bytes));
+    }
+    return result;
+  }
+
   @VisibleForTesting
   static PartitionKey parseRowKey(byte[] rowKey, Partitioning partitioning) {
     PartitionKey.Builder builder = PartitionKey.builder();
@@ -46,6 +46,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Defines the partitioned dataset type. At this time, the partitions are not managed by the
@@ -87,7 +88,7 @@ public class PartitionedFileSetDefinition
     // define the columns for indexing on the partitionsTable
     DatasetProperties indexedTableProperties = DatasetProperties.builder()
       .addAll(properties.getProperties())
-      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, INDEXED_COLS)
+      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, getIndexedColumns(partitioning, properties.getProperties()))
       .build();
     return DatasetSpecification.builder(instanceName, getName())
       .properties(properties.getProperties())
@@ -111,11 +112,24 @@ public class PartitionedFileSetDefinition
       throw new IncompatibleUpdateException(String.format(
         "Partitioning cannot be changed. Existing: %s, new: %s", oldPartitioning, newPartitioning));
     }
+    // the existing partitions would be missing from a new index
+    Set<String> oldIndexedFields = PartitionedFileSetProperties.getIndexedFields(currentSpec.getProperties());
+    Set<String> newIndexedFields = PartitionedFileSetProperties.getIndexedFields(properties.getProperties());
+    if (!oldIndexedFields.equals(newIndexedFields)) {
+      throw new IncompatibleUpdateException(String.format(
+        "Indexed partitioning fields cannot be changed. Existing: %s, new: %s", oldIndexedFields, newIndexedFields));
+    }
+    Set<String> oldIndexedKeys = PartitionedFileSetProperties.getIndexedMetadataKeys(currentSpec.getProperties());
+    Set<String> newIndexedKeys = PartitionedFileSetProperties.getIndexedMetadataKeys(properties.getProperties());
+    if (!oldIndexedKeys.equals(newIndexedKeys)) {
+      throw new IncompatibleUpdateException(String.format(
+        "Indexed metadata keys cannot be changed. Existing: %s, new: %s", oldIndexedKeys, newIndexedKeys));
+    }
 
     // define the columns for indexing on the partitionsTable
     DatasetProperties indexedTableProperties = DatasetProperties.builder()
       .addAll(properties.getProperties())
-      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, INDEXED_COLS)
+      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, getIndexedColumns(newPartitioning, properties.getProperties()))
       .build();
     return DatasetSpecification.builder(instanceName, getName())
       .properties(properties.getProperties())
@@ -126,6 +140,23 @@ public class PartitionedFileSetDefinition
       .build();
   }
 
+  /**
+   * Returns the columns of the partitions table to index: the write pointer and creation time columns, plus the
+   * columns of the partitioning fields and metadata keys that are declared as indexed in the properties.
+   */
+  private static String getIndexedColumns(Partitioning partitioning, Map<String, String> properties) {
+    StringBuilder columns = new StringBuilder(INDEXED_COLS);
+    for (String fieldName : PartitionedFileSetProperties.getIndexedFields(properties)) {
+      Preconditions.checkArgument(partitioning.getFields().containsKey(fieldName),
+                                  "Indexed field '%s' is not a field of the partitioning %s", fieldName, partitioning);
+      columns.append(',').append(Bytes.toString(PartitionedFileSetDataset.columnKeyFromFieldName(fieldName)));
+    }
+    for (String metadataKey : PartitionedFileSetProperties.getIndexedMetadataKeys(properties)) {
+      columns.append(',').append(Bytes.toString(PartitionedFileSetDataset.columnKeyFromMetadataKey(metadataKey)));
+    }
+    return columns.toString();
+  }
+
   @Override
   public DatasetAdmin getAdmin(DatasetContext datasetContext, DatasetSpecification spec,
                                ClassLoader classLoader) throws IOException {
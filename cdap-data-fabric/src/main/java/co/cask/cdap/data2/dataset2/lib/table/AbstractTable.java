@@ -20,6 +20,8 @@ import co.cask.cdap.api.annotation.ReadOnly;
 import co.cask.cdap.api.annotation.ReadWrite;
 import co.cask.cdap.api.annotation.WriteOnly;
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.KeyRangeRecordScannable;
+import co.cask.cdap.api.data.batch.ProjectableRecordScannable;
 import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.Split;
 import co.cask.cdap.api.data.batch.SplitReader;
@@ -47,14 +49,19 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Implements some of the methods in a generic way (not necessarily in most efficient way).
  */
-public abstract class AbstractTable implements Table, TransactionAware {
+public abstract class AbstractTable implements Table, TransactionAware,
+  KeyRangeRecordScannable<StructuredRecord>, ProjectableRecordScannable<StructuredRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(AbstractTable.class);
 
   // empty immutable row's column->value map constant
@@ -210,7 +217,34 @@ public abstract class AbstractTable implements Table, TransactionAware {
   @Override
   public RecordScanner<StructuredRecord> createSplitRecordScanner(Split split) {
     Preconditions.checkArgument(tableSchema != null, "Table has no schema and is not record scannable.");
-    return new StructuredRecordScanner(createSplitReader(split));
+    return new StructuredRecordScanner(createSplitReader(split), tableSchema);
+  }
+
+  @ReadOnly
+  @Override
+  public RecordScanner<StructuredRecord> createSplitRecordScanner(Split split, Set<String> fieldNames) {
+    Preconditions.checkArgument(tableSchema != null, "Table has no schema and is not record scannable.");
+    Set<String> names = new HashSet<>();
+    for (String fieldName : fieldNames) {
+      names.add(fieldName.toLowerCase());
+    }
+    List<Schema.Field> fields = new ArrayList<>();
+    for (Schema.Field field : tableSchema.getFields()) {
+      if (names.contains(field.getName().toLowerCase())) {
+        fields.add(field);
+      }
+    }
+    // A record needs at least one field, so read all of them if none is needed
+    if (fields.isEmpty() || fields.size() == tableSchema.getFields().size()) {
+      return createSplitRecordScanner(split);
+    }
+    return new StructuredRecordScanner(createSplitReader(split), Schema.recordOf(tableSchema.getRecordName(), fields));
+  }
+
+  @Nullable
+  @Override
+  public Schema.Field getKeyField() {
+    return tableSchema == null || rowFieldName == null ? null : tableSchema.getField(rowFieldName);
   }
 
   @WriteOnly
@@ -228,9 +262,13 @@ public abstract class AbstractTable implements Table, TransactionAware {
     private final ReflectionRowRecordReader rowReader;
     private final SplitReader<byte[], Row> tableSplitReader;
 
-    private StructuredRecordScanner(SplitReader<byte[], Row> tableSplitReader) {
+    /**
+     * Creates a scanner for records of the given schema, which contains all or some of the fields of the table schema.
+     */
+    private StructuredRecordScanner(SplitReader<byte[], Row> tableSplitReader, Schema recordSchema) {
       this.tableSplitReader = tableSplitReader;
-      this.rowReader = new ReflectionRowRecordReader(tableSchema, rowFieldName);
+      String recordRowField = rowFieldName != null && recordSchema.getField(rowFieldName) != null ? rowFieldName : null;
+      this.rowReader = new ReflectionRowRecordReader(recordSchema, recordRowField);
     }
 
     @Override
@@ -75,6 +75,9 @@ import javax.annotation.Nullable;
  * <p>
  * NOTE: current implementation persists changes only at the end of transaction. Beware of OOME. There should be better
  *       implementation for MapReduce case (YMMV though, for counters/aggregations this implementation looks sweet)
+ *       For transactions that write many cells, the table can be configured with the
+ *       {@link TableProperties.WriteBuffer#LOG} write buffer, which appends changes to a compact log and merges them
+ *       into the in-memory buffer only when it is read or persisted.
  * <p>
  * NOTE: Using {@link #get(byte[], byte[], byte[], int)} is generally always not efficient since it always hits the
  *       persisted store even if all needed data is in-memory buffer. See more info at method javadoc
@@ -99,6 +102,10 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // that the corresponded column was removed.
   private NavigableMap<byte[], NavigableMap<byte[], Update>> buff;
 
+  // Compact log of changes that are not yet merged into the in-memory buffer. It is only used when the table is
+  // configured with the LOG write buffer, and is folded into the buffer before the buffer is read.
+  private UpdateLog updateLog;
+
   // Keeps track of what was persisted so far
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
 
@@ -148,6 +155,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // Default uses the above scheme. Subclasses can change it by overriding the #getNameAsTxChangePrefix method
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) name.length()}, Bytes.toBytes(name));
     this.buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    if (TableProperties.getWriteBuffer(properties) == TableProperties.WriteBuffer.LOG) {
+      this.updateLog = new UpdateLog();
+    }
   }
 
   /**
@@ -258,6 +268,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void close() throws IOException {
     // releasing resources
     buff = null;
+    updateLog = null;
     toUndo = null;
   }
 
@@ -270,6 +281,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
     // starting with fresh buffer when tx starts
     buff.clear();
+    clearUpdateLog();
     toUndo = null;
   }
 
@@ -290,6 +302,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public Collection<byte[]> getTxChanges() {
+    foldUpdateLog();
     switch (conflictLevel) {
       case NONE:
         return Collections.emptyList();
@@ -334,6 +347,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public boolean commitTx() throws Exception {
+    foldUpdateLog();
     if (!buff.isEmpty()) {
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
       // rollback everything we had in in-memory buffer.
@@ -353,12 +367,14 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void postTxCommit() {
     // don't need buffer anymore: tx has been committed
     buff.clear();
+    clearUpdateLog();
     toUndo = null;
   }
 
   @Override
   public boolean rollbackTx() throws Exception {
     buff.clear();
+    clearUpdateLog();
     if (toUndo != null) {
       undo(toUndo);
       toUndo = null;
@@ -399,6 +415,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public Row get(byte[] row, byte[] startColumn, byte[] stopColumn, int limit) {
     reportRead(1);
+    foldUpdateLog();
     // checking if the row was deleted inside this tx
     NavigableMap<byte[], Update> buffCols = buff.get(row);
 
@@ -433,6 +450,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     try {
       // get persisted, then overwrite with whats buffered
       List<Map<byte[], byte[]>> persistedRows = getPersisted(gets);
+      foldUpdateLog();
       // gets and rows lists are always of the same size
       Preconditions.checkArgument(gets.size() == persistedRows.size(),
         "Invalid number of rows fetched when performing multi-get. There must be one row for each get.");
@@ -483,6 +501,16 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   private void putInternal(byte[] row, byte[][] columns, byte[][] values) {
+    if (updateLog != null) {
+      // the log copies the passed byte arrays into its arena
+      for (int i = 0; i < columns.length; i++) {
+        if (values[i] != null && values[i].length == 0) {
+          warnAboutEmptyValue(columns[i]);
+        }
+        updateLog.put(row, columns[i], values[i]);
+      }
+      return;
+    }
     NavigableMap<byte[], Update> colVals = buff.get(row);
     boolean newRow = false;
     if (colVals == null) {
@@ -598,7 +626,15 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @WriteOnly
   @Override
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
-    if (enableReadlessIncrements) {
+    if (enableReadlessIncrements && updateLog != null && !mayFailIncrement(row, columns)) {
+      for (int i = 0; i < columns.length; i++) {
+        updateLog.increment(row, columns[i], amounts[i]);
+      }
+      reportWrite(1, getSize(row) + getSize(columns) + getSize(amounts));
+    } else if (enableReadlessIncrements) {
+      // an increment that may fail is merged into the buffer right away, so that it fails here, and not
+      // when the update log is folded, after other changes were made
+      foldUpdateLog();
       NavigableMap<byte[], Update> colVals = buff.get(row);
       if (colVals == null) {
         colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
@@ -682,6 +718,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan) {
+    foldUpdateLog();
     NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
     byte[] startRow = scan.getStartRow();
     byte[] stopRow = scan.getStopRow();
@@ -721,6 +758,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    foldUpdateLog();
     // checking if the row was deleted inside this tx
     NavigableMap<byte[], Update> buffCols = buff.get(row);
     boolean rowDeleted = buffCols == null && buff.containsKey(row);
@@ -742,6 +780,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Map<byte[], byte[]> getRowMap(byte[] row, byte[][] columns) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    foldUpdateLog();
     // checking if the row was deleted inside this tx
     NavigableMap<byte[], Update> buffCols = buff.get(row);
 
@@ -824,6 +863,51 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
+  /**
+   * Merges the changes in the update log, if there is any, into the in-memory buffer. This must be called
+   * before reading from the in-memory buffer.
+   */
+  private void foldUpdateLog() {
+    if (updateLog != null && !updateLog.isEmpty()) {
+      try {
+        updateLog.foldInto(buff);
+      } finally {
+        // never merge the same changes twice
+        updateLog.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns whether incrementing the given columns may fail because a buffered value of one of them is not a long.
+   * This is always the case while the update log contains such a value, to avoid looking up the cells in it.
+   */
+  private boolean mayFailIncrement(byte[] row, byte[][] columns) {
+    if (updateLog.hasNonLongPuts()) {
+      return true;
+    }
+    NavigableMap<byte[], Update> colVals = buff.get(row);
+    if (colVals == null) {
+      return false;
+    }
+    for (byte[] column : columns) {
+      Update update = colVals.get(column);
+      if (update instanceof PutValue) {
+        byte[] bytes = ((PutValue) update).getBytes();
+        if (bytes != null && bytes.length != Bytes.SIZEOF_LONG) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private void clearUpdateLog() {
+    if (updateLog != null) {
+      updateLog.clear();
+    }
+  }
+
   // utilities useful for underlying implementations
 
   protected static <T> NavigableMap<byte[], T> getRange(NavigableMap<byte[], T> rowMap,
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -192,7 +192,7 @@ public final class FuzzyRowFilter implements Filter {
       // (see the code of getNextForFuzzyRule below) by one.
       // Note: if non-fixed byte is already at biggest value, this doesn't allow us to say there's
       //       bigger one that satisfies the rule as it can't be increased.
-      if (fuzzyKeyMeta[i] == 1 && !isMax(fuzzyKeyBytes[i])) {
+      if (fuzzyKeyMeta[i] == 1 && !isMax(row[i + offset])) {
         nextRowKeyCandidateExists = true;
       }
     }
@@ -200,8 +200,8 @@ public final class FuzzyRowFilter implements Filter {
     return SatisfiesCode.YES;
   }
 
-  private static boolean isMax(byte fuzzyKeyByte) {
-    return (fuzzyKeyByte & 0xFF) == 255;
+  private static boolean isMax(byte b) {
+    return (b & 0xFF) == 255;
   }
 
   static byte[] getNextForFuzzyRule(byte[] row, byte[] fuzzyKeyBytes, byte[] fuzzyKeyMeta) {
@@ -228,9 +228,20 @@ public final class FuzzyRowFilter implements Filter {
 
     boolean increased = false;
     for (int i = 0; i < result.length; i++) {
+      if (i >= length) {
+        // the row is shorter than the fuzzy key and a prefix of the result, hence the result is greater already.
+        // Use the smallest values for the remaining "non-fixed" positions
+        for (int j = i; j < fuzzyKeyMeta.length; j++) {
+          if (fuzzyKeyMeta[j] == 1) {
+            result[j] = 0;
+          }
+        }
+        increased = true;
+        break;
+      }
       if (i >= fuzzyKeyMeta.length || fuzzyKeyMeta[i] == 1) {
         result[i] = row[offset + i];
-        if (!isMax(row[i])) {
+        if (!isMax(row[offset + i])) {
           // this is "non-fixed" position and is not at max value, hence we can increase it
           toInc = i;
         }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -233,6 +233,17 @@ public class MetadataStoreDataset extends AbstractDataset {
     }
   }
 
+  /**
+   * Deletes the entry with exactly the given key, without scanning for other keys with the same prefix.
+   */
+  public void delete(MDSKey id) {
+    try {
+      table.delete(new Delete(id.getKey()).add(COLUMN));
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
   public void deleteAll(MDSKey id) {
     byte[] prefix = id.getKey();
     byte[] stopKey = Bytes.stopKeyForPrefix(prefix);
@@ -20,6 +20,8 @@ import co.cask.cdap.api.annotation.Beta;
 import co.cask.cdap.api.annotation.ReadOnly;
 import co.cask.cdap.api.annotation.WriteOnly;
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.KeyRangeRecordScannable;
+import co.cask.cdap.api.data.batch.ProjectableRecordScannable;
 import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.Split;
 import co.cask.cdap.api.data.batch.SplitReader;
@@ -47,6 +49,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -55,7 +58,8 @@ import javax.annotation.Nullable;
  * @param <T> the type of objects in the table
  */
 @Beta
-public class ObjectMappedTableDataset<T> extends AbstractDataset implements ObjectMappedTable<T> {
+public class ObjectMappedTableDataset<T> extends AbstractDataset implements ObjectMappedTable<T>,
+  KeyRangeRecordScannable<StructuredRecord>, ProjectableRecordScannable<StructuredRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(ObjectMappedTableDataset.class);
 
   private final Table table;
@@ -191,6 +195,22 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
     return table.createSplitRecordScanner(split);
   }
 
+  @SuppressWarnings("unchecked")
+  @ReadOnly
+  @Override
+  public RecordScanner<StructuredRecord> createSplitRecordScanner(Split split, Set<String> fieldNames) {
+    if (table instanceof ProjectableRecordScannable) {
+      return ((ProjectableRecordScannable<StructuredRecord>) table).createSplitRecordScanner(split, fieldNames);
+    }
+    return table.createSplitRecordScanner(split);
+  }
+
+  @Nullable
+  @Override
+  public Schema.Field getKeyField() {
+    return table instanceof KeyRangeRecordScannable ? ((KeyRangeRecordScannable<?>) table).getKeyField() : null;
+  }
+
   @ReadOnly
   @Override
   public SplitReader<byte[], T> createSplitReader(Split split) {
@@ -33,6 +33,22 @@ public class TableProperties {
 
   private static final byte[] DEFAULT_DATA_COLUMN_FAMILY = Bytes.toBytes("d");
 
+  /**
+   * Types of in-memory buffer that a {@link BufferingTable} keeps the changes of a transaction in.
+   */
+  public enum WriteBuffer {
+    /**
+     * Keeps the changes in sorted maps as they are written. Best for transactions that mostly read their own writes.
+     */
+    MAP,
+
+    /**
+     * Appends the changes to a compact byte array log and merges them into sorted maps only when the buffer is read
+     * or persisted. Best for transactions that write a large number of cells without reading them back.
+     */
+    LOG
+  }
+
   /**
    * Extract the schema, parsed as Json, from the properties.
    *
@@ -82,6 +98,23 @@ public class TableProperties {
     return "true".equalsIgnoreCase(props.get(Table.PROPERTY_READLESS_INCREMENT));
   }
 
+  /**
+   * Returns the type of write buffer defined in the given specification. Defaults to {@link WriteBuffer#MAP}.
+   *
+   * @throws IllegalArgumentException if the property value is not a valid write buffer type.
+   */
+  public static WriteBuffer getWriteBuffer(Map<String, String> props) {
+    String value = props.get(Constants.Dataset.TABLE_WRITE_BUFFER);
+    if (value == null) {
+      return WriteBuffer.MAP;
+    }
+    try {
+      return WriteBuffer.valueOf(value.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid write buffer type: " + value);
+    }
+  }
+
   /**
    * Returns whether or not the dataset defined in the given specification is transactional.
    * Defaults to true.
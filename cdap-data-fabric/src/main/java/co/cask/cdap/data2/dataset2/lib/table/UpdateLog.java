@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * An append-only log of table updates, kept in a single byte array arena. Appending an update copies the row,
+ * column and value into the arena without creating any per-cell objects. The updates are sorted and merged into
+ * the row->(column->update) map used by {@link BufferingTable} only when {@link #foldInto(NavigableMap)} is called,
+ * which materializes one {@link Update} per distinct cell instead of one per write.
+ * <p>
+ * Each entry in the arena is laid out as
+ * {@code [type (1 byte)][row length (4 bytes)][row][column length (4 bytes)][column][value length (4 bytes)][value]}.
+ */
+@NotThreadSafe
+final class UpdateLog {
+
+  private static final byte TYPE_PUT = 0;
+  private static final byte TYPE_DELETE = 1;
+  private static final byte TYPE_INCREMENT = 2;
+
+  private static final int INITIAL_ARENA_SIZE = 64 * 1024;
+  private static final int INITIAL_ENTRIES = 1024;
+  // Arena larger than this will be released on clear, so that a large transaction doesn't pin memory forever
+  private static final int MAX_RETAINED_ARENA_SIZE = 4 * 1024 * 1024;
+
+  private byte[] arena = new byte[INITIAL_ARENA_SIZE];
+  private int arenaSize;
+  private int[] entries = new int[INITIAL_ENTRIES];
+  private int entryCount;
+  // whether any put of a value that cannot be incremented was appended since the last clear
+  private boolean nonLongPuts;
+
+  /**
+   * Appends a put. A {@code null} value represents a delete of the column.
+   */
+  void put(byte[] row, byte[] column, @Nullable byte[] value) {
+    if (value == null) {
+      append(TYPE_DELETE, row, column, 0);
+    } else {
+      int offset = append(TYPE_PUT, row, column, value.length);
+      Bytes.putBytes(arena, offset, value, 0, value.length);
+      nonLongPuts |= value.length != Bytes.SIZEOF_LONG;
+    }
+  }
+
+  /**
+   * Appends an increment.
+   */
+  void increment(byte[] row, byte[] column, long amount) {
+    int offset = append(TYPE_INCREMENT, row, column, Bytes.SIZEOF_LONG);
+    Bytes.putLong(arena, offset, amount);
+  }
+
+  boolean isEmpty() {
+    return entryCount == 0;
+  }
+
+  /**
+   * Returns the number of updates in this log.
+   */
+  int size() {
+    return entryCount;
+  }
+
+  /**
+   * Returns whether this log contains a put of a value that is not a long, on top of which an increment
+   * would fail when the log is folded.
+   */
+  boolean hasNonLongPuts() {
+    return nonLongPuts;
+  }
+
+  /**
+   * Removes all updates from this log.
+   */
+  void clear() {
+    arenaSize = 0;
+    entryCount = 0;
+    nonLongPuts = false;
+    if (arena.length > MAX_RETAINED_ARENA_SIZE) {
+      arena = new byte[INITIAL_ARENA_SIZE];
+      entries = new int[INITIAL_ENTRIES];
+    }
+  }
+
+  /**
+   * Merges all updates in this log, in the order they were appended, on top of the given buffer.
+   * Puts and deletes replace the buffered update of a cell, and increments are merged with it with
+   * {@link Updates#mergeUpdates(Update, Update)}. The log itself is not modified.
+   *
+   * @param buffer the row->(column->update) map to merge into
+   * @throws NumberFormatException if an increment is applied on a put value that is not a long. Callers that
+   *         must not fail here only append increments if {@link #hasNonLongPuts()} is false and the buffer
+   *         holds no such value for the cell
+   */
+  void foldInto(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) {
+    if (entryCount == 0) {
+      return;
+    }
+    int[] sorted = sortEntries();
+    NavigableMap<byte[], Update> colVals = null;
+    boolean newRow = true;
+    int i = 0;
+    while (i < entryCount) {
+      int entry = sorted[i];
+      if (newRow) {
+        byte[] row = getRow(entry);
+        colVals = buffer.get(row);
+        if (colVals == null) {
+          colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+          buffer.put(row, colVals);
+        }
+      }
+
+      // Process all entries of the same cell, which are adjacent after sorting. Only the last put or delete of the
+      // cell needs to be materialized, and the increments after it are summed up.
+      byte[] column = getColumn(entry);
+      int lastPut = -1;
+      long increment = 0L;
+      boolean incremented = false;
+      while (true) {
+        if (arena[entry] == TYPE_INCREMENT) {
+          increment += Bytes.toLong(arena, getValueOffset(entry));
+          incremented = true;
+        } else {
+          lastPut = entry;
+          increment = 0L;
+          incremented = false;
+        }
+        if (++i == entryCount) {
+          break;
+        }
+        int next = sorted[i];
+        newRow = compareRows(entry, next) != 0;
+        if (newRow || compareColumns(entry, next) != 0) {
+          break;
+        }
+        entry = next;
+      }
+
+      Update update = lastPut < 0 ? colVals.get(column) : new PutValue(getValue(lastPut));
+      if (incremented) {
+        update = Updates.mergeUpdates(update, new IncrementValue(increment));
+      }
+      colVals.put(column, update);
+    }
+  }
+
+  /**
+   * Appends a new entry with the given row and column, and reserves space for the value.
+   *
+   * @return offset in the arena to write the value to
+   */
+  private int append(byte type, byte[] row, byte[] column, int valueLength) {
+    ensureCapacity(1 + Bytes.SIZEOF_INT * 3 + row.length + column.length + valueLength);
+
+    int offset = arenaSize;
+    arena[offset++] = type;
+    offset = Bytes.putInt(arena, offset, row.length);
+    offset = Bytes.putBytes(arena, offset, row, 0, row.length);
+    offset = Bytes.putInt(arena, offset, column.length);
+    offset = Bytes.putBytes(arena, offset, column, 0, column.length);
+    offset = Bytes.putInt(arena, offset, valueLength);
+
+    entries[entryCount++] = arenaSize;
+    arenaSize = offset + valueLength;
+    return offset;
+  }
+
+  private void ensureCapacity(int entryLength) {
+    if (entryCount == entries.length) {
+      entries = Arrays.copyOf(entries, entries.length * 2);
+    }
+    long required = (long) arenaSize + entryLength;
+    if (required > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("Too many buffered updates. Exceeded " + Integer.MAX_VALUE + " bytes.");
+    }
+    if (required > arena.length) {
+      arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, arena.length * 2L)));
+    }
+  }
+
+  /**
+   * Returns the entry offsets sorted by row and column. Entries of the same cell stay in the order they
+   * were appended.
+   */
+  private int[] sortEntries() {
+    int[] sorted = Arrays.copyOf(entries, entryCount);
+    // Writes are often already in order, e.g. from a MapReduce output or a bulk load
+    int i = 1;
+    while (i < entryCount && compare(sorted[i - 1], sorted[i]) <= 0) {
+      i++;
+    }
+    if (i < entryCount) {
+      mergeSort(sorted, new int[entryCount], 0, entryCount);
+    }
+    return sorted;
+  }
+
+  private void mergeSort(int[] values, int[] buffer, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(values, buffer, from, mid);
+    mergeSort(values, buffer, mid, to);
+    if (compare(values[mid - 1], values[mid]) <= 0) {
+      // already in order
+      return;
+    }
+    System.arraycopy(values, from, buffer, from, to - from);
+    int left = from;
+    int right = mid;
+    for (int i = from; i < to; i++) {
+      // take from the left on ties to keep the append order
+      if (right >= to || (left < mid && compare(buffer[left], buffer[right]) <= 0)) {
+        values[i] = buffer[left++];
+      } else {
+        values[i] = buffer[right++];
+      }
+    }
+  }
+
+  private int compare(int entry1, int entry2) {
+    int cmp = compareRows(entry1, entry2);
+    return cmp == 0 ? compareColumns(entry1, entry2) : cmp;
+  }
+
+  private int compareRows(int entry1, int entry2) {
+    return Bytes.compareTo(arena, entry1 + 1 + Bytes.SIZEOF_INT, getRowLength(entry1),
+                           arena, entry2 + 1 + Bytes.SIZEOF_INT, getRowLength(entry2));
+  }
+
+  private int compareColumns(int entry1, int entry2) {
+    return Bytes.compareTo(arena, getColumnOffset(entry1) + Bytes.SIZEOF_INT, getColumnLength(entry1),
+                           arena, getColumnOffset(entry2) + Bytes.SIZEOF_INT, getColumnLength(entry2));
+  }
+
+  private int getRowLength(int entry) {
+    return Bytes.toInt(arena, entry + 1);
+  }
+
+  private int getColumnOffset(int entry) {
+    return entry + 1 + Bytes.SIZEOF_INT + getRowLength(entry);
+  }
+
+  private int getColumnLength(int entry) {
+    return Bytes.toInt(arena, getColumnOffset(entry));
+  }
+
+  private int getValueOffset(int entry) {
+    int columnOffset = getColumnOffset(entry);
+    return columnOffset + Bytes.SIZEOF_INT + getColumnLength(entry) + Bytes.SIZEOF_INT;
+  }
+
+  private byte[] getRow(int entry) {
+    int offset = entry + 1 + Bytes.SIZEOF_INT;
+    return Arrays.copyOfRange(arena, offset, offset + getRowLength(entry));
+  }
+
+  private byte[] getColumn(int entry) {
+    int offset = getColumnOffset(entry) + Bytes.SIZEOF_INT;
+    return Arrays.copyOfRange(arena, offset, offset + getColumnLength(entry));
+  }
+
+  @Nullable
+  private byte[] getValue(int entry) {
+    if (arena[entry] == TYPE_DELETE) {
+      return null;
+    }
+    int offset = getValueOffset(entry);
+    return Arrays.copyOfRange(arena, offset, offset + Bytes.toInt(arena, offset - Bytes.SIZEOF_INT));
+  }
+}
@@ -105,8 +105,8 @@ public class LevelDBTable extends BufferingTable {
   @WriteOnly
   private void persist(NavigableMap<byte[], NavigableMap<byte[], Long>> increments,
                        NavigableMap<byte[], NavigableMap<byte[], byte[]>> puts) throws IOException {
-    for (Map.Entry<byte[], NavigableMap<byte[], Long>> incEntry : increments.entrySet()) {
-      core.increment(incEntry.getKey(), incEntry.getValue());
+    if (!increments.isEmpty()) {
+      core.increment(increments);
     }
     core.persist(puts, persistedVersion);
   }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -26,6 +26,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.tephra.Transaction;
 import org.iq80.leveldb.DB;
@@ -40,8 +41,13 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.Nullable;
 
 /**
@@ -75,11 +81,20 @@ public class LevelDBTableCore {
   static final NavigableMap<byte[], byte[]> EMPTY_ROW_MAP =
     ImmutableSortedMap.<byte[], byte[]>orderedBy(Bytes.BYTES_COMPARATOR).build();
 
+  // Number of row lock stripes. Must be a power of two.
+  private static final int ROW_LOCK_STRIPES = 1024;
+
+  // Row locks for read-modify-write operations. They are shared by all instances, since different instances may
+  // operate on the same table, and are picked by the hash of the table name and the row key.
+  private static final Lock[] ROW_LOCKS = createRowLocks(ROW_LOCK_STRIPES);
+
   private final String tableName;
+  private final int tableNameHash;
   private final LevelDBTableService service;
 
   public LevelDBTableCore(String tableName, LevelDBTableService service) throws IOException {
     this.tableName = tableName;
+    this.tableNameHash = tableName.hashCode();
     this.service = service;
   }
 
@@ -92,48 +107,101 @@ public class LevelDBTableCore {
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    Lock lock = getRowLock(row);
+    lock.lock();
+    try {
+      byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        return false;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        return false;
+      }
+      // write
+      if (newValue == null) {
+        // to-do
+        deleteColumn(row, column);
+      } else {
+        persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+      }
+      return true;
+    } finally {
+      lock.unlock();
     }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
+  }
+
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    Lock lock = getRowLock(row);
+    lock.lock();
+    try {
+      Map<byte[], Long> result = getResultMap(row, increments);
+      persist(ImmutableMap.of(row, toBytesMap(result)), System.currentTimeMillis());
+      return result;
+    } finally {
+      lock.unlock();
     }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+  }
+
+  /**
+   * Increments multiple rows. Only the locks of the given rows are held while reading the existing values,
+   * and the new values of all rows are written in one {@link WriteBatch}.
+   */
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    if (updates.isEmpty()) {
+      return;
+    }
+    // Acquire the stripes in ascending order to avoid deadlock with concurrent multi-row increments
+    SortedSet<Integer> stripes = new TreeSet<>();
+    for (byte[] row : updates.keySet()) {
+      stripes.add(getRowLockStripe(row));
+    }
+    List<Lock> acquired = Lists.newArrayListWithCapacity(stripes.size());
+    try {
+      for (int stripe : stripes) {
+        Lock lock = ROW_LOCKS[stripe];
+        lock.lock();
+        acquired.add(lock);
+      }
+      Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
+      for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+        resultMap.put(row.getKey(), toBytesMap(getResultMap(row.getKey(), row.getValue())));
+      }
+      persist(resultMap, System.currentTimeMillis());
+    } finally {
+      for (Lock lock : Lists.reverse(acquired)) {
+        lock.unlock();
+      }
     }
-    return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
-    Map<byte[], Long> result = getResultMap(row, increments);
-    Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-      replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  private Map<byte[], byte[]> toBytesMap(Map<byte[], Long> values) {
+    Map<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], Long> entry : values.entrySet()) {
+      result.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
     }
-    persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
     return result;
   }
 
+  private Lock getRowLock(byte[] row) {
+    return ROW_LOCKS[getRowLockStripe(row)];
+  }
 
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
-    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
-    for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
-      NavigableMap<byte[], Long> increments = row.getValue();
-      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      Map<byte[], Long> result = getResultMap(row.getKey(), increments);
-      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
-      }
-      resultMap.put(row.getKey(), replacing);
+  private int getRowLockStripe(byte[] row) {
+    int hash = 31 * tableNameHash + Bytes.hashCode(row);
+    // spread the higher bits, same as in HashMap
+    hash ^= (hash >>> 20) ^ (hash >>> 12);
+    hash ^= (hash >>> 7) ^ (hash >>> 4);
+    return hash & (ROW_LOCKS.length - 1);
+  }
+
+  private static Lock[] createRowLocks(int stripes) {
+    Lock[] locks = new Lock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      locks[i] = new ReentrantLock();
     }
-    persist(resultMap, System.currentTimeMillis());
+    return locks;
   }
 
   private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments) throws IOException {
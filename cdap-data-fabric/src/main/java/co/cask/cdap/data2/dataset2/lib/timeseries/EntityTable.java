@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,18 +16,25 @@
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -44,6 +51,12 @@ import javax.annotation.Nullable;
  * <h5>Entity mapping rows</h5>
  * Each entity would have two rows. One is keyed by {@code [type].[entityName]} and have one "id" column which
  * stores the unique ID. The other is a reverse map from {@code [type].id} to entity name in "name" column.
+ *
+ * <h5>Caching</h5>
+ * Both mappings are cached in memory, bounded by the cache size. The caches can be warmed up with all existing
+ * mappings with a single scan through {@link #preload()}. New IDs can be allocated in batches, so that only
+ * one increment on the generator row is needed for every batch of new entities of the same type. IDs of a batch
+ * that are not used before the table is discarded are never assigned.
  */
 public final class EntityTable implements Closeable {
 
@@ -55,16 +68,22 @@ public final class EntityTable implements Closeable {
   private static final byte[] DOT = { '.' };
   // max number of distinct values of entity of a single type
   private static final long MAX_ID_COUNT = 0x1000000L;
+  private static final int DEFAULT_CACHE_SIZE = 100000;
 
   private final MetricsTable table;
   private final LoadingCache<EntityName, Long> entityCache;
   private final LoadingCache<EntityId, EntityName> idCache;
   private final long maxId;
   private final int size;
+  private final int cacheSize;
+  private final int idBatchSize;
+  // Per type range of IDs allocated from the generator row but not yet assigned
+  private final ConcurrentMap<String, IdRange> idRanges;
 
+  private CacheStats reportedStats;
 
   /**
-   * Creates an EntityTable with max id = 16777215.
+   * Creates an EntityTable with max id = 16777215, which allocates one ID at a time.
    *
    * See {@link #EntityTable(MetricsTable, long)}.
    */
@@ -73,20 +92,113 @@ public final class EntityTable implements Closeable {
   }
 
   /**
-   * Creates an EntityTable backed by the given {@link MetricsTable}.
+   * Creates an EntityTable with max id = 16777215.
+   *
+   * See {@link #EntityTable(MetricsTable, long, int, int)}.
+   */
+  public EntityTable(MetricsTable table, int cacheSize, int idBatchSize) {
+    this(table, MAX_ID_COUNT, cacheSize, idBatchSize);
+  }
+
+  /**
+   * Creates an EntityTable backed by the given {@link MetricsTable}, which allocates one ID at a time.
    *
    * @param table The storage table
    * @param maxId Maximum ID (exclusive) that can be generated.
    */
   EntityTable(MetricsTable table, long maxId) {
+    this(table, maxId, DEFAULT_CACHE_SIZE, 1);
+  }
+
+  /**
+   * Creates an EntityTable backed by the given {@link MetricsTable}.
+   *
+   * @param table The storage table
+   * @param maxId Maximum ID (exclusive) that can be generated.
+   * @param cacheSize Maximum number of mappings to cache in each direction.
+   * @param idBatchSize Number of IDs to allocate from the table at a time.
+   */
+  EntityTable(MetricsTable table, long maxId, int cacheSize, int idBatchSize) {
     Preconditions.checkArgument(table != null, "Table cannot be null.");
     Preconditions.checkArgument(maxId > 0, "maxId must be > 0.");
+    Preconditions.checkArgument(cacheSize > 0, "cacheSize must be > 0.");
+    Preconditions.checkArgument(idBatchSize > 0 && idBatchSize < maxId, "idBatchSize must be > 0 and < maxId.");
 
     this.table = table;
-    this.entityCache = CacheBuilder.newBuilder().build(createEntityCacheLoader());
-    this.idCache = CacheBuilder.newBuilder().build(createIdCacheLoader());
+    this.entityCache = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats()
+      .build(createEntityCacheLoader());
+    this.idCache = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats()
+      .build(createIdCacheLoader());
     this.maxId = maxId;
     this.size = computeSize(maxId);
+    this.cacheSize = cacheSize;
+    this.idBatchSize = idBatchSize;
+    this.idRanges = Maps.newConcurrentMap();
+    this.reportedStats = new CacheStats(0, 0, 0, 0, 0, 0);
+  }
+
+  /**
+   * Loads existing mappings into the caches with one scan of the table, up to the cache size. Entities that are
+   * looked up afterwards won't need a table lookup each.
+   *
+   * @return number of mappings loaded
+   */
+  public int preload() {
+    long startTime = System.nanoTime();
+    int count = 0;
+    // Types are arbitrary strings, so the reverse mapping rows of all types can only be found with a full scan.
+    // They are recognized by the "name" column and the row key ending with '.' followed by the 8 bytes ID.
+    Scanner scanner = table.scan(null, null, null);
+    try {
+      Row row;
+      while (count < cacheSize && (row = scanner.next()) != null) {
+        byte[] name = row.get(NAME);
+        byte[] rowKey = row.getRow();
+        int typeLength = rowKey.length - Bytes.SIZEOF_LONG - 1;
+        if (name == null || typeLength < 0 || rowKey[typeLength] != DOT[0]) {
+          continue;
+        }
+        String type = Bytes.toString(rowKey, 0, typeLength);
+        long id = Bytes.toLong(rowKey, typeLength + 1);
+        EntityName entityName = new EntityName(type, Bytes.toString(name));
+        idCache.put(new EntityId(id, type), entityName);
+        entityCache.put(entityName, id);
+        count++;
+      }
+    } finally {
+      scanner.close();
+    }
+    LOG.info("Preloaded {} entity mappings in {} ms", count,
+             TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    return count;
+  }
+
+  /**
+   * Returns the combined statistics of the name to ID and ID to name caches.
+   */
+  public CacheStats getCacheStats() {
+    return entityCache.stats().plus(idCache.stats());
+  }
+
+  /**
+   * Emits the cache hits, misses and load time since the last call to the given {@link MetricsCollector}.
+   */
+  public void reportCacheStats(MetricsCollector metrics) {
+    CacheStats delta;
+    synchronized (this) {
+      CacheStats stats = getCacheStats();
+      delta = stats.minus(reportedStats);
+      reportedStats = stats;
+    }
+    if (delta.hitCount() > 0) {
+      metrics.increment("entityTable.cache.hit.count", delta.hitCount());
+    }
+    if (delta.missCount() > 0) {
+      metrics.increment("entityTable.cache.miss.count", delta.missCount());
+    }
+    if (delta.totalLoadTime() > 0) {
+      metrics.increment("entityTable.cache.load.ms", TimeUnit.NANOSECONDS.toMillis(delta.totalLoadTime()));
+    }
   }
 
   /**
@@ -141,18 +253,7 @@ public final class EntityTable implements Closeable {
         }
 
         // Not found, generate a new ID
-        byte[] maxIdRowKey = Bytes.toBytes(key.getType() + ".maxId");
-        long newId = table.incrementAndGet(maxIdRowKey, MAX_ID, 1L);
-
-        /* we recycle the id's after reaching max-id to let the id's start from 1 again.
-        this most likely won't happen for any entity other than run-id,
-        Even for run-id - its okay to recycle, as we would have truncated the old data when we reach 16777215 runs,
-        as our max TTL is 30 days currently. The reasoning is the likelihood for running 16777215 programs
-        under 30 days is low. For mapping the id -> name , we use (id % maxId) */
-        if (newId % maxId == 0) {
-          newId = 1L;
-          table.swap(maxIdRowKey, MAX_ID, Bytes.toBytes(maxId), Bytes.toBytes(newId));
-        }
+        long newId = nextId(key.getType());
 
         if (key.getName() == null || key.getName().isEmpty()) {
           LOG.warn("Adding mapping for " + (key.getName() == null ? "null" : "empty") + " name, " +
@@ -203,6 +304,59 @@ public final class EntityTable implements Closeable {
     };
   }
 
+  /**
+   * Returns the next unused ID of the given type, allocating a new batch of IDs from the generator row if needed.
+   */
+  private long nextId(String type) {
+    IdRange range = idRanges.get(type);
+    if (range == null) {
+      IdRange newRange = new IdRange();
+      range = idRanges.putIfAbsent(type, newRange);
+      if (range == null) {
+        range = newRange;
+      }
+    }
+
+    synchronized (range) {
+      if (range.next > range.last) {
+        allocateIds(type, range);
+      }
+      return range.next++;
+    }
+  }
+
+  /**
+   * Allocates the next batch of IDs of the given type from the generator row into the given range.
+   */
+  private void allocateIds(String type, IdRange range) {
+    byte[] maxIdRowKey = Bytes.toBytes(type + ".maxId");
+    while (true) {
+      long last = table.incrementAndGet(maxIdRowKey, MAX_ID, idBatchSize);
+      long first = last - idBatchSize + 1;
+      if (last < maxId) {
+        range.set(first, last);
+        return;
+      }
+
+      /* we recycle the id's after reaching max-id to let the id's start from 1 again.
+      this most likely won't happen for any entity other than run-id,
+      Even for run-id - its okay to recycle, as we would have truncated the old data when we reach 16777215 runs,
+      as our max TTL is 30 days currently. The reasoning is the likelihood for running 16777215 programs
+      under 30 days is low. For mapping the id -> name , we use (id % maxId) */
+      if (first < maxId) {
+        // Use what is left before maxId, and reset the generator so that the next batch starts from 1
+        range.set(first, maxId - 1);
+        table.swap(maxIdRowKey, MAX_ID, Bytes.toBytes(last), Bytes.toBytes(0L));
+        return;
+      }
+      // The generator is past maxId, start again from 1 unless some other client reset it already
+      if (table.swap(maxIdRowKey, MAX_ID, Bytes.toBytes(last), Bytes.toBytes((long) idBatchSize))) {
+        range.set(1L, idBatchSize);
+        return;
+      }
+    }
+  }
+
   static int computeSize() {
     return computeSize(MAX_ID_COUNT);
   }
@@ -224,6 +378,19 @@ public final class EntityTable implements Closeable {
     table.close();
   }
 
+  /**
+   * Range of IDs allocated from the generator row of a type.
+   */
+  private static final class IdRange {
+    private long next = 1L;
+    private long last = 0L;
+
+    void set(long first, long last) {
+      this.next = first;
+      this.last = last;
+    }
+  }
+
   /**
    * Package private class to represent an entity name, which compose of type and name.
    */
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -147,6 +147,7 @@ public final class FactTable implements Closeable {
     if (metrics != null) {
       metrics.increment(putCountMetric, convertedGaugesTable.size());
       metrics.increment(incrementCountMetric, convertedIncrementsTable.size());
+      entityTable.reportCacheStats(metrics);
     }
   }
 
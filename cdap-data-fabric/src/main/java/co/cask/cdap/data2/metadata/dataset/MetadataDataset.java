@@ -75,6 +75,9 @@ public class MetadataDataset extends AbstractDataset {
   private static final String HISTORY_COLUMN = "h"; // column for metadata history
   private static final String VALUE_COLUMN = "v";  // column for metadata value
   private static final String TAGS_SEPARATOR = ",";
+  // Metadata values up to this length are also stored in the index rows, so that search can return them
+  // without reading the value row
+  private static final int MAX_INDEXED_VALUE_LENGTH = 1024;
 
   // Fuzzy key is of form <row key, key mask>. We want to compare row keys.
   private static final Comparator<ImmutablePair<byte[], byte[]>> FUZZY_KEY_COMPARATOR =
@@ -86,6 +89,7 @@ public class MetadataDataset extends AbstractDataset {
     };
 
   static final String INDEX_COLUMN = "i";          // column for metadata indexes
+  static final String INDEX_VALUE_COLUMN = "iv";   // column for metadata values in index rows
 
   public static final String TAGS_KEY = "tags";
   public static final String KEYVALUE_SEPARATOR = ":";
@@ -526,6 +530,7 @@ public class MetadataDataset extends AbstractDataset {
   public List<MetadataEntry> search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types) {
     boolean includeAllTypes = types.isEmpty() || types.contains(MetadataSearchTargetType.ALL);
     List<MetadataEntry> results = new ArrayList<>();
+    Map<ImmutablePair<Id.NamespacedId, String>, MetadataEntry> readEntries = new HashMap<>();
     for (String searchTerm : getSearchTerms(namespaceId, searchQuery)) {
       Scanner scanner;
       if (searchTerm.endsWith("*")) {
@@ -556,8 +561,22 @@ public class MetadataDataset extends AbstractDataset {
 
           Id.NamespacedId targetId = MdsKey.getNamespacedIdFromKey(targetType, rowKey);
           String key = MdsKey.getMetadataKey(targetType, rowKey);
-          MetadataEntry entry = getMetadata(targetId, key);
-          results.add(entry);
+          MetadataEntry entry;
+          String value = next.getString(INDEX_VALUE_COLUMN);
+          if (value != null) {
+            entry = new MetadataEntry(targetId, key, value);
+          } else {
+            // The value is not stored in the index row, either because it is too long or because the index was
+            // written by an older version. Read it from the value row, once for all indexes of the same value.
+            ImmutablePair<Id.NamespacedId, String> valueKey = ImmutablePair.of(targetId, key);
+            if (!readEntries.containsKey(valueKey)) {
+              readEntries.put(valueKey, getMetadata(targetId, key));
+            }
+            entry = readEntries.get(valueKey);
+          }
+          if (entry != null) {
+            results.add(entry);
+          }
         }
       } finally {
         scanner.close();
@@ -607,7 +626,7 @@ public class MetadataDataset extends AbstractDataset {
     // add the metadata value
     put.add(Bytes.toBytes(VALUE_COLUMN), Bytes.toBytes(entry.getValue()));
     indexedTable.put(put);
-    storeIndexes(targetId, entry.getKey(), indexer.getIndexes(entry));
+    storeIndexes(targetId, entry, indexer.getIndexes(entry));
     writeHistory(targetId);
   }
 
@@ -615,18 +634,22 @@ public class MetadataDataset extends AbstractDataset {
    * Store indexes for a {@link MetadataEntry}
    *
    * @param targetId the {@link Id.NamespacedId} from which the metadata indexes has to be stored
-   * @param metadataKey the metadata key for which the indexes are to be stored
+   * @param entry the {@link MetadataEntry} for which the indexes are to be stored
    * @param indexes {@link Set<String>} of indexes to store for this {@link MetadataEntry}
    */
-  private void storeIndexes(Id.NamespacedId targetId, String metadataKey, Set<String> indexes) {
+  private void storeIndexes(Id.NamespacedId targetId, MetadataEntry entry, Set<String> indexes) {
+    String metadataKey = entry.getKey();
     // Delete existing indexes for targetId-key
     deleteIndexes(targetId, metadataKey);
 
+    // store short values with the indexes, so that search doesn't need to read them from the value row
+    String value = entry.getValue();
+    String indexedValue = value != null && value.length() <= MAX_INDEXED_VALUE_LENGTH ? value : null;
     for (String index : indexes) {
       // store the index with key of the metadata, so that we allow searches of the form [key]:[value]
-      indexedTable.put(getIndexPut(targetId, metadataKey, metadataKey + KEYVALUE_SEPARATOR + index));
+      indexedTable.put(getIndexPut(targetId, metadataKey, metadataKey + KEYVALUE_SEPARATOR + index, indexedValue));
       // store just the index value
-      indexedTable.put(getIndexPut(targetId, metadataKey, index));
+      indexedTable.put(getIndexPut(targetId, metadataKey, index, indexedValue));
     }
   }
 
@@ -636,13 +659,18 @@ public class MetadataDataset extends AbstractDataset {
    * @param targetId the {@link Id.NamespacedId} from which the metadata index has to be created
    * @param metadataKey the key of the metadata entry
    * @param index the index for this metadata
+   * @param value the value of the metadata entry to store in the {@link #INDEX_VALUE_COLUMN},
+   *              or {@code null} to not store it
    * @return {@link Put} which is a index row with the value to be indexed in the {@link #INDEX_COLUMN}
    */
-  private Put getIndexPut(Id.NamespacedId targetId, String metadataKey, String index) {
+  private Put getIndexPut(Id.NamespacedId targetId, String metadataKey, String index, @Nullable String value) {
     MDSKey mdsIndexKey = MdsKey.getMDSIndexKey(targetId, metadataKey, index.toLowerCase());
     String namespacedIndex = MdsKey.getNamespaceId(mdsIndexKey) + KEYVALUE_SEPARATOR + index.toLowerCase();
     Put put = new Put(mdsIndexKey.getKey());
     put.add(Bytes.toBytes(INDEX_COLUMN), Bytes.toBytes(namespacedIndex));
+    if (value != null) {
+      put.add(Bytes.toBytes(INDEX_VALUE_COLUMN), Bytes.toBytes(value));
+    }
     return put;
   }
 
@@ -689,7 +717,7 @@ public class MetadataDataset extends AbstractDataset {
         }
         Set<String> indexes = indexer.getIndexes(metadataEntry);
         // storeIndexes deletes old indexes
-        storeIndexes(namespacedId, metadataKey, indexes);
+        storeIndexes(namespacedId, metadataEntry, indexes);
         limit--;
       }
       Row startRowForNextBatch = scanner.next();
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -211,6 +211,32 @@ public class LineageDataset extends AbstractDataset {
                          filter);
   }
 
+  /**
+   * Fetch program-data access information for a set of datasets, streams and programs for a given period.
+   *
+   * @param entities datasets, streams and programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return map from each of the given entities to its access information
+   */
+  public <T extends Id.NamespacedId> Map<T, Set<Relation>> getRelations(Set<T> entities, long start, long end,
+                                                                       Predicate<Relation> filter) {
+    Map<T, Set<Relation>> relations = new HashMap<>();
+    for (T entity : entities) {
+      if (entity instanceof Id.DatasetInstance) {
+        relations.put(entity, getRelations((Id.DatasetInstance) entity, start, end, filter));
+      } else if (entity instanceof Id.Stream) {
+        relations.put(entity, getRelations((Id.Stream) entity, start, end, filter));
+      } else if (entity instanceof Id.Program) {
+        relations.put(entity, getRelations((Id.Program) entity, start, end, filter));
+      } else {
+        throw new IllegalArgumentException("Unknown entity type " + entity);
+      }
+    }
+    return relations;
+  }
+
   /**
    * @return a set of access times (for program and data it accesses) associated with a program run.
    */
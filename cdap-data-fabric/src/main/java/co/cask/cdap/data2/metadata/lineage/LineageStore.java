@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -32,6 +32,7 @@ import org.apache.tephra.TransactionExecutorFactory;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -200,6 +201,28 @@ public class LineageStore implements LineageStoreReader, LineageStoreWriter {
     });
   }
 
+  /**
+   * Fetch program-data access information for a set of datasets, streams and programs for a given period,
+   * in a single transaction.
+   *
+   * @param entities datasets, streams and programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return map from each of the given entities to its access information
+   */
+  @Override
+  public <T extends Id.NamespacedId> Map<T, Set<Relation>> getRelations(final Set<T> entities, final long start,
+                                                                       final long end,
+                                                                       final Predicate<Relation> filter) {
+    return execute(new TransactionExecutor.Function<LineageDataset, Map<T, Set<Relation>>>() {
+      @Override
+      public Map<T, Set<Relation>> apply(LineageDataset input) throws Exception {
+        return input.getRelations(entities, start, end, filter);
+      }
+    });
+  }
+
   /**
    * @return a set of access times (for program and data it accesses) associated with a program run.
    */
@@ -19,6 +19,7 @@ package co.cask.cdap.data2.metadata.lineage;
 import co.cask.cdap.proto.Id;
 import com.google.common.base.Predicate;
 
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -67,4 +68,16 @@ public interface LineageStoreReader {
    */
   Set<Relation> getRelations(Id.Program program, long start, long end,
                              Predicate<Relation> filter);
+
+  /**
+   * Fetch program-data access information for a set of datasets, streams and programs for a given period.
+   *
+   * @param entities datasets, streams and programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return map from each of the given entities to its access information
+   */
+  <T extends Id.NamespacedId> Map<T, Set<Relation>> getRelations(Set<T> entities, long start, long end,
+                                                                Predicate<Relation> filter);
 }
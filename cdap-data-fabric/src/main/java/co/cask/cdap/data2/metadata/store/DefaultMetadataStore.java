@@ -33,11 +33,16 @@ import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.audit.AuditType;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import org.apache.tephra.TransactionExecutor;
@@ -367,6 +372,47 @@ public class DefaultMetadataStore implements MetadataStore {
   public Set<MetadataSearchResultRecord> searchMetadataOnType(final MetadataScope scope, final String namespaceId,
                                                               final String searchQuery,
                                                               final Set<MetadataSearchTargetType> types) {
+    Map<Id.NamespacedId, Integer> weightedResults = new HashMap<>();
+    addSearchScores(weightedResults, scope, namespaceId, searchQuery, types);
+
+    // Sort the results by score
+    List<Map.Entry<Id.NamespacedId, Integer>> resultList = new ArrayList<>(weightedResults.entrySet());
+    Collections.sort(resultList, SEARCH_RESULT_DESC_SCORE_COMPARATOR);
+
+    // Fetch metadata for entities in the result list
+    // Note: since the fetch is happening in a different transaction, the metadata for entities may have been
+    // removed. It is okay not to have metadata for some results in case this happens.
+    Map<Id.NamespacedId, Metadata> systemMetadata = fetchMetadata(weightedResults.keySet(), MetadataScope.SYSTEM);
+    Map<Id.NamespacedId, Metadata> userMetadata = fetchMetadata(weightedResults.keySet(), MetadataScope.USER);
+
+    return addMetadataToResults(resultList, systemMetadata, userMetadata);
+  }
+
+  @Override
+  public MetadataSearchResponse searchMetadataOnType(String namespaceId, String searchQuery,
+                                                     Set<MetadataSearchTargetType> types, @Nullable String cursor,
+                                                     int limit, Predicate<Id.NamespacedId> filter) {
+    Map<Id.NamespacedId, Integer> weightedResults = new HashMap<>();
+    addSearchScores(weightedResults, MetadataScope.USER, namespaceId, searchQuery, types);
+    addSearchScores(weightedResults, MetadataScope.SYSTEM, namespaceId, searchQuery, types);
+    return getSearchPage(weightedResults, cursor, limit, filter);
+  }
+
+  @Override
+  public MetadataSearchResponse searchMetadataOnType(MetadataScope scope, String namespaceId, String searchQuery,
+                                                     Set<MetadataSearchTargetType> types, @Nullable String cursor,
+                                                     int limit, Predicate<Id.NamespacedId> filter) {
+    Map<Id.NamespacedId, Integer> weightedResults = new HashMap<>();
+    addSearchScores(weightedResults, scope, namespaceId, searchQuery, types);
+    return getSearchPage(weightedResults, cursor, limit, filter);
+  }
+
+  /**
+   * Executes a search query in the given scope, and adds one to the score of an entity for every match.
+   */
+  private void addSearchScores(Map<Id.NamespacedId, Integer> weightedResults, MetadataScope scope,
+                               final String namespaceId, final String searchQuery,
+                               final Set<MetadataSearchTargetType> types) {
     // Execute search query
     Iterable<MetadataEntry> results = execute(new TransactionExecutor.Function<MetadataDataset,
       Iterable<MetadataEntry>>() {
@@ -377,24 +423,73 @@ public class DefaultMetadataStore implements MetadataStore {
     }, scope);
 
     // Score results
-    final Map<Id.NamespacedId, Integer> weightedResults = new HashMap<>();
     for (MetadataEntry metadataEntry : results) {
       Integer score = weightedResults.get(metadataEntry.getTargetId());
       score = score == null ? 0 : score;
       weightedResults.put(metadataEntry.getTargetId(), score + 1);
     }
+  }
 
-    // Sort the results by score
-    List<Map.Entry<Id.NamespacedId, Integer>> resultList = new ArrayList<>(weightedResults.entrySet());
-    Collections.sort(resultList, SEARCH_RESULT_DESC_SCORE_COMPARATOR);
+  /**
+   * Returns the page of scored search results that pass the given filter and follow the given cursor. Only the
+   * results up to the end of the page are ordered and filtered, and only the metadata of the page is fetched.
+   * The page has a cursor only if there is another result that passes the filter.
+   */
+  private MetadataSearchResponse getSearchPage(Map<Id.NamespacedId, Integer> weightedResults,
+                                               @Nullable String cursor, int limit,
+                                               Predicate<Id.NamespacedId> filter) {
+    Preconditions.checkArgument(limit > 0, "Limit must be positive, but is %s", limit);
+    SearchPosition after = cursor == null ? null : SearchPosition.fromCursor(cursor);
+
+    List<SearchPosition> remaining = new ArrayList<>();
+    for (Map.Entry<Id.NamespacedId, Integer> entry : weightedResults.entrySet()) {
+      SearchPosition position = new SearchPosition(entry.getKey(), entry.getValue());
+      if (after == null || after.compareTo(position) < 0) {
+        remaining.add(position);
+      }
+    }
 
-    // Fetch metadata for entities in the result list
-    // Note: since the fetch is happening in a different transaction, the metadata for entities may have been
-    // removed. It is okay not to have metadata for some results in case this happens.
-    Map<Id.NamespacedId, Metadata> systemMetadata = fetchMetadata(weightedResults.keySet(), MetadataScope.SYSTEM);
-    Map<Id.NamespacedId, Metadata> userMetadata = fetchMetadata(weightedResults.keySet(), MetadataScope.USER);
+    // Select the top results that pass the filter, plus one to know whether there is a next page, without sorting
+    // all of them. Candidates are taken in growing batches, in case many of them are filtered out.
+    List<SearchPosition> page = new ArrayList<>(limit + 1);
+    int batchSize = limit + 1;
+    while (page.size() <= limit && !remaining.isEmpty()) {
+      List<SearchPosition> candidates = Ordering.<SearchPosition>natural().leastOf(remaining, batchSize);
+      for (SearchPosition candidate : candidates) {
+        if (page.size() > limit) {
+          break;
+        }
+        if (filter.apply(candidate.entityId)) {
+          page.add(candidate);
+        }
+      }
+      SearchPosition last = candidates.get(candidates.size() - 1);
+      List<SearchPosition> rest = new ArrayList<>();
+      for (SearchPosition position : remaining) {
+        if (last.compareTo(position) < 0) {
+          rest.add(position);
+        }
+      }
+      remaining = rest;
+      batchSize *= 2;
+    }
+    String nextCursor = null;
+    if (page.size() > limit) {
+      page.remove(limit);
+      nextCursor = page.get(limit - 1).toCursor();
+    }
 
-    return addMetadataToResults(resultList, systemMetadata, userMetadata);
+    List<Map.Entry<Id.NamespacedId, Integer>> resultList = new ArrayList<>(page.size());
+    Set<Id.NamespacedId> entityIds = new HashSet<>();
+    for (SearchPosition position : page) {
+      resultList.add(Maps.immutableEntry(position.entityId, position.score));
+      entityIds.add(position.entityId);
+    }
+
+    // Fetch metadata for entities in the page
+    Map<Id.NamespacedId, Metadata> systemMetadata = fetchMetadata(entityIds, MetadataScope.SYSTEM);
+    Map<Id.NamespacedId, Metadata> userMetadata = fetchMetadata(entityIds, MetadataScope.USER);
+    return new MetadataSearchResponse(addMetadataToResults(resultList, systemMetadata, userMetadata), nextCursor);
   }
 
   private Map<Id.NamespacedId, Metadata> fetchMetadata(final Set<Id.NamespacedId> entityIds, MetadataScope scope) {
@@ -548,4 +643,47 @@ public class DefaultMetadataStore implements MetadataStore {
     framework.addInstance(MetadataDataset.class.getName(), BUSINESS_METADATA_INSTANCE_ID, DatasetProperties.EMPTY);
     framework.addInstance(MetadataDataset.class.getName(), SYSTEM_METADATA_INSTANCE_ID, DatasetProperties.EMPTY);
   }
+
+  /**
+   * Position of an entity in the search results, which are ordered by descending score, and then by entity id.
+   * The position of the last result of a page is the cursor for the next page.
+   */
+  private static final class SearchPosition implements Comparable<SearchPosition> {
+    private final Id.NamespacedId entityId;
+    private final int score;
+    private final String key;
+
+    SearchPosition(Id.NamespacedId entityId, int score) {
+      this(entityId, score, entityId.toString());
+    }
+
+    private SearchPosition(@Nullable Id.NamespacedId entityId, int score, String key) {
+      this.entityId = entityId;
+      this.score = score;
+      this.key = key;
+    }
+
+    static SearchPosition fromCursor(String cursor) {
+      int idx = cursor.indexOf(':');
+      if (idx <= 0) {
+        throw new IllegalArgumentException("Invalid search cursor '" + cursor + "'");
+      }
+      try {
+        return new SearchPosition(null, Integer.parseInt(cursor.substring(0, idx)), cursor.substring(idx + 1));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid search cursor '" + cursor + "'", e);
+      }
+    }
+
+    String toCursor() {
+      return score + ":" + key;
+    }
+
+    @Override
+    public int compareTo(SearchPosition other) {
+      // sort in descending order of score
+      int cmp = Integer.compare(other.score, score);
+      return cmp != 0 ? cmp : key.compareTo(other.key);
+    }
+  }
 }
@@ -21,8 +21,10 @@ import co.cask.cdap.data2.metadata.indexer.Indexer;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
+import com.google.common.base.Predicate;
 
 import java.util.Map;
 import java.util.Set;
@@ -197,6 +199,42 @@ public interface MetadataStore {
   Set<MetadataSearchResultRecord> searchMetadataOnType(MetadataScope scope, String namespaceId, String searchQuery,
                                                        Set<MetadataSearchTargetType> types);
 
+  /**
+   * Returns a page of the results of searching the Metadata Dataset for the specified target types in both
+   * {@link MetadataScope#USER} and {@link MetadataScope#SYSTEM}. Results are ordered by descending score, with
+   * the matches of both scopes adding up to the score of an entity.
+   *
+   * @param namespaceId the namespace to search in
+   * @param searchQuery the search query, which could be of two forms: [key]:[value] or just [value]
+   * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @param cursor the cursor returned with the previous page, or {@code null} to get the first page
+   * @param limit the maximum number of results to return, which must be positive
+   * @param filter the filter that results must pass, for example to only return entities visible to the caller.
+   *               Pages are filled with results that pass it, and cursors only refer to such results.
+   * @throws IllegalArgumentException if the cursor is invalid
+   */
+  MetadataSearchResponse searchMetadataOnType(String namespaceId, String searchQuery,
+                                              Set<MetadataSearchTargetType> types, @Nullable String cursor,
+                                              int limit, Predicate<Id.NamespacedId> filter);
+
+  /**
+   * Returns a page of the results of searching the Metadata Dataset for the specified target types in the specified
+   * {@link MetadataScope}. Results are ordered by descending score.
+   *
+   * @param scope the {@link MetadataScope} to restrict the search to
+   * @param namespaceId the namespace to search in
+   * @param searchQuery the search query, which could be of two forms: [key]:[value] or just [value]
+   * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @param cursor the cursor returned with the previous page, or {@code null} to get the first page
+   * @param limit the maximum number of results to return, which must be positive
+   * @param filter the filter that results must pass, for example to only return entities visible to the caller.
+   *               Pages are filled with results that pass it, and cursors only refer to such results.
+   * @throws IllegalArgumentException if the cursor is invalid
+   */
+  MetadataSearchResponse searchMetadataOnType(MetadataScope scope, String namespaceId, String searchQuery,
+                                              Set<MetadataSearchTargetType> types, @Nullable String cursor,
+                                              int limit, Predicate<Id.NamespacedId> filter);
+
   /**
    * Returns the snapshot of the metadata for entities on or before the given time in both {@link MetadataScope#USER}
    * and {@link MetadataScope#SYSTEM}.
@@ -30,6 +30,7 @@ import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.common.utils.OSDetector;
 import co.cask.cdap.data.stream.CoordinatorStreamProperties;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
+import co.cask.cdap.data.stream.StreamDataBlockCodec;
 import co.cask.cdap.data.stream.StreamFileOffset;
 import co.cask.cdap.data.stream.StreamUtils;
 import co.cask.cdap.data.stream.service.StreamMetaStore;
@@ -314,7 +315,9 @@ public class FileStreamAdmin implements StreamAdmin {
           }
 
           return new StreamConfig(streamId, config.getPartitionDuration(), config.getIndexInterval(),
-                                  config.getTTL(), getStreamLocation(streamId), config.getFormat(), threshold);
+                                  config.getTTL(), getStreamLocation(streamId), config.getFormat(), threshold,
+                                  config.getCodec(), config.getGroupCommitMaxEvents(),
+                                  config.getGroupCommitLingerMicros());
         }
       });
     } catch (Exception ex) {
@@ -435,6 +438,13 @@ public class FileStreamAdmin implements StreamAdmin {
             Constants.Stream.TTL, cConf.get(Constants.Stream.TTL)));
           int threshold = Integer.parseInt(properties.getProperty(
             Constants.Stream.NOTIFICATION_THRESHOLD, cConf.get(Constants.Stream.NOTIFICATION_THRESHOLD)));
+          String codec = properties.getProperty(Constants.Stream.CODEC, cConf.get(Constants.Stream.CODEC));
+          Preconditions.checkArgument(StreamDataBlockCodec.isSupported(codec),
+                                      "Unsupported codec '%s' for stream %s", codec, streamId);
+          int groupCommitMaxEvents = Integer.parseInt(properties.getProperty(
+            Constants.Stream.GROUP_COMMIT_MAX_EVENTS, cConf.get(Constants.Stream.GROUP_COMMIT_MAX_EVENTS)));
+          long groupCommitLinger = Long.parseLong(properties.getProperty(
+            Constants.Stream.GROUP_COMMIT_LINGER, cConf.get(Constants.Stream.GROUP_COMMIT_LINGER)));
           String description = properties.getProperty(Constants.Stream.DESCRIPTION);
           FormatSpecification formatSpec = null;
           if (properties.containsKey(Constants.Stream.FORMAT_SPECIFICATION)) {
@@ -443,7 +453,8 @@ public class FileStreamAdmin implements StreamAdmin {
           }
 
           final StreamConfig config = new StreamConfig(streamId, partitionDuration, indexInterval,
-                                                       ttl, streamLocation, formatSpec, threshold);
+                                                       ttl, streamLocation, formatSpec, threshold, codec,
+                                                       groupCommitMaxEvents, groupCommitLinger);
           ImpersonationUtils.doAs(ugi, new Callable<Void>() {
             @Override
             public Void call() throws Exception {
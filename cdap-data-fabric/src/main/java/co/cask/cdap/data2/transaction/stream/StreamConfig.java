@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -23,6 +23,7 @@ import com.google.common.base.Objects;
 import org.apache.twill.filesystem.Location;
 
 import java.util.Collections;
+import javax.annotation.Nullable;
 
 /**
  * Represents the configuration of a stream. This class needs to be GSON serializable.
@@ -41,11 +42,26 @@ public final class StreamConfig {
   private final long ttl;
   private final FormatSpecification format;
   private final int notificationThresholdMB;
+  private final String codec;
+  private final int groupCommitMaxEvents;
+  private final long groupCommitLingerMicros;
 
   private final transient Location location;
 
   public StreamConfig(Id.Stream streamId, long partitionDuration, long indexInterval, long ttl,
                       Location location, FormatSpecification format, int notificationThresholdMB) {
+    this(streamId, partitionDuration, indexInterval, ttl, location, format, notificationThresholdMB, null);
+  }
+
+  public StreamConfig(Id.Stream streamId, long partitionDuration, long indexInterval, long ttl,
+                      Location location, FormatSpecification format, int notificationThresholdMB,
+                      @Nullable String codec) {
+    this(streamId, partitionDuration, indexInterval, ttl, location, format, notificationThresholdMB, codec, 0, 0L);
+  }
+
+  public StreamConfig(Id.Stream streamId, long partitionDuration, long indexInterval, long ttl,
+                      Location location, FormatSpecification format, int notificationThresholdMB,
+                      @Nullable String codec, int groupCommitMaxEvents, long groupCommitLingerMicros) {
     this.streamId = streamId;
     this.partitionDuration = partitionDuration;
     this.indexInterval = indexInterval;
@@ -53,6 +69,9 @@ public final class StreamConfig {
     this.location = location;
     this.notificationThresholdMB = notificationThresholdMB;
     this.format = format;
+    this.codec = codec;
+    this.groupCommitMaxEvents = groupCommitMaxEvents;
+    this.groupCommitLingerMicros = groupCommitLingerMicros;
   }
 
   /**
@@ -104,6 +123,30 @@ public final class StreamConfig {
     return notificationThresholdMB;
   }
 
+  /**
+   * @return The codec for compressing data blocks in the stream files or {@code null} if the stream files are
+   *         not compressed.
+   */
+  @Nullable
+  public String getCodec() {
+    return codec;
+  }
+
+  /**
+   * @return The maximum number of events to persist with one flush to the stream file, or {@code 0} if unbounded.
+   */
+  public int getGroupCommitMaxEvents() {
+    return groupCommitMaxEvents;
+  }
+
+  /**
+   * @return The maximum time in microseconds that a write waits for other writes to join the same flush, or
+   *         {@code 0} if writes are flushed as soon as possible.
+   */
+  public long getGroupCommitLingerMicros() {
+    return groupCommitLingerMicros;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
@@ -114,6 +157,9 @@ public final class StreamConfig {
       .add("location", location)
       .add("format", format)
       .add("notificationThresholdMB", notificationThresholdMB)
+      .add("codec", codec)
+      .add("groupCommitMaxEvents", groupCommitMaxEvents)
+      .add("groupCommitLingerMicros", groupCommitLingerMicros)
       .toString();
   }
 
@@ -152,7 +198,9 @@ public final class StreamConfig {
                               Objects.firstNonNull(ttl, config.getTTL()),
                               config.getLocation(),
                               Objects.firstNonNull(formatSpec, config.getFormat()),
-                              Objects.firstNonNull(notificationThreshold, config.getNotificationThresholdMB()));
+                              Objects.firstNonNull(notificationThreshold, config.getNotificationThresholdMB()),
+                              config.getCodec(), config.getGroupCommitMaxEvents(),
+                              config.getGroupCommitLingerMicros());
     }
   }
 }
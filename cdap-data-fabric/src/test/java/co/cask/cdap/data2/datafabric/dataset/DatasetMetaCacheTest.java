@@ -0,0 +1,204 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.datafabric.dataset;
+
+import co.cask.cdap.api.dataset.DatasetManagementException;
+import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.proto.DatasetMeta;
+import co.cask.cdap.proto.DatasetModuleMeta;
+import co.cask.cdap.proto.DatasetTypeMeta;
+import co.cask.cdap.proto.Id;
+import co.cask.cdap.proto.security.Principal;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Unit tests for {@link DatasetMetaCache}.
+ */
+public class DatasetMetaCacheTest {
+
+  private static final Id.Namespace NAMESPACE = Id.Namespace.from("ns");
+  private static final Id.DatasetInstance INSTANCE = Id.DatasetInstance.from(NAMESPACE, "ds");
+  private static final Id.DatasetInstance OTHER_INSTANCE = Id.DatasetInstance.from("other", "ds");
+  private static final Id.DatasetType TYPE = Id.DatasetType.from(NAMESPACE, "type");
+  private static final Principal ALICE = new Principal("alice", Principal.PrincipalType.USER);
+  private static final Principal BOB = new Principal("bob", Principal.PrincipalType.USER);
+
+  @Test
+  public void testCache() throws DatasetManagementException {
+    DatasetMetaCache cache = new DatasetMetaCache(60, 100);
+    CountingLoader<DatasetMeta> loader = new CountingLoader<>(createMeta("ds"));
+
+    Assert.assertSame(loader.meta, cache.getInstance(INSTANCE, null, ALICE, loader));
+    Assert.assertSame(loader.meta, cache.getInstance(INSTANCE, null, ALICE, loader));
+    Assert.assertEquals(1, loader.count.get());
+
+    // The meta is fetched again for other owners, so that their usage is registered
+    Id.Application owner = Id.Application.from(NAMESPACE, "app");
+    cache.getInstance(INSTANCE, ImmutableList.of(owner), ALICE, loader);
+    cache.getInstance(INSTANCE, ImmutableList.of(owner), ALICE, loader);
+    Assert.assertEquals(2, loader.count.get());
+
+    // Non-existing instances are not cached
+    CountingLoader<DatasetMeta> missing = new CountingLoader<>(null);
+    Assert.assertNull(cache.getInstance(OTHER_INSTANCE, null, ALICE, missing));
+    Assert.assertNull(cache.getInstance(OTHER_INSTANCE, null, ALICE, missing));
+    Assert.assertEquals(2, missing.count.get());
+
+    CountingLoader<DatasetTypeMeta> typeLoader = new CountingLoader<>(createType());
+    Assert.assertSame(typeLoader.meta, cache.getType(TYPE, typeLoader));
+    Assert.assertSame(typeLoader.meta, cache.getType(TYPE, typeLoader));
+    Assert.assertEquals(1, typeLoader.count.get());
+  }
+
+  @Test
+  public void testPrincipals() throws DatasetManagementException {
+    DatasetMetaCache cache = new DatasetMetaCache(60, 100);
+    CountingLoader<DatasetMeta> loader = new CountingLoader<>(createMeta("ds"));
+    Assert.assertSame(loader.meta, cache.getInstance(INSTANCE, null, ALICE, loader));
+
+    // The meta cached for one principal is not returned to another one, which may not be authorized to access it
+    DatasetMetaCache.Loader<DatasetMeta> unauthorized = new DatasetMetaCache.Loader<DatasetMeta>() {
+      @Override
+      public DatasetMeta load() throws DatasetManagementException {
+        throw new DatasetManagementException("bob is not authorized to access " + INSTANCE);
+      }
+    };
+    try {
+      cache.getInstance(INSTANCE, null, BOB, unauthorized);
+      Assert.fail("Expected the meta to be fetched for bob");
+    } catch (DatasetManagementException e) {
+      // expected
+    }
+
+    // Each principal has its own cached entry
+    cache.getInstance(INSTANCE, null, BOB, loader);
+    Assert.assertEquals(2, loader.count.get());
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    cache.getInstance(INSTANCE, null, BOB, loader);
+    Assert.assertEquals(2, loader.count.get());
+
+    // Invalidating an instance affects all principals
+    cache.invalidate(INSTANCE);
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    cache.getInstance(INSTANCE, null, BOB, loader);
+    Assert.assertEquals(4, loader.count.get());
+  }
+
+  @Test
+  public void testInvalidate() throws DatasetManagementException {
+    DatasetMetaCache cache = new DatasetMetaCache(60, 100);
+    CountingLoader<DatasetMeta> loader = new CountingLoader<>(createMeta("ds"));
+    CountingLoader<DatasetMeta> otherLoader = new CountingLoader<>(createMeta("ds"));
+    CountingLoader<DatasetTypeMeta> typeLoader = new CountingLoader<>(createType());
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    cache.getInstance(OTHER_INSTANCE, null, ALICE, otherLoader);
+    cache.getType(TYPE, typeLoader);
+
+    // Invalidating an instance only affects that instance
+    cache.invalidate(INSTANCE);
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    cache.getInstance(OTHER_INSTANCE, null, ALICE, otherLoader);
+    cache.getType(TYPE, typeLoader);
+    Assert.assertEquals(2, loader.count.get());
+    Assert.assertEquals(1, otherLoader.count.get());
+    Assert.assertEquals(1, typeLoader.count.get());
+
+    // A change of the modules of a namespace affects its types and instances
+    cache.changed(DatasetChangeNotification.of(NAMESPACE));
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    cache.getInstance(OTHER_INSTANCE, null, ALICE, otherLoader);
+    cache.getType(TYPE, typeLoader);
+    Assert.assertEquals(3, loader.count.get());
+    Assert.assertEquals(1, otherLoader.count.get());
+    Assert.assertEquals(2, typeLoader.count.get());
+
+    // A change of an instance
+    cache.changed(DatasetChangeNotification.of(OTHER_INSTANCE));
+    cache.getInstance(OTHER_INSTANCE, null, ALICE, otherLoader);
+    Assert.assertEquals(2, otherLoader.count.get());
+
+    // A change of the system modules affects everything
+    cache.invalidate(Id.Namespace.SYSTEM);
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    cache.getInstance(OTHER_INSTANCE, null, ALICE, otherLoader);
+    cache.getType(TYPE, typeLoader);
+    Assert.assertEquals(4, loader.count.get());
+    Assert.assertEquals(3, otherLoader.count.get());
+    Assert.assertEquals(3, typeLoader.count.get());
+  }
+
+  @Test
+  public void testInvalidateWhileLoading() throws DatasetManagementException {
+    final DatasetMetaCache cache = new DatasetMetaCache(60, 100);
+    final DatasetMeta meta = createMeta("ds");
+    final AtomicInteger count = new AtomicInteger();
+    DatasetMetaCache.Loader<DatasetMeta> loader = new DatasetMetaCache.Loader<DatasetMeta>() {
+      @Override
+      public DatasetMeta load() {
+        // The first load races with a change, hence the meta loaded may be stale and must not be cached
+        if (count.getAndIncrement() == 0) {
+          cache.invalidate(INSTANCE);
+        }
+        return meta;
+      }
+    };
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    Assert.assertEquals(2, count.get());
+  }
+
+  @Test
+  public void testDisabled() throws DatasetManagementException {
+    DatasetMetaCache cache = new DatasetMetaCache(0, 100);
+    CountingLoader<DatasetMeta> loader = new CountingLoader<>(createMeta("ds"));
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    cache.getInstance(INSTANCE, null, ALICE, loader);
+    Assert.assertEquals(2, loader.count.get());
+  }
+
+  private static DatasetTypeMeta createType() {
+    return new DatasetTypeMeta("type", ImmutableList.<DatasetModuleMeta>of());
+  }
+
+  private static DatasetMeta createMeta(String name) {
+    return new DatasetMeta(DatasetSpecification.builder(name, "type").build(), createType(), null);
+  }
+
+  /**
+   * A {@link DatasetMetaCache.Loader} that counts how many times it is called.
+   */
+  private static final class CountingLoader<T> implements DatasetMetaCache.Loader<T> {
+    private final T meta;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private CountingLoader(@Nullable T meta) {
+      this.meta = meta;
+    }
+
+    @Override
+    public T load() {
+      count.incrementAndGet();
+      return meta;
+    }
+  }
+}
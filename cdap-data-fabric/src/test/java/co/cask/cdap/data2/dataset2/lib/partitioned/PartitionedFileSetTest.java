@@ -32,6 +32,7 @@ import co.cask.cdap.api.dataset.lib.Partitioning;
 import co.cask.cdap.data2.dataset2.DatasetFrameworkTestUtil;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.test.SlowTests;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -47,6 +48,7 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.ClassRule;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
@@ -63,6 +65,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -101,6 +104,8 @@ public class PartitionedFileSetTest {
     Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID, "pfs");
   private static final Id.DatasetInstance pfsExternalInstance =
     Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID, "ext");
+  private static final Id.DatasetInstance pfsIndexedInstance =
+    Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID, "indexed");
   private static Location pfsBaseLocation;
 
   private InMemoryTxSystemClient txClient;
@@ -126,6 +131,9 @@ public class PartitionedFileSetTest {
     if (dsFrameworkUtil.getInstance(pfsExternalInstance) != null) {
       dsFrameworkUtil.deleteInstance(pfsExternalInstance);
     }
+    if (dsFrameworkUtil.getInstance(pfsIndexedInstance) != null) {
+      dsFrameworkUtil.deleteInstance(pfsIndexedInstance);
+    }
     Assert.assertFalse(pfsBaseLocation.exists());
   }
 
@@ -874,6 +882,180 @@ public class PartitionedFileSetTest {
 
   }
 
+  @Test
+  @Category(SlowTests.class)
+  public void testGetPartitionsWithFuzzyFilterAndIndex() throws Exception {
+    // with the int and long fields first, conditions on the following fields are applied with a fuzzy row filter,
+    // and value conditions on the string field are served from the index
+    dsFrameworkUtil.createInstance("partitionedFileSet", pfsIndexedInstance, PartitionedFileSetProperties.builder()
+      .setPartitioning(Partitioning.builder().addIntField("i").addLongField("l").addStringField("s").build())
+      .setIndexedFields("s")
+      .setBasePath("indexedDir")
+      .build());
+    final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(pfsIndexedInstance);
+
+    final Set<BasicPartition> allPartitionDetails = Sets.newHashSet();
+    dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        for (int s = 0; s < 4; s++) {
+          for (int i = 0; i < 4; i++) {
+            for (int l = 0; l < 4; l++) {
+              PartitionKey key = PartitionKey.builder()
+                .addField("s", String.format("%c-%d", 'a' + s, s))
+                .addField("i", i * 100)
+                .addField("l", 15L - 10 * l)
+                .build();
+              PartitionOutput output = dataset.getPartitionOutput(key);
+              output.addPartition();
+              allPartitionDetails.add(new BasicPartition((PartitionedFileSetDataset) dataset,
+                                                         output.getRelativePath(), output.getPartitionKey()));
+            }
+          }
+        }
+      }
+    });
+
+    testFilter(dataset, allPartitionDetails, null);
+    testAllFilters(dataset, allPartitionDetails, generateFilters());
+  }
+
+  @Test
+  public void testGetPartitionsWithFuzzyFilterAfterMaxValue() throws Exception {
+    // the int field is encoded into all 0xFF bytes for MAX_VALUE, so that no row with a greater value of the
+    // leading field can follow a row that does not match the fixed bytes of the fuzzy key
+    dsFrameworkUtil.createInstance("partitionedFileSet", pfsIndexedInstance, PartitionedFileSetProperties.builder()
+      .setPartitioning(Partitioning.builder().addIntField("i").addLongField("l").build())
+      .setBasePath("indexedDir")
+      .build());
+    final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(pfsIndexedInstance);
+
+    final Set<BasicPartition> allPartitionDetails = Sets.newHashSet();
+    dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        for (int i : new int[] { 0, Integer.MAX_VALUE }) {
+          for (long l : new long[] { 1L, 5L, 9L }) {
+            PartitionKey key = PartitionKey.builder().addField("i", i).addField("l", l).build();
+            PartitionOutput output = dataset.getPartitionOutput(key);
+            output.addPartition();
+            allPartitionDetails.add(new BasicPartition((PartitionedFileSetDataset) dataset,
+                                                       output.getRelativePath(), output.getPartitionKey()));
+          }
+        }
+      }
+    });
+
+    testAllFilters(dataset, allPartitionDetails, ImmutableList.of(
+      PartitionFilter.builder().addValueCondition("l", 3L).build(),
+      PartitionFilter.builder().addValueCondition("l", 5L).build(),
+      PartitionFilter.builder().addRangeCondition("l", 2L, 4L).build(),
+      PartitionFilter.builder().addRangeCondition("l", 4L, 7L).build()));
+  }
+
+  @Test
+  public void testGetPartitionsByMetadata() throws Exception {
+    dsFrameworkUtil.createInstance("partitionedFileSet", pfsIndexedInstance, PartitionedFileSetProperties.builder()
+      .setPartitioning(PARTITIONING_1)
+      .setIndexedMetadataKeys("owner")
+      .setBasePath("indexedDir")
+      .build());
+    final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(pfsIndexedInstance);
+
+    dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        PartitionKey key1 = generateUniqueKey();
+        PartitionKey key2 = generateUniqueKey();
+        PartitionKey key3 = generateUniqueKey();
+        dataset.getPartitionOutput(key1).addPartition();
+        dataset.getPartitionOutput(key2).addPartition();
+        dataset.getPartitionOutput(key3).addPartition();
+        dataset.addMetadata(key1, ImmutableMap.of("owner", "alice", "team", "x"));
+        dataset.addMetadata(key2, ImmutableMap.of("owner", "bob", "team", "x"));
+        dataset.addMetadata(key3, ImmutableMap.of("owner", "alice"));
+
+        // lookup of an indexed metadata key
+        Set<PartitionDetail> partitions = dataset.getPartitionsByMetadata("owner", "alice");
+        Assert.assertEquals(ImmutableSet.of(key1, key3), getPartitionKeys(partitions));
+        Assert.assertTrue(dataset.getPartitionsByMetadata("owner", "carol").isEmpty());
+        // lookup of a metadata key that is not indexed
+        partitions = dataset.getPartitionsByMetadata("team", "x");
+        Assert.assertEquals(ImmutableSet.of(key1, key2), getPartitionKeys(partitions));
+
+        dataset.dropPartition(key1);
+        partitions = dataset.getPartitionsByMetadata("owner", "alice");
+        Assert.assertEquals(ImmutableSet.of(key3), getPartitionKeys(partitions));
+      }
+    });
+  }
+
+  private static Set<PartitionKey> getPartitionKeys(Set<PartitionDetail> partitionDetails) {
+    Set<PartitionKey> keys = new HashSet<>();
+    for (PartitionDetail partitionDetail : partitionDetails) {
+      keys.add(partitionDetail.getPartitionKey());
+    }
+    return keys;
+  }
+
+  /**
+   * Measures the latency of {@link PartitionedFileSet#getPartitions(PartitionFilter)} with a value condition on a
+   * non-leading field, for a growing number of partitions. It is ignored because it only reports the timings.
+   */
+  @Ignore
+  @Test
+  public void testGetPartitionsSpeed() throws Exception {
+    final Partitioning partitioning = Partitioning.builder()
+      .addIntField("i").addIntField("j").addStringField("s").build();
+    dsFrameworkUtil.createInstance("partitionedFileSet", pfsIndexedInstance, PartitionedFileSetProperties.builder()
+      .setPartitioning(partitioning)
+      .setIndexedFields("s")
+      .setBasePath("speedDir")
+      .build());
+    final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(pfsIndexedInstance);
+
+    final int numJs = 100;
+    int numPartitions = 0;
+    for (int numIs : new int[] { 10, 100, 1000 }) {
+      // add partitions until there are numIs * numJs of them
+      while (numPartitions < numIs * numJs) {
+        final int i = numPartitions / numJs;
+        dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(
+          new TransactionExecutor.Subroutine() {
+            @Override
+            public void apply() throws Exception {
+              for (int j = 0; j < numJs; j++) {
+                PartitionKey key = PartitionKey.builder()
+                  .addIntField("i", i).addIntField("j", j).addStringField("s", "s" + (i % 10)).build();
+                dataset.addPartition(key, i + "/" + j);
+              }
+            }
+          });
+        numPartitions += numJs;
+      }
+
+      for (final PartitionFilter filter : ImmutableList.of(
+        PartitionFilter.builder().addValueCondition("j", 7).build(),
+        PartitionFilter.builder().addRangeCondition("j", 7, 17).build(),
+        PartitionFilter.builder().addValueCondition("s", "s3").build())) {
+        final int runs = 10;
+        long startTime = System.nanoTime();
+        final AtomicReference<Integer> found = new AtomicReference<>();
+        for (int run = 0; run < runs; run++) {
+          dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(
+            new TransactionExecutor.Subroutine() {
+              @Override
+              public void apply() throws Exception {
+                found.set(dataset.getPartitions(filter).size());
+              }
+            });
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime) / runs;
+        LOG.info("Filter {} matched {} of {} partitions in {} us", filter, found.get(), numPartitions, elapsed);
+      }
+    }
+  }
+
   private void testAllFilters(PartitionedFileSet dataset,
                               Set<BasicPartition> allPartitionDetails,
                               List<PartitionFilter> filters) throws Exception {
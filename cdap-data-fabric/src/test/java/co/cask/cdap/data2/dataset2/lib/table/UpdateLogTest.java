@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link UpdateLog}.
+ */
+public class UpdateLogTest {
+
+  private static final byte[] R1 = Bytes.toBytes("r1");
+  private static final byte[] R2 = Bytes.toBytes("r2");
+  private static final byte[] C1 = Bytes.toBytes("c1");
+  private static final byte[] C2 = Bytes.toBytes("c2");
+
+  @Test
+  public void testFold() {
+    UpdateLog log = new UpdateLog();
+    log.put(R2, C1, Bytes.toBytes("v1"));
+    log.put(R1, C2, Bytes.toBytes("v2"));
+    log.put(R1, C1, Bytes.toBytes("v3"));
+    // later put replaces the earlier one
+    log.put(R2, C1, Bytes.toBytes("v4"));
+    // delete is kept as a null put
+    log.put(R2, C2, Bytes.toBytes("v5"));
+    log.put(R2, C2, null);
+    Assert.assertEquals(6, log.size());
+
+    NavigableMap<byte[], NavigableMap<byte[], Update>> buffer = newBuffer();
+    log.foldInto(buffer);
+
+    Assert.assertEquals(2, buffer.size());
+    Assert.assertArrayEquals(R1, buffer.firstKey());
+    assertPut("v3", buffer.get(R1).get(C1));
+    assertPut("v2", buffer.get(R1).get(C2));
+    assertPut("v4", buffer.get(R2).get(C1));
+    Assert.assertTrue(buffer.get(R2).containsKey(C2));
+    Assert.assertNull(((PutValue) buffer.get(R2).get(C2)).getValue());
+  }
+
+  @Test
+  public void testFoldIncrements() {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> buffer = newBuffer();
+    NavigableMap<byte[], Update> row = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    row.put(C1, new PutValue(Bytes.toBytes(10L)));
+    row.put(C2, new IncrementValue(5L));
+    buffer.put(R1, row);
+
+    UpdateLog log = new UpdateLog();
+    // increments are merged with what's in the buffer
+    log.increment(R1, C1, 1L);
+    log.increment(R1, C2, 2L);
+    log.increment(R1, C1, 3L);
+    // increments before a put are overridden by the put, and the ones after are applied on top of it
+    log.increment(R2, C1, 100L);
+    log.put(R2, C1, Bytes.toBytes(7L));
+    log.increment(R2, C1, 1L);
+    // increments only
+    log.increment(R2, C2, 4L);
+    log.increment(R2, C2, -1L);
+    log.foldInto(buffer);
+
+    Assert.assertEquals(14L, Bytes.toLong(((PutValue) buffer.get(R1).get(C1)).getValue()));
+    Assert.assertEquals(7L, ((IncrementValue) buffer.get(R1).get(C2)).getValue().longValue());
+    Assert.assertEquals(8L, Bytes.toLong(((PutValue) buffer.get(R2).get(C1)).getValue()));
+    Assert.assertEquals(3L, ((IncrementValue) buffer.get(R2).get(C2)).getValue().longValue());
+  }
+
+  @Test
+  public void testClearAndGrow() {
+    UpdateLog log = new UpdateLog();
+    Assert.assertTrue(log.isEmpty());
+
+    // write enough out of order rows to grow the arena and the entry index beyond the initial size multiple times
+    byte[] value = new byte[1024];
+    for (int i = 0; i < 10000; i++) {
+      log.put(Bytes.toBytes(i * 7919 % 10007), C1, value);
+      log.increment(Bytes.toBytes(i * 7919 % 10007), C2, i);
+    }
+    Assert.assertEquals(20000, log.size());
+
+    NavigableMap<byte[], NavigableMap<byte[], Update>> buffer = newBuffer();
+    log.foldInto(buffer);
+    Assert.assertEquals(10000, buffer.size());
+    Assert.assertEquals(9999L, ((IncrementValue) buffer.get(Bytes.toBytes(9999 * 7919 % 10007)).get(C2)).getValue()
+      .longValue());
+
+    log.clear();
+    Assert.assertTrue(log.isEmpty());
+    log.put(R1, C1, Bytes.toBytes("v"));
+    buffer.clear();
+    log.foldInto(buffer);
+    Assert.assertEquals(1, buffer.size());
+    assertPut("v", buffer.get(R1).get(C1));
+  }
+
+  @Test
+  public void testNonLongPuts() {
+    UpdateLog log = new UpdateLog();
+    log.put(R1, C1, Bytes.toBytes(1L));
+    log.put(R1, C2, null);
+    log.increment(R1, C1, 1L);
+    Assert.assertFalse(log.hasNonLongPuts());
+
+    log.put(R2, C1, Bytes.toBytes("v"));
+    Assert.assertTrue(log.hasNonLongPuts());
+    // replacing the value does not reset it, since the log does not look up cells
+    log.put(R2, C1, Bytes.toBytes(2L));
+    Assert.assertTrue(log.hasNonLongPuts());
+
+    log.clear();
+    Assert.assertFalse(log.hasNonLongPuts());
+  }
+
+  /**
+   * Compares the time, garbage collection activity and heap retained by buffering a large number of writes in
+   * the row->(column->update) map directly, as {@link BufferingTable} does by default, against buffering them in
+   * an {@link UpdateLog} and folding it into the map once at the end.
+   */
+  @Ignore
+  @Test
+  public void testSpeed() {
+    int rows = 200000;
+    int columns = 10;
+    byte[] value = new byte[32];
+    new Random(0).nextBytes(value);
+
+    for (int round = 0; round < 3; round++) {
+      long usedMemory = getUsedMemoryMB();
+      long gcCount = getGCCount();
+      long gcTime = getGCTime();
+      long startTime = System.nanoTime();
+      NavigableMap<byte[], NavigableMap<byte[], Update>> buffer = newBuffer();
+      for (int i = 0; i < rows; i++) {
+        byte[] row = Bytes.toBytes(i * 7919);
+        NavigableMap<byte[], Update> colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        for (int j = 0; j < columns; j++) {
+          colVals.put(Bytes.toBytes("c" + j), new PutValue(value.clone()));
+        }
+        buffer.put(row.clone(), colVals);
+      }
+      System.out.printf("Map buffer: %d ms, %d GCs, %d ms GC time, %d MB retained%n",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+                        getGCCount() - gcCount, getGCTime() - gcTime, getUsedMemoryMB() - usedMemory);
+
+      buffer = null;
+      usedMemory = getUsedMemoryMB();
+      gcCount = getGCCount();
+      gcTime = getGCTime();
+      startTime = System.nanoTime();
+      UpdateLog log = new UpdateLog();
+      for (int i = 0; i < rows; i++) {
+        byte[] row = Bytes.toBytes(i * 7919);
+        for (int j = 0; j < columns; j++) {
+          log.put(row, Bytes.toBytes("c" + j), value);
+        }
+      }
+      long appendTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+      long appendGCCount = getGCCount() - gcCount;
+      long appendGCTime = getGCTime() - gcTime;
+      long retained = getUsedMemoryMB() - usedMemory;
+
+      startTime = System.nanoTime();
+      buffer = newBuffer();
+      log.foldInto(buffer);
+      System.out.printf("Log buffer: %d ms, %d GCs, %d ms GC time, %d MB retained. Fold: %d ms%n",
+                        appendTime, appendGCCount, appendGCTime, retained,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+      Assert.assertEquals(rows, buffer.size());
+    }
+  }
+
+  private long getUsedMemoryMB() {
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    return (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024;
+  }
+
+  private long getGCCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += bean.getCollectionCount();
+    }
+    return count;
+  }
+
+  private long getGCTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += bean.getCollectionTime();
+    }
+    return time;
+  }
+
+  private NavigableMap<byte[], NavigableMap<byte[], Update>> newBuffer() {
+    return new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+  }
+
+  private void assertPut(String expected, Update update) {
+    Assert.assertTrue(update instanceof PutValue);
+    Assert.assertEquals(expected, Bytes.toString(((PutValue) update).getValue()));
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link LevelDBTableCore}.
+ */
+public class LevelDBTableCoreTest {
+
+  @ClassRule
+  public static TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private static final byte[] COLUMN = Bytes.toBytes("c");
+
+  private static LevelDBTableService service;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_DATA_LEVELDB_DIR, tmpFolder.newFolder().getAbsolutePath());
+    service = new LevelDBTableService();
+    service.setConfiguration(cConf);
+  }
+
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    String tableName = "testConcurrentIncrements";
+    service.ensureTableExists(tableName);
+
+    // Each thread uses its own core instance, as different dataset instances of the same table do
+    final int threads = 8;
+    final int rows = 16;
+    final int increments = 300;
+    runConcurrently(tableName, threads, increments, new IncrementOp() {
+      @Override
+      public void increment(LevelDBTableCore core, int thread, int iteration) throws Exception {
+        // Alternates between single row increments on a shared row, single row increments on
+        // a per thread row, and multi-row increments over all rows
+        byte[] sharedRow = Bytes.toBytes("shared");
+        switch (iteration % 3) {
+          case 0:
+            core.increment(sharedRow, ImmutableMap.of(COLUMN, 1L));
+            break;
+          case 1:
+            core.increment(Bytes.toBytes("row" + thread), ImmutableMap.of(COLUMN, 1L));
+            break;
+          default:
+            NavigableMap<byte[], NavigableMap<byte[], Long>> updates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+            for (int i = 0; i < rows; i++) {
+              NavigableMap<byte[], Long> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+              columns.put(COLUMN, 1L);
+              updates.put(Bytes.toBytes("multi" + i), columns);
+            }
+            core.increment(updates);
+        }
+      }
+    });
+
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+    Assert.assertEquals(threads * (increments / 3), getCount(core, Bytes.toBytes("shared")));
+    for (int i = 0; i < threads; i++) {
+      Assert.assertEquals(increments / 3, getCount(core, Bytes.toBytes("row" + i)));
+    }
+    for (int i = 0; i < rows; i++) {
+      Assert.assertEquals(threads * (increments / 3), getCount(core, Bytes.toBytes("multi" + i)));
+    }
+  }
+
+  @Test
+  public void testConcurrentSwap() throws Exception {
+    String tableName = "testConcurrentSwap";
+    service.ensureTableExists(tableName);
+
+    // Implements increment with swap. No update can be lost if swap is atomic.
+    final int threads = 8;
+    final int swaps = 200;
+    runConcurrently(tableName, threads, swaps, new IncrementOp() {
+      @Override
+      public void increment(LevelDBTableCore core, int thread, int iteration) throws Exception {
+        byte[] row = Bytes.toBytes("row");
+        while (true) {
+          byte[] existing = core.getRow(row, new byte[][] { COLUMN }, null, null, -1, null).get(COLUMN);
+          long value = existing == null ? 0L : Bytes.toLong(existing);
+          if (core.swap(row, COLUMN, existing, Bytes.toBytes(value + 1))) {
+            break;
+          }
+        }
+      }
+    });
+
+    Assert.assertEquals(threads * swaps, getCount(new LevelDBTableCore(tableName, service), Bytes.toBytes("row")));
+  }
+
+  /**
+   * Compares the throughput of increments on different rows with the row locks against increments serialized by a
+   * table-wide monitor, which is how {@link LevelDBTableCore} used to synchronize increments.
+   */
+  @Ignore
+  @Test
+  public void testIncrementSpeed() throws Exception {
+    String tableName = "testIncrementSpeed";
+    service.ensureTableExists(tableName);
+
+    final int threads = 16;
+    final int increments = 20000;
+    final Object tableMonitor = new Object();
+    for (int round = 0; round < 2; round++) {
+      long startTime = System.nanoTime();
+      runConcurrently(tableName, threads, increments, new IncrementOp() {
+        @Override
+        public void increment(LevelDBTableCore core, int thread, int iteration) throws Exception {
+          core.increment(Bytes.toBytes("row" + thread), ImmutableMap.of(COLUMN, 1L));
+        }
+      });
+      long endTime = System.nanoTime();
+      System.out.println("Row locks time spent: "
+                           + TimeUnit.MILLISECONDS.convert(endTime - startTime, TimeUnit.NANOSECONDS));
+
+      startTime = System.nanoTime();
+      runConcurrently(tableName, threads, increments, new IncrementOp() {
+        @Override
+        public void increment(LevelDBTableCore core, int thread, int iteration) throws Exception {
+          synchronized (tableMonitor) {
+            core.increment(Bytes.toBytes("row" + thread), ImmutableMap.of(COLUMN, 1L));
+          }
+        }
+      });
+      endTime = System.nanoTime();
+      System.out.println("Table monitor time spent: "
+                           + TimeUnit.MILLISECONDS.convert(endTime - startTime, TimeUnit.NANOSECONDS));
+    }
+  }
+
+  private long getCount(LevelDBTableCore core, byte[] row) throws Exception {
+    byte[] value = core.getRow(row, new byte[][] { COLUMN }, null, null, -1, null).get(COLUMN);
+    return value == null ? 0L : Bytes.toLong(value);
+  }
+
+  /**
+   * Runs the given operation concurrently from the given number of threads, each with its own
+   * {@link LevelDBTableCore} instance.
+   */
+  private void runConcurrently(final String tableName, int threads, final int iterations,
+                               final IncrementOp op) throws Exception {
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Void>> futures = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        final int thread = i;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+            barrier.await();
+            for (int j = 0; j < iterations; j++) {
+              op.increment(core, thread, j);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * An operation executed by {@link #runConcurrently(String, int, int, IncrementOp)}.
+   */
+  private interface IncrementOp {
+    void increment(LevelDBTableCore core, int thread, int iteration) throws Exception;
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,9 +18,13 @@ package co.cask.cdap.data2.dataset2.lib.timeseries;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Sets;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Set;
+
 /**
  *
  */
@@ -91,4 +95,70 @@ public class EntityTableTest {
       Assert.assertEquals("app" + i, entityTable.getName(i, "app"));
     }
   }
+
+  @Test
+  public void testBatchIdAllocation() throws Exception {
+    InMemoryTableService.create("testBatchId");
+    MetricsTable table = new InMemoryMetricsTable("testBatchId");
+
+    // Two tables allocating from the same generator row get different batches
+    EntityTable entityTable1 = new EntityTable(table, 1000, 100, 10);
+    EntityTable entityTable2 = new EntityTable(table, 1000, 100, 10);
+    Set<Long> ids = Sets.newHashSet();
+    for (int i = 1; i <= 25; i++) {
+      Assert.assertTrue(ids.add(entityTable1.getId("app", "app" + i)));
+      Assert.assertTrue(ids.add(entityTable2.getId("app", "other" + i)));
+    }
+    // Ids of the first table come from the 1st, 3rd and 5th batches
+    Assert.assertEquals(1L, entityTable1.getId("app", "app1"));
+    Assert.assertEquals(21L, entityTable1.getId("app", "app11"));
+    Assert.assertEquals(11L, entityTable2.getId("app", "other1"));
+
+    // Existing mappings are visible to the other table
+    Assert.assertEquals(entityTable1.getId("app", "app5"), entityTable2.getId("app", "app5"));
+    Assert.assertEquals("other5", entityTable1.getName(entityTable2.getId("app", "other5"), "app"));
+  }
+
+  @Test
+  public void testRecycleWithBatchAllocation() throws Exception {
+    InMemoryTableService.create("testRecycleBatchId");
+    MetricsTable table = new InMemoryMetricsTable("testRecycleBatchId");
+
+    // Batch size doesn't divide maxId - 1, so the last batch before recycle is a partial one
+    EntityTable entityTable = new EntityTable(table, 101, 1000, 16);
+    for (long i = 1; i <= 500; i++) {
+      entityTable.getId("app", "app" + i);
+    }
+
+    entityTable = new EntityTable(table, 101);
+    for (long i = 1; i <= 100; i++) {
+      Assert.assertEquals("app" + String.valueOf(400 + i), entityTable.getName(i, "app"));
+    }
+  }
+
+  @Test
+  public void testPreload() throws Exception {
+    InMemoryTableService.create("testPreload");
+    MetricsTable table = new InMemoryMetricsTable("testPreload");
+
+    EntityTable entityTable = new EntityTable(table);
+    for (int i = 1; i <= 10; i++) {
+      entityTable.getId("app", "app" + i);
+      entityTable.getId("flow.name", "flow" + i);
+    }
+
+    entityTable = new EntityTable(table);
+    Assert.assertEquals(20, entityTable.preload());
+    for (int i = 1; i <= 10; i++) {
+      Assert.assertEquals((long) i, entityTable.getId("app", "app" + i));
+      Assert.assertEquals("flow" + i, entityTable.getName(i, "flow.name"));
+    }
+    // All lookups are served from the cache
+    CacheStats stats = entityTable.getCacheStats();
+    Assert.assertEquals(20L, stats.hitCount());
+    Assert.assertEquals(0L, stats.missCount());
+
+    // Preload is bounded by the cache size
+    Assert.assertEquals(5, new EntityTable(table, 1000, 5, 1).preload());
+  }
 }
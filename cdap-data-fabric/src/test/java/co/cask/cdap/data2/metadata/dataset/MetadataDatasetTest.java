@@ -398,6 +398,33 @@ public class MetadataDatasetTest {
     Assert.assertEquals(Sets.newHashSet(flowEntry1, flowEntry2, streamEntry1, streamEntry2), Sets.newHashSet(results));
   }
 
+  @Test
+  public void testSearchOnLongValue() throws Exception {
+    // Long values are not stored in the index rows, and are read from the value row instead
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      builder.append("word").append(i).append(' ');
+    }
+    String longValue = builder.toString().trim();
+    MetadataEntry longEntry = new MetadataEntry(dataset1, "long", longValue);
+    MetadataEntry shortEntry = new MetadataEntry(dataset1, "short", "word1");
+    dataset.setProperty(dataset1, "long", longValue);
+    dataset.setProperty(dataset1, "short", "word1");
+
+    List<MetadataEntry> results = dataset.search("ns1", "word499", ImmutableSet.of(MetadataSearchTargetType.ALL));
+    Assert.assertEquals(ImmutableList.of(longEntry), results);
+
+    // All matches of the long value are returned, along with the short value
+    results = dataset.search("ns1", "word1*", ImmutableSet.of(MetadataSearchTargetType.ALL));
+    Assert.assertEquals(112, results.size());
+    Assert.assertEquals(ImmutableSet.of(longEntry, shortEntry), ImmutableSet.copyOf(results));
+
+    // Updated values are returned from the index rows
+    dataset.setProperty(dataset1, "long", "word1");
+    results = dataset.search("ns1", "long:word1", ImmutableSet.of(MetadataSearchTargetType.ALL));
+    Assert.assertEquals(ImmutableList.of(new MetadataEntry(dataset1, "long", "word1")), results);
+  }
+
   @Test
   public void testSearchIncludesSystemEntities() {
     // Use the same artifact in two different namespaces - system and ns2
@@ -38,13 +38,18 @@ import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.proto.metadata.Metadata;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
+import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -73,6 +78,7 @@ public class MetadataStoreTest {
   private static final Set<String> EMPTY_TAGS = Collections.emptySet();
   private static final Map<MetadataScope, Metadata> EMPTY_USER_METADATA =
     ImmutableMap.of(MetadataScope.USER, new Metadata(EMPTY_PROPERTIES, EMPTY_TAGS));
+  private static final Predicate<Id.NamespacedId> ALL_ENTITIES = Predicates.alwaysTrue();
 
   private final ApplicationId app = NamespaceId.DEFAULT.app("app");
   private final ProgramId flow = app.flow("flow");
@@ -306,6 +312,107 @@ public class MetadataStoreTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void testSearchPaging() throws Exception {
+    Id.DatasetInstance[] datasets = new Id.DatasetInstance[5];
+    int[] scores = {1, 1, 2, 3, 1};
+    for (int i = 0; i < datasets.length; i++) {
+      datasets[i] = Id.DatasetInstance.from("paging", "ds" + i);
+      for (int j = 0; j < scores[i]; j++) {
+        store.setProperties(MetadataScope.USER, datasets[i], ImmutableMap.of("key" + j, "pvalue" + j));
+      }
+    }
+    // a match in the system scope adds to the score
+    store.addTags(MetadataScope.SYSTEM, datasets[4], "pvalue");
+
+    Set<MetadataSearchTargetType> types = ImmutableSet.of(MetadataSearchTargetType.ALL);
+    // Results are ordered by descending score, then by entity id
+    List<Id.NamespacedId> expected = ImmutableList.<Id.NamespacedId>of(datasets[3], datasets[2], datasets[4],
+                                                                       datasets[0], datasets[1]);
+    List<Id.NamespacedId> actual = new ArrayList<>();
+    String cursor = null;
+    int pages = 0;
+    do {
+      MetadataSearchResponse response = store.searchMetadataOnType("paging", "pvalue*", types, cursor, 2,
+                                                                     ALL_ENTITIES);
+      Assert.assertTrue(response.getResults().size() <= 2);
+      for (MetadataSearchResultRecord record : response.getResults()) {
+        actual.add(record.getEntityId());
+      }
+      cursor = response.getCursor();
+      pages++;
+    } while (cursor != null);
+    Assert.assertEquals(3, pages);
+    Assert.assertEquals(expected, actual);
+
+    // A page contains the metadata of both scopes
+    MetadataSearchResponse response = store.searchMetadataOnType("paging", "pvalue*", types, null, 3, ALL_ENTITIES);
+    Assert.assertEquals(ImmutableMap.of(MetadataScope.USER, new Metadata(ImmutableMap.of("key0", "pvalue0"),
+                                                                         Collections.<String>emptySet()),
+                                        MetadataScope.SYSTEM, new Metadata(Collections.<String, String>emptyMap(),
+                                                                           ImmutableSet.of("pvalue"))),
+                        Iterables.getLast(response.getResults()).getMetadata());
+
+    // A page with all results has no cursor
+    response = store.searchMetadataOnType(MetadataScope.USER, "paging", "pvalue*", types, null, 5,
+                                           ALL_ENTITIES);
+    Assert.assertEquals(5, response.getResults().size());
+    Assert.assertNull(response.getCursor());
+
+    try {
+      store.searchMetadataOnType("paging", "pvalue*", types, "invalid", 2, ALL_ENTITIES);
+      Assert.fail("Expected failure for an invalid cursor");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSearchPagingWithFilter() throws Exception {
+    final Id.DatasetInstance[] datasets = new Id.DatasetInstance[5];
+    int[] scores = {1, 1, 2, 3, 1};
+    for (int i = 0; i < datasets.length; i++) {
+      datasets[i] = Id.DatasetInstance.from("filtered", "ds" + i);
+      for (int j = 0; j < scores[i]; j++) {
+        store.setProperties(MetadataScope.USER, datasets[i], ImmutableMap.of("key" + j, "fvalue" + j));
+      }
+    }
+    Set<MetadataSearchTargetType> types = ImmutableSet.of(MetadataSearchTargetType.ALL);
+
+    // Pages are filled with results that pass the filter, and the cursor refers to the last result of the page
+    Predicate<Id.NamespacedId> filter = new Predicate<Id.NamespacedId>() {
+      @Override
+      public boolean apply(Id.NamespacedId entityId) {
+        return !entityId.equals(datasets[0]) && !entityId.equals(datasets[2]);
+      }
+    };
+    MetadataSearchResponse response = store.searchMetadataOnType("filtered", "fvalue*", types, null, 2, filter);
+    Assert.assertEquals(ImmutableList.<Id.NamespacedId>of(datasets[3], datasets[1]), getEntityIds(response));
+    Assert.assertNotNull(response.getCursor());
+    Assert.assertTrue(response.getCursor().endsWith(datasets[1].toString()));
+    response = store.searchMetadataOnType("filtered", "fvalue*", types, response.getCursor(), 2, filter);
+    Assert.assertEquals(ImmutableList.<Id.NamespacedId>of(datasets[4]), getEntityIds(response));
+    Assert.assertNull(response.getCursor());
+
+    // No cursor if the results after the page are all filtered out
+    response = store.searchMetadataOnType("filtered", "fvalue*", types, null, 1, new Predicate<Id.NamespacedId>() {
+      @Override
+      public boolean apply(Id.NamespacedId entityId) {
+        return entityId.equals(datasets[3]);
+      }
+    });
+    Assert.assertEquals(ImmutableList.<Id.NamespacedId>of(datasets[3]), getEntityIds(response));
+    Assert.assertNull(response.getCursor());
+  }
+
+  private List<Id.NamespacedId> getEntityIds(MetadataSearchResponse response) {
+    List<Id.NamespacedId> entityIds = new ArrayList<>();
+    for (MetadataSearchResultRecord record : response.getResults()) {
+      entityIds.add(record.getEntityId());
+    }
+    return entityIds;
+  }
+
   @AfterClass
   public static void teardown() {
     txManager.stopAndWait();
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,13 +16,22 @@
 
 package co.cask.cdap.hive.datasets;
 
+import co.cask.cdap.api.data.batch.KeyRangeRecordScannable;
+import co.cask.cdap.api.data.batch.ProjectableRecordScannable;
 import co.cask.cdap.api.data.batch.RecordScannable;
 import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.Split;
+import co.cask.cdap.api.data.schema.Schema;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.gson.Gson;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.plan.TableScanDesc;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.shims.ShimLoader;
 import org.apache.hadoop.io.ObjectWritable;
 import org.apache.hadoop.io.Text;
@@ -35,17 +44,27 @@ import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * Map reduce input format to read from datasets that implement RecordScannable.
+ * <p>
+ * For datasets that implement {@link KeyRangeRecordScannable}, comparisons of the row key field with constants in
+ * the query filter are used to only read the splits that cover the matching row keys. For datasets that implement
+ * {@link ProjectableRecordScannable}, only the columns used by the query are read.
+ * </p>
  */
 public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetInputFormat.class);
   private static final Gson GSON = new Gson();
 
   @Override
@@ -61,7 +80,7 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
         JobContext jobContext = ShimLoader.getHadoopShims().newJobContext(job);
         Path[] tablePaths = FileInputFormat.getInputPaths(jobContext);
 
-        List<Split> dsSplits = recordScannable.getSplits();
+        List<Split> dsSplits = getSplits(jobConf, recordScannable);
 
         InputSplit[] inputSplits = new InputSplit[dsSplits.size()];
         for (int i = 0; i < dsSplits.size(); i++) {
@@ -72,6 +91,61 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
     }
   }
 
+  /**
+   * Returns the splits of the dataset that can contain records matching the query filter.
+   */
+  private List<Split> getSplits(Configuration conf, RecordScannable<?> recordScannable) {
+    if (!(recordScannable instanceof KeyRangeRecordScannable)) {
+      return recordScannable.getSplits();
+    }
+    KeyRangeRecordScannable<?> keyRangeScannable = (KeyRangeRecordScannable<?>) recordScannable;
+    Schema.Field keyField = keyRangeScannable.getKeyField();
+    String serializedExpr = conf.get(TableScanDesc.FILTER_EXPR_CONF_STR);
+    if (keyField == null || serializedExpr == null) {
+      return recordScannable.getSplits();
+    }
+
+    RowKeyRange range;
+    try {
+      range = RowKeyRange.create(deserializeExpression(serializedExpr, conf), keyField);
+    } catch (Throwable t) {
+      LOG.warn("Exception analyzing query predicate. A full table scan will be performed.", t);
+      return recordScannable.getSplits();
+    }
+    if (range.isEmpty()) {
+      return ImmutableList.of();
+    }
+    if (range.isAll()) {
+      return recordScannable.getSplits();
+    }
+    return keyRangeScannable.getSplits(-1, range.getStart(), range.getStop());
+  }
+
+  private static ExprNodeGenericFuncDesc deserializeExpression(String serializedExpr,
+                                                               Configuration conf) throws Exception {
+    // Hack to deal with the fact that older versions of Hive use
+    // Utilities.deserializeExpression(String, Configuration),
+    // whereas newer versions use Utilities.deserializeExpression(String).
+    try {
+      return Utilities.deserializeExpression(serializedExpr);
+    } catch (NoSuchMethodError e) {
+      return (ExprNodeGenericFuncDesc) Utilities.class.getMethod(
+        "deserializeExpression", String.class, Configuration.class).invoke(null, serializedExpr, conf);
+    }
+  }
+
+  /**
+   * Returns the names of the columns read by the query, or {@code null} if all columns are read.
+   */
+  @Nullable
+  private static Set<String> getReadColumnNames(Configuration conf) {
+    if (ColumnProjectionUtils.isReadAllColumns(conf)) {
+      return null;
+    }
+    String[] columnNames = ColumnProjectionUtils.getReadColumnNames(conf);
+    return columnNames.length == 0 ? null : ImmutableSet.copyOf(columnNames);
+  }
+
   @Override
   public RecordReader<Void, ObjectWritable> getRecordReader(final InputSplit split, JobConf jobConf, Reporter reporter)
     throws IOException {
@@ -150,6 +224,7 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
     private final AtomicBoolean initialized;
     private final DatasetAccessor datasetAccessor;
     private final DatasetInputSplit datasetInputSplit;
+    private final Set<String> readColumnNames;
     private RecordScannable recordScannable;
     private RecordScanner recordScanner;
 
@@ -157,20 +232,25 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
       this.initialized = new AtomicBoolean(false);
       this.datasetAccessor = new DatasetAccessor(conf);
       this.datasetInputSplit = datasetInputSplit;
+      this.readColumnNames = getReadColumnNames(conf);
     }
 
     private void initialize() throws IOException {
       try {
         datasetAccessor.initialize();
         recordScannable = datasetAccessor.getDataset();
-        recordScanner = recordScannable.createSplitRecordScanner(
-          new Split() {
-            @Override
-            public long getLength() {
-              return datasetInputSplit.getLength();
-            }
+        Split split = new Split() {
+          @Override
+          public long getLength() {
+            return datasetInputSplit.getLength();
           }
-        );
+        };
+        if (readColumnNames != null && recordScannable instanceof ProjectableRecordScannable) {
+          recordScanner = ((ProjectableRecordScannable) recordScannable).createSplitRecordScanner(split,
+                                                                                                  readColumnNames);
+        } else {
+          recordScanner = recordScannable.createSplitRecordScanner(split);
+        }
         recordScanner.initialize(datasetInputSplit.getDataSetSplit());
         initialized.set(true);
       } catch (InterruptedException ie) {
@@ -0,0 +1,283 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.hive.datasets;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.KeyRangeRecordScannable;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.hive.ql.index.IndexPredicateAnalyzer;
+import org.apache.hadoop.hive.ql.index.IndexSearchCondition;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBetween;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * The range of row keys that a Hive filter expression can match, derived from the comparisons of the row key field
+ * of a {@link KeyRangeRecordScannable} with constants. Hive still applies the full filter on the records read,
+ * so the range only needs to contain all the matching row keys.
+ * <p>
+ * Range comparisons are only used for string and bytes keys, for which the order of the encoded row keys is the
+ * same as the order of the values. Int and long keys are only restricted by equality.
+ */
+final class RowKeyRange {
+
+  private static final RowKeyRange ALL = new RowKeyRange(null, null);
+  private static final byte[] ZERO = { 0 };
+
+  private final byte[] start;
+  private final byte[] stop;
+
+  /**
+   * Returns the range of row keys that can match the given filter expression.
+   *
+   * @param filter the filter expression of a Hive query
+   * @param keyField the record field that holds the row key
+   */
+  static RowKeyRange create(ExprNodeDesc filter, Schema.Field keyField) {
+    Schema keySchema = keyField.getSchema();
+    if (keySchema.isNullable()) {
+      keySchema = keySchema.getNonNullable();
+    }
+    Schema.Type keyType = keySchema.getType();
+    boolean ordered = keyType == Schema.Type.STRING || keyType == Schema.Type.BYTES;
+    if (!ordered && keyType != Schema.Type.INT && keyType != Schema.Type.LONG) {
+      return ALL;
+    }
+
+    IndexPredicateAnalyzer analyzer = new IndexPredicateAnalyzer();
+    for (CompareOp op : CompareOp.values()) {
+      if (ordered || op == CompareOp.EQUAL) {
+        analyzer.addComparisonOp(op.getOpClassName());
+      }
+    }
+    // Hive column names are always in lower case
+    String columnName = keyField.getName().toLowerCase();
+    analyzer.clearAllowedColumnNames();
+    analyzer.allowColumnName(columnName);
+
+    List<IndexSearchCondition> conditions = new ArrayList<>();
+    ExprNodeDesc residual = analyzer.analyzePredicate(filter, conditions);
+
+    Builder builder = new Builder();
+    for (IndexSearchCondition condition : conditions) {
+      CompareOp op = CompareOp.from(condition.getComparisonOp());
+      byte[] key = toRowKey(keyType, condition.getConstantDesc());
+      if (op != null && key != null) {
+        builder.add(op, key);
+      }
+    }
+    // BETWEEN is not handled by the analyzer, hence left in the residual
+    if (ordered && residual != null) {
+      addBetween(builder, residual, columnName, keyType);
+    }
+    return builder.build();
+  }
+
+  private RowKeyRange(@Nullable byte[] start, @Nullable byte[] stop) {
+    this.start = start;
+    this.stop = stop;
+  }
+
+  /**
+   * Returns the start row key, inclusive, or {@code null} if there is no lower bound.
+   */
+  @Nullable
+  byte[] getStart() {
+    return start;
+  }
+
+  /**
+   * Returns the stop row key, exclusive, or {@code null} if there is no upper bound.
+   */
+  @Nullable
+  byte[] getStop() {
+    return stop;
+  }
+
+  /**
+   * Returns {@code true} if no row key can match.
+   */
+  boolean isEmpty() {
+    return start != null && stop != null && Bytes.compareTo(start, stop) >= 0;
+  }
+
+  /**
+   * Returns {@code true} if every row key can match.
+   */
+  boolean isAll() {
+    return start == null && stop == null;
+  }
+
+  /**
+   * Adds the {@code key BETWEEN low AND high} conditions that are combined with AND in the given expression.
+   */
+  private static void addBetween(Builder builder, ExprNodeDesc expr, String columnName, Schema.Type keyType) {
+    if (!(expr instanceof ExprNodeGenericFuncDesc)) {
+      return;
+    }
+    ExprNodeGenericFuncDesc funcDesc = (ExprNodeGenericFuncDesc) expr;
+    List<ExprNodeDesc> children = funcDesc.getChildren();
+    if (funcDesc.getGenericUDF() instanceof GenericUDFOPAnd) {
+      for (ExprNodeDesc child : children) {
+        addBetween(builder, child, columnName, keyType);
+      }
+      return;
+    }
+    // The children of BETWEEN are whether it is NOT BETWEEN, the column, and the lower and upper bounds
+    if (!(funcDesc.getGenericUDF() instanceof GenericUDFBetween) || children.size() != 4
+      || !(children.get(0) instanceof ExprNodeConstantDesc)
+      || !Boolean.FALSE.equals(((ExprNodeConstantDesc) children.get(0)).getValue())
+      || !(children.get(1) instanceof ExprNodeColumnDesc)
+      || !columnName.equals(((ExprNodeColumnDesc) children.get(1)).getColumn())) {
+      return;
+    }
+    if (children.get(2) instanceof ExprNodeConstantDesc) {
+      byte[] low = toRowKey(keyType, (ExprNodeConstantDesc) children.get(2));
+      if (low != null) {
+        builder.add(CompareOp.EQUAL_OR_GREATER, low);
+      }
+    }
+    if (children.get(3) instanceof ExprNodeConstantDesc) {
+      byte[] high = toRowKey(keyType, (ExprNodeConstantDesc) children.get(3));
+      if (high != null) {
+        builder.add(CompareOp.EQUAL_OR_LESS, high);
+      }
+    }
+  }
+
+  /**
+   * Encodes a constant into a row key the same way as the row key field is encoded.
+   *
+   * @return the row key, or {@code null} if the constant is not of a supported type
+   */
+  @Nullable
+  private static byte[] toRowKey(Schema.Type keyType, @Nullable ExprNodeConstantDesc constant) {
+    Object value = constant == null ? null : constant.getValue();
+    switch (keyType) {
+      case STRING:
+        return value instanceof String ? Bytes.toBytes((String) value) : null;
+      case BYTES:
+        if (value instanceof byte[]) {
+          return (byte[]) value;
+        }
+        return value instanceof String ? Bytes.toBytes((String) value) : null;
+      case INT:
+        return value instanceof Integer || value instanceof Short || value instanceof Byte
+          ? Bytes.toBytes(((Number) value).intValue()) : null;
+      case LONG:
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+          ? Bytes.toBytes(((Number) value).longValue()) : null;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns the smallest row key that is greater than the given one.
+   */
+  private static byte[] next(byte[] key) {
+    return Bytes.concat(key, ZERO);
+  }
+
+  /**
+   * Intersects the ranges of multiple comparisons.
+   */
+  private static final class Builder {
+    private byte[] start;
+    private byte[] stop;
+
+    void add(CompareOp op, byte[] key) {
+      switch (op) {
+        case EQUAL:
+          setStart(key);
+          setStop(next(key));
+          break;
+        case EQUAL_OR_GREATER:
+          setStart(key);
+          break;
+        case GREATER:
+          setStart(next(key));
+          break;
+        case EQUAL_OR_LESS:
+          setStop(next(key));
+          break;
+        case LESS:
+          setStop(key);
+          break;
+      }
+    }
+
+    private void setStart(byte[] key) {
+      if (start == null || Bytes.compareTo(key, start) > 0) {
+        start = key;
+      }
+    }
+
+    private void setStop(byte[] key) {
+      if (stop == null || Bytes.compareTo(key, stop) < 0) {
+        stop = key;
+      }
+    }
+
+    RowKeyRange build() {
+      return start == null && stop == null ? ALL : new RowKeyRange(start, stop);
+    }
+  }
+
+  private enum CompareOp {
+    EQUAL(GenericUDFOPEqual.class.getName()),
+    EQUAL_OR_GREATER(GenericUDFOPEqualOrGreaterThan.class.getName()),
+    EQUAL_OR_LESS(GenericUDFOPEqualOrLessThan.class.getName()),
+    GREATER(GenericUDFOPGreaterThan.class.getName()),
+    LESS(GenericUDFOPLessThan.class.getName());
+
+    private final String opClassName;
+
+    CompareOp(String opClassName) {
+      this.opClassName = opClassName;
+    }
+
+    String getOpClassName() {
+      return opClassName;
+    }
+
+    /**
+     * Returns a {@link CompareOp} by matching the given class name or {@code null} if there is none matching.
+     */
+    @Nullable
+    static CompareOp from(String opClassName) {
+      for (CompareOp op : values()) {
+        if (op.getOpClassName().equals(opClassName)) {
+          return op;
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -153,6 +153,12 @@ public class ObjectDeserializer {
       String hiveName = fieldNames.get(i);
       TypeInfo fieldType = fieldTypes.get(i);
       Schema.Field schemaField = fieldMap.get(hiveName);
+      // a field that is not in the schema of a record has been left out because the query doesn't read it
+      if (obj instanceof StructuredRecord
+        && ((StructuredRecord) obj).getSchema().getField(schemaField.getName()) == null) {
+        objectFields.add(null);
+        continue;
+      }
       // use the name from the schema field in case it is not all lowercase
       Object recordField = getRecordField(obj, schemaField.getName());
       objectFields.add(deserializeField(recordField, fieldType, schemaField.getSchema()));
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.hive.datasets;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.collect.Lists;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBetween;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotEqual;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RowKeyRange}.
+ */
+public class RowKeyRangeTest {
+
+  private static final Schema.Field STRING_KEY = Schema.Field.of("Key", Schema.of(Schema.Type.STRING));
+  private static final Schema.Field INT_KEY = Schema.Field.of("key", Schema.of(Schema.Type.INT));
+
+  @Test
+  public void testEqual() {
+    RowKeyRange range = RowKeyRange.create(compare(new GenericUDFOPEqual(), "key", "x"), STRING_KEY);
+    Assert.assertArrayEquals(Bytes.toBytes("x"), range.getStart());
+    Assert.assertArrayEquals(new byte[] { 'x', 0 }, range.getStop());
+    Assert.assertFalse(range.isEmpty());
+
+    range = RowKeyRange.create(compare(new GenericUDFOPEqual(), "key", 5), INT_KEY);
+    Assert.assertArrayEquals(Bytes.toBytes(5), range.getStart());
+    Assert.assertArrayEquals(Bytes.concat(Bytes.toBytes(5), new byte[] { 0 }), range.getStop());
+
+    // comparisons of other columns don't restrict the range
+    range = RowKeyRange.create(compare(new GenericUDFOPEqual(), "value", "x"), STRING_KEY);
+    Assert.assertTrue(range.isAll());
+  }
+
+  @Test
+  public void testRange() {
+    // key > 'a' AND key <= 'm' AND value = 'x'
+    ExprNodeDesc expr = and(compare(new GenericUDFOPGreaterThan(), "key", "a"),
+                            compare(new GenericUDFOPEqualOrLessThan(), "key", "m"),
+                            compare(new GenericUDFOPEqual(), "value", "x"));
+    RowKeyRange range = RowKeyRange.create(expr, STRING_KEY);
+    Assert.assertArrayEquals(new byte[] { 'a', 0 }, range.getStart());
+    Assert.assertArrayEquals(new byte[] { 'm', 0 }, range.getStop());
+
+    // key BETWEEN 'c' AND 'f' AND key < 'e'
+    expr = and(between("key", "c", "f"), compare(new GenericUDFOPLessThan(), "key", "e"));
+    range = RowKeyRange.create(expr, STRING_KEY);
+    Assert.assertArrayEquals(Bytes.toBytes("c"), range.getStart());
+    Assert.assertArrayEquals(Bytes.toBytes("e"), range.getStop());
+
+    // key = 'a' AND key > 'b' can't match anything
+    expr = and(compare(new GenericUDFOPEqual(), "key", "a"), compare(new GenericUDFOPGreaterThan(), "key", "b"));
+    Assert.assertTrue(RowKeyRange.create(expr, STRING_KEY).isEmpty());
+  }
+
+  @Test
+  public void testUnsupported() {
+    // the order of encoded int keys is not the order of the values
+    Assert.assertTrue(RowKeyRange.create(compare(new GenericUDFOPLessThan(), "key", 5), INT_KEY).isAll());
+    Assert.assertTrue(RowKeyRange.create(compare(new GenericUDFOPNotEqual(), "key", "x"), STRING_KEY).isAll());
+    // a constant of a different type
+    Assert.assertTrue(RowKeyRange.create(compare(new GenericUDFOPEqual(), "key", 5L), STRING_KEY).isAll());
+  }
+
+  private ExprNodeDesc compare(GenericUDF udf, String column, Object value) {
+    ExprNodeConstantDesc constant = new ExprNodeConstantDesc(value);
+    TypeInfo typeInfo = constant.getTypeInfo();
+    return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, udf, Lists.<ExprNodeDesc>newArrayList(
+      new ExprNodeColumnDesc(typeInfo, column, "t", false), constant));
+  }
+
+  private ExprNodeDesc between(String column, String low, String high) {
+    return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, new GenericUDFBetween(),
+                                       Lists.<ExprNodeDesc>newArrayList(
+                                         new ExprNodeConstantDesc(false),
+                                         new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, column, "t", false),
+                                         new ExprNodeConstantDesc(low), new ExprNodeConstantDesc(high)));
+  }
+
+  /**
+   * Combines the given expressions with binary AND.
+   */
+  private ExprNodeDesc and(ExprNodeDesc first, ExprNodeDesc... others) {
+    ExprNodeDesc result = first;
+    for (ExprNodeDesc other : others) {
+      result = new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, new GenericUDFOPAnd(),
+                                           Lists.newArrayList(result, other));
+    }
+    return result;
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -369,6 +369,25 @@ public class ObjectDeserializerTest {
     assertSimpleRecordEquals(expected, translated);
   }
 
+  @Test
+  public void testFlattenProjectedStructuredRecord() throws Exception {
+    Schema schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("Name", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+    // a record that only has some of the fields, as read for a query that does not use the other fields
+    Schema projectedSchema = Schema.recordOf("record", schema.getField("Name"));
+    StructuredRecord record = StructuredRecord.builder(projectedSchema).set("Name", "alice").build();
+
+    ObjectDeserializer translator = new ObjectDeserializer(
+      Lists.newArrayList("id", "name", "score"),
+      Lists.<TypeInfo>newArrayList(TypeInfoFactory.intTypeInfo, TypeInfoFactory.stringTypeInfo,
+                                   TypeInfoFactory.doubleTypeInfo),
+      schema);
+    Assert.assertEquals(Lists.newArrayList(null, "alice", null), translator.translateRecord(record));
+  }
+
   @SuppressWarnings("unchecked")
   @Test
   public void testNestedRecord() throws Exception {
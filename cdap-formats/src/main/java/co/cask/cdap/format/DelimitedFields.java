@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.format;
+
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
+
+import java.nio.charset.Charset;
+
+/**
+ * Iterates over the delimited fields of encoded text, without decoding the whole text into a string. The text is
+ * scanned for the encoded bytes of the delimiter, and a field is only decoded when its value is requested.
+ * Integer, long and boolean values are parsed directly from the bytes.
+ * <p>
+ * This only works for charsets in which the encoded delimiter can not appear inside the encoding of another
+ * character, such as UTF-8 and single byte charsets.
+ * <p>
+ * If a quote character is given, a field that starts with it is a quoted field, which ends at the next quote
+ * character and may contain delimiters. A quote character inside of a quoted field is escaped by another one.
+ * This is the quoting used by the CSV format.
+ */
+final class DelimitedFields {
+
+  private final byte[] bytes;
+  private final int limit;
+  private final byte[] delimiter;
+  private final int quote;
+  private final Charset charset;
+
+  // start of the next field, or limit + 1 if there are no more fields
+  private int position;
+  private int fieldStart;
+  private int fieldEnd;
+  private boolean quoted;
+  private boolean escaped;
+
+  /**
+   * Creates an instance over the given range of bytes.
+   *
+   * @param bytes the encoded text
+   * @param offset start of the text in the bytes
+   * @param length length of the text
+   * @param delimiter the encoded delimiter, which must not be empty
+   * @param quote the quote character, which must be an ASCII character, or -1 if fields are not quoted
+   * @param charset the charset of the text
+   */
+  DelimitedFields(byte[] bytes, int offset, int length, byte[] delimiter, int quote, Charset charset) {
+    this.bytes = bytes;
+    this.position = offset;
+    this.limit = offset + length;
+    this.delimiter = delimiter;
+    this.quote = quote;
+    this.charset = charset;
+  }
+
+  /**
+   * Moves to the next field. There is always at least one field, which may be empty.
+   *
+   * @return {@code true} if there was a next field
+   * @throws UnexpectedFormatException if the next field is an invalid quoted field
+   */
+  boolean next() {
+    if (position > limit) {
+      return false;
+    }
+    quoted = quote >= 0 && position < limit && bytes[position] == quote;
+    escaped = false;
+    if (quoted) {
+      nextQuoted();
+    } else {
+      fieldStart = position;
+      fieldEnd = indexOfDelimiter(position);
+      position = fieldEnd < limit ? fieldEnd + delimiter.length : limit + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the current field is empty. A quoted empty field is also empty.
+   */
+  boolean isEmpty() {
+    return fieldStart == fieldEnd;
+  }
+
+  /**
+   * Decodes the current field.
+   */
+  String getString() {
+    String value = new String(bytes, fieldStart, fieldEnd - fieldStart, charset);
+    if (escaped) {
+      String quoteStr = String.valueOf((char) quote);
+      value = value.replace(quoteStr + quoteStr, quoteStr);
+    }
+    return value;
+  }
+
+  /**
+   * Parses the current field as an int, in the same way as {@link Integer#parseInt(String)}.
+   */
+  int getInt() {
+    // up to 9 digits can't overflow. Anything else is left to Integer.parseInt.
+    long value = parseDigits(9);
+    return value == Long.MIN_VALUE ? Integer.parseInt(getString()) : (int) value;
+  }
+
+  /**
+   * Parses the current field as a long, in the same way as {@link Long#parseLong(String)}.
+   */
+  long getLong() {
+    // up to 18 digits can't overflow. Anything else is left to Long.parseLong.
+    long value = parseDigits(18);
+    return value == Long.MIN_VALUE ? Long.parseLong(getString()) : value;
+  }
+
+  /**
+   * Parses the current field as a boolean, in the same way as {@link Boolean#parseBoolean(String)}.
+   */
+  boolean getBoolean() {
+    if (quoted) {
+      return Boolean.parseBoolean(getString());
+    }
+    // no non-ASCII character equals any of "true" ignoring case
+    return fieldEnd - fieldStart == 4
+      && (bytes[fieldStart] | 0x20) == 't'
+      && (bytes[fieldStart + 1] | 0x20) == 'r'
+      && (bytes[fieldStart + 2] | 0x20) == 'u'
+      && (bytes[fieldStart + 3] | 0x20) == 'e';
+  }
+
+  /**
+   * Parses the current field if it is an optional minus sign followed by at most the given number of ASCII digits.
+   *
+   * @return the value, or {@link Long#MIN_VALUE} if the field is not in that form
+   */
+  private long parseDigits(int maxDigits) {
+    int idx = fieldStart;
+    boolean negative = idx < fieldEnd && bytes[idx] == '-';
+    if (negative) {
+      idx++;
+    }
+    int digits = fieldEnd - idx;
+    if (quoted || digits == 0 || digits > maxDigits) {
+      return Long.MIN_VALUE;
+    }
+    long value = 0;
+    for (; idx < fieldEnd; idx++) {
+      int digit = bytes[idx] - '0';
+      if (digit < 0 || digit > 9) {
+        return Long.MIN_VALUE;
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  private void nextQuoted() {
+    fieldStart = position + 1;
+    int idx = fieldStart;
+    while (true) {
+      if (idx >= limit) {
+        throw new UnexpectedFormatException("Missing closing quote in field starting at position " + position);
+      }
+      if (bytes[idx] == quote) {
+        if (idx + 1 < limit && bytes[idx + 1] == quote) {
+          escaped = true;
+          idx += 2;
+          continue;
+        }
+        break;
+      }
+      idx++;
+    }
+    fieldEnd = idx;
+
+    // the closing quote must be followed by a delimiter or the end
+    idx++;
+    if (idx == limit) {
+      position = limit + 1;
+    } else if (isDelimiterAt(idx)) {
+      position = idx + delimiter.length;
+    } else {
+      throw new UnexpectedFormatException("Unexpected character after closing quote at position " + idx);
+    }
+  }
+
+  private int indexOfDelimiter(int from) {
+    byte first = delimiter[0];
+    int last = limit - delimiter.length;
+    for (int i = from; i <= last; i++) {
+      if (bytes[i] == first && isDelimiterAt(i)) {
+        return i;
+      }
+    }
+    return limit;
+  }
+
+  private boolean isDelimiterAt(int idx) {
+    if (idx + delimiter.length > limit) {
+      return false;
+    }
+    for (int i = 0; i < delimiter.length; i++) {
+      if (bytes[idx + i] != delimiter[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -26,10 +26,10 @@ import co.cask.cdap.spi.stream.AbstractStreamEventRecordFormat;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Iterator;
@@ -53,20 +53,51 @@ import java.util.Map;
  * For example, if "mapping" is "1:name,2:age", then a stream event like "sdf,bob,32,sdf,lkj" would be transformed into
  * a record {@code {"name":"bob", "age":32}}.
  * </p>
+ *
+ * <p>
+ * If the "quote" setting is provided, a field that starts with the quote character may contain the delimiter, and
+ * ends at the next quote character. Two quote characters in a row within a quoted field represent one quote
+ * character. For example, with the quote setting {@code "}, the stream event {@code a,"b,""c""",d} has the fields
+ * {@code a}, {@code b,"c"} and {@code d}.
+ * </p>
+ *
+ * <p>
+ * The body is parsed without decoding it into a string first. Only the fields that are needed for the record are
+ * decoded, and integer, long and boolean fields are parsed directly from the bytes.
+ * </p>
  */
 public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordFormat<StructuredRecord> {
   public static final String CHARSET = "charset";
   public static final String DELIMITER = "delimiter";
   public static final String MAPPING = "mapping";
+  public static final String QUOTE = "quote";
   private Charset charset = Charsets.UTF_8;
   private String delimiter = ",";
+  private int quote = -1;
   private RecordMaker recordMaker = new DefaultRecordMaker();
+  // the charset the body is parsed in. If the body charset can't be scanned for the delimiter bytes,
+  // the body is converted to UTF-8 first.
+  private Charset parseCharset = Charsets.UTF_8;
+  private byte[] delimiterBytes = Bytes.toBytes(delimiter);
 
   @Override
   public StructuredRecord read(StreamEvent event) throws UnexpectedFormatException {
-    String bodyAsStr = Bytes.toString(event.getBody(), charset);
-    Iterator<String> bodyFields = Splitter.on(delimiter).split(bodyAsStr).iterator();
-    return recordMaker.make(schema, bodyFields);
+    ByteBuffer body = event.getBody();
+    byte[] bytes;
+    int offset = 0;
+    int length;
+    if (!parseCharset.equals(charset)) {
+      bytes = Bytes.toBytes(Bytes.toString(body, charset));
+      length = bytes.length;
+    } else if (body.hasArray()) {
+      bytes = body.array();
+      offset = body.arrayOffset() + body.position();
+      length = body.remaining();
+    } else {
+      bytes = Bytes.toBytes(body);
+      length = bytes.length;
+    }
+    return recordMaker.make(schema, new DelimitedFields(bytes, offset, length, delimiterBytes, quote, parseCharset));
   }
 
   @Override
@@ -105,8 +136,22 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
     }
     String delimiter = settings.get(DELIMITER);
     if (delimiter != null) {
+      Preconditions.checkArgument(!delimiter.isEmpty(), "The '%s' setting cannot be empty.", DELIMITER);
       this.delimiter = delimiter;
     }
+    String quote = settings.get(QUOTE);
+    if (quote != null) {
+      Preconditions.checkArgument(quote.length() == 1 && quote.charAt(0) < 0x80 && !this.delimiter.contains(quote),
+                                  "The '%s' setting must be a single ASCII character that is not in the delimiter.",
+                                  QUOTE);
+      this.quote = quote.charAt(0);
+    }
+    // UTF-8 and single byte charsets can be scanned for the encoded delimiter, as it can't be part of the
+    // encoding of another character
+    boolean scannable = (charset.equals(Charsets.UTF_8) || charset.equals(Charsets.ISO_8859_1)
+      || charset.equals(Charsets.US_ASCII)) && charset.newEncoder().canEncode(this.delimiter);
+    this.parseCharset = scannable ? charset : Charsets.UTF_8;
+    this.delimiterBytes = this.delimiter.getBytes(parseCharset);
 
     if (!getDefaultSchema().equals(schema)) {
       String mapping = settings.get(MAPPING);
@@ -141,17 +186,56 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
     return false;
   }
 
-  private static String parseBodyValue(String val, Schema fieldSchema) {
+  /**
+   * Sets the current body field to the given record field, in the same way as
+   * {@link StructuredRecord.Builder#convertAndSet(String, String)} would with the string value of the body field.
+   */
+  private static void setField(StructuredRecord.Builder builder, Schema.Field field, DelimitedFields bodyFields) {
+    String fieldName = field.getName();
+    Schema fieldSchema = field.getSchema();
     // if the body field is an empty string and the column is not a string type, interpret it as a null.
-    if (val != null && val.isEmpty() && (fieldSchema.getType() != Schema.Type.STRING)) {
-      return null;
+    if (bodyFields.isEmpty() && fieldSchema.getType() != Schema.Type.STRING) {
+      builder.convertAndSet(fieldName, null);
+      return;
+    }
+
+    Schema.Type type = fieldSchema.getType();
+    if (!type.isSimpleType() && fieldSchema.isNullable()) {
+      type = fieldSchema.getNonNullable().getType();
+    }
+    switch (type) {
+      case BOOLEAN:
+        builder.set(fieldName, bodyFields.getBoolean());
+        break;
+      case INT:
+        builder.set(fieldName, bodyFields.getInt());
+        break;
+      case LONG:
+        builder.set(fieldName, bodyFields.getLong());
+        break;
+      default:
+        builder.convertAndSet(fieldName, bodyFields.getString());
+    }
+  }
+
+  private static String[] getRemainingStrings(DelimitedFields bodyFields) {
+    List<String> fields = Lists.newArrayList();
+    while (bodyFields.next()) {
+      fields.add(bodyFields.getString());
     }
-    return val;
+    return fields.toArray(new String[fields.size()]);
   }
 
   private Map<String, Integer> parseMapping(String mappingString, Schema schema) {
-    Splitter.MapSplitter splitter = Splitter.on(",").trimResults().withKeyValueSeparator(":");
-    Map<String, String> stringMapping = splitter.split(mappingString);
+    // Not split with a MapSplitter keyed by index, since the same body field can be mapped to several schema fields
+    Splitter entrySplitter = Splitter.on(":").trimResults().limit(2);
+    Map<String, String> stringMapping = Maps.newLinkedHashMap();
+    for (String entry : Splitter.on(",").trimResults().split(mappingString)) {
+      List<String> parts = Lists.newArrayList(entrySplitter.split(entry));
+      Preconditions.checkArgument(parts.size() == 2, "invalid mapping entry " + entry);
+      // the last index wins if a schema field is mapped more than once
+      stringMapping.put(parts.get(1), parts.get(0));
+    }
     Preconditions.checkArgument(stringMapping.size() >= 1, "mapping cannot be empty");
     Preconditions.checkArgument(stringMapping.size() <= schema.getFields().size(),
                                 "mapping cannot contain more entries than schema fields");
@@ -159,17 +243,19 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
     Map<String, Integer> mapping = Maps.newHashMap();
 
     for (Map.Entry<String, String> entry : stringMapping.entrySet()) {
-      String fieldIndexString = entry.getKey();
-      String fieldName = entry.getValue();
+      String fieldIndexString = entry.getValue();
+      String fieldName = entry.getKey();
 
       Preconditions.checkArgument(schema.getField(fieldName) != null,
                                   "schema is missing the mapped field " + fieldName);
+      int fieldIndex;
       try {
-        int fieldIndex = Integer.parseInt(fieldIndexString);
-        mapping.put(fieldName, fieldIndex);
+        fieldIndex = Integer.parseInt(fieldIndexString);
       } catch (NumberFormatException e) {
         throw new IllegalArgumentException("mapping keys must be integer indices");
       }
+      Preconditions.checkArgument(fieldIndex >= 0, "mapping keys must be non-negative");
+      mapping.put(fieldName, fieldIndex);
     }
 
     return mapping;
@@ -179,7 +265,7 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
    * Makes a {@link StructuredRecord} in {@link DelimitedStringsRecordFormat#read(StreamEvent)}.
    */
   private interface RecordMaker {
-    StructuredRecord make(Schema schema, Iterator<String> bodyFields);
+    StructuredRecord make(Schema schema, DelimitedFields bodyFields);
   }
 
   /**
@@ -188,12 +274,9 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
   private static class DefaultRecordMaker implements RecordMaker {
 
     @Override
-    public StructuredRecord make(Schema schema, Iterator<String> bodyFields) {
+    public StructuredRecord make(Schema schema, DelimitedFields bodyFields) {
       StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-
-      List<String> fields = Lists.newArrayList(bodyFields);
-      builder.set("body", fields.toArray(new String[fields.size()]));
-
+      builder.set("body", getRemainingStrings(bodyFields));
       return builder.build();
     }
   }
@@ -204,7 +287,7 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
   private static class SchemaRecordMaker implements RecordMaker {
 
     @Override
-    public StructuredRecord make(Schema schema, Iterator<String> bodyFields) {
+    public StructuredRecord make(Schema schema, DelimitedFields bodyFields) {
       StructuredRecord.Builder builder = StructuredRecord.builder(schema);
       Iterator<Schema.Field> fieldsIterator = schema.getFields().iterator();
       while (fieldsIterator.hasNext()) {
@@ -214,17 +297,16 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
         if (isStringArray(fieldSchema)) {
           if (!fieldsIterator.hasNext()) {
             // only do varargs-style string array parsing on bodyField if it's the last field
-            List<String> fields = Lists.newArrayList(bodyFields);
-            builder.set(fieldName, fields.toArray(new String[fields.size()]));
+            builder.set(fieldName, getRemainingStrings(bodyFields));
           } else {
             throw new UnexpectedFormatException(
               String.format("string array type field '%s' must be the last schema field", fieldName));
           }
-        } else {
+        } else if (bodyFields.next()) {
           // simple type (not string array)
-          String bodyField = bodyFields.hasNext() ? bodyFields.next() : null;
-          String val = parseBodyValue(bodyField, fieldSchema);
-          builder.convertAndSet(fieldName, val);
+          setField(builder, field, bodyFields);
+        } else {
+          builder.convertAndSet(fieldName, null);
         }
       }
       return builder.build();
@@ -232,29 +314,43 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
   }
 
   /**
-   * {@link RecordMaker} that uses the "mapping" setting and a schema.
+   * {@link RecordMaker} that uses the "mapping" setting and a schema. Only the body fields up to the last mapped
+   * one are scanned, and only the mapped ones are parsed.
    */
   private static class MappedSchemaRecordMaker implements RecordMaker {
-    private final Map<String, Integer> mapping;
-    private final int lastMappingIndex;
+    // the names of the schema fields mapped to each body field index, or null if the body field is not mapped.
+    // The same body field can be mapped to multiple schema fields.
+    private final String[][] mapping;
 
     private MappedSchemaRecordMaker(Map<String, Integer> mapping) {
-      this.mapping = mapping;
-      this.lastMappingIndex = Collections.max(mapping.values());
+      List<List<String>> fieldNames = Lists.newArrayList();
+      for (int i = 0; i <= Collections.max(mapping.values()); i++) {
+        fieldNames.add(null);
+      }
+      for (Map.Entry<String, Integer> entry : mapping.entrySet()) {
+        List<String> names = fieldNames.get(entry.getValue());
+        if (names == null) {
+          names = Lists.newArrayList();
+          fieldNames.set(entry.getValue(), names);
+        }
+        names.add(entry.getKey());
+      }
+
+      this.mapping = new String[fieldNames.size()][];
+      for (int i = 0; i < this.mapping.length; i++) {
+        List<String> names = fieldNames.get(i);
+        this.mapping[i] = names == null ? null : names.toArray(new String[names.size()]);
+      }
     }
 
     @Override
-    public StructuredRecord make(Schema schema, Iterator<String> bodyFields) {
+    public StructuredRecord make(Schema schema, DelimitedFields bodyFields) {
       StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-      // TODO: only read what's necessary from event.getBody() (e.g. if mapping is "0:f0", then only read first entry)
-      List<String> fields = Lists.newArrayList(Iterators.limit(bodyFields, lastMappingIndex + 1));
-      for (Schema.Field field : schema.getFields()) {
-        Schema fieldSchema = field.getSchema();
-        String fieldName = field.getName();
-        int index = mapping.get(fieldName);
-        if (index < fields.size()) {
-          String val = parseBodyValue(fields.get(index), fieldSchema);
-          builder.convertAndSet(fieldName, val);
+      for (int i = 0; i < mapping.length && bodyFields.next(); i++) {
+        if (mapping[i] != null) {
+          for (String fieldName : mapping[i]) {
+            setField(builder, schema.getField(fieldName), bodyFields);
+          }
         }
       }
       return builder.build();
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -25,13 +25,20 @@ import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -347,4 +354,205 @@ public class DelimitedStringsRecordFormatTest {
     Assert.assertEquals("hello world", output.get("f6"));
     Assert.assertArrayEquals(new String[] {"extra1"}, (String[]) output.get("f7"));
   }
+
+  @Test
+  public void testQuote() throws Exception {
+    DelimitedStringsRecordFormat format = createFormat(null, ImmutableMap.of(DelimitedStringsRecordFormat.QUOTE, "\""));
+    String body = "a,\"b,\"\"c\"\"\",\"\",d\"\"e,\"\"\"\",";
+    String[] actual = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(body)))).get("body");
+    Assert.assertArrayEquals(new String[] { "a", "b,\"c\"", "", "d\"\"e", "\"", "" }, actual);
+
+    Schema schema = Schema.recordOf(
+      "event",
+      Schema.Field.of("f1", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("f2", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("f3", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("f4", Schema.of(Schema.Type.BOOLEAN)));
+    format = createFormat(schema, ImmutableMap.of(DelimitedStringsRecordFormat.QUOTE, "'"));
+    StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("'12','','x,''y''','TRUE'"))));
+    Assert.assertEquals(Integer.valueOf(12), output.get("f1"));
+    Assert.assertNull(output.get("f2"));
+    Assert.assertEquals("x,'y'", output.get("f3"));
+    Assert.assertTrue((Boolean) output.get("f4"));
+
+    for (String invalid : new String[] { "1,'2", "1,'2'3" }) {
+      try {
+        format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(invalid))));
+        Assert.fail("Expected failure for " + invalid);
+      } catch (UnexpectedFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testQuoteInDelimiter() throws Exception {
+    createFormat(null, ImmutableMap.of(DelimitedStringsRecordFormat.DELIMITER, "|'|",
+                                       DelimitedStringsRecordFormat.QUOTE, "'"));
+  }
+
+  @Test
+  public void testCharsetAndDelimiter() throws Exception {
+    String body = "caf\u00e9\u00a7\u00a7na\u00efve\u00a7\u00a7\u00a7\u00a7\u00e9t\u00e9";
+    String[] expected = { "caf\u00e9", "na\u00efve", "", "\u00e9t\u00e9" };
+    for (String charset : new String[] { "UTF-8", "ISO-8859-1", "UTF-16", "UTF-16LE" }) {
+      DelimitedStringsRecordFormat format = createFormat(null, ImmutableMap.of(
+        DelimitedStringsRecordFormat.CHARSET, charset, DelimitedStringsRecordFormat.DELIMITER, "\u00a7\u00a7"));
+      String[] actual = format.read(new StreamEvent(ByteBuffer.wrap(body.getBytes(charset)))).get("body");
+      Assert.assertArrayEquals(charset, expected, actual);
+    }
+
+    // a delimiter that can't be represented in the charset never matches
+    DelimitedStringsRecordFormat format = createFormat(null, ImmutableMap.of(
+      DelimitedStringsRecordFormat.CHARSET, "ISO-8859-1", DelimitedStringsRecordFormat.DELIMITER, "\u20ac"));
+    String[] actual = format.read(new StreamEvent(ByteBuffer.wrap("a?b".getBytes(Charsets.ISO_8859_1)))).get("body");
+    Assert.assertArrayEquals(new String[] { "a?b" }, actual);
+
+    // body in a slice of a larger buffer, and in a direct buffer
+    format = createFormat(null, Collections.<String, String>emptyMap());
+    ByteBuffer buffer = ByteBuffer.wrap(Bytes.toBytes("xxa,b,cxx"));
+    buffer.position(2);
+    buffer.limit(7);
+    Assert.assertArrayEquals(new String[] { "a", "b", "c" },
+                             (String[]) format.read(new StreamEvent(buffer.slice())).get("body"));
+    ByteBuffer direct = ByteBuffer.allocateDirect(5);
+    direct.put(Bytes.toBytes("a,b,c")).flip();
+    Assert.assertArrayEquals(new String[] { "a", "b", "c" },
+                             (String[]) format.read(new StreamEvent(direct)).get("body"));
+  }
+
+  @Test
+  public void testNumbers() throws Exception {
+    Schema schema = Schema.recordOf(
+      "event",
+      Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)));
+    DelimitedStringsRecordFormat format = createFormat(schema, Collections.<String, String>emptyMap());
+
+    // values must be parsed the same way as Integer.parseInt, Long.parseLong and Boolean.parseBoolean
+    String[][] values = {
+      { "0", "0", "true" },
+      { "-0042", "+17", "True" },
+      { String.valueOf(Integer.MAX_VALUE), String.valueOf(Long.MAX_VALUE), "false" },
+      { String.valueOf(Integer.MIN_VALUE), String.valueOf(Long.MIN_VALUE), "yes" },
+      { "999999999", "999999999999999999", "tru" },
+      { "+1", "-1", "truee" }
+    };
+    for (String[] value : values) {
+      String body = value[0] + "," + value[1] + "," + value[2];
+      StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(body))));
+      Assert.assertEquals(body, Integer.valueOf(value[0]), output.get("i"));
+      Assert.assertEquals(body, Long.valueOf(value[1]), output.get("l"));
+      Assert.assertEquals(body, Boolean.valueOf(value[2]), output.get("b"));
+    }
+
+    for (String invalid : new String[] { "2147483648,1,true", "1,9223372036854775808,true", "1-,1,true", "-,1,true" }) {
+      try {
+        format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(invalid))));
+        Assert.fail("Expected failure for " + invalid);
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testMappingReadsOnlyMappedFields() throws Exception {
+    Schema schema = Schema.recordOf(
+      "event",
+      Schema.Field.of("a", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    DelimitedStringsRecordFormat format = createFormat(schema, ImmutableMap.of(
+      DelimitedStringsRecordFormat.MAPPING, "1:a,3:b"));
+
+    // fields that are not mapped are not parsed
+    StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("x,5,y,z,not a number"))));
+    Assert.assertEquals(Integer.valueOf(5), output.get("a"));
+    Assert.assertEquals("z", output.get("b"));
+
+    output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("x,7"))));
+    Assert.assertEquals(Integer.valueOf(7), output.get("a"));
+    Assert.assertNull(output.get("b"));
+  }
+
+  @Test
+  public void testMappingSameFieldToMultipleFields() throws Exception {
+    Schema schema = Schema.recordOf(
+      "event",
+      Schema.Field.of("a", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("b", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("c", Schema.of(Schema.Type.STRING)));
+    DelimitedStringsRecordFormat format = createFormat(schema, ImmutableMap.of(
+      DelimitedStringsRecordFormat.MAPPING, "0:a,0:b,1:c"));
+
+    StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("5,x"))));
+    Assert.assertEquals(Integer.valueOf(5), output.get("a"));
+    Assert.assertEquals("5", output.get("b"));
+    Assert.assertEquals("x", output.get("c"));
+  }
+
+  /**
+   * Compares the time spent on reading events with each of the record makers, against splitting the decoded body
+   * with a {@link Splitter} and converting each field from a string, which is how the format used to parse events.
+   */
+  @Ignore
+  @Test
+  public void testSpeed() throws Exception {
+    int events = 1000000;
+    Schema schema = Schema.recordOf(
+      "event",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("count", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)),
+      Schema.Field.of("valid", Schema.of(Schema.Type.BOOLEAN)),
+      Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+    Schema mappedSchema = Schema.recordOf(
+      "event",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("count", Schema.of(Schema.Type.INT)));
+    StreamEvent[] streamEvents = new StreamEvent[1000];
+    for (int i = 0; i < streamEvents.length; i++) {
+      String body = (1234567890L * i) + "," + i + "," + (i * 0.25d) + "," + (i % 2 == 0) + ",name" + i + ",t1,t2,t3";
+      streamEvents[i] = new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(body)));
+    }
+
+    Map<String, DelimitedStringsRecordFormat> formats = ImmutableMap.of(
+      "default", createFormat(null, Collections.<String, String>emptyMap()),
+      "schema", createFormat(schema, Collections.<String, String>emptyMap()),
+      "mapping", createFormat(mappedSchema, ImmutableMap.of(DelimitedStringsRecordFormat.MAPPING, "0:id,1:count")));
+    for (int round = 0; round < 3; round++) {
+      for (Map.Entry<String, DelimitedStringsRecordFormat> entry : formats.entrySet()) {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+          entry.getValue().read(streamEvents[i % streamEvents.length]);
+        }
+        System.out.println(entry.getKey() + " time spent: "
+                             + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+      }
+
+      long startTime = System.nanoTime();
+      for (int i = 0; i < events; i++) {
+        String body = Bytes.toString(streamEvents[i % streamEvents.length].getBody(), Charsets.UTF_8);
+        Iterator<String> fields = Splitter.on(",").split(body).iterator();
+        StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+        for (Schema.Field field : schema.getFields().subList(0, 5)) {
+          builder.convertAndSet(field.getName(), fields.next());
+        }
+        builder.set("tags", Iterators.toArray(fields, String.class));
+        builder.build();
+      }
+      System.out.println("Splitter schema time spent: "
+                           + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+  }
+
+  private DelimitedStringsRecordFormat createFormat(Schema schema,
+                                                    Map<String, String> settings) throws UnsupportedTypeException {
+    DelimitedStringsRecordFormat format = new DelimitedStringsRecordFormat();
+    format.initialize(new FormatSpecification(DelimitedStringsRecordFormat.class.getCanonicalName(),
+                                              schema, settings));
+    return format;
+  }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.format;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
+import co.cask.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link StructuredRecord}.
+ */
+public class StructuredRecordTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("score", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("tag", Schema.nullableOf(Schema.of(Schema.Type.STRING)))
+  );
+
+  @Test
+  public void testGetAndSet() {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .set("name", "alice")
+      .set(SCHEMA.getFieldIndex("id"), 1)
+      .convertAndSet("score", "2.5")
+      .build();
+
+    Assert.assertEquals(Integer.valueOf(1), record.get("id"));
+    Assert.assertEquals("alice", record.get(SCHEMA.getFieldIndex("name")));
+    Assert.assertEquals(Double.valueOf(2.5d), record.get("score"));
+    Assert.assertEquals(Double.valueOf(2.5d), record.get(2));
+    // fields that are not set are null
+    Assert.assertNull(record.get("tag"));
+    Assert.assertNull(record.get(3));
+    // unknown fields are null
+    Assert.assertNull(record.get("unknown"));
+
+    // later set replaces the earlier one
+    record = StructuredRecord.builder(SCHEMA)
+      .set("id", 1)
+      .set("name", "alice")
+      .set("score", 2.5d)
+      .set(2, null)
+      .set(0, 2)
+      .build();
+    Assert.assertEquals(Integer.valueOf(2), record.get("id"));
+    Assert.assertNull(record.get("score"));
+  }
+
+  @Test
+  public void testValidation() {
+    StructuredRecord.Builder builder = StructuredRecord.builder(SCHEMA);
+    assertSetFailure(builder, "unknown", "x");
+    assertSetFailure(builder, "id", null);
+    assertSetFailure(builder, -1, 1);
+    assertSetFailure(builder, SCHEMA.getFields().size(), 1);
+    assertSetFailure(builder, 1, null);
+
+    // non-nullable fields must be set
+    builder.set("id", 1);
+    try {
+      builder.build();
+      Assert.fail("Expected failure for missing field name");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+    builder.set("name", "alice");
+    Assert.assertEquals("alice", builder.build().get("name"));
+  }
+
+  @Test
+  public void testEqualsAndSerialization() throws Exception {
+    StructuredRecord record1 = StructuredRecord.builder(SCHEMA).set("id", 1).set("name", "alice").build();
+    StructuredRecord record2 = StructuredRecord.builder(SCHEMA).set(1, "alice").set(0, 1).set(2, null).build();
+    StructuredRecord record3 = StructuredRecord.builder(SCHEMA).set("id", 1).set("name", "bob").build();
+    Assert.assertEquals(record1, record2);
+    Assert.assertEquals(record1.hashCode(), record2.hashCode());
+    Assert.assertNotEquals(record1, record3);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(os)) {
+      oos.writeObject(record1);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(os.toByteArray()))) {
+      StructuredRecord restored = (StructuredRecord) ois.readObject();
+      Assert.assertEquals(record1, restored);
+      Assert.assertEquals("alice", restored.get("name"));
+    }
+  }
+
+  /**
+   * Compares reading all fields of records by name, by position, and from a field name to value map,
+   * which is how records stored their fields before.
+   */
+  @Ignore
+  @Test
+  public void testSpeed() {
+    int numFields = 20;
+    int numRecords = 1000;
+    int rounds = 2000;
+
+    Schema.Field[] schemaFields = new Schema.Field[numFields];
+    for (int i = 0; i < numFields; i++) {
+      schemaFields[i] = Schema.Field.of("field" + i, Schema.of(Schema.Type.INT));
+    }
+    Schema schema = Schema.recordOf("record", schemaFields);
+    List<Schema.Field> fields = schema.getFields();
+
+    StructuredRecord[] records = new StructuredRecord[numRecords];
+    @SuppressWarnings("unchecked")
+    Map<String, Object>[] maps = new Map[numRecords];
+    for (int i = 0; i < numRecords; i++) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+      maps[i] = new HashMap<>();
+      for (int j = 0; j < numFields; j++) {
+        builder.set(j, i + j);
+        maps[i].put(fields.get(j).getName(), i + j);
+      }
+      records[i] = builder.build();
+    }
+
+    for (int i = 0; i < 5; i++) {
+      long sum = 0;
+      long startTime = System.nanoTime();
+      for (int round = 0; round < rounds; round++) {
+        for (Map<String, Object> map : maps) {
+          for (Schema.Field field : fields) {
+            sum += (Integer) map.get(field.getName());
+          }
+        }
+      }
+      long mapTime = System.nanoTime() - startTime;
+
+      startTime = System.nanoTime();
+      for (int round = 0; round < rounds; round++) {
+        for (StructuredRecord record : records) {
+          for (Schema.Field field : fields) {
+            sum += record.<Integer>get(field.getName());
+          }
+        }
+      }
+      long nameTime = System.nanoTime() - startTime;
+
+      startTime = System.nanoTime();
+      for (int round = 0; round < rounds; round++) {
+        for (StructuredRecord record : records) {
+          for (int j = 0; j < numFields; j++) {
+            sum += record.<Integer>get(j);
+          }
+        }
+      }
+      long indexTime = System.nanoTime() - startTime;
+
+      System.out.printf("Map: %d ms, by name: %d ms, by index: %d ms (%d)%n",
+                        TimeUnit.NANOSECONDS.toMillis(mapTime), TimeUnit.NANOSECONDS.toMillis(nameTime),
+                        TimeUnit.NANOSECONDS.toMillis(indexTime), sum);
+    }
+  }
+
+  private void assertSetFailure(StructuredRecord.Builder builder, String fieldName, Object value) {
+    try {
+      builder.set(fieldName, value);
+      Assert.fail("Expected failure when setting field " + fieldName + " to " + value);
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+  }
+
+  private void assertSetFailure(StructuredRecord.Builder builder, int fieldIndex, Object value) {
+    try {
+      builder.set(fieldIndex, value);
+      Assert.fail("Expected failure when setting field " + fieldIndex + " to " + value);
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+  }
+}
@@ -16,6 +16,8 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.ServiceBindException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -23,7 +25,10 @@ import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.gateway.router.handlers.HttpRequestHandler;
 import co.cask.cdap.gateway.router.handlers.HttpStatusRequestHandler;
 import co.cask.cdap.gateway.router.handlers.IdleEventProcessor;
+import co.cask.cdap.gateway.router.handlers.OutboundConnectionPool;
+import co.cask.cdap.gateway.router.handlers.OutboundHandler;
 import co.cask.cdap.gateway.router.handlers.SecurityAuthenticationHttpHandler;
+import co.cask.cdap.proto.Id;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.auth.TokenValidator;
 import co.cask.cdap.security.tools.SSLHandlerFactory;
@@ -53,9 +58,8 @@ import org.jboss.netty.channel.socket.nio.NioClientBossPool;
 import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioWorkerPool;
+import org.jboss.netty.handler.codec.http.HttpClientCodec;
 import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
-import org.jboss.netty.handler.codec.http.HttpRequestEncoder;
-import org.jboss.netty.handler.codec.http.HttpResponseDecoder;
 import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
 import org.jboss.netty.handler.timeout.IdleStateHandler;
 import org.jboss.netty.util.HashedWheelTimer;
@@ -99,11 +103,14 @@ public class NettyRouter extends AbstractIdleService {
   private final boolean sslEnabled;
   private final SSLHandlerFactory sslHandlerFactory;
   private final int connectionTimeout;
+  private final int connectionPoolMaxIdle;
 
   private Timer timer;
   private ServerBootstrap serverBootstrap;
   private ClientBootstrap clientBootstrap;
+  private OutboundConnectionPool connectionPool;
   private DiscoveryServiceClient discoveryServiceClient;
+  private MetricsContext metricsContext;
 
   @Inject
   public NettyRouter(CConfiguration cConf, SConfiguration sConf, @Named(Constants.Router.ADDRESS) InetAddress hostname,
@@ -154,10 +161,18 @@ public class NettyRouter extends AbstractIdleService {
       this.sslHandlerFactory = null;
     }
     this.connectionTimeout = cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS);
+    this.connectionPoolMaxIdle = cConf.getInt(Constants.Router.CONNECTION_POOL_MAX_IDLE_PER_ENDPOINT);
     LOG.info("Using connection timeout: {}", connectionTimeout);
     LOG.info("Service to Port Mapping - {}", this.serviceToPortMap);
   }
 
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsContext = metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Service.GATEWAY));
+  }
+
   @Override
   protected void startUp() throws Exception {
     ChannelUpstreamHandler connectionTracker = new SimpleChannelUpstreamHandler() {
@@ -173,6 +188,8 @@ public class NettyRouter extends AbstractIdleService {
     timer = new HashedWheelTimer(
       new ThreadFactoryBuilder().setDaemon(true).setNameFormat("router-idle-event-generator-timer").build());
     bootstrapClient(connectionTracker);
+    connectionPool = new OutboundConnectionPool(clientBootstrap, discoveryServiceClient, connectionPoolMaxIdle,
+                                                metricsContext);
 
     bootstrapServer(connectionTracker);
   }
@@ -182,6 +199,7 @@ public class NettyRouter extends AbstractIdleService {
     LOG.info("Stopping Netty Router...");
 
     try {
+      connectionPool.close();
       if (!channelGroup.close().await(CLOSE_CHANNEL_TIMEOUT_SECS, TimeUnit.SECONDS)) {
         LOG.warn("Timeout when closing all channels.");
       }
@@ -258,7 +276,7 @@ public class NettyRouter extends AbstractIdleService {
           }
           // for now there's only one hardcoded rule, but if there will be more, we may want it generic and configurable
           pipeline.addLast("http-request-handler",
-                           new HttpRequestHandler(clientBootstrap, serviceLookup, ImmutableList.<ProxyRule>of()));
+                           new HttpRequestHandler(connectionPool, serviceLookup, ImmutableList.<ProxyRule>of()));
           return pipeline;
         }
       }
@@ -317,13 +335,16 @@ public class NettyRouter extends AbstractIdleService {
       public ChannelPipeline getPipeline() throws Exception {
         ChannelPipeline pipeline = Channels.pipeline();
         pipeline.addLast("tracker", connectionTracker);
-        pipeline.addLast("request-encoder", new HttpRequestEncoder());
-        // outbound handler gets dynamically added here (after 'request-encoder')
-        pipeline.addLast("response-decoder", new HttpResponseDecoder());
+        // outbound handler gets bound to the inbound channel when the connection is acquired from the pool.
+        // It forwards the raw response to the inbound channel, hence it comes before the codec.
+        pipeline.addLast("outbound-handler", new OutboundHandler());
+        // the codec pairs each response with the method of its request, so that responses without a body,
+        // such as the response to a HEAD request, are completed
+        pipeline.addLast("http-codec", new HttpClientCodec());
         // disable the read-specific and write-specific timeouts; we only utilize IdleState#ALL_IDLE
         pipeline.addLast("idle-event-generator",
                          new IdleStateHandler(timer, 0, 0, connectionTimeout));
-        pipeline.addLast("idle-event-processor", new IdleEventProcessor());
+        pipeline.addLast("idle-event-processor", new IdleEventProcessor(connectionPool));
         return pipeline;
       }
     });
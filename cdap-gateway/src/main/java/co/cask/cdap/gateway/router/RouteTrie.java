@@ -0,0 +1,240 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * A path trie that maps request paths to values, built once from an ordered route table.
+ *
+ * Each route is a list of path segments, where a {@code null} segment matches any single segment. A route matches
+ * a request path if the path starts with the route segments (or consists of exactly those segments, for exact
+ * routes) and, if the route is restricted to an HTTP method, the request uses that method. When multiple routes
+ * match, the one added first wins, which preserves the semantic of an ordered list of if-else rules while only
+ * visiting the trie nodes along the request path.
+ *
+ * Lookups tokenize the request path in place, without splitting it into segment strings.
+ *
+ * @param <T> type of the value associated with each route
+ */
+final class RouteTrie<T> {
+
+  private final Node<T> root = new Node<>();
+  private int routeCount;
+
+  /**
+   * Adds a route to this trie. Routes added earlier take precedence over routes added later.
+   *
+   * @param segments the segments of the route, with {@code null} matching any segment
+   * @param exact {@code true} if the request path must have exactly the same number of segments as the route;
+   *              {@code false} if the route is a prefix match
+   * @param method the HTTP method the route is restricted to, or {@code null} to match any method
+   * @param value the value to return from {@link #lookup(String, String)} if the route is selected
+   */
+  void add(String[] segments, boolean exact, @Nullable String method, T value) {
+    Route<T> route = new Route<>(routeCount++, method, value);
+    Node<T> node = root;
+    node.updateMinPriority(route.priority);
+    for (String segment : segments) {
+      node = node.getOrCreateChild(segment);
+      node.updateMinPriority(route.priority);
+    }
+    if (exact) {
+      node.exactRoutes = append(node.exactRoutes, route);
+    } else {
+      node.prefixRoutes = append(node.prefixRoutes, route);
+    }
+  }
+
+  /**
+   * Finds the value of the first added route that matches the given request path and method.
+   *
+   * @param path the request path, with segments separated by one or more {@code '/'}
+   * @param method name of the HTTP method of the request
+   * @return the matched {@link Route} or {@code null} if no route matches
+   */
+  @Nullable
+  Route<T> lookup(String path, String method) {
+    return find(root, path, 0, method, null);
+  }
+
+  /**
+   * Returns the segment at the given index of the path, using the same tokenization as the lookup.
+   */
+  static String getSegment(String path, int index) {
+    int start = segmentStart(path, index);
+    Preconditions.checkArgument(start >= 0, "Path '%s' has less than %s segments", path, index + 1);
+    return path.substring(start, segmentEnd(path, start));
+  }
+
+  /**
+   * Returns {@code true} if the path has a segment at the given index.
+   */
+  static boolean hasSegment(String path, int index) {
+    return segmentStart(path, index) >= 0;
+  }
+
+  /**
+   * Returns {@code true} if the segment at the given index of the path is equal to the given string.
+   */
+  static boolean segmentEquals(String path, int index, String segment) {
+    int start = segmentStart(path, index);
+    return start >= 0 && segmentEnd(path, start) - start == segment.length()
+      && path.regionMatches(start, segment, 0, segment.length());
+  }
+
+  /**
+   * Returns the start offset of the segment at the given index of the path, or {@code -1} if there is no such segment.
+   */
+  private static int segmentStart(String path, int index) {
+    int start = skipSeparators(path, 0);
+    for (int i = 0; i < index && start < path.length(); i++) {
+      start = skipSeparators(path, segmentEnd(path, start));
+    }
+    return start < path.length() ? start : -1;
+  }
+
+  @Nullable
+  private Route<T> find(Node<T> node, String path, int pos, String method, @Nullable Route<T> best) {
+    best = select(node.prefixRoutes, method, best);
+
+    int start = skipSeparators(path, pos);
+    if (start == path.length()) {
+      return select(node.exactRoutes, method, best);
+    }
+    int end = segmentEnd(path, start);
+    int length = end - start;
+
+    Node<T>[] children = node.literalChildren;
+    for (Node<T> child : children) {
+      if (best != null && child.minPriority >= best.priority) {
+        continue;
+      }
+      String literal = child.literal;
+      if (literal.length() == length && path.regionMatches(start, literal, 0, length)) {
+        best = find(child, path, end, method, best);
+      }
+    }
+    Node<T> wildcard = node.wildcardChild;
+    if (wildcard != null && (best == null || wildcard.minPriority < best.priority)) {
+      best = find(wildcard, path, end, method, best);
+    }
+    return best;
+  }
+
+  @Nullable
+  private static <T> Route<T> select(Route<T>[] routes, String method, @Nullable Route<T> best) {
+    // Routes are sorted by priority, hence the first match is the only candidate from this node
+    for (Route<T> route : routes) {
+      if (best != null && route.priority > best.priority) {
+        return best;
+      }
+      if (route.method == null || route.method.equals(method)) {
+        return route;
+      }
+    }
+    return best;
+  }
+
+  private static int skipSeparators(String path, int pos) {
+    while (pos < path.length() && path.charAt(pos) == '/') {
+      pos++;
+    }
+    return pos;
+  }
+
+  private static int segmentEnd(String path, int start) {
+    int end = path.indexOf('/', start);
+    return end < 0 ? path.length() : end;
+  }
+
+  private static <E> E[] append(E[] array, E element) {
+    E[] result = Arrays.copyOf(array, array.length + 1);
+    result[array.length] = element;
+    return result;
+  }
+
+  /**
+   * A route stored in the trie.
+   *
+   * @param <T> type of the value associated with the route
+   */
+  static final class Route<T> {
+    private final int priority;
+    private final String method;
+    private final T value;
+
+    private Route(int priority, @Nullable String method, T value) {
+      this.priority = priority;
+      this.method = method;
+      this.value = value;
+    }
+
+    T getValue() {
+      return value;
+    }
+  }
+
+  /**
+   * A node in the trie. Children are kept in arrays since the fan-out of the route table is small.
+   */
+  private static final class Node<T> {
+    private final String literal;
+    private Node<T>[] literalChildren;
+    private Node<T> wildcardChild;
+    private Route<T>[] prefixRoutes;
+    private Route<T>[] exactRoutes;
+    // The smallest priority of all routes in the subtree rooted at this node, used for pruning the search
+    private int minPriority = Integer.MAX_VALUE;
+
+    Node() {
+      this(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node(@Nullable String literal) {
+      this.literal = literal;
+      this.literalChildren = new Node[0];
+      this.prefixRoutes = new Route[0];
+      this.exactRoutes = new Route[0];
+    }
+
+    void updateMinPriority(int priority) {
+      minPriority = Math.min(minPriority, priority);
+    }
+
+    Node<T> getOrCreateChild(@Nullable String segment) {
+      if (segment == null) {
+        if (wildcardChild == null) {
+          wildcardChild = new Node<>();
+        }
+        return wildcardChild;
+      }
+      for (Node<T> child : literalChildren) {
+        if (child.literal.equals(segment)) {
+          return child;
+        }
+      }
+      Node<T> child = new Node<>(segment);
+      literalChildren = append(literalChildren, child);
+      return child;
+    }
+  }
+}
@@ -19,9 +19,10 @@ package co.cask.cdap.gateway.router;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.service.ServiceDiscoverable;
 import co.cask.http.AbstractHttpHandler;
-import org.apache.commons.lang.StringUtils;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 
+import javax.annotation.Nullable;
+
 /**
  * Class to match the request path to corresponding service like app-fabric, or metrics service.
  */
@@ -32,6 +33,23 @@ public final class RouterPathLookup extends AbstractHttpHandler {
     GET, PUT, POST, DELETE
   }
 
+  private static final Destination FEEDS = Destination.of(null);
+  private static final Destination APP_FABRIC = Destination.of(Constants.Service.APP_FABRIC_HTTP);
+  private static final Destination METADATA = Destination.of(Constants.Service.METADATA_SERVICE);
+  private static final Destination METRICS = Destination.of(Constants.Service.METRICS);
+  private static final Destination STREAMS = Destination.of(Constants.Service.STREAMS);
+  private static final Destination EXPLORE = Destination.of(Constants.Service.EXPLORE_HTTP_USER_SERVICE);
+  private static final Destination DATASET_MANAGER = Destination.of(Constants.Service.DATASET_MANAGER);
+  private static final Destination USER_SERVICE = new Destination() {
+    @Override
+    String getService(String requestPath) {
+      return ServiceDiscoverable.getName(RouteTrie.getSegment(requestPath, 2), RouteTrie.getSegment(requestPath, 4),
+                                         RouteTrie.getSegment(requestPath, 6));
+    }
+  };
+
+  private static final RouteTrie<Destination> ROUTES = createRoutes();
+
   /**
    * Returns the CDAP service which will handle the HttpRequest
    *
@@ -44,18 +62,17 @@ public final class RouterPathLookup extends AbstractHttpHandler {
     try {
       String method = httpRequest.getMethod().getName();
       AllowedMethod requestMethod = AllowedMethod.valueOf(method);
-      String[] uriParts = StringUtils.split(requestPath, '/');
+      boolean isV3 = RouteTrie.segmentEquals(requestPath, 0, Constants.Gateway.API_VERSION_3_TOKEN);
 
       //Check if the call should go to webapp
       //If service contains "$HOST" and if first split element is NOT the gateway version, then send it to WebApp
       //WebApp serves only static files (HTML, CSS, JS) and so /<appname> calls should go to WebApp
       //But stream calls issued by the UI should be routed to the appropriate CDAP service
-      if (fallbackService.contains("$HOST") && (uriParts.length >= 1)
-        && !("/" + uriParts[0]).equals(Constants.Gateway.API_VERSION_3)) {
+      if (fallbackService.contains("$HOST") && RouteTrie.hasSegment(requestPath, 0) && !isV3) {
         return fallbackService;
       }
-      if (uriParts[0].equals(Constants.Gateway.API_VERSION_3_TOKEN)) {
-        return getV3RoutingService(uriParts, requestMethod);
+      if (isV3) {
+        return getV3RoutingService(requestPath, requestMethod);
       }
     } catch (Exception e) {
       // Ignore exception. Default routing to app-fabric.
@@ -63,117 +80,114 @@ public final class RouterPathLookup extends AbstractHttpHandler {
     return Constants.Service.APP_FABRIC_HTTP;
   }
 
-  private String getV3RoutingService(String [] uriParts, AllowedMethod requestMethod) {
-    if ((uriParts.length >= 2) && uriParts[1].equals("feeds")) {
-      // TODO find a better way to handle that - this looks hackish
-      return null;
-    } else if ((uriParts.length >= 9) && "services".equals(uriParts[5]) && "methods".equals(uriParts[7])) {
-      //User defined services handle methods on them:
-      //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/services/{service-id}/methods/<user-defined-method-path>"
-      return ServiceDiscoverable.getName(uriParts[2], uriParts[4], uriParts[6]);
-    } else if (matches(uriParts, "v3", "system", "services", null, "logs")) {
-      //Log Handler Path /v3/system/services/<service-id>/logs
-      return Constants.Service.METRICS;
-    } else if (matches(uriParts, "v3", "namespaces", null, "apps", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "views", null, "metadata") ||
-
-      matches(uriParts, "v3", "namespaces", null, "apps", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "views", null, "metadata", "properties") ||
-
-      matches(uriParts, "v3", "namespaces", null, "apps", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "views", null, "metadata", "tags") ||
-
-      matches(uriParts, "v3", "namespaces", null, "metadata", "search") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "lineage") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "lineage") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "runs", null, "metadata")) {
-      return Constants.Service.METADATA_SERVICE;
-    } else if (matches(uriParts, "v3", "security", "authorization") ||
-      matches(uriParts, "v3", "namespaces", null, "securekeys")) {
-      // Authorization and Secure Store Handlers currently run in App Fabric
-      return Constants.Service.APP_FABRIC_HTTP;
-    } else if (matches(uriParts, "v3", "security", "store", "namespaces", null)) {
-      return Constants.Service.APP_FABRIC_HTTP;
-    } else if ((matches(uriParts, "v3", "namespaces", null, "streams", null, "programs")
-      || matches(uriParts, "v3", "namespaces", null, "data", "datasets", null, "programs")) &&
-      requestMethod.equals(AllowedMethod.GET)) {
-      return Constants.Service.APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 4) && uriParts[1].equals("namespaces") && uriParts[3].equals("streams")) {
-      return Constants.Service.STREAMS;
-    } else if ((uriParts.length >= 8 && uriParts[7].equals("logs")) ||
-      (uriParts.length >= 10 && uriParts[9].equals("logs")) ||
-      (uriParts.length >= 6 && uriParts[5].equals("logs"))) {
-      //Log Handler Paths:
-      // /v3/namespaces/<namespaceid>/apps/<appid>/<programid-type>/<programid>/logs
-      // /v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs
-      return Constants.Service.METRICS;
-    } else if (uriParts.length >= 2 && uriParts[1].equals("metrics")) {
-      //Metrics Search Handler Path /v3/metrics
-      return Constants.Service.METRICS;
-    } else if (uriParts.length >= 5 && uriParts[1].equals("data") && uriParts[2].equals("explore") &&
-      (uriParts[3].equals("queries") || uriParts[3].equals("jdbc") || uriParts[3].equals("namespaces"))) {
-      // non-namespaced explore operations. For example, /v3/data/explore/queries/{id}
-      return Constants.Service.EXPLORE_HTTP_USER_SERVICE;
-    } else if (uriParts.length >= 6 && uriParts[3].equals("data") && uriParts[4].equals("explore") &&
-      (uriParts[5].equals("queries") || uriParts[5].equals("streams") || uriParts[5].equals("datasets")
-        || uriParts[5].equals("tables") || uriParts[5].equals("jdbc"))) {
-      // namespaced explore operations. For example, /v3/namespaces/{namespace-id}/data/explore/streams/{stream}/enable
-      return Constants.Service.EXPLORE_HTTP_USER_SERVICE;
-    } else if ((uriParts.length == 3) && uriParts[1].equals("explore") && uriParts[2].equals("status")) {
-      return Constants.Service.EXPLORE_HTTP_USER_SERVICE;
-    } else if (uriParts.length == 7 && uriParts[3].equals("data") && uriParts[4].equals("datasets") &&
-      (uriParts[6].equals("flows") || uriParts[6].equals("workers") || uriParts[6].equals("mapreduce"))) {
-      // namespaced app fabric data operations:
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/flows
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/workers
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/mapreduce
-      return Constants.Service.APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 4) && uriParts[3].equals("data")) {
-      // other data operations. For example:
-      // /v3/namespaces/{namespace-id}/data/datasets
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/properties
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/admin/{method}
-      return Constants.Service.DATASET_MANAGER;
-    }
-    return Constants.Service.APP_FABRIC_HTTP;
+  private String getV3RoutingService(String requestPath, AllowedMethod requestMethod) {
+    RouteTrie.Route<Destination> route = ROUTES.lookup(requestPath, requestMethod.name());
+    return route == null ? Constants.Service.APP_FABRIC_HTTP : route.getValue().getService(requestPath);
   }
 
   /**
-   * Determines if actual matches expected.
-   *
-   * - actual may be longer than expected, but we'll return true as long as expected was found
-   * - null in expected means "accept any string"
-   *
-   * @param actual actual string array to check
-   * @param expected expected string array format
-   * @return true if actual matches expected
+   * Builds the routing table. Routes are matched in the order they are added, hence more specific routes
+   * need to be added before the more generic ones that would also match.
    */
-  private boolean matches(String[] actual, String... expected) {
-    if (actual.length < expected.length) {
-      return false;
+  private static RouteTrie<Destination> createRoutes() {
+    RouteTrie<Destination> routes = new RouteTrie<>();
+
+    // TODO find a better way to handle that - this looks hackish
+    prefix(routes, FEEDS, "v3", "feeds");
+
+    //User defined services handle methods on them:
+    //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/services/{service-id}/methods/<user-defined-method-path>"
+    prefix(routes, USER_SERVICE, "v3", null, null, null, null, "services", null, "methods", null);
+
+    //Log Handler Path /v3/system/services/<service-id>/logs
+    prefix(routes, METRICS, "v3", "system", "services", null, "logs");
+
+    // Metadata of entities, including the properties and tags sub-resources
+    prefix(routes, METADATA, "v3", "namespaces", null, "apps", null, "metadata");
+    prefix(routes, METADATA, "v3", "namespaces", null, "apps", null, null, null, "metadata");
+    prefix(routes, METADATA, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata");
+    prefix(routes, METADATA, "v3", "namespaces", null, "datasets", null, "metadata");
+    prefix(routes, METADATA, "v3", "namespaces", null, "streams", null, "metadata");
+    prefix(routes, METADATA, "v3", "namespaces", null, "streams", null, "views", null, "metadata");
+    prefix(routes, METADATA, "v3", "namespaces", null, "metadata", "search");
+    prefix(routes, METADATA, "v3", "namespaces", null, "datasets", null, "lineage");
+    prefix(routes, METADATA, "v3", "namespaces", null, "streams", null, "lineage");
+    prefix(routes, METADATA, "v3", "namespaces", null, "apps", null, null, null, "runs", null, "metadata");
+
+    // Authorization and Secure Store Handlers currently run in App Fabric
+    prefix(routes, APP_FABRIC, "v3", "security", "authorization");
+    prefix(routes, APP_FABRIC, "v3", "namespaces", null, "securekeys");
+    prefix(routes, APP_FABRIC, "v3", "security", "store", "namespaces", null);
+
+    routes.add(segments("v3", "namespaces", null, "streams", null, "programs"), false, "GET", APP_FABRIC);
+    routes.add(segments("v3", "namespaces", null, "data", "datasets", null, "programs"), false, "GET", APP_FABRIC);
+
+    prefix(routes, STREAMS, "v3", "namespaces", null, "streams");
+
+    //Log Handler Paths:
+    // /v3/namespaces/<namespaceid>/apps/<appid>/<programid-type>/<programid>/logs
+    // /v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs
+    prefix(routes, METRICS, "v3", null, null, null, null, null, null, "logs");
+    prefix(routes, METRICS, "v3", null, null, null, null, null, null, null, null, "logs");
+    prefix(routes, METRICS, "v3", null, null, null, null, "logs");
+
+    //Metrics Search Handler Path /v3/metrics
+    prefix(routes, METRICS, "v3", "metrics");
+
+    // non-namespaced explore operations. For example, /v3/data/explore/queries/{id}
+    for (String resource : new String[] { "queries", "jdbc", "namespaces" }) {
+      prefix(routes, EXPLORE, "v3", "data", "explore", resource, null);
+    }
+    // namespaced explore operations. For example, /v3/namespaces/{namespace-id}/data/explore/streams/{stream}/enable
+    for (String resource : new String[] { "queries", "streams", "datasets", "tables", "jdbc" }) {
+      prefix(routes, EXPLORE, "v3", null, null, "data", "explore", resource);
     }
+    routes.add(segments("v3", "explore", "status"), true, null, EXPLORE);
 
-    for (int i = 0; i < expected.length; i++) {
-      if (expected[i] == null) {
-        continue;
-      }
-      if (!expected[i].equals(actual[i])) {
-        return false;
-      }
+    // namespaced app fabric data operations:
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/flows
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/workers
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/mapreduce
+    for (String programType : new String[] { "flows", "workers", "mapreduce" }) {
+      routes.add(segments("v3", null, null, "data", "datasets", null, programType), true, null, APP_FABRIC);
+    }
+
+    // other data operations. For example:
+    // /v3/namespaces/{namespace-id}/data/datasets
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/properties
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/admin/{method}
+    prefix(routes, DATASET_MANAGER, "v3", null, null, "data");
+
+    return routes;
+  }
+
+  private static void prefix(RouteTrie<Destination> routes, Destination destination, String... segments) {
+    routes.add(segments, false, null, destination);
+  }
+
+  private static String[] segments(String... segments) {
+    return segments;
+  }
+
+  /**
+   * Determines the destination service of a matched route.
+   */
+  private abstract static class Destination {
+
+    /**
+     * Returns the destination service for the given request path.
+     */
+    @Nullable
+    abstract String getService(String requestPath);
+
+    static Destination of(@Nullable final String service) {
+      return new Destination() {
+        @Override
+        String getService(String requestPath) {
+          return service;
+        }
+      };
     }
-    return true;
   }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -23,7 +23,6 @@ import co.cask.cdap.gateway.router.RouterServiceLookup;
 import com.google.common.collect.Queues;
 import com.google.common.io.Closeables;
 import org.apache.twill.discovery.Discoverable;
-import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
@@ -31,6 +30,7 @@ import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DefaultExceptionEvent;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
@@ -46,9 +46,8 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -56,28 +55,35 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Handler that handles HTTP requests and forwards to appropriate services. The service discovery is
  * performed using Discovery service for forwarding.
+ *
+ * Requests of an inbound connection are forwarded one at a time. A request that arrives while the previous request
+ * and response exchange is still in progress, which happens with HTTP pipelining, waits until the outbound
+ * connection of that exchange is released, so that the responses are written back in the order of the requests.
  */
 public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpRequestHandler.class);
 
-  private final ClientBootstrap clientBootstrap;
+  private final OutboundConnectionPool connectionPool;
   private final RouterServiceLookup serviceLookup;
-  // Data structure is used to clean up the channel futures on connection close.
-  private final Map<WrappedDiscoverable, MessageSender> discoveryLookup;
   private final List<ProxyRule> proxyRules;
+  // Messages received while the exchange of a previous request is still in progress
+  private final Queue<Object> pendingMessages;
 
   private final AtomicInteger exceptionsHandled = new AtomicInteger(0);
-  private MessageSender chunkSender;
+  // Sender of the exchange in progress, which is used to clean up the outbound connection on connection close
+  private MessageSender sender;
+  // Whether the outbound connection of the exchange in progress cannot take more writes
+  private boolean outboundSaturated;
   private volatile boolean channelClosed;
 
-  public HttpRequestHandler(ClientBootstrap clientBootstrap,
+  public HttpRequestHandler(OutboundConnectionPool connectionPool,
                             RouterServiceLookup serviceLookup,
                             List<ProxyRule> proxyRules) {
-    this.clientBootstrap = clientBootstrap;
+    this.connectionPool = connectionPool;
     this.serviceLookup = serviceLookup;
-    this.discoveryLookup = new HashMap<>();
     this.proxyRules = proxyRules;
+    this.pendingMessages = new LinkedList<>();
   }
 
   @Override
@@ -87,70 +93,113 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
     if (channelClosed) {
       return;
     }
-    final Channel inboundChannel = event.getChannel();
+    Channel inboundChannel = event.getChannel();
     Object msg = event.getMessage();
 
+    if (!(msg instanceof HttpRequest || msg instanceof HttpChunk)) {
+      super.messageReceived(ctx, event);
+      return;
+    }
+
+    // Hold back a new request, and everything after it, until the exchange in progress is completed.
+    // Stop reading from the inbound channel in the meantime.
+    if (!pendingMessages.isEmpty() || (sender != null && msg instanceof HttpRequest)) {
+      pendingMessages.add(msg);
+      updateReadable(inboundChannel);
+      return;
+    }
+    forward(inboundChannel, msg);
+  }
+
+  /**
+   * Notifies the {@link HttpRequestHandler} of the given inbound channel that the exchange through the given
+   * outbound connection is completed.
+   */
+  static void exchangeCompleted(final Channel inboundChannel, final Channel outboundChannel) {
+    final HttpRequestHandler handler = inboundChannel.getPipeline().get(HttpRequestHandler.class);
+    if (handler == null) {
+      return;
+    }
+    inboundChannel.getPipeline().execute(new Runnable() {
+      @Override
+      public void run() {
+        handler.onExchangeCompleted(inboundChannel.getPipeline().getContext(handler), outboundChannel);
+      }
+    });
+  }
+
+  /**
+   * Notifies the {@link HttpRequestHandler} of the given inbound channel that the given outbound connection
+   * became writable or saturated. Must be called from the I/O thread of the inbound channel.
+   */
+  static void outboundWritabilityChanged(Channel inboundChannel, Channel outboundChannel, boolean writable) {
+    HttpRequestHandler handler = inboundChannel.getPipeline().get(HttpRequestHandler.class);
+    if (handler == null) {
+      inboundChannel.setReadable(writable);
+      return;
+    }
+    if (handler.sender == null || !outboundChannel.equals(handler.sender.getChannel())) {
+      return;
+    }
+    handler.outboundSaturated = !writable;
+    handler.updateReadable(inboundChannel);
+  }
+
+  /**
+   * Reads from the inbound channel only if no request is held back and the outbound connection can take more writes.
+   */
+  private void updateReadable(Channel inboundChannel) {
+    boolean readable = pendingMessages.isEmpty() && !outboundSaturated;
+    if (inboundChannel.isReadable() != readable) {
+      LOG.trace("Setting inboundChannel readable to {}.", readable);
+      inboundChannel.setReadable(readable);
+    }
+  }
+
+  /**
+   * Forwards the messages that were held back, up to the next request that has to wait for an exchange to complete.
+   */
+  private void onExchangeCompleted(ChannelHandlerContext ctx, Channel outboundChannel) {
+    if (channelClosed || sender == null || !outboundChannel.equals(sender.getChannel())) {
+      return;
+    }
+    sender = null;
+    outboundSaturated = false;
+
+    Channel inboundChannel = ctx.getChannel();
+    try {
+      while (!pendingMessages.isEmpty() && (sender == null || !(pendingMessages.peek() instanceof HttpRequest))) {
+        forward(inboundChannel, pendingMessages.poll());
+      }
+    } catch (Exception e) {
+      pendingMessages.clear();
+      exceptionCaught(ctx, new DefaultExceptionEvent(inboundChannel, e));
+      return;
+    }
+    updateReadable(inboundChannel);
+  }
+
+  private void forward(Channel inboundChannel, Object msg) {
     if (msg instanceof HttpChunk) {
       // This case below should never happen this would mean we get Chunks before HTTPMessage.
-      if (chunkSender == null) {
+      if (sender == null) {
         throw new HandlerException(HttpResponseStatus.INTERNAL_SERVER_ERROR,
                                    "Chunk received and event sender is null");
       }
-      chunkSender.send(msg);
-
-    } else if (msg instanceof HttpRequest) {
-      // Discover and forward event.
-      HttpRequest request = (HttpRequest) msg;
-      request = applyProxyRules(request);
-
-      // Suspend incoming traffic until connected to the outbound service.
-      inboundChannel.setReadable(false);
-      WrappedDiscoverable discoverable = getDiscoverable(request,
-                                                         (InetSocketAddress) inboundChannel.getLocalAddress());
-
-      // If no event sender, make new connection, otherwise reuse existing one.
-      MessageSender sender =  discoveryLookup.get(discoverable);
-      if (sender == null || !sender.isConnected()) {
-        InetSocketAddress address = discoverable.getSocketAddress();
-
-        ChannelFuture future = clientBootstrap.connect(address);
-        final Channel outboundChannel = future.getChannel();
-        outboundChannel.getPipeline().addAfter("request-encoder",
-                                               "outbound-handler", new OutboundHandler(inboundChannel));
-        sender = new MessageSender(inboundChannel, future);
-        discoveryLookup.put(discoverable, sender);
-
-        // Remember the in-flight outbound channel
-        inboundChannel.setAttachment(outboundChannel);
-        outboundChannel.getCloseFuture().addListener(new ChannelFutureListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            inboundChannel.getPipeline().execute(new Runnable() {
-              @Override
-              public void run() {
-                // When the outbound channel closed,
-                // close the inbound channel as well if it carries the in-flight request
-                if (outboundChannel.equals(inboundChannel.getAttachment())) {
-                  closeOnFlush(inboundChannel);
-                }
-              }
-            });
-          }
-        });
-      }
-
-      // Send the message.
-      sender.send(request);
-      inboundChannel.setReadable(true);
+      sender.send(msg);
+      return;
+    }
 
-      //Save the channelFuture for subsequent chunks
-      if (request.isChunked()) {
-        chunkSender = sender;
-      }
+    // Discover and forward event.
+    HttpRequest request = applyProxyRules((HttpRequest) msg);
+    WrappedDiscoverable discoverable = getDiscoverable(request,
+                                                       (InetSocketAddress) inboundChannel.getLocalAddress());
 
-    } else {
-      super.messageReceived(ctx, event);
-    }
+    // Acquire a connection from the pool. It is released back to the pool once the exchange is completed,
+    // and is used for the chunks of the request until then.
+    ChannelFuture future = connectionPool.acquire(discoverable, inboundChannel);
+    sender = new MessageSender(inboundChannel, future);
+    sender.send(request);
   }
 
   private HttpRequest applyProxyRules(HttpRequest request) {
@@ -194,11 +243,12 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   @Override
   public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
-    // Close all event sender
+    // Discard the connection that is still in use
     LOG.trace("Channel closed {}", ctx.getChannel());
-    for (Closeable c : discoveryLookup.values()) {
-      Closeables.closeQuietly(c);
+    if (sender != null) {
+      Closeables.closeQuietly(sender);
     }
+    pendingMessages.clear();
     channelClosed = true;
     super.channelClosed(ctx, e);
   }
@@ -239,7 +289,7 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
    * in {@link co.cask.cdap.data.stream.service.ConcurrentStreamWriter} to do the write through the
    * channel callback.
    */
-  private static final class MessageSender implements Closeable {
+  private final class MessageSender implements Closeable {
     private final Channel inBoundChannel;
     private final ChannelFuture channelFuture;
     private final Queue<OutboundMessage> messages;
@@ -252,8 +302,8 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       this.writer = new AtomicBoolean(false);
     }
 
-    private boolean isConnected() {
-      return channelFuture.getChannel().isConnected();
+    private Channel getChannel() {
+      return channelFuture.getChannel();
     }
 
     private void send(Object msg) {
@@ -308,7 +358,7 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
     @Override
     public void close() throws IOException {
-      closeOnFlush(channelFuture.getChannel());
+      connectionPool.discard(channelFuture.getChannel(), inBoundChannel);
     }
   }
 
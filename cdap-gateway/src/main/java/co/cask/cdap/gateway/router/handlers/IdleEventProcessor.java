@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,9 +17,12 @@
 package co.cask.cdap.gateway.router.handlers;
 
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.timeout.IdleState;
@@ -28,22 +31,39 @@ import org.jboss.netty.handler.timeout.IdleStateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * Handles states when a channel has been idle for a configured time interval, by closing the channel if an
- * HTTP Request is not in progress.
+ * Handles states when a channel has been idle for a configured time interval, by closing the channel if it is
+ * not in use, that is, if it sits idle in the {@link OutboundConnectionPool} or if the exchange on a connection
+ * that cannot be reused is completed. A channel handed out by the pool is in use until it is released, even
+ * before the request is written. It also releases the channel to the {@link OutboundConnectionPool} once
+ * a request has been fully written and its response has been fully received over a keep-alive connection, in
+ * whichever order the two happen.
  */
 public class IdleEventProcessor extends IdleStateAwareChannelHandler {
   private static final Logger LOG = LoggerFactory.getLogger(IdleEventProcessor.class);
-  private boolean requestInProgress;
+  private final OutboundConnectionPool connectionPool;
+  // Number of events, out of the request being written and the response being received, that are yet to happen
+  // before the current exchange is completed
+  private final AtomicInteger pendingEvents = new AtomicInteger();
+  private volatile boolean keepAlive;
+  // Whether the exchange on this connection is completed and the connection cannot be reused
+  private volatile boolean closeOnIdle;
+
+  public IdleEventProcessor(OutboundConnectionPool connectionPool) {
+    this.connectionPool = connectionPool;
+  }
 
   @Override
   public void channelIdle(ChannelHandlerContext ctx, IdleStateEvent e) throws Exception {
     if (IdleState.ALL_IDLE == e.getState()) {
-      if (requestInProgress) {
-        LOG.trace("Request is in progress, so not closing channel.");
+      Channel channel = ctx.getChannel();
+      // Removing the channel from the pool makes sure that it is not handed out while being closed
+      if (!connectionPool.removeIdle(channel) && !closeOnIdle) {
+        LOG.trace("Channel is in use, so not closing channel.");
       } else {
         // No data has been sent or received for a while. Close channel.
-        Channel channel = ctx.getChannel();
         channel.close();
         LOG.trace("No data has been sent or received for channel '{}' for more than the configured idle timeout. " +
                     "Closing the channel. Local Address: {}, Remote Address: {}",
@@ -56,28 +76,76 @@ public class IdleEventProcessor extends IdleStateAwareChannelHandler {
   public void messageReceived(ChannelHandlerContext ctx, MessageEvent e)
     throws Exception {
     Object message = e.getMessage();
+    boolean responseCompleted = false;
     if (message instanceof HttpResponse) {
       HttpResponse response = (HttpResponse) message;
-      if (!response.isChunked()) {
-        requestInProgress = false;
+      keepAlive = keepAlive && HttpHeaders.isKeepAlive(response);
+      // Informational (1xx) responses are followed by the final response
+      if (!response.isChunked() && response.getStatus().getCode() >= 200) {
+        responseCompleted = true;
       }
     } else if (message instanceof HttpChunk) {
       HttpChunk chunk = (HttpChunk) message;
 
       if (chunk.isLast()) {
-        requestInProgress = false;
+        responseCompleted = true;
       }
     }
 
     ctx.sendUpstream(e);
+
+    if (responseCompleted) {
+      // The response has been forwarded by the OutboundHandler already
+      exchangeEventCompleted(ctx.getChannel());
+    }
   }
 
   @Override
   public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
     Object message = e.getMessage();
-    if (message instanceof HttpRequest || message instanceof HttpChunk) {
-      requestInProgress = true;
+    if (message instanceof HttpRequest) {
+      HttpRequest request = (HttpRequest) message;
+      keepAlive = HttpHeaders.isKeepAlive(request);
+      pendingEvents.set(2);
+      if (!request.isChunked()) {
+        completeOnWrite(e.getFuture());
+      }
+    } else if (message instanceof HttpChunk) {
+      if (((HttpChunk) message).isLast()) {
+        completeOnWrite(e.getFuture());
+      }
     }
     ctx.sendDownstream(e);
   }
+
+  /**
+   * Counts the request as completed once the last part of it is written.
+   */
+  private void completeOnWrite(ChannelFuture writeFuture) {
+    writeFuture.addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        // If the write failed, the channel is closed and never returned to the pool
+        if (future.isSuccess()) {
+          exchangeEventCompleted(future.getChannel());
+        }
+      }
+    });
+  }
+
+  /**
+   * Called when either the request is fully written or the response is fully received. Once both happened, the
+   * connection is released to the pool if both sides allow keep-alive. Otherwise the connection is expected to be
+   * closed by the endpoint, and is closed once idle if it is not.
+   */
+  private void exchangeEventCompleted(Channel channel) {
+    if (pendingEvents.decrementAndGet() != 0) {
+      return;
+    }
+    if (keepAlive) {
+      connectionPool.release(channel);
+    } else {
+      closeOnIdle = true;
+    }
+  }
 }
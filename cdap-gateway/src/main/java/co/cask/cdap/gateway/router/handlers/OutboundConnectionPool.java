@@ -0,0 +1,320 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.Constants;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.common.Threads;
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.apache.twill.discovery.ServiceDiscovered;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.Channels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A pool of keep-alive connections from the router to discoverable endpoints, shared by all inbound connections.
+ * The number of idle connections kept per endpoint is bounded, while the number of connections in use is not.
+ *
+ * A connection is acquired for each request and is bound to the inbound channel that sends the request. Once
+ * the {@link IdleEventProcessor} of the connection sees that the request is fully written and the response is fully
+ * received, the connection is released back to the pool, unless either side asked for the connection to be closed,
+ * and the inbound channel may proceed with its next request. Idle pooled connections are closed by the
+ * {@link IdleEventProcessor} after the router connection idle timeout, and connections to endpoints that are
+ * no longer discoverable are closed when the discovery changes.
+ *
+ * The number of requests served by pooled connections, the number of requests that required a new connection
+ * and the time spent waiting for new connections are emitted as metrics.
+ */
+public final class OutboundConnectionPool implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OutboundConnectionPool.class);
+
+  private final ClientBootstrap clientBootstrap;
+  private final DiscoveryServiceClient discoveryServiceClient;
+  private final int maxIdlePerEndpoint;
+  private final ConcurrentMap<WrappedDiscoverable, Endpoint> endpoints;
+  private final ConcurrentMap<String, Cancellable> discoveryWatches;
+  private final MetricsContext metricsContext;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong waitTimeNanos = new AtomicLong();
+  private volatile boolean closed;
+
+  public OutboundConnectionPool(ClientBootstrap clientBootstrap, DiscoveryServiceClient discoveryServiceClient,
+                                int maxIdlePerEndpoint, @Nullable MetricsContext metricsContext) {
+    this.clientBootstrap = clientBootstrap;
+    this.discoveryServiceClient = discoveryServiceClient;
+    this.maxIdlePerEndpoint = maxIdlePerEndpoint;
+    this.endpoints = new ConcurrentHashMap<>();
+    this.discoveryWatches = new ConcurrentHashMap<>();
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Acquires a connection to the given endpoint and binds it to the given inbound channel. An idle pooled
+   * connection is used if there is one, otherwise a new connection is made. Taking the connection out of the idle
+   * connections marks it as in use, so that it is not closed by the idle timeout until it is released again.
+   *
+   * @return a {@link ChannelFuture} that completes when the connection is ready to use
+   */
+  ChannelFuture acquire(WrappedDiscoverable discoverable, Channel inboundChannel) {
+    Endpoint endpoint = getEndpoint(discoverable);
+    Channel channel = endpoint.poll();
+    while (channel != null) {
+      if (channel.isConnected()) {
+        hits.incrementAndGet();
+        increment(Constants.Metrics.Name.Router.CONNECTION_POOL_HITS, 1);
+        getOutboundHandler(channel).bind(inboundChannel);
+        return Channels.succeededFuture(channel);
+      }
+      channel = endpoint.poll();
+    }
+
+    misses.incrementAndGet();
+    increment(Constants.Metrics.Name.Router.CONNECTION_POOL_MISSES, 1);
+    final long startTime = System.nanoTime();
+    ChannelFuture future = clientBootstrap.connect(discoverable.getSocketAddress());
+    final Channel outboundChannel = future.getChannel();
+    outboundChannel.setAttachment(discoverable);
+    getOutboundHandler(outboundChannel).bind(inboundChannel);
+
+    future.addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        long waitTime = System.nanoTime() - startTime;
+        waitTimeNanos.addAndGet(waitTime);
+        increment(Constants.Metrics.Name.Router.CONNECTION_WAIT_MILLIS, TimeUnit.NANOSECONDS.toMillis(waitTime));
+      }
+    });
+    outboundChannel.getCloseFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        Endpoint endpoint = endpoints.get(outboundChannel.getAttachment());
+        if (endpoint != null) {
+          endpoint.remove(outboundChannel);
+        }
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Releases a connection after a complete request and response exchange. The connection is returned to the
+   * pool if it is still bound to an inbound channel, otherwise the inbound channel already discarded it. The
+   * inbound channel is then notified, so that it can send its next request.
+   */
+  void release(Channel channel) {
+    OutboundHandler outboundHandler = getOutboundHandler(channel);
+    Channel inboundChannel = outboundHandler.getInboundChannel();
+    if (inboundChannel == null || !outboundHandler.unbind(inboundChannel)) {
+      return;
+    }
+    // The inbound channel no longer has a request in-flight through this connection
+    if (channel.equals(inboundChannel.getAttachment())) {
+      inboundChannel.setAttachment(null);
+    }
+
+    Endpoint endpoint = endpoints.get(channel.getAttachment());
+    if (closed || endpoint == null || !channel.isConnected() || !endpoint.offer(channel)) {
+      HttpRequestHandler.closeOnFlush(channel);
+    }
+    HttpRequestHandler.exchangeCompleted(inboundChannel, channel);
+  }
+
+  /**
+   * Discards a connection that is still bound to the given inbound channel, for example when the inbound channel
+   * is closed while a request is in-flight.
+   */
+  void discard(Channel channel, Channel inboundChannel) {
+    if (getOutboundHandler(channel).unbind(inboundChannel)) {
+      HttpRequestHandler.closeOnFlush(channel);
+    }
+  }
+
+  /**
+   * Removes the given connection from the idle connections, so that it can be closed.
+   *
+   * @return {@code true} if the connection was idle in the pool and is removed, {@code false} if it is in use
+   */
+  boolean removeIdle(Channel channel) {
+    Endpoint endpoint = endpoints.get(channel.getAttachment());
+    return endpoint != null && endpoint.remove(channel);
+  }
+
+  /**
+   * Returns {@code true} if the given connection is still bound to the given inbound channel.
+   */
+  boolean isBound(Channel channel, Channel inboundChannel) {
+    return inboundChannel.equals(getOutboundHandler(channel).getInboundChannel());
+  }
+
+  /**
+   * Returns the number of requests that were served by a pooled connection.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of requests that required a new connection.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the total time in milliseconds that requests waited for new connections to be established.
+   */
+  public long getWaitTimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(waitTimeNanos.get());
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    for (Cancellable cancellable : discoveryWatches.values()) {
+      cancellable.cancel();
+    }
+    discoveryWatches.clear();
+    for (Endpoint endpoint : endpoints.values()) {
+      endpoint.closeAll();
+    }
+    endpoints.clear();
+    LOG.debug("Closed outbound connection pool. Hits: {}, misses: {}, wait time: {} ms",
+              getHits(), getMisses(), getWaitTimeMillis());
+  }
+
+  private void increment(String metricName, long delta) {
+    if (metricsContext != null) {
+      metricsContext.increment(metricName, delta);
+    }
+  }
+
+  private OutboundHandler getOutboundHandler(Channel channel) {
+    return channel.getPipeline().get(OutboundHandler.class);
+  }
+
+  private Endpoint getEndpoint(WrappedDiscoverable discoverable) {
+    Endpoint endpoint = endpoints.get(discoverable);
+    if (endpoint != null) {
+      return endpoint;
+    }
+    endpoint = new Endpoint();
+    Endpoint existing = endpoints.putIfAbsent(discoverable, endpoint);
+    if (existing != null) {
+      return existing;
+    }
+    watchDiscovery(discoverable.getName());
+    return endpoint;
+  }
+
+  /**
+   * Watches for discovery changes of the given service, closing pooled connections to endpoints that are
+   * no longer available.
+   */
+  private void watchDiscovery(final String name) {
+    if (closed || discoveryWatches.containsKey(name)) {
+      return;
+    }
+    Cancellable cancellable = discoveryServiceClient.discover(name).watchChanges(
+      new ServiceDiscovered.ChangeListener() {
+        @Override
+        public void onChange(ServiceDiscovered serviceDiscovered) {
+          Set<WrappedDiscoverable> available = new HashSet<>();
+          for (Discoverable discoverable : serviceDiscovered) {
+            available.add(new WrappedDiscoverable(discoverable));
+          }
+          Iterator<Map.Entry<WrappedDiscoverable, Endpoint>> iterator = endpoints.entrySet().iterator();
+          while (iterator.hasNext()) {
+            Map.Entry<WrappedDiscoverable, Endpoint> entry = iterator.next();
+            if (name.equals(entry.getKey().getName()) && !available.contains(entry.getKey())) {
+              LOG.debug("Closing pooled connections to {} that is no longer discoverable",
+                        entry.getKey().getSocketAddress());
+              iterator.remove();
+              entry.getValue().closeAll();
+            }
+          }
+        }
+      }, Threads.SAME_THREAD_EXECUTOR);
+
+    if (discoveryWatches.putIfAbsent(name, cancellable) != null) {
+      cancellable.cancel();
+    }
+  }
+
+  /**
+   * Bounded collection of idle connections to a discoverable endpoint. Connections are reused in LIFO order,
+   * so that excess connections stay idle and get closed by the idle timeout.
+   */
+  private final class Endpoint {
+    private final ConcurrentLinkedDeque<Channel> channels = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    Channel poll() {
+      Channel channel = channels.pollFirst();
+      if (channel != null) {
+        size.decrementAndGet();
+      }
+      return channel;
+    }
+
+    boolean offer(Channel channel) {
+      if (size.incrementAndGet() > maxIdlePerEndpoint) {
+        size.decrementAndGet();
+        return false;
+      }
+      channels.addFirst(channel);
+      return true;
+    }
+
+    boolean remove(Channel channel) {
+      if (!channels.remove(channel)) {
+        return false;
+      }
+      size.decrementAndGet();
+      return true;
+    }
+
+    void closeAll() {
+      Channel channel = poll();
+      while (channel != null) {
+        channel.close();
+        channel = poll();
+      }
+    }
+  }
+}
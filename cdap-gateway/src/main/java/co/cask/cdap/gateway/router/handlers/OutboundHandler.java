@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -28,20 +28,48 @@ import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+
 /**
- * Handles requests to and from a discoverable endpoint.
+ * Handles requests to and from a discoverable endpoint. The handler forwards responses to the inbound channel it is
+ * currently bound to, which changes as the connection is reused through the {@link OutboundConnectionPool}.
  */
 public class OutboundHandler extends SimpleChannelUpstreamHandler {
   private static final Logger LOG = LoggerFactory.getLogger(OutboundHandler.class);
 
-  private final Channel inboundChannel;
+  private final AtomicReference<Channel> inboundChannel = new AtomicReference<>();
+
+  /**
+   * Binds this handler to the given inbound channel.
+   */
+  void bind(Channel inboundChannel) {
+    this.inboundChannel.set(inboundChannel);
+  }
+
+  /**
+   * Unbinds this handler from the given inbound channel.
+   *
+   * @return {@code true} if this handler was bound to the given inbound channel
+   */
+  boolean unbind(Channel inboundChannel) {
+    return this.inboundChannel.compareAndSet(inboundChannel, null);
+  }
 
-  public OutboundHandler(Channel inboundChannel) {
-    this.inboundChannel = inboundChannel;
+  @Nullable
+  Channel getInboundChannel() {
+    return inboundChannel.get();
   }
 
   @Override
   public void messageReceived(ChannelHandlerContext ctx, MessageEvent event) throws Exception {
+    Channel inboundChannel = this.inboundChannel.get();
+    if (inboundChannel == null) {
+      // Data received on a connection that has no request in-flight. The connection is no longer usable.
+      LOG.trace("Closing channel {} that received data without an in-flight request.", ctx.getChannel());
+      ctx.getChannel().close();
+      return;
+    }
     // write the channel buffer to inbound channel
     ChannelBuffer wrappedMessage = ChannelBuffers.wrappedBuffer((ChannelBuffer) event.getMessage());
     Channels.write(inboundChannel, wrappedMessage);
@@ -50,23 +78,39 @@ public class OutboundHandler extends SimpleChannelUpstreamHandler {
 
   @Override
   public void channelInterestChanged(ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+    final Channel inboundChannel = this.inboundChannel.get();
+    if (inboundChannel == null) {
+      return;
+    }
     inboundChannel.getPipeline().execute(new Runnable() {
       @Override
       public void run() {
-        // If outboundChannel is not saturated anymore, continue accepting
-        // the incoming traffic from the inboundChannel.
-        if (e.getChannel().isWritable()) {
-          LOG.trace("Setting inboundChannel readable.");
-          inboundChannel.setReadable(true);
-        } else {
-          // If outboundChannel is saturated, do not read inboundChannel
-          LOG.trace("Setting inboundChannel non-readable.");
-          inboundChannel.setReadable(false);
-        }
+        // If outboundChannel is saturated, do not read inboundChannel. Once it is not saturated anymore, the
+        // request handler continues accepting the incoming traffic, unless it holds back pipelined requests.
+        HttpRequestHandler.outboundWritabilityChanged(inboundChannel, e.getChannel(), e.getChannel().isWritable());
       }
     });
   }
 
+  @Override
+  public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    final Channel outboundChannel = ctx.getChannel();
+    final Channel inboundChannel = this.inboundChannel.get();
+    if (inboundChannel != null) {
+      inboundChannel.getPipeline().execute(new Runnable() {
+        @Override
+        public void run() {
+          // When the outbound channel closed,
+          // close the inbound channel as well if it carries the in-flight request
+          if (outboundChannel.equals(inboundChannel.getAttachment())) {
+            HttpRequestHandler.closeOnFlush(inboundChannel);
+          }
+        }
+      });
+    }
+    super.channelClosed(ctx, e);
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
     LOG.error("Got exception {}", ctx.getChannel(), e.getCause());
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+
+/**
+ * Unit tests for {@link RouteTrie}.
+ */
+public class RouteTrieTest {
+
+  @Test
+  public void testPrecedence() {
+    RouteTrie<String> trie = new RouteTrie<>();
+    trie.add(new String[] { "v3", null, "logs" }, false, null, "first");
+    trie.add(new String[] { "v3", "namespaces" }, false, null, "second");
+    trie.add(new String[] { "v3", "namespaces", null, "logs" }, false, null, "third");
+
+    // The earlier route wins even though the later one is more specific
+    Assert.assertEquals("first", lookup(trie, "/v3/namespaces/logs", "GET"));
+    Assert.assertEquals("second", lookup(trie, "/v3/namespaces/default/logs", "GET"));
+    Assert.assertEquals("second", lookup(trie, "/v3/namespaces", "GET"));
+    Assert.assertEquals("first", lookup(trie, "//v3///system//logs/", "GET"));
+    Assert.assertNull(lookup(trie, "/v3/system/metrics", "GET"));
+    Assert.assertNull(lookup(trie, "/v3", "GET"));
+    Assert.assertNull(lookup(trie, "", "GET"));
+  }
+
+  @Test
+  public void testMethodAndExact() {
+    RouteTrie<String> trie = new RouteTrie<>();
+    trie.add(new String[] { "v3", "streams", null, "programs" }, false, "GET", "programs");
+    trie.add(new String[] { "v3", "explore", "status" }, true, null, "status");
+    trie.add(new String[] { "v3" }, false, null, "default");
+
+    Assert.assertEquals("programs", lookup(trie, "/v3/streams/s/programs", "GET"));
+    Assert.assertEquals("default", lookup(trie, "/v3/streams/s/programs", "POST"));
+    Assert.assertEquals("status", lookup(trie, "/v3/explore/status/", "GET"));
+    Assert.assertEquals("default", lookup(trie, "/v3/explore/status/more", "GET"));
+  }
+
+  @Test
+  public void testSegments() {
+    String path = "//v3/namespaces///default/apps/";
+    Assert.assertEquals("v3", RouteTrie.getSegment(path, 0));
+    Assert.assertEquals("default", RouteTrie.getSegment(path, 2));
+    Assert.assertEquals("apps", RouteTrie.getSegment(path, 3));
+    Assert.assertTrue(RouteTrie.hasSegment(path, 3));
+    Assert.assertFalse(RouteTrie.hasSegment(path, 4));
+    Assert.assertTrue(RouteTrie.segmentEquals(path, 1, "namespaces"));
+    Assert.assertFalse(RouteTrie.segmentEquals(path, 1, "namespace"));
+    Assert.assertFalse(RouteTrie.segmentEquals(path, 5, "apps"));
+  }
+
+  @Nullable
+  private String lookup(RouteTrie<String> trie, String path, String method) {
+    RouteTrie.Route<String> route = trie.lookup(path, method);
+    return route == null ? null : route.getValue();
+  }
+}
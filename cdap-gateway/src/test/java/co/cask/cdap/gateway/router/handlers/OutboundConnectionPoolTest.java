@@ -0,0 +1,374 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.common.utils.Tasks;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.InMemoryDiscoveryService;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.local.DefaultLocalClientChannelFactory;
+import org.jboss.netty.channel.local.DefaultLocalServerChannelFactory;
+import org.jboss.netty.channel.local.LocalAddress;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpClientCodec;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.timeout.IdleStateHandler;
+import org.jboss.netty.util.CharsetUtil;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link OutboundConnectionPool}.
+ */
+public class OutboundConnectionPoolTest {
+
+  private static final String SERVICE_NAME = "test.service";
+
+  private final ChannelGroup channelGroup = new DefaultChannelGroup();
+  // Responses forwarded to the inbound channels
+  private final BlockingQueue<ChannelBuffer> responses = new LinkedBlockingQueue<>();
+
+  private InMemoryDiscoveryService discoveryService;
+  private Cancellable cancelDiscovery;
+  private ServerBootstrap serverBootstrap;
+  private ServerBootstrap inboundServerBootstrap;
+  private ClientBootstrap inboundClientBootstrap;
+  private ClientBootstrap clientBootstrap;
+  private Timer timer;
+  private OutboundConnectionPool connectionPool;
+  private WrappedDiscoverable discoverable;
+  private volatile int idleTimeoutSecs = 60;
+
+  @Before
+  public void init() {
+    discoveryService = new InMemoryDiscoveryService();
+
+    // A server that responds to every request right away, without waiting for the request body
+    serverBootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(),
+                                                                            Executors.newCachedThreadPool()));
+    serverBootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() throws Exception {
+        return Channels.pipeline(new HttpRequestDecoder(), new HttpResponseEncoder(), new ServerHandler());
+      }
+    });
+    Channel serverChannel = serverBootstrap.bind(new InetSocketAddress("localhost", 0));
+    channelGroup.add(serverChannel);
+
+    final InetSocketAddress serverAddress = (InetSocketAddress) serverChannel.getLocalAddress();
+    Discoverable serverDiscoverable = new Discoverable() {
+      @Override
+      public String getName() {
+        return SERVICE_NAME;
+      }
+
+      @Override
+      public InetSocketAddress getSocketAddress() {
+        return serverAddress;
+      }
+    };
+    cancelDiscovery = discoveryService.register(serverDiscoverable);
+    discoverable = new WrappedDiscoverable(serverDiscoverable);
+
+    // Inbound channels are in-VM channels that collect the responses forwarded to them
+    inboundServerBootstrap = new ServerBootstrap(new DefaultLocalServerChannelFactory());
+    inboundServerBootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() throws Exception {
+        return Channels.pipeline(new SimpleChannelUpstreamHandler() {
+          @Override
+          public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            responses.add((ChannelBuffer) e.getMessage());
+          }
+        });
+      }
+    });
+    channelGroup.add(inboundServerBootstrap.bind(new LocalAddress("inbound")));
+    inboundClientBootstrap = new ClientBootstrap(new DefaultLocalClientChannelFactory());
+    inboundClientBootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() throws Exception {
+        return Channels.pipeline(new SimpleChannelUpstreamHandler());
+      }
+    });
+
+    // Same pipeline as the client pipeline of the router
+    timer = new HashedWheelTimer();
+    clientBootstrap = new ClientBootstrap(new NioClientSocketChannelFactory(Executors.newCachedThreadPool(),
+                                                                            Executors.newCachedThreadPool()));
+    clientBootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() throws Exception {
+        ChannelPipeline pipeline = Channels.pipeline();
+        pipeline.addLast("outbound-handler", new OutboundHandler());
+        pipeline.addLast("http-codec", new HttpClientCodec());
+        pipeline.addLast("idle-event-generator", new IdleStateHandler(timer, 0, 0, idleTimeoutSecs));
+        pipeline.addLast("idle-event-processor", new IdleEventProcessor(connectionPool));
+        return pipeline;
+      }
+    });
+    connectionPool = new OutboundConnectionPool(clientBootstrap, discoveryService, 2, null);
+  }
+
+  @After
+  public void finish() {
+    connectionPool.close();
+    channelGroup.close().awaitUninterruptibly();
+    clientBootstrap.releaseExternalResources();
+    inboundClientBootstrap.releaseExternalResources();
+    inboundServerBootstrap.releaseExternalResources();
+    serverBootstrap.releaseExternalResources();
+    timer.stop();
+  }
+
+  @Test
+  public void testReuse() throws Exception {
+    Channel inboundChannel = connectInbound();
+    Channel channel = acquire(inboundChannel);
+    sendRequest(channel, true);
+    waitForRelease(channel, inboundChannel);
+
+    // The released connection is used by the next request, also from a different inbound channel
+    Channel otherInboundChannel = connectInbound();
+    Assert.assertSame(channel, acquire(otherInboundChannel));
+    Assert.assertTrue(connectionPool.isBound(channel, otherInboundChannel));
+    sendRequest(channel, true);
+    waitForRelease(channel, otherInboundChannel);
+
+    Assert.assertEquals(1, connectionPool.getHits());
+    Assert.assertEquals(1, connectionPool.getMisses());
+  }
+
+  @Test
+  public void testRelease() throws Exception {
+    Channel inboundChannel = connectInbound();
+    Channel channel = acquire(inboundChannel);
+
+    // A connection is not shared while it is bound
+    Channel otherInboundChannel = connectInbound();
+    Channel otherChannel = acquire(otherInboundChannel);
+    Assert.assertNotSame(channel, otherChannel);
+    Assert.assertEquals(2, connectionPool.getMisses());
+
+    // The response completes before the request is fully written. The connection is released only after that.
+    HttpRequest request = createRequest(true);
+    request.setChunked(true);
+    request.setHeader(HttpHeaders.Names.TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+    channel.write(request);
+    Assert.assertNotNull(responses.poll(10, TimeUnit.SECONDS));
+    Assert.assertTrue(connectionPool.isBound(channel, inboundChannel));
+
+    channel.write(new DefaultHttpChunk(ChannelBuffers.copiedBuffer("body", CharsetUtil.UTF_8)));
+    channel.write(HttpChunk.LAST_CHUNK);
+    waitForRelease(channel, inboundChannel);
+
+    // A connection that is closed after the exchange is not released to the pool
+    sendRequest(otherChannel, false);
+    Assert.assertTrue(otherChannel.getCloseFuture().await(10, TimeUnit.SECONDS));
+    Assert.assertSame(channel, acquire(otherInboundChannel));
+    Assert.assertNotSame(channel, acquire(inboundChannel));
+    Assert.assertEquals(1, connectionPool.getHits());
+    Assert.assertEquals(3, connectionPool.getMisses());
+  }
+
+  @Test
+  public void testHeadRequest() throws Exception {
+    Channel inboundChannel = connectInbound();
+    Channel channel = acquire(inboundChannel);
+
+    // The response to a HEAD request has a Content-Length, but no body
+    channel.write(createRequest(HttpMethod.HEAD, true));
+    waitForRelease(channel, inboundChannel);
+
+    sendRequest(acquire(inboundChannel), true);
+    waitForRelease(channel, inboundChannel);
+    Assert.assertEquals(1, connectionPool.getHits());
+    Assert.assertEquals(1, connectionPool.getMisses());
+  }
+
+  @Test
+  public void testIdleWhileAcquired() throws Exception {
+    idleTimeoutSecs = 1;
+
+    Channel inboundChannel = connectInbound();
+    Channel channel = acquire(inboundChannel);
+    sendRequest(channel, true);
+    waitForRelease(channel, inboundChannel);
+
+    // A connection that is handed out is not closed by the idle timeout before the request is written
+    Assert.assertSame(channel, acquire(inboundChannel));
+    TimeUnit.MILLISECONDS.sleep(2500);
+    Assert.assertTrue(channel.isConnected());
+    sendRequest(channel, true);
+    waitForRelease(channel, inboundChannel);
+  }
+
+  @Test
+  public void testIdleClose() throws Exception {
+    idleTimeoutSecs = 1;
+
+    Channel inboundChannel = connectInbound();
+    Channel channel = acquire(inboundChannel);
+    sendRequest(channel, true);
+    waitForRelease(channel, inboundChannel);
+
+    // The pooled connection is closed once it is idle for too long, and is not used anymore
+    Assert.assertTrue(channel.getCloseFuture().await(10, TimeUnit.SECONDS));
+    Assert.assertNotSame(channel, acquire(inboundChannel));
+    Assert.assertEquals(0, connectionPool.getHits());
+    Assert.assertEquals(2, connectionPool.getMisses());
+  }
+
+  @Test
+  public void testDiscoveryChange() throws Exception {
+    Channel inboundChannel = connectInbound();
+    Channel channel = acquire(inboundChannel);
+    sendRequest(channel, true);
+    waitForRelease(channel, inboundChannel);
+
+    // The pooled connection is closed once the endpoint is no longer discoverable
+    cancelDiscovery.cancel();
+    Assert.assertTrue(channel.getCloseFuture().await(10, TimeUnit.SECONDS));
+
+    // The endpoint is discoverable again, and a new connection is made to it
+    cancelDiscovery = discoveryService.register(new Discoverable() {
+      @Override
+      public String getName() {
+        return SERVICE_NAME;
+      }
+
+      @Override
+      public InetSocketAddress getSocketAddress() {
+        return discoverable.getSocketAddress();
+      }
+    });
+    Assert.assertNotSame(channel, acquire(inboundChannel));
+    Assert.assertEquals(0, connectionPool.getHits());
+    Assert.assertEquals(2, connectionPool.getMisses());
+  }
+
+  private Channel connectInbound() {
+    ChannelFuture future = inboundClientBootstrap.connect(new LocalAddress("inbound")).awaitUninterruptibly();
+    Assert.assertTrue(future.isSuccess());
+    channelGroup.add(future.getChannel());
+    return future.getChannel();
+  }
+
+  private Channel acquire(Channel inboundChannel) {
+    ChannelFuture future = connectionPool.acquire(discoverable, inboundChannel).awaitUninterruptibly();
+    Assert.assertTrue(future.isSuccess());
+    channelGroup.add(future.getChannel());
+    return future.getChannel();
+  }
+
+  private HttpRequest createRequest(boolean keepAlive) {
+    return createRequest(HttpMethod.GET, keepAlive);
+  }
+
+  private HttpRequest createRequest(HttpMethod method, boolean keepAlive) {
+    HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, "/ping");
+    request.setHeader(HttpHeaders.Names.HOST, discoverable.getSocketAddress().getHostName());
+    if (!keepAlive) {
+      request.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+    }
+    return request;
+  }
+
+  private void sendRequest(Channel channel, boolean keepAlive) {
+    channel.write(createRequest(keepAlive));
+  }
+
+  private void waitForRelease(final Channel channel, final Channel inboundChannel) throws Exception {
+    Tasks.waitFor(false, new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return connectionPool.isBound(channel, inboundChannel);
+      }
+    }, 10, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Responds to every request with an empty response, and closes the connection afterwards if the request
+   * does not allow keep-alive. The response to a HEAD request carries the Content-Length of a non-empty body.
+   */
+  private final class ServerHandler extends SimpleChannelUpstreamHandler {
+
+    @Override
+    public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+      channelGroup.add(e.getChannel());
+      super.channelOpen(ctx, e);
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+      if (!(e.getMessage() instanceof HttpRequest)) {
+        // Ignore the request body
+        return;
+      }
+      HttpRequest request = (HttpRequest) e.getMessage();
+      boolean keepAlive = HttpHeaders.isKeepAlive(request);
+      HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+      HttpHeaders.setContentLength(response, HttpMethod.HEAD.equals(request.getMethod()) ? 4 : 0);
+      if (!keepAlive) {
+        response.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+      }
+      ChannelFuture future = e.getChannel().write(response);
+      if (!keepAlive) {
+        future.addListener(ChannelFutureListener.CLOSE);
+      }
+    }
+  }
+}
@@ -110,6 +110,7 @@ public class UpgradeTool {
   private final ExistingEntitySystemMetadataWriter existingEntitySystemMetadataWriter;
   private final DatasetServiceManager datasetServiceManager;
   private final NamespaceStore nsStore;
+  private final DefaultStore store;
 
   /**
    * Set of Action available in this tool.
@@ -122,6 +123,7 @@ public class UpgradeTool {
               "  3. System metadata for all existing entities\n" +
               "  4. Metadata indexes for all existing metadata\n" +
               "  5. Any metadata that may have left behind for deleted datasets (This metadata will be removed).\n" +
+              "  6. Run record time index for all existing run records\n" +
               "  Note: Once you run the upgrade tool you cannot rollback to the previous version."),
     UPGRADE_HBASE("After an HBase upgrade, updates the coprocessor jars of all user and \n" +
                     "system HBase tables to a version that is compatible with the new HBase \n" +
@@ -152,6 +154,7 @@ public class UpgradeTool {
     this.dsSpecUpgrader = injector.getInstance(DatasetSpecificationUpgrader.class);
     this.queueAdmin = injector.getInstance(QueueAdmin.class);
     this.nsStore = injector.getInstance(NamespaceStore.class);
+    this.store = injector.getInstance(DefaultStore.class);
 
     Runtime.getRuntime().addShutdownHook(new Thread() {
       @Override
@@ -388,6 +391,8 @@ public class UpgradeTool {
       metadataStore.deleteAllIndexes();
       LOG.info("Re-building metadata indexes...");
       metadataStore.rebuildIndexes();
+      LOG.info("Building run record time index...");
+      store.buildRunTimeIndex();
     } finally {
       datasetServiceManager.shutDown();
     }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -39,7 +39,12 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Type;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Common implementation of the the {@link NotificationService} that handles the subscriptions to all the notification
@@ -48,18 +53,34 @@ import java.util.concurrent.Executor;
 public abstract class AbstractNotificationService extends UncaughtExceptionIdleService implements NotificationService {
   private static final Logger LOG = LoggerFactory.getLogger(InMemoryNotificationService.class);
 
+  // Gson is thread safe, hence the same instance is used to encode and decode all notifications
+  private static final Gson GSON = new GsonBuilder().enableComplexMapKeySerialization().create();
+
   private final Multimap<Id.NotificationFeed, NotificationCaller<?>> subscribers;
 
   private final DatasetFramework dsFramework;
   private final TransactionSystemClientService transactionSystemClient;
   private final NotificationFeedManager feedManager;
+  private final int maxPendingPerSubscriber;
 
   protected AbstractNotificationService(DatasetFramework dsFramework,
                                         TransactionSystemClientService transactionSystemClient,
                                         NotificationFeedManager feedManager) {
+    this(dsFramework, transactionSystemClient, feedManager, 0);
+  }
+
+  /**
+   * @param maxPendingPerSubscriber maximum number of notifications that can be waiting on the executor of a
+   *                                subscriber. Once reached, {@link #notificationReceived} blocks until the
+   *                                subscriber catches up. Zero or a negative value means no limit.
+   */
+  protected AbstractNotificationService(DatasetFramework dsFramework,
+                                        TransactionSystemClientService transactionSystemClient,
+                                        NotificationFeedManager feedManager, int maxPendingPerSubscriber) {
     this.dsFramework = dsFramework;
     this.transactionSystemClient = transactionSystemClient;
     this.feedManager = feedManager;
+    this.maxPendingPerSubscriber = maxPendingPerSubscriber;
     this.subscribers = Multimaps.synchronizedMultimap(
       HashMultimap.<Id.NotificationFeed, NotificationCaller<?>>create());
   }
@@ -74,14 +95,14 @@ public abstract class AbstractNotificationService extends UncaughtExceptionIdleS
     transactionSystemClient.stopAndWait();
   }
 
-  protected Gson createGson() {
-    return new GsonBuilder()
-      .enableComplexMapKeySerialization()
-      .create();
+  protected Gson getGson() {
+    return GSON;
   }
 
   /**
    * Called when a notification is received on a feed, to push it to all the handlers that subscribed to the feed.
+   * The notification is decoded once for each notification type, hence handlers of the same type share the
+   * decoded notification.
    *
    * @param feed {@link Id.NotificationFeed} of the notification
    * @param notificationJson notification as a json object
@@ -92,10 +113,22 @@ public abstract class AbstractNotificationService extends UncaughtExceptionIdleS
     synchronized (subscribers) {
       callers = ImmutableList.copyOf(callers);
     }
+    if (callers.isEmpty()) {
+      // Other processes subscribed to the feed
+      return;
+    }
+
+    Map<Type, Object> notifications = new HashMap<>();
+    NotificationContext context = new BasicNotificationContext(Id.Namespace.from(feed.getNamespaceId()),
+                                                               dsFramework, transactionSystemClient);
     for (NotificationCaller caller : callers) {
-      Object notification = createGson().fromJson(notificationJson, caller.getNotificationType());
-      Id.Namespace namespaceId = Id.Namespace.from(feed.getNamespaceId());
-      caller.received(notification, new BasicNotificationContext(namespaceId, dsFramework, transactionSystemClient));
+      Type type = caller.getNotificationType();
+      Object notification = notifications.get(type);
+      if (notification == null) {
+        notification = GSON.fromJson(notificationJson, type);
+        notifications.put(type, notification);
+      }
+      caller.received(notification, context);
     }
   }
 
@@ -117,7 +150,7 @@ public abstract class AbstractNotificationService extends UncaughtExceptionIdleS
     // This call will make sure that the feed exists
     feedManager.getFeed(feed);
 
-    NotificationCaller<N> caller = new NotificationCaller<>(feed, handler, executor);
+    NotificationCaller<N> caller = new NotificationCaller<>(feed, handler, executor, maxPendingPerSubscriber);
     subscribers.put(feed, caller);
     return caller;
   }
@@ -129,7 +162,8 @@ public abstract class AbstractNotificationService extends UncaughtExceptionIdleS
 
   /**
    * Wrapper around a {@link NotificationHandler}, containing a reference to a {@link NotificationHandler}
-   * and a {@link Id.NotificationFeed}.
+   * and a {@link Id.NotificationFeed}. It limits the number of notifications waiting on the executor of the
+   * handler, if a maximum is set.
    *
    * @param <N> Type of the Notification to handle
    */
@@ -137,12 +171,14 @@ public abstract class AbstractNotificationService extends UncaughtExceptionIdleS
     private final Id.NotificationFeed feed;
     private final NotificationHandler<N> handler;
     private final Executor executor;
+    private final Semaphore pending;
     private volatile boolean completed;
 
-    NotificationCaller(Id.NotificationFeed feed, NotificationHandler<N> handler, Executor executor) {
+    NotificationCaller(Id.NotificationFeed feed, NotificationHandler<N> handler, Executor executor, int maxPending) {
       this.feed = feed;
       this.handler = handler;
       this.executor = executor;
+      this.pending = maxPending > 0 ? new Semaphore(maxPending) : null;
     }
 
     @Override
@@ -152,23 +188,59 @@ public abstract class AbstractNotificationService extends UncaughtExceptionIdleS
 
     @Override
     public void received(final N notification, final NotificationContext notificationContext) {
-      if (completed) {
+      if (completed || !acquire()) {
         return;
       }
-      executor.execute(new Runnable() {
-        @Override
-        public void run() {
-          if (completed) {
-            return;
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              if (completed) {
+                return;
+              }
+              handler.received(notification, notificationContext);
+            } catch (Throwable t) {
+              LOG.warn("Notification {} on feed {} could not be processed successfully by handler {}",
+                       notification, feed, handler, t);
+            } finally {
+              release();
+            }
           }
-          try {
-            handler.received(notification, notificationContext);
-          } catch (Throwable t) {
-            LOG.warn("Notification {} on feed {} could not be processed successfully by handler {}",
-                     notification, feed, handler, t);
+        });
+      } catch (RejectedExecutionException e) {
+        release();
+        throw e;
+      }
+    }
+
+    /**
+     * Waits until the handler has room for one more notification.
+     *
+     * @return {@code false} if the subscription got cancelled or the thread interrupted while waiting
+     */
+    private boolean acquire() {
+      if (pending == null) {
+        return true;
+      }
+      try {
+        while (!pending.tryAcquire(1, TimeUnit.SECONDS)) {
+          if (completed) {
+            return false;
           }
+          LOG.debug("Handler {} of feed {} is slow, waiting to deliver notifications", handler, feed);
         }
-      });
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+
+    private void release() {
+      if (pending != null) {
+        pending.release();
+      }
     }
 
     @Override
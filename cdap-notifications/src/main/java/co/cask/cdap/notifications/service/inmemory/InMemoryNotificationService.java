@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -66,7 +66,7 @@ public class InMemoryNotificationService extends AbstractNotificationService {
     return executorService.submit(new Callable<N>() {
       @Override
       public N call() throws Exception {
-        notificationReceived(feed, createGson().toJsonTree(notification, notificationType));
+        notificationReceived(feed, getGson().toJsonTree(notification, notificationType));
         return notification;
       }
     });
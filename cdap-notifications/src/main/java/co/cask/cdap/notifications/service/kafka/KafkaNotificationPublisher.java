@@ -0,0 +1,242 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.notifications.service.kafka;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.notifications.service.NotificationException;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.twill.kafka.client.KafkaPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Publishes encoded notifications to Kafka in batches. Notifications are queued by {@link #publish}, and a single
+ * thread takes the queued notifications, waiting up to a linger time for more to arrive, and sends them with one
+ * request per topic. Requests are sent one at a time, so the notifications of the same topic are published in the
+ * order of the calls to {@link #publish}.
+ */
+final class KafkaNotificationPublisher extends AbstractExecutionThreadService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(KafkaNotificationPublisher.class);
+  private static final long POLL_MILLIS = 100;
+
+  private final KafkaPublisher kafkaPublisher;
+  private final int batchSize;
+  private final long lingerMillis;
+  private final BlockingQueue<PendingNotification<?>> queue;
+  private final MetricsContext metricsContext;
+
+  KafkaNotificationPublisher(KafkaPublisher kafkaPublisher, int batchSize, long lingerMillis,
+                             @Nullable MetricsContext metricsContext) {
+    this.kafkaPublisher = kafkaPublisher;
+    this.batchSize = Math.max(batchSize, 1);
+    this.lingerMillis = Math.max(lingerMillis, 0L);
+    this.queue = new LinkedBlockingQueue<>();
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Queues an encoded notification for publishing.
+   *
+   * @param topic the Kafka topic to publish to
+   * @param messageKey the key of the Kafka message
+   * @param payload the encoded notification
+   * @param notification the notification, which the returned future is completed with
+   * @return a future that completes when the notification is published
+   */
+  <N> ListenableFuture<N> publish(String topic, String messageKey, ByteBuffer payload, N notification) {
+    if (!isRunning()) {
+      return Futures.immediateFailedFuture(new NotificationException("Notification publisher is not running"));
+    }
+    PendingNotification<N> pending = new PendingNotification<>(topic, messageKey, payload, notification);
+    queue.add(pending);
+    // The publisher may have stopped after the check, without seeing the notification
+    if (!isRunning() && queue.remove(pending)) {
+      pending.fail(new NotificationException("Notification publisher is not running"));
+    }
+    return pending.getFuture();
+  }
+
+  @Override
+  protected void run() throws Exception {
+    List<PendingNotification<?>> batch = new ArrayList<>(batchSize);
+    while (isRunning()) {
+      PendingNotification<?> first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      if (first == null) {
+        continue;
+      }
+      batch.add(first);
+      queue.drainTo(batch, batchSize - batch.size());
+
+      // Wait a bit for more notifications if the batch is not full yet
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+      while (batch.size() < batchSize) {
+        long remaining = deadline - System.nanoTime();
+        PendingNotification<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+        if (next == null) {
+          break;
+        }
+        batch.add(next);
+        queue.drainTo(batch, batchSize - batch.size());
+      }
+
+      gauge(Constants.Metrics.Name.Notification.PUBLISH_QUEUE_SIZE, queue.size());
+      send(batch);
+      batch.clear();
+    }
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    List<PendingNotification<?>> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    for (PendingNotification<?> pending : remaining) {
+      pending.fail(new NotificationException("Notification publisher stopped before publishing"));
+    }
+  }
+
+  @Override
+  protected String getServiceName() {
+    return "notification-publisher";
+  }
+
+  /**
+   * Sends the given notifications with one request per topic, in the order of the first notification of each topic,
+   * and waits for each request to complete before sending the next one.
+   */
+  private void send(List<PendingNotification<?>> batch) {
+    Map<String, List<PendingNotification<?>>> topics = new LinkedHashMap<>();
+    for (PendingNotification<?> pending : batch) {
+      List<PendingNotification<?>> notifications = topics.get(pending.topic);
+      if (notifications == null) {
+        notifications = new ArrayList<>();
+        topics.put(pending.topic, notifications);
+      }
+      notifications.add(pending);
+    }
+
+    for (Map.Entry<String, List<PendingNotification<?>>> entry : topics.entrySet()) {
+      List<PendingNotification<?>> notifications = entry.getValue();
+      ListenableFuture<Integer> sendFuture;
+      try {
+        KafkaPublisher.Preparer preparer = kafkaPublisher.prepare(entry.getKey());
+        for (PendingNotification<?> pending : notifications) {
+          preparer.add(pending.payload, pending.messageKey);
+        }
+        sendFuture = preparer.send();
+      } catch (Throwable t) {
+        sendFuture = Futures.immediateFailedFuture(t);
+      }
+      complete(notifications, sendFuture);
+    }
+  }
+
+  /**
+   * Waits for the result of sending the given notifications, and completes their futures with it.
+   */
+  private void complete(List<PendingNotification<?>> notifications, ListenableFuture<Integer> sendFuture) {
+    Throwable failure = null;
+    try {
+      sendFuture.get();
+    } catch (ExecutionException e) {
+      failure = e.getCause();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = e;
+    } catch (Throwable t) {
+      failure = t;
+    }
+
+    long now = System.currentTimeMillis();
+    long latency = 0L;
+    for (PendingNotification<?> pending : notifications) {
+      latency += now - pending.queueTime;
+      if (failure == null) {
+        pending.succeed();
+      } else {
+        pending.fail(new NotificationException(failure));
+      }
+    }
+    if (failure != null) {
+      LOG.debug("Failed to publish {} notifications", notifications.size(), failure);
+    }
+    increment(Constants.Metrics.Name.Notification.PUBLISH_COUNT, notifications.size());
+    increment(Constants.Metrics.Name.Notification.PUBLISH_LATENCY_MILLIS, latency);
+  }
+
+  private void increment(String metricName, long delta) {
+    if (metricsContext != null) {
+      metricsContext.increment(metricName, delta);
+    }
+  }
+
+  private void gauge(String metricName, long value) {
+    if (metricsContext != null) {
+      metricsContext.gauge(metricName, value);
+    }
+  }
+
+  /**
+   * A notification waiting to be published.
+   *
+   * @param <N> type of the notification
+   */
+  private static final class PendingNotification<N> {
+    private final String topic;
+    private final String messageKey;
+    private final ByteBuffer payload;
+    private final N notification;
+    private final long queueTime;
+    private final SettableFuture<N> future;
+
+    PendingNotification(String topic, String messageKey, ByteBuffer payload, N notification) {
+      this.topic = topic;
+      this.messageKey = messageKey;
+      this.payload = payload;
+      this.notification = notification;
+      this.queueTime = System.currentTimeMillis();
+      this.future = SettableFuture.create();
+    }
+
+    ListenableFuture<N> getFuture() {
+      return future;
+    }
+
+    void succeed() {
+      future.set(notification);
+    }
+
+    void fail(Throwable cause) {
+      future.setException(cause);
+    }
+  }
+}
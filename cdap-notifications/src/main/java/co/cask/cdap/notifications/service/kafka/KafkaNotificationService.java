@@ -16,6 +16,8 @@
 
 package co.cask.cdap.notifications.service.kafka;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
@@ -28,13 +30,11 @@ import co.cask.cdap.notifications.service.NotificationException;
 import co.cask.cdap.notifications.service.NotificationHandler;
 import co.cask.cdap.notifications.service.NotificationService;
 import co.cask.cdap.proto.Id;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Inject;
 import org.apache.twill.common.Cancellable;
-import org.apache.twill.common.Threads;
 import org.apache.twill.kafka.client.Compression;
 import org.apache.twill.kafka.client.FetchedMessage;
 import org.apache.twill.kafka.client.KafkaClient;
@@ -49,10 +49,7 @@ import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * Kafka implementation of the {@link NotificationService}.
@@ -64,70 +61,71 @@ public class KafkaNotificationService extends AbstractNotificationService {
   private final NotificationFeedManager feedManager;
   private final KafkaPublisher.Ack ack;
 
-  private final Map<TopicPartition, KafkaNotificationsCallback> kafkaCallbacks;
+  // One Kafka consumer per topic, shared by all the subscriptions to the feeds of the topic
+  private final Map<String, KafkaNotificationsCallback> kafkaCallbacks;
   private KafkaPublisher kafkaPublisher;
   private final int nbPartitions;
   private final String notificationTopic;
+  private final int publishBatchSize;
+  private final long publishLingerMillis;
 
-  // Executor to publish notifications to Kafka
-  private ListeningExecutorService publishingExecutor;
+  private MetricsContext metricsContext;
+
+  // Publishes notifications to Kafka in batches
+  private KafkaNotificationPublisher notificationPublisher;
 
   @Inject
   KafkaNotificationService(CConfiguration cConf, KafkaClient kafkaClient, DatasetFramework dsFramework,
                            TransactionSystemClientService transactionSystemClient,
                            NotificationFeedManager feedManager) {
-    super(dsFramework, transactionSystemClient, feedManager);
+    super(dsFramework, transactionSystemClient, feedManager,
+          cConf.getInt(Constants.Notification.SUBSCRIBER_MAX_PENDING));
     this.kafkaClient = kafkaClient;
     this.feedManager = feedManager;
     this.ack = KafkaPublisher.Ack.LEADER_RECEIVED;
     this.nbPartitions = cConf.getInt("kafka.num.partitions");
     this.notificationTopic = cConf.get(Constants.Notification.KAFKA_TOPIC);
+    this.publishBatchSize = cConf.getInt(Constants.Notification.KAFKA_PUBLISH_BATCH_SIZE);
+    this.publishLingerMillis = cConf.getLong(Constants.Notification.KAFKA_PUBLISH_LINGER_MS);
     this.kafkaCallbacks = Maps.newHashMap();
+  }
 
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsContext = metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId()));
   }
 
   @Override
   protected void startUp() throws Exception {
     super.startUp();
     kafkaPublisher = kafkaClient.getPublisher(ack, Compression.SNAPPY);
-    publishingExecutor = MoreExecutors.listeningDecorator(
-      Executors.newSingleThreadExecutor(Threads.createDaemonThreadFactory("notification-publisher-%d")));
+    notificationPublisher = new KafkaNotificationPublisher(kafkaPublisher, publishBatchSize, publishLingerMillis,
+                                                           metricsContext);
+    notificationPublisher.startAndWait();
   }
 
   @Override
   protected void shutDown() throws Exception {
-    publishingExecutor.shutdownNow();
+    notificationPublisher.stopAndWait();
     super.shutDown();
   }
 
   @Override
-  public <N> ListenableFuture<N> publish(final Id.NotificationFeed feed, final N notification,
-                                         final Type notificationType)
+  public <N> ListenableFuture<N> publish(Id.NotificationFeed feed, N notification, Type notificationType)
     throws NotificationException {
     LOG.trace("Publishing on notification feed [{}]: {}", feed, notification);
-    return publishingExecutor.submit(new Callable<N>() {
-      @Override
-      public N call() throws Exception {
-        try {
-          KafkaMessage message = new KafkaMessage(KafkaNotificationUtils.getMessageKey(feed),
-                                                  createGson().toJsonTree(notification, notificationType));
-          ByteBuffer bb = KafkaMessageCodec.encode(message);
-
-          TopicPartition topicPartition = KafkaNotificationUtils.getKafkaTopicPartition(notificationTopic, feed);
-          KafkaPublisher.Preparer preparer = kafkaPublisher.prepare(topicPartition.getTopic());
-          preparer.add(bb, message.getMessageKey());
-
-          try {
-            preparer.send().get();
-            return notification;
-          } catch (ExecutionException e) {
-            throw new NotificationException(e.getCause());
-          }
-        } catch (IOException e) {
-          throw new NotificationException(e);
-        }
-      }
-    });
+    // Encode in the caller thread, so that the publisher thread only has to batch and send
+    KafkaMessage message = new KafkaMessage(KafkaNotificationUtils.getMessageKey(feed),
+                                            getGson().toJsonTree(notification, notificationType));
+    ByteBuffer bb;
+    try {
+      bb = KafkaMessageCodec.encode(message);
+    } catch (IOException e) {
+      throw new NotificationException(e);
+    }
+    TopicPartition topicPartition = KafkaNotificationUtils.getKafkaTopicPartition(notificationTopic, feed);
+    return notificationPublisher.publish(topicPartition.getTopic(), message.getMessageKey(), bb, notification);
   }
 
   @Override
@@ -137,14 +135,14 @@ public class KafkaNotificationService extends AbstractNotificationService {
     // This call will make sure that the feed exists
     feedManager.getFeed(feed);
 
-    final TopicPartition topicPartition = KafkaNotificationUtils.getKafkaTopicPartition(notificationTopic, feed);
+    String topic = KafkaNotificationUtils.getKafkaTopicPartition(notificationTopic, feed).getTopic();
 
     synchronized (this) {
-      KafkaNotificationsCallback kafkaCallback = kafkaCallbacks.get(topicPartition);
+      KafkaNotificationsCallback kafkaCallback = kafkaCallbacks.get(topic);
       if (kafkaCallback == null) {
-        LOG.debug("Creating new Kafka notification callback for topic-partition {}", topicPartition);
-        kafkaCallback = new KafkaNotificationsCallback(topicPartition);
-        kafkaCallbacks.put(topicPartition, kafkaCallback);
+        LOG.debug("Creating new Kafka notification callback for topic {}", topic);
+        kafkaCallback = new KafkaNotificationsCallback(topic);
+        kafkaCallbacks.put(topic, kafkaCallback);
       }
       return kafkaCallback.subscribe(feed, handler, executor);
     }
@@ -154,19 +152,19 @@ public class KafkaNotificationService extends AbstractNotificationService {
    * Callback class called when a Kafka message is received. The {@link #onReceived} method will
    * extract the feed ID of the message received, and pass the notification encoded in the message
    * to all handlers that are interested in that feed, using the {@code delegate} in-memory notification
-   * service.
-   * One callback is created per TopicPartition. It is created by the first subscription to a feed
-   * which maps to the TopicPartition.
+   * service. Messages of feeds without subscribers in this process are skipped without being decoded further.
+   * One callback, with its Kafka consumer, is created per topic. It is created by the first subscription to a feed
+   * which maps to the topic, and stopped when the last subscription to the feeds of the topic is cancelled.
    */
   private final class KafkaNotificationsCallback implements KafkaConsumer.MessageCallback {
 
-    private final TopicPartition topicPartition;
+    private final String topic;
     private int subscriptions;
 
     private Cancellable kafkaSubscription;
 
-    private KafkaNotificationsCallback(TopicPartition topicPartition) {
-      this.topicPartition = topicPartition;
+    private KafkaNotificationsCallback(String topic) {
+      this.topic = topic;
     }
 
     public <N> Cancellable subscribe(Id.NotificationFeed feed, NotificationHandler<N> handler,
@@ -184,7 +182,7 @@ public class KafkaNotificationService extends AbstractNotificationService {
             // For now, subscribe to all the partitions, because we don't know exactly to what
             // partition the feed will be mapped to. Twill does not expose the possibility to choose
             // a partitioner.
-            preparer.addLatest(topicPartition.getTopic(), i);
+            preparer.addLatest(topic, i);
           }
           kafkaSubscription = preparer.consume(this);
         }
@@ -199,7 +197,7 @@ public class KafkaNotificationService extends AbstractNotificationService {
             subscriptions--;
             if (subscriptions == 0) {
               kafkaSubscription.cancel();
-              kafkaCallbacks.remove(topicPartition);
+              kafkaCallbacks.remove(topic);
             }
           }
         }
@@ -233,7 +231,7 @@ public class KafkaNotificationService extends AbstractNotificationService {
 
     @Override
     public void finished() {
-      LOG.info("Subscription to topic partition {} finished.", topicPartition);
+      LOG.info("Subscription to topic {} finished.", topic);
     }
   }
 }
@@ -318,6 +318,58 @@ public abstract class NotificationTest {
                ImmutableSet.of(FEED1), 1, SimpleNotification.class, Functions.<SimpleNotification>identity());
   }
 
+  @Test
+  public void sharedDecodingTest() throws Exception {
+    Assert.assertTrue(feedManager.createFeed(FEED1));
+    try {
+      final Queue<Object> receivedMessages = new ConcurrentLinkedQueue<>();
+      final CountDownLatch latch = new CountDownLatch(3);
+      List<Cancellable> cancellables = Lists.newArrayList();
+      try {
+        for (final Class<?> type : ImmutableList.of(SimpleNotification.class, SimpleNotification.class, Map.class)) {
+          cancellables.add(notificationService.subscribe(FEED1, new NotificationHandler<Object>() {
+            @Override
+            public Type getNotificationType() {
+              return type;
+            }
+
+            @Override
+            public void received(Object notification, NotificationContext notificationContext) {
+              receivedMessages.offer(notification);
+              latch.countDown();
+            }
+          }));
+        }
+        // Short delay for the subscriber to setup the subscription.
+        TimeUnit.MILLISECONDS.sleep(500);
+
+        notificationService.publish(FEED1, new SimpleNotification(0, "shared"));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        // Subscribers of the same type share the decoded notification, while other types get their own
+        List<SimpleNotification> notifications = Lists.newArrayList();
+        int maps = 0;
+        for (Object notification : receivedMessages) {
+          if (notification instanceof SimpleNotification) {
+            notifications.add((SimpleNotification) notification);
+          } else if (notification instanceof Map) {
+            maps++;
+          }
+        }
+        Assert.assertEquals(2, notifications.size());
+        Assert.assertSame(notifications.get(0), notifications.get(1));
+        Assert.assertEquals(new SimpleNotification(0, "shared"), notifications.get(0));
+        Assert.assertEquals(1, maps);
+      } finally {
+        for (Cancellable cancellable : cancellables) {
+          cancellable.cancel();
+        }
+      }
+    } finally {
+      feedManager.deleteFeed(FEED1);
+    }
+  }
+
   /**
    * Testing publishers/subscribers interaction.
    *
@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.notifications.service.kafka;
+
+import co.cask.cdap.notifications.service.NotificationException;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.twill.kafka.client.KafkaPublisher;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link KafkaNotificationPublisher}.
+ */
+public class KafkaNotificationPublisherTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(KafkaNotificationPublisherTest.class);
+
+  @Test
+  public void testBatching() throws Exception {
+    RecordingKafkaPublisher kafkaPublisher = new RecordingKafkaPublisher();
+    // A long linger, so that all notifications end up in the same batch
+    KafkaNotificationPublisher publisher = new KafkaNotificationPublisher(kafkaPublisher, 10, 2000L, null);
+    publisher.startAndWait();
+    try {
+      List<ListenableFuture<String>> futures = Lists.newArrayList();
+      for (int i = 0; i < 10; i++) {
+        String topic = i % 2 == 0 ? "even" : "odd";
+        futures.add(publisher.publish(topic, "key" + i, encode("n" + i), "n" + i));
+      }
+      for (int i = 0; i < 10; i++) {
+        Assert.assertEquals("n" + i, futures.get(i).get(10, TimeUnit.SECONDS));
+      }
+
+      // One request per topic, with the notifications in the order they were published
+      Send even = kafkaPublisher.sends.poll(10, TimeUnit.SECONDS);
+      Send odd = kafkaPublisher.sends.poll(10, TimeUnit.SECONDS);
+      Assert.assertEquals("even", even.topic);
+      Assert.assertEquals(ImmutableList.of("n0", "n2", "n4", "n6", "n8"), even.messages);
+      Assert.assertEquals("odd", odd.topic);
+      Assert.assertEquals(ImmutableList.of("n1", "n3", "n5", "n7", "n9"), odd.messages);
+      Assert.assertTrue(kafkaPublisher.sends.isEmpty());
+    } finally {
+      publisher.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testOrder() throws Exception {
+    RecordingKafkaPublisher kafkaPublisher = new RecordingKafkaPublisher();
+    KafkaNotificationPublisher publisher = new KafkaNotificationPublisher(kafkaPublisher, 3, 0L, null);
+    publisher.startAndWait();
+    try {
+      List<String> expected = Lists.newArrayList();
+      ListenableFuture<String> last = null;
+      for (int i = 0; i < 100; i++) {
+        expected.add("n" + i);
+        last = publisher.publish("topic", "key", encode("n" + i), "n" + i);
+      }
+      Assert.assertEquals("n99", last.get(10, TimeUnit.SECONDS));
+
+      // The notifications are sent in the order they were published, in requests of at most the batch size
+      List<String> sent = Lists.newArrayList();
+      for (Send send : kafkaPublisher.sends) {
+        Assert.assertTrue(send.messages.size() <= 3);
+        sent.addAll(send.messages);
+      }
+      Assert.assertEquals(expected, sent);
+    } finally {
+      publisher.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    RecordingKafkaPublisher kafkaPublisher = new RecordingKafkaPublisher();
+    KafkaNotificationPublisher publisher = new KafkaNotificationPublisher(kafkaPublisher, 1, 0L, null);
+    publisher.startAndWait();
+    try {
+      ListenableFuture<String> failed = publisher.publish("topic", "key", encode("failed"), "failed");
+      ListenableFuture<String> succeeded = publisher.publish("topic", "key", encode("succeeded"), "succeeded");
+
+      try {
+        failed.get(10, TimeUnit.SECONDS);
+        Assert.fail("Expected the publishing to fail");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof NotificationException);
+      }
+      // A failed request does not affect the following ones
+      Assert.assertEquals("succeeded", succeeded.get(10, TimeUnit.SECONDS));
+    } finally {
+      publisher.stopAndWait();
+    }
+
+    // Nothing can be published once stopped
+    try {
+      publisher.publish("topic", "key", encode("stopped"), "stopped").get();
+      Assert.fail("Expected the publishing to fail");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof NotificationException);
+    }
+  }
+
+  @Ignore
+  @Test
+  public void testPublishSpeed() throws Exception {
+    int count = 20000;
+    for (int batchSize : new int[] { 1, 100 }) {
+      KafkaPublisher kafkaPublisher = new KafkaPublisher() {
+        @Override
+        public Preparer prepare(String topic) {
+          return new Preparer() {
+            private int size;
+
+            @Override
+            public Preparer add(ByteBuffer message, Object partitionKey) {
+              size++;
+              return this;
+            }
+
+            @Override
+            public ListenableFuture<Integer> send() {
+              // Simulates the latency of a request to the broker
+              try {
+                TimeUnit.MICROSECONDS.sleep(200);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return Futures.immediateFuture(size);
+            }
+          };
+        }
+      };
+      KafkaNotificationPublisher publisher = new KafkaNotificationPublisher(kafkaPublisher, batchSize, 5L, null);
+      publisher.startAndWait();
+      try {
+        ByteBuffer payload = encode("notification");
+        ListenableFuture<String> last = null;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+          last = publisher.publish("topic", "key", payload.duplicate(), "notification");
+        }
+        last.get();
+        long elapsed = System.nanoTime() - startTime;
+        LOG.info("Batch size {}: {} notifications/second", batchSize,
+                 count * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1L));
+      } finally {
+        publisher.stopAndWait();
+      }
+    }
+  }
+
+  private static ByteBuffer encode(String message) {
+    return Charsets.UTF_8.encode(message);
+  }
+
+  /**
+   * A request sent through the {@link RecordingKafkaPublisher}.
+   */
+  private static final class Send {
+    private final String topic;
+    private final List<String> messages;
+
+    Send(String topic, List<String> messages) {
+      this.topic = topic;
+      this.messages = messages;
+    }
+  }
+
+  /**
+   * A {@link KafkaPublisher} that records the requests sent instead of sending them. Like the publisher of the Kafka
+   * client, requests are completed before {@link KafkaPublisher.Preparer#send()} returns. A request fails if any of
+   * its messages starts with "fail".
+   */
+  private static final class RecordingKafkaPublisher implements KafkaPublisher {
+    private final BlockingQueue<Send> sends = new LinkedBlockingQueue<>();
+
+    @Override
+    public Preparer prepare(final String topic) {
+      return new Preparer() {
+        private final List<String> messages = Lists.newArrayList();
+
+        @Override
+        public Preparer add(ByteBuffer message, Object partitionKey) {
+          messages.add(Charsets.UTF_8.decode(message).toString());
+          return this;
+        }
+
+        @Override
+        public ListenableFuture<Integer> send() {
+          for (String message : messages) {
+            if (message.startsWith("fail")) {
+              return Futures.immediateFailedFuture(new IOException("Broker not available"));
+            }
+          }
+          sends.add(new Send(topic, messages));
+          return Futures.immediateFuture(messages.size());
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.proto.metadata;
+
+import co.cask.cdap.api.annotation.Beta;
+
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Represents a page of metadata search results, along with the cursor to fetch the next page.
+ */
+@Beta
+public class MetadataSearchResponse {
+  private final Set<MetadataSearchResultRecord> results;
+  private final String cursor;
+
+  public MetadataSearchResponse(Set<MetadataSearchResultRecord> results, @Nullable String cursor) {
+    this.results = results;
+    this.cursor = cursor;
+  }
+
+  /**
+   * @return the results of this page, ordered by descending relevance
+   */
+  public Set<MetadataSearchResultRecord> getResults() {
+    return results;
+  }
+
+  /**
+   * @return the cursor to pass to the search to fetch the next page, or {@code null} if there are no more results
+   */
+  @Nullable
+  public String getCursor() {
+    return cursor;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof MetadataSearchResponse)) {
+      return false;
+    }
+    MetadataSearchResponse that = (MetadataSearchResponse) o;
+    return Objects.equals(results, that.results) &&
+      Objects.equals(cursor, that.cursor);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(results, cursor);
+  }
+
+  @Override
+  public String toString() {
+    return "MetadataSearchResponse{" +
+      "results=" + results +
+      ", cursor=" + cursor +
+      '}';
+  }
+}
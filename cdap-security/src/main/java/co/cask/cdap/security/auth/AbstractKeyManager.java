@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.crypto.KeyGenerator;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
@@ -53,6 +54,8 @@ public abstract class AbstractKeyManager extends AbstractIdleService implements
    */
   protected long keyExpirationPeriod = 0;
 
+  private final AtomicLong keysVersion = new AtomicLong();
+
 
   /**
    * An AbstractKeyManager that has common functionality of all keymanagers.
@@ -123,11 +126,24 @@ public abstract class AbstractKeyManager extends AbstractIdleService implements
     KeyIdentifier keyIdentifier =
       new KeyIdentifier(nextKey, nextId, keyExpirationPeriod > 0 ? (now + keyExpirationPeriod) : Long.MAX_VALUE);
     addKey(keyIdentifier);
+    keysChanged();
     this.currentKey = keyIdentifier;
     LOG.info("Changed current key to {}", currentKey);
     return keyIdentifier;
   }
 
+  /**
+   * Subclasses must call this method whenever a key is added or removed other than through {@link #generateKey()}.
+   */
+  protected final void keysChanged() {
+    keysVersion.incrementAndGet();
+  }
+
+  @Override
+  public final long getKeysVersion() {
+    return keysVersion.get();
+  }
+
   @Override
   public final <T> void validateMAC(Codec<T> codec, Signed<T> signedMessage)
     throws InvalidDigestException, InvalidKeyException {
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,24 +16,33 @@
 
 package co.cask.cdap.security.auth;
 
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Codec;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import org.apache.commons.codec.binary.Base64;
 
 import java.io.IOException;
 
 /**
- * It takes the access token and transforms it to Access Token Identifier.
+ * It takes the access token and transforms it to Access Token Identifier. Since the same token is usually sent
+ * with many requests, the results are cached by the token.
  */
 public class AccessTokenTransformer {
   private final Codec<AccessToken> accessTokenCodec;
   private final Codec<AccessTokenIdentifier> accessTokenIdentifierCodec;
+  private final Cache<String, AccessTokenIdentifierPair> transformCache;
 
   @Inject
-  public AccessTokenTransformer(Codec<AccessToken> accessTokenCodec,
+  public AccessTokenTransformer(CConfiguration cConf, Codec<AccessToken> accessTokenCodec,
                                 Codec<AccessTokenIdentifier> accessTokenIdentifierCodec) {
     this.accessTokenCodec = accessTokenCodec;
     this.accessTokenIdentifierCodec = accessTokenIdentifierCodec;
+    this.transformCache = CacheBuilder.newBuilder()
+      .maximumSize(Math.max(cConf.getInt(Constants.Security.TOKEN_VALIDATION_CACHE_SIZE), 0))
+      .build();
   }
 
   /**
@@ -43,12 +52,18 @@ public class AccessTokenTransformer {
    * @throws IOException
    */
   public AccessTokenIdentifierPair transform(String accessToken) throws IOException {
+    AccessTokenIdentifierPair pair = transformCache.getIfPresent(accessToken);
+    if (pair != null) {
+      return pair;
+    }
     byte[] decodedAccessToken = Base64.decodeBase64(accessToken);
     AccessToken accessTokenObj = accessTokenCodec.decode(decodedAccessToken);
     AccessTokenIdentifier accessTokenIdentifierObj = accessTokenObj.getIdentifier();
     byte[] encodedAccessTokenIdentifier = accessTokenIdentifierCodec.encode(accessTokenIdentifierObj);
-    return new AccessTokenIdentifierPair(Base64.encodeBase64String(encodedAccessTokenIdentifier).trim(),
+    pair = new AccessTokenIdentifierPair(Base64.encodeBase64String(encodedAccessTokenIdentifier).trim(),
                                          accessTokenIdentifierObj);
+    transformCache.put(accessToken, pair);
+    return pair;
   }
 
   /**
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,7 +16,12 @@
 
 package co.cask.cdap.security.auth;
 
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Codec;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
 import org.apache.commons.codec.binary.Base64;
@@ -24,20 +29,39 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 /**
  * This class validates the accessToken and returns the different states
  * of accessToken validation.
+ * <p>
+ * Since the same token is usually sent with many requests, the results of validation are cached by the token.
+ * A successful validation is reused until the token expires or the secret keys change, and a failed validation
+ * for a short time.
  */
 public class AccessTokenValidator extends AbstractIdleService implements TokenValidator {
   private static final Logger LOG = LoggerFactory.getLogger(AccessTokenValidator.class);
   private final TokenManager tokenManager;
   private final Codec<AccessToken> accessTokenCodec;
+  @Nullable
+  private final Cache<String, ValidationResult> validationCache;
+  private final long invalidTTL;
 
   @Inject
-  public AccessTokenValidator(TokenManager tokenManager, Codec<AccessToken> accessTokenCodec) {
+  public AccessTokenValidator(CConfiguration cConf, TokenManager tokenManager, Codec<AccessToken> accessTokenCodec) {
+    this(tokenManager, accessTokenCodec, cConf.getInt(Constants.Security.TOKEN_VALIDATION_CACHE_SIZE),
+         cConf.getLong(Constants.Security.TOKEN_VALIDATION_CACHE_INVALID_TTL));
+  }
+
+  @VisibleForTesting
+  AccessTokenValidator(TokenManager tokenManager, Codec<AccessToken> accessTokenCodec,
+                       int cacheSize, long invalidTTL) {
     this.tokenManager = tokenManager;
     this.accessTokenCodec = accessTokenCodec;
+    this.validationCache = cacheSize > 0
+      ? CacheBuilder.newBuilder().maximumSize(cacheSize).<String, ValidationResult>build()
+      : null;
+    this.invalidTTL = invalidTTL;
   }
 
   @Override
@@ -52,17 +76,30 @@ public class AccessTokenValidator extends AbstractIdleService implements TokenVa
 
   @Override
   public TokenState validate(String token) {
-    AccessToken accessToken;
-    TokenState state = TokenState.VALID;
     if (token == null) {
       LOG.debug("Token is missing");
       return TokenState.MISSING;
     }
-    byte[] decodedToken = Base64.decodeBase64(token);
+    // Get the version before validating, so that a change of the keys during validation is detected on next use
+    long keysVersion = tokenManager.getKeysVersion();
+    if (validationCache == null) {
+      return validate(token, keysVersion).getState();
+    }
 
+    ValidationResult result = validationCache.getIfPresent(token);
+    if (result == null || !result.isCurrent(keysVersion, System.currentTimeMillis())) {
+      result = validate(token, keysVersion);
+      validationCache.put(token, result);
+    }
+    return result.getState();
+  }
+
+  private ValidationResult validate(String token, long keysVersion) {
+    TokenState state;
     try {
-      accessToken = accessTokenCodec.decode(decodedToken);
+      AccessToken accessToken = accessTokenCodec.decode(Base64.decodeBase64(token));
       tokenManager.validateSecret(accessToken);
+      return new ValidationResult(TokenState.VALID, keysVersion, accessToken.getIdentifier().getExpireTimestamp());
     } catch (IOException ioe) {
       state = TokenState.INVALID;
       LOG.debug("Unknown Schema version for Access Token. {}", ioe);
@@ -70,6 +107,29 @@ public class AccessTokenValidator extends AbstractIdleService implements TokenVa
       state = ite.getReason();
       LOG.debug("{} {}", state, ite);
     }
-    return state;
+    return new ValidationResult(state, keysVersion, System.currentTimeMillis() + invalidTTL);
+  }
+
+  /**
+   * The result of validating a token, which can be reused until it expires or the secret keys change.
+   */
+  private static final class ValidationResult {
+    private final TokenState state;
+    private final long keysVersion;
+    private final long expiration;
+
+    ValidationResult(TokenState state, long keysVersion, long expiration) {
+      this.state = state;
+      this.keysVersion = keysVersion;
+      this.expiration = expiration;
+    }
+
+    TokenState getState() {
+      return state;
+    }
+
+    boolean isCurrent(long currentKeysVersion, long now) {
+      return keysVersion == currentKeysVersion && now < expiration;
+    }
   }
 }
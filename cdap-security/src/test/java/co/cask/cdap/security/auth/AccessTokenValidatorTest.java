@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.security.auth;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.guice.IOModule;
+import co.cask.cdap.common.io.Codec;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the caching of validation results in {@link AccessTokenValidator}.
+ */
+public class AccessTokenValidatorTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AccessTokenValidatorTest.class);
+  private static final long TOKEN_DURATION = TimeUnit.HOURS.toMillis(1);
+
+  private static Codec<AccessToken> tokenCodec;
+  private static Codec<AccessTokenIdentifier> identifierCodec;
+
+  @BeforeClass
+  public static void init() {
+    Injector injector = Guice.createInjector(new IOModule());
+    tokenCodec = injector.getInstance(AccessTokenCodec.class);
+    identifierCodec = injector.getInstance(AccessTokenIdentifierCodec.class);
+  }
+
+  @Test
+  public void testCache() throws Exception {
+    InMemoryKeyManager keyManager = new InMemoryKeyManager(CConfiguration.create());
+    CountingTokenManager tokenManager = new CountingTokenManager(keyManager, identifierCodec);
+    AccessTokenValidator validator = new AccessTokenValidator(tokenManager, tokenCodec, 100, TOKEN_DURATION);
+    validator.startAndWait();
+    try {
+      Assert.assertEquals(TokenState.MISSING, validator.validate(null));
+
+      long now = System.currentTimeMillis();
+      AccessToken accessToken = tokenManager.signIdentifier(createIdentifier(now + TOKEN_DURATION));
+      String token = encode(accessToken);
+      Assert.assertEquals(TokenState.VALID, validator.validate(token));
+      Assert.assertEquals(TokenState.VALID, validator.validate(token));
+      Assert.assertEquals(1, tokenManager.validations.get());
+
+      // A token with the same identifier but a different digest must not match the cached result
+      byte[] digest = accessToken.getDigestBytes().clone();
+      digest[0]++;
+      String invalidToken = encode(new AccessToken(accessToken.getIdentifier(), accessToken.getKeyId(), digest));
+      Assert.assertEquals(TokenState.INVALID, validator.validate(invalidToken));
+      Assert.assertEquals(TokenState.INVALID, validator.validate(invalidToken));
+      Assert.assertEquals(2, tokenManager.validations.get());
+
+      // A change of the keys invalidates all cached results
+      keyManager.generateKey();
+      Assert.assertEquals(TokenState.VALID, validator.validate(token));
+      Assert.assertEquals(TokenState.INVALID, validator.validate(invalidToken));
+      Assert.assertEquals(4, tokenManager.validations.get());
+
+      // A cached result is not used beyond the expiration of the token
+      String expiringToken = encode(tokenManager.signIdentifier(createIdentifier(System.currentTimeMillis() + 500)));
+      Assert.assertEquals(TokenState.VALID, validator.validate(expiringToken));
+      TimeUnit.MILLISECONDS.sleep(600);
+      Assert.assertEquals(TokenState.EXPIRED, validator.validate(expiringToken));
+    } finally {
+      validator.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testInvalidExpiration() throws Exception {
+    CountingTokenManager tokenManager = new CountingTokenManager(new InMemoryKeyManager(CConfiguration.create()),
+                                                                 identifierCodec);
+    // Failed validations are not reused
+    AccessTokenValidator validator = new AccessTokenValidator(tokenManager, tokenCodec, 100, 0L);
+    validator.startAndWait();
+    try {
+      AccessToken accessToken = tokenManager.signIdentifier(createIdentifier(System.currentTimeMillis() - 1));
+      String token = encode(accessToken);
+      Assert.assertEquals(TokenState.EXPIRED, validator.validate(token));
+      Assert.assertEquals(TokenState.EXPIRED, validator.validate(token));
+      Assert.assertEquals(2, tokenManager.validations.get());
+    } finally {
+      validator.stopAndWait();
+    }
+  }
+
+  @Ignore
+  @Test
+  public void testValidationSpeed() throws Exception {
+    int iterations = 200000;
+    for (int cacheSize : new int[] { 0, 1000 }) {
+      TokenManager tokenManager = new TokenManager(new InMemoryKeyManager(CConfiguration.create()), identifierCodec);
+      AccessTokenValidator validator = new AccessTokenValidator(tokenManager, tokenCodec, cacheSize, 5000L);
+      validator.startAndWait();
+      try {
+        long expiration = System.currentTimeMillis() + TOKEN_DURATION;
+        String token = encode(tokenManager.signIdentifier(createIdentifier(expiration)));
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          Assert.assertEquals(TokenState.VALID, validator.validate(token));
+        }
+        long elapsed = System.nanoTime() - startTime;
+        LOG.info("Cache size {}: {} validations/second", cacheSize,
+                 iterations * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1L));
+      } finally {
+        validator.stopAndWait();
+      }
+    }
+  }
+
+  private AccessTokenIdentifier createIdentifier(long expireTimestamp) {
+    return new AccessTokenIdentifier("user", ImmutableList.of("users"), System.currentTimeMillis(), expireTimestamp);
+  }
+
+  private String encode(AccessToken accessToken) throws IOException {
+    return Base64.encodeBase64String(tokenCodec.encode(accessToken)).trim();
+  }
+
+  /**
+   * A {@link TokenManager} that counts the validations of token secrets.
+   */
+  private static final class CountingTokenManager extends TokenManager {
+    private final AtomicInteger validations = new AtomicInteger();
+
+    CountingTokenManager(KeyManager keyManager, Codec<AccessTokenIdentifier> identifierCodec) {
+      super(keyManager, identifierCodec);
+    }
+
+    @Override
+    public void validateSecret(AccessToken token) throws InvalidTokenException {
+      validations.incrementAndGet();
+      super.validateSecret(token);
+    }
+  }
+}
@@ -17,16 +17,23 @@
 package co.cask.cdap.app.runtime.spark;
 
 import co.cask.cdap.api.common.Bytes;
+import com.google.common.base.Objects;
 import com.google.common.base.Stopwatch;
 import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionCodec;
 import org.apache.tephra.TransactionFailureException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import javax.annotation.Nullable;
@@ -34,11 +41,22 @@ import javax.annotation.Nullable;
 /**
  * Client class to interact with {@link SparkTransactionService} through HTTP. It is used by tasks executed inside
  * executor processes.
+ * <p>
+ * Requests wait on the service for the job of the stage to start, instead of polling. Tasks of the same stage that
+ * ask for the transaction at the same time in an executor process share a single request, and connections are
+ * kept alive to be reused by later requests.
  */
 final class SparkTransactionClient {
 
   private static final TransactionCodec TX_CODEC = new TransactionCodec();
   private static final long DEFAULT_TX_POLL_INTERVAL_MS = 50;
+  // Maximum time for a single request to wait on the service
+  private static final long MAX_WAIT_MS = TimeUnit.SECONDS.toMillis(5);
+  // Extra time to wait for a response, on top of the time the service waits
+  private static final long READ_TIMEOUT_MARGIN_MS = TimeUnit.SECONDS.toMillis(10);
+
+  // Requests in flight in this process, shared by all tasks asking for the transaction of the same stage
+  private static final ConcurrentMap<StageKey, ListenableFuture<Transaction>> IN_FLIGHT = new ConcurrentHashMap<>();
 
   private final URI txServiceBaseURI;
   private final long txPollIntervalMillis;
@@ -68,13 +86,16 @@ final class SparkTransactionClient {
   Transaction getTransaction(int stageId, long timeout,
                              TimeUnit timeUnit) throws TimeoutException, InterruptedException,
                                                        TransactionFailureException {
-    long timeoutMillis = Math.max(0L, timeUnit.toMillis(timeout) - txPollIntervalMillis);
+    long timeoutMillis = timeUnit.toMillis(timeout);
     Stopwatch stopwatch = new Stopwatch().start();
-    Transaction transaction = getTransaction(stageId);
+    Transaction transaction = getTransaction(stageId, Math.min(timeoutMillis, MAX_WAIT_MS));
 
-    while (transaction == null && stopwatch.elapsedMillis() < timeoutMillis) {
-      TimeUnit.MILLISECONDS.sleep(txPollIntervalMillis);
-      transaction = getTransaction(stageId);
+    long elapsed = stopwatch.elapsedMillis();
+    while (transaction == null && elapsed < timeoutMillis) {
+      // The request returns early if the service is not reachable. Don't retry faster than the poll interval.
+      TimeUnit.MILLISECONDS.sleep(Math.min(txPollIntervalMillis, timeoutMillis - elapsed));
+      transaction = getTransaction(stageId, Math.min(timeoutMillis - stopwatch.elapsedMillis(), MAX_WAIT_MS));
+      elapsed = stopwatch.elapsedMillis();
     }
     if (transaction == null) {
       throw new TimeoutException("Cannot get transaction for stage " + stageId + " after " + timeout + " " + timeUnit);
@@ -82,28 +103,113 @@ final class SparkTransactionClient {
     return transaction;
   }
 
+  /**
+   * Gets the {@link Transaction} of the given stage from the service, sharing the request in flight for the same
+   * stage if there is one.
+   *
+   * @param waitMillis the maximum time for the service to wait for the job of the stage to start
+   * @return the {@link Transaction} or {@code null} if it is not available yet
+   */
   @Nullable
-  private Transaction getTransaction(int stageId) throws TransactionFailureException {
-    try {
-      URL url = txServiceBaseURI.resolve("/spark/stages/" + stageId + "/transaction").toURL();
-      HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
+  private Transaction getTransaction(int stageId, long waitMillis) throws TransactionFailureException,
+                                                                          InterruptedException {
+    StageKey key = new StageKey(txServiceBaseURI, stageId);
+    SettableFuture<Transaction> future = SettableFuture.create();
+    ListenableFuture<Transaction> existing = IN_FLIGHT.putIfAbsent(key, future);
+    if (existing != null) {
+      // Another task of the same stage is already asking for the transaction
       try {
-        int responseCode = urlConn.getResponseCode();
-        if (responseCode == 200) {
-          return TX_CODEC.decode(ByteStreams.toByteArray(urlConn.getInputStream()));
+        return existing.get(Math.max(waitMillis, 0L), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        return null;
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof TransactionFailureException) {
+          throw (TransactionFailureException) e.getCause();
         }
-        if (responseCode == 404) {
-          return null;
-        }
-        throw new TransactionFailureException(
-          String.format("No transaction for stage %d. Reason: %s", stageId,
-                        Bytes.toString(ByteStreams.toByteArray(urlConn.getErrorStream()))));
-      } finally {
-        urlConn.disconnect();
+        return null;
+      }
+    }
+
+    Transaction transaction = null;
+    try {
+      transaction = requestTransaction(stageId, waitMillis);
+      return transaction;
+    } catch (TransactionFailureException e) {
+      future.setException(e);
+      throw e;
+    } finally {
+      IN_FLIGHT.remove(key, future);
+      // No-op if the future already failed
+      future.set(transaction);
+    }
+  }
+
+  @Nullable
+  private Transaction requestTransaction(int stageId, long waitMillis) throws TransactionFailureException {
+    HttpURLConnection urlConn = null;
+    try {
+      URL url = txServiceBaseURI.resolve("/spark/stages/" + stageId + "/transaction?timeout="
+                                           + Math.max(waitMillis, 0L)).toURL();
+      urlConn = (HttpURLConnection) url.openConnection();
+      urlConn.setReadTimeout((int) (Math.max(waitMillis, 0L) + READ_TIMEOUT_MARGIN_MS));
+
+      // Responses are always fully read and the streams closed instead of disconnecting,
+      // so that the connection can be reused
+      int responseCode = urlConn.getResponseCode();
+      if (responseCode == 200) {
+        return TX_CODEC.decode(readFully(urlConn.getInputStream()));
+      }
+      byte[] error = readFully(urlConn.getErrorStream());
+      if (responseCode == 404) {
+        return null;
       }
+      throw new TransactionFailureException(
+        String.format("No transaction for stage %d. Reason: %s", stageId, Bytes.toString(error)));
     } catch (IOException e) {
       // If not able to talk to the tx service, just treat it the same as 404 so that there could be retry.
+      if (urlConn != null) {
+        urlConn.disconnect();
+      }
       return null;
     }
   }
+
+  private static byte[] readFully(@Nullable InputStream input) throws IOException {
+    if (input == null) {
+      return new byte[0];
+    }
+    try (InputStream is = input) {
+      return ByteStreams.toByteArray(is);
+    }
+  }
+
+  /**
+   * Key of a request for the transaction of a stage of a Spark program.
+   */
+  private static final class StageKey {
+    private final URI txServiceBaseURI;
+    private final int stageId;
+
+    StageKey(URI txServiceBaseURI, int stageId) {
+      this.txServiceBaseURI = txServiceBaseURI;
+      this.stageId = stageId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      StageKey that = (StageKey) o;
+      return stageId == that.stageId && txServiceBaseURI.equals(that.txServiceBaseURI);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(txServiceBaseURI, stageId);
+    }
+  }
 }
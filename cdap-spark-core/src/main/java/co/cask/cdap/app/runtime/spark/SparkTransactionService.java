@@ -41,10 +41,13 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * Provides transaction management for Spark job and stage executors. It also expose an endpoint for stage executors
@@ -54,6 +57,10 @@ import javax.ws.rs.PathParam;
 final class SparkTransactionService extends AbstractIdleService {
 
   private static final Logger LOG = LoggerFactory.getLogger(SparkTransactionService.class);
+  // Maximum time a request waits for the job of the stage to start
+  private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  // Threads to handle requests, which can be waiting for jobs to start
+  private static final int EXEC_THREADS = 20;
   private static final TransactionInfo IMPLICIT_TX_INFO = new TransactionInfo() {
     @Nullable
     @Override
@@ -83,6 +90,8 @@ final class SparkTransactionService extends AbstractIdleService {
   // In the executor node, there is only StageId. The Spark StageId is unique across job, so it's ok to use a map.
   private final ConcurrentMap<Integer, Integer> stageToJob;
   private final ConcurrentMap<Integer, JobTransaction> jobTransactions;
+  // Notified when a job started, to wake up the requests waiting for the job
+  private final Object jobStartedLock;
 
   private final NettyHttpService httpServer;
 
@@ -90,9 +99,11 @@ final class SparkTransactionService extends AbstractIdleService {
     this.txClient = txClient;
     this.stageToJob = new ConcurrentHashMap<>();
     this.jobTransactions = new ConcurrentHashMap<>();
+    this.jobStartedLock = new Object();
     this.httpServer = NettyHttpService.builder()
       .addHttpHandlers(Collections.singleton(new SparkTransactionHandler()))
       .setHost(hostname)
+      .setExecThreadPoolSize(EXEC_THREADS)
       .build();
   }
 
@@ -155,6 +166,10 @@ final class SparkTransactionService extends AbstractIdleService {
       stageToJob.put(stageId, jobId);
     }
     this.stageToJob.putAll(stageToJob);
+
+    synchronized (jobStartedLock) {
+      jobStartedLock.notifyAll();
+    }
   }
 
   /**
@@ -180,6 +195,33 @@ final class SparkTransactionService extends AbstractIdleService {
     jobTransaction.completed(succeeded);
   }
 
+  /**
+   * Returns the id of the job that the given stage belongs to, waiting for the job to start if needed.
+   *
+   * @param stageId the stage id
+   * @param timeoutMillis maximum time to wait in milliseconds
+   * @return the job id or {@code null} if the job of the stage didn't start within the timeout
+   */
+  @Nullable
+  private Integer waitForJob(int stageId, long timeoutMillis) throws InterruptedException {
+    Integer jobId = stageToJob.get(stageId);
+    if (jobId != null || timeoutMillis <= 0) {
+      return jobId;
+    }
+
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    synchronized (jobStartedLock) {
+      jobId = stageToJob.get(stageId);
+      long remaining = deadline - System.currentTimeMillis();
+      while (jobId == null && remaining > 0) {
+        jobStartedLock.wait(remaining);
+        jobId = stageToJob.get(stageId);
+        remaining = deadline - System.currentTimeMillis();
+      }
+    }
+    return jobId;
+  }
+
   /**
    * HTTP Handler to provide the Spark stage execution transaction lookup service.
    */
@@ -188,13 +230,24 @@ final class SparkTransactionService extends AbstractIdleService {
     private final TransactionCodec txCodec = new TransactionCodec();
 
     /**
-     * Handler method to get a serialized {@link Transaction} for the given stage.
+     * Handler method to get a serialized {@link Transaction} for the given stage. If the job of the stage is not
+     * known yet, the request waits up to the given timeout for the job to start, so that the client doesn't need
+     * to poll.
      */
     @GET
     @Path("/spark/stages/{stage}/transaction")
-    public void getTransaction(HttpRequest request, HttpResponder responder, @PathParam("stage") int stageId) {
+    public void getTransaction(HttpRequest request, HttpResponder responder, @PathParam("stage") int stageId,
+                               @QueryParam("timeout") @DefaultValue("0") long timeoutMillis) {
       // Lookup the jobId from the stageId
-      Integer jobId = stageToJob.get(stageId);
+      Integer jobId;
+      try {
+        jobId = waitForJob(stageId, Math.min(timeoutMillis, MAX_WAIT_MILLIS));
+      } catch (InterruptedException e) {
+        // The service is stopping
+        Thread.currentThread().interrupt();
+        responder.sendString(HttpResponseStatus.SERVICE_UNAVAILABLE, "Transaction service is stopping");
+        return;
+      }
       if (jobId == null) {
         // If the JobId is not there, it's either the job hasn't been registered yet (because it's async) or
         // the job is already finished. For either case, return 404 and let the client to handle retry if necessary.
@@ -27,6 +27,7 @@ import org.apache.tephra.persist.TransactionSnapshot;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +36,7 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Objects;
 import java.util.Random;
@@ -221,6 +223,90 @@ public class SparkTransactionServiceTest {
     sparkTxService.jobEnded(1, true);
   }
 
+  /**
+   * Tests that concurrent tasks of the same stage all get the transaction once the job started.
+   */
+  @Test
+  public void testConcurrentTasks() throws Exception {
+    final int stageId = 100;
+    final int tasks = 50;
+    ExecutorService executor = Executors.newFixedThreadPool(tasks);
+    try {
+      CompletionService<Transaction> completionService = new ExecutorCompletionService<>(executor);
+      for (int i = 0; i < tasks; i++) {
+        completionService.submit(new Callable<Transaction>() {
+          @Override
+          public Transaction call() throws Exception {
+            return new SparkTransactionClient(sparkTxService.getBaseURI()).getTransaction(stageId, 10,
+                                                                                          TimeUnit.SECONDS);
+          }
+        });
+      }
+
+      // Start the job after the tasks are waiting for the transaction
+      TimeUnit.MILLISECONDS.sleep(500);
+      sparkTxService.jobStarted(100, ImmutableSet.of(stageId));
+      try {
+        Set<Transaction> transactions = new HashSet<>();
+        for (int i = 0; i < tasks; i++) {
+          transactions.add(new TransactionWrapper(completionService.poll(10, TimeUnit.SECONDS).get()));
+        }
+        Assert.assertEquals(1, transactions.size());
+      } finally {
+        sparkTxService.jobEnded(100, true);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Measures how long it takes for the tasks of a large stage to get the transaction.
+   */
+  @Ignore
+  @Test
+  public void testTaskStartLatency() throws Exception {
+    final int stageId = 200;
+    int tasks = 1000;
+    int cores = 16;
+    ExecutorService executor = Executors.newFixedThreadPool(cores);
+    try {
+      CompletionService<Long> completionService = new ExecutorCompletionService<>(executor);
+      // The job starts shortly after the first tasks are scheduled
+      Executors.newSingleThreadScheduledExecutor().schedule(new Runnable() {
+        @Override
+        public void run() {
+          sparkTxService.jobStarted(200, ImmutableSet.of(stageId));
+        }
+      }, 100, TimeUnit.MILLISECONDS);
+
+      long startTime = System.nanoTime();
+      for (int i = 0; i < tasks; i++) {
+        completionService.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws Exception {
+            long taskStartTime = System.nanoTime();
+            new SparkTransactionClient(sparkTxService.getBaseURI()).getTransaction(stageId, 10, TimeUnit.SECONDS);
+            return System.nanoTime() - taskStartTime;
+          }
+        });
+      }
+      long totalLatency = 0L;
+      long maxLatency = 0L;
+      for (int i = 0; i < tasks; i++) {
+        long latency = completionService.take().get();
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+      }
+      LOG.info("Stage of {} tasks on {} cores completed in {} ms. Task latency: mean {} us, max {} ms", tasks, cores,
+               TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+               TimeUnit.NANOSECONDS.toMicros(totalLatency / tasks), TimeUnit.NANOSECONDS.toMillis(maxLatency));
+      sparkTxService.jobEnded(200, true);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   /**
    * Simulates a single job run which contains multiple stages.
    *
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -21,6 +21,7 @@ import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.Constants;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -36,13 +37,19 @@ import org.slf4j.LoggerFactory;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Base class for {@link MetricsCollectionService} which collect metrics through a set of cached
  * {@link AggregatedMetricsEmitter}.
+ *
+ * Each {@link MetricsContext} is bound to the group of emitters of its tags, so that an increment only
+ * looks up the emitter by metric name. Emitters and groups that stay idle are expired by the emitting thread.
  */
 public abstract class AggregatedMetricsCollectionService extends AbstractScheduledService
                                                          implements MetricsCollectionService {
@@ -51,7 +58,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   private static final long CACHE_EXPIRE_MINUTES = 1;
 
   private final LoadingCache<Map<String, String>, MetricsContext> collectors;
-  private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  private final ConcurrentMap<Map<String, String>, EmitterGroup> emitterGroups;
 
   private ScheduledExecutorService executorService;
 
@@ -59,25 +66,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
     this.collectors = CacheBuilder.newBuilder()
       .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
       .build(createCollectorLoader());
-
-    this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
-        @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
-              @Override
-              public AggregatedMetricsEmitter load(String metricName) throws Exception {
-                return new AggregatedMetricsEmitter(metricName);
-              }
-            });
-        }
-      });
+    this.emitterGroups = new ConcurrentHashMap<>();
   }
 
   /**
@@ -93,9 +82,15 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
 
   @Override
   protected final void runOneIteration() throws Exception {
-    final long timestamp = TimeUnit.SECONDS.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
-    LOG.trace("Start log collection for timestamp {}", timestamp);
+    collect(TimeUnit.SECONDS.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS));
+  }
 
+  /**
+   * Publishes the metrics collected since the last call, as of the given time in seconds.
+   */
+  @VisibleForTesting
+  void collect(long timestamp) {
+    LOG.trace("Start log collection for timestamp {}", timestamp);
     publishMetrics(timestamp, getMetrics(timestamp));
   }
 
@@ -145,26 +140,14 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   }
 
   private Iterator<MetricValues> getMetrics(final long timestamp) {
-    // NOTE : emitters.asMap does not reset the access time in cache,
-    // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
-    final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
-      emitters.asMap().entrySet().iterator();
+    final long expireTime = timestamp - TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_MINUTES);
+    final Iterator<EmitterGroup> iterator = emitterGroups.values().iterator();
     return new AbstractIterator<MetricValues>() {
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
-          Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
-          // +1 because we add extra metric about how many metric values did we emit in this context (see below)
-          List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
-          for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
-            MetricValue metricValue = emitterEntry.getValue().emit();
-            // skip increment by 0
-            if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
-              continue;
-            }
-            metricValues.add(metricValue);
-          }
+          EmitterGroup group = iterator.next();
+          List<MetricValue> metricValues = group.emit(timestamp, expireTime);
 
           if (metricValues.isEmpty()) {
             // skip if there are no metric values to send
@@ -175,13 +158,34 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
           metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
 
           LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
+          return new MetricValues(group.tags, timestamp, metricValues);
         }
         return endOfData();
       }
     };
   }
 
+  /**
+   * Returns the {@link EmitterGroup} for the given tags, replacing the existing one if it has been expired.
+   */
+  private EmitterGroup getEmitterGroup(Map<String, String> tags) {
+    while (true) {
+      EmitterGroup group = emitterGroups.get(tags);
+      if (group != null && !group.expired) {
+        return group;
+      }
+      EmitterGroup newGroup = new EmitterGroup(tags);
+      if (group == null) {
+        group = emitterGroups.putIfAbsent(tags, newGroup);
+        if (group == null) {
+          return newGroup;
+        }
+      } else if (emitterGroups.replace(tags, group, newGroup)) {
+        return newGroup;
+      }
+    }
+  }
+
   private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
     return new CacheLoader<Map<String, String>, MetricsContext>() {
       @Override
@@ -191,22 +195,135 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
     };
   }
 
+  /**
+   * The {@link AggregatedMetricsEmitter}s of all metrics with the same tags.
+   */
+  private final class EmitterGroup {
+
+    private final Map<String, String> tags;
+    private final ConcurrentMap<String, AggregatedMetricsEmitter> emitters;
+    // Set when the group is removed after being idle. A MetricsContext bound to it will switch to a new group.
+    private volatile boolean expired;
+
+    private EmitterGroup(Map<String, String> tags) {
+      this.tags = tags;
+      this.emitters = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the emitter for the given metric name, or {@code null} if this group has been expired.
+     */
+    @Nullable
+    AggregatedMetricsEmitter getEmitter(String metricName) {
+      AggregatedMetricsEmitter emitter = emitters.get(metricName);
+      if (emitter != null && !emitter.isRetired()) {
+        return emitter;
+      }
+      // Synchronize with the expiration, so that no emitter is added after the group is expired
+      synchronized (this) {
+        if (expired) {
+          return null;
+        }
+        // An emitter is retired and removed under the same lock, so the one found here is never retired
+        emitter = emitters.get(metricName);
+        if (emitter == null) {
+          emitter = new AggregatedMetricsEmitter(metricName);
+          emitters.put(metricName, emitter);
+        }
+        return emitter;
+      }
+    }
+
+    /**
+     * Emits the metrics of this group, removing emitters that have been idle since the given expire time.
+     * If all emitters are removed, the group itself is expired.
+     *
+     * A removed emitter is retired first and then emitted again, so that values updated before the retirement
+     * could be seen are emitted. Values updated after that are moved to a new emitter by the updating thread.
+     */
+    List<MetricValue> emit(long timestamp, long expireTime) {
+      // +1 because we add extra metric about how many metric values did we emit in this context
+      List<MetricValue> metricValues = Lists.newArrayListWithCapacity(emitters.size() + 1);
+      Iterator<AggregatedMetricsEmitter> iterator = emitters.values().iterator();
+      while (iterator.hasNext()) {
+        AggregatedMetricsEmitter emitter = iterator.next();
+        MetricValue metricValue = emitter.emit();
+        if (emitter.updateLastActiveTime(metricValue, timestamp) <= expireTime) {
+          synchronized (this) {
+            emitter.retire();
+            iterator.remove();
+          }
+          metricValue = emitter.emit();
+        }
+        // skip increment by 0
+        if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
+          continue;
+        }
+        metricValues.add(metricValue);
+      }
+
+      if (emitters.isEmpty()) {
+        synchronized (this) {
+          if (emitters.isEmpty()) {
+            expired = true;
+            emitterGroups.remove(tags, this);
+          }
+        }
+      }
+      return metricValues;
+    }
+  }
+
   private final class MetricsContextImpl implements MetricsContext {
 
     private final Map<String, String> tags;
+    private volatile EmitterGroup emitterGroup;
 
     private MetricsContextImpl(final Map<String, String> tags) {
       this.tags = ImmutableMap.copyOf(tags);
+      this.emitterGroup = getEmitterGroup(this.tags);
     }
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      AggregatedMetricsEmitter emitter = getEmitter(metricName);
+      emitter.increment(value);
+      if (emitter.isRetired()) {
+        moveToNewEmitter(metricName, emitter);
+      }
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      AggregatedMetricsEmitter emitter = getEmitter(metricName);
+      emitter.gauge(value);
+      if (emitter.isRetired()) {
+        moveToNewEmitter(metricName, emitter);
+      }
+    }
+
+    /**
+     * Moves the value of an emitter that was retired concurrently with an update to a new emitter. The value
+     * may have already been taken by the emitting thread, in which case nothing is left to move.
+     */
+    private void moveToNewEmitter(String metricName, AggregatedMetricsEmitter retired) {
+      MetricValue value = retired.emit();
+      if (value.getType() == MetricType.GAUGE) {
+        gauge(metricName, value.getValue());
+      } else if (value.getValue() != 0) {
+        increment(metricName, value.getValue());
+      }
+    }
+
+    private AggregatedMetricsEmitter getEmitter(String metricName) {
+      EmitterGroup group = emitterGroup;
+      AggregatedMetricsEmitter emitter = group.expired ? null : group.getEmitter(metricName);
+      while (emitter == null) {
+        group = getEmitterGroup(tags);
+        emitterGroup = group;
+        emitter = group.getEmitter(metricName);
+      }
+      return emitter;
     }
 
     @Override
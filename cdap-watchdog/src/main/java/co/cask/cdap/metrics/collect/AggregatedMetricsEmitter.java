@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,21 +20,28 @@ import co.cask.cdap.api.metrics.MetricValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
  * during collection and emit the aggregated value when emit.
+ *
+ * Increments are accumulated in a {@link StripedLongCounter}, so that concurrent increments don't contend.
+ * A gauge value is kept together with its type in an immutable {@link Gauge}, which is swapped atomically
+ * on emit, so that the emitted type always matches the emitted value.
  */
 final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
   private final String name;
-  // metric value
-  private final AtomicLong value;
-  // specifies if the metric type is gauge or counter
-  private final AtomicBoolean gaugeUsed;
+  // sum of increments since the last emit or gauge
+  private final StripedLongCounter increments;
+  // the last gauge value set since the last emit, or null if the metric is a counter
+  private final AtomicReference<Gauge> gauge;
+  // the last time in seconds that this emitter emitted a non-zero value, only accessed by the emitting thread
+  private long lastActiveTime;
+  // set when the emitter is removed after being idle, values updated after that have to be moved to a new emitter
+  private volatile boolean retired;
 
   AggregatedMetricsEmitter(String name) {
     if (name == null || name.isEmpty()) {
@@ -42,25 +49,66 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
-    this.value = new AtomicLong();
-    this.gaugeUsed = new AtomicBoolean(false);
+    this.increments = new StripedLongCounter();
+    this.gauge = new AtomicReference<>();
+    this.lastActiveTime = System.currentTimeMillis() / 1000;
   }
 
   void increment(long value) {
-    this.value.addAndGet(value);
+    increments.add(value);
   }
 
-
   @Override
   public MetricValue emit() {
-    // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
-    MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
-    return new MetricValue(name, type, value);
+    Gauge gauge = this.gauge.getAndSet(null);
+    long value = increments.sumThenReset();
+    if (gauge == null) {
+      return new MetricValue(name, MetricType.COUNTER, value);
+    }
+    return new MetricValue(name, MetricType.GAUGE, gauge.value + value);
   }
 
   public void gauge(long value) {
-    this.value.set(value);
-    this.gaugeUsed.set(true);
+    // gauge replaces the value, hence discard the increments made before
+    increments.sumThenReset();
+    this.gauge.set(new Gauge(value));
+  }
+
+  /**
+   * Updates the last active time with the given emitted value.
+   *
+   * @return the last time in seconds that this emitter emitted a value that is not a zero counter
+   */
+  long updateLastActiveTime(MetricValue metricValue, long timestamp) {
+    if (metricValue.getType() != MetricType.COUNTER || metricValue.getValue() != 0) {
+      lastActiveTime = timestamp;
+    }
+    return lastActiveTime;
+  }
+
+  /**
+   * Marks this emitter as removed. Values updated concurrently are still collected by {@link #emit()}.
+   */
+  void retire() {
+    retired = true;
+  }
+
+  /**
+   * Returns {@code true} if this emitter has been removed. A caller that sees this after updating a value has to
+   * {@link #emit()} this emitter again and apply the result to a new emitter, so that the update is not lost.
+   */
+  boolean isRetired() {
+    return retired;
+  }
+
+  /**
+   * Immutable gauge value.
+   */
+  private static final class Gauge {
+    private final long value;
+
+    private Gauge(long value) {
+      this.value = value;
+    }
   }
 }
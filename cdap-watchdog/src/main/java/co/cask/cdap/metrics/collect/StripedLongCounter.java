@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.metrics.collect;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads concurrent updates over multiple cells, similar to the {@code LongAdder} in Java 8.
+ *
+ * Updates go to a single base value until contention is detected, after which each thread updates a cell picked
+ * by its thread id. Cells are padded to separate cache lines, so that threads updating different cells
+ * don't contend on the same cache line.
+ */
+final class StripedLongCounter {
+
+  // Number of longs between two cells, so that each cell is on its own cache line
+  private static final int PADDING = 8;
+  private static final int MAX_CELLS = 64;
+  private static final int NUM_CELLS = numCells(Runtime.getRuntime().availableProcessors());
+
+  private final AtomicLong base = new AtomicLong();
+  private volatile AtomicLongArray cells;
+
+  /**
+   * Adds the given value to the counter.
+   */
+  void add(long value) {
+    AtomicLongArray cells = this.cells;
+    if (cells == null) {
+      long current = base.get();
+      if (base.compareAndSet(current, current + value)) {
+        return;
+      }
+      cells = inflate();
+    }
+    cells.addAndGet(cellIndex(), value);
+  }
+
+  /**
+   * Returns the sum of all values added since the last reset and resets the counter to zero. Values that are
+   * added concurrently are either included in the returned sum or retained for the next call, but never lost.
+   */
+  long sumThenReset() {
+    long sum = base.getAndSet(0L);
+    AtomicLongArray cells = this.cells;
+    if (cells != null) {
+      for (int i = 0; i < cells.length(); i += PADDING) {
+        sum += cells.getAndSet(i, 0L);
+      }
+    }
+    return sum;
+  }
+
+  private synchronized AtomicLongArray inflate() {
+    AtomicLongArray cells = this.cells;
+    if (cells == null) {
+      cells = new AtomicLongArray(NUM_CELLS * PADDING);
+      this.cells = cells;
+    }
+    return cells;
+  }
+
+  private static int cellIndex() {
+    long id = Thread.currentThread().getId();
+    int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    return ((hash >>> 16) & (NUM_CELLS - 1)) * PADDING;
+  }
+
+  /**
+   * Returns the smallest power of two that is no smaller than the given number of processors, capped at
+   * {@link #MAX_CELLS}.
+   */
+  private static int numCells(int processors) {
+    int cells = 1;
+    while (cells < processors && cells < MAX_CELLS) {
+      cells <<= 1;
+    }
+    return cells;
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -72,7 +72,14 @@ public class DefaultMetricDatasetFactory implements MetricDatasetFactory {
       public EntityTable get() {
         String tableName = cConf.get(Constants.Metrics.ENTITY_TABLE_NAME,
                                      Constants.Metrics.DEFAULT_ENTITY_TABLE_NAME);
-        return new EntityTable(getOrCreateMetricsTable(tableName, DatasetProperties.EMPTY));
+        int cacheSize = cConf.getInt(Constants.Metrics.ENTITY_CACHE_SIZE,
+                                     Constants.Metrics.DEFAULT_ENTITY_CACHE_SIZE);
+        int idBatchSize = cConf.getInt(Constants.Metrics.ENTITY_ID_BATCH_SIZE,
+                                       Constants.Metrics.DEFAULT_ENTITY_ID_BATCH_SIZE);
+        EntityTable table = new EntityTable(getOrCreateMetricsTable(tableName, DatasetProperties.EMPTY),
+                                            cacheSize, idBatchSize);
+        table.preload();
+        return table;
       }
     });
   }
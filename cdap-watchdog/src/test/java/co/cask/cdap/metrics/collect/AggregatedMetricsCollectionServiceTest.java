@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2016 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -26,13 +26,16 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Testing the basic properties of the {@link AggregatedMetricsCollectionService}.
@@ -155,6 +158,78 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Test
+  public void testExpiry() {
+    CollectingMetricsCollectionService service = new CollectingMetricsCollectionService();
+    long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+
+    MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE));
+    context.increment(METRIC, 1);
+    service.collect(now);
+    Assert.assertEquals(1L, service.getTotal(METRIC));
+
+    // Idle for more than the expiry time, so the emitter and its group are removed
+    long expired = now + TimeUnit.MINUTES.toSeconds(2);
+    service.collect(expired);
+    Assert.assertEquals(1L, service.getTotal(METRIC));
+
+    // The context is bound to the expired group, and has to switch to a new one
+    context.increment(METRIC, 2);
+    context.childContext(Constants.Metrics.Tag.APP, APP).increment(METRIC, 3);
+    service.collect(expired + 1);
+    Assert.assertEquals(6L, service.getTotal(METRIC));
+
+    context.gauge(METRIC, 10);
+    service.collect(expired + 2);
+    Assert.assertEquals(16L, service.getTotal(METRIC));
+  }
+
+  @Test
+  public void testConcurrentExpiry() throws Exception {
+    final CollectingMetricsCollectionService service = new CollectingMetricsCollectionService();
+    final AtomicBoolean stopped = new AtomicBoolean();
+    int threads = 4;
+    final long[] counts = new long[threads];
+    List<Thread> writers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      final int writer = i;
+      writers.add(new Thread() {
+        @Override
+        public void run() {
+          MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE));
+          while (!stopped.get()) {
+            context.increment(METRIC, 1);
+            counts[writer]++;
+            // Pause once in a while, so that emitters and groups get expired
+            if (counts[writer] % 1000 == 0) {
+              Thread.yield();
+            }
+          }
+        }
+      });
+    }
+    for (Thread thread : writers) {
+      thread.start();
+    }
+
+    // Every collection expires the emitters that were idle since the previous one
+    long timestamp = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    long endTime = System.currentTimeMillis() + 2000;
+    while (System.currentTimeMillis() < endTime) {
+      timestamp += TimeUnit.MINUTES.toSeconds(2);
+      service.collect(timestamp);
+    }
+    stopped.set(true);
+    long total = 0;
+    for (int i = 0; i < threads; i++) {
+      writers.get(i).join();
+      total += counts[i];
+    }
+
+    service.collect(timestamp + 1);
+    Assert.assertEquals(total, service.getTotal(METRIC));
+  }
+
   private void verifyCounterMetricsValue(MetricValues metricValues) {
     Assert.assertNotNull(metricValues);
     Map<String, String> tags = metricValues.getTags();
@@ -187,4 +262,28 @@ public class AggregatedMetricsCollectionServiceTest {
     Assert.assertNotNull(metricValues);
     Assert.assertEquals(expected, getMetricValue(metricValues.getMetrics(), METRIC));
   }
+
+  /**
+   * An {@link AggregatedMetricsCollectionService} that keeps the total of the values published for each metric.
+   * Metrics are only published by calling {@link #collect(long)}.
+   */
+  private static final class CollectingMetricsCollectionService extends AggregatedMetricsCollectionService {
+
+    private final Map<String, Long> totals = new HashMap<>();
+
+    @Override
+    protected void publish(Iterator<MetricValues> metrics) {
+      while (metrics.hasNext()) {
+        for (MetricValue metricValue : metrics.next().getMetrics()) {
+          Long total = totals.get(metricValue.getName());
+          totals.put(metricValue.getName(), (total == null ? 0L : total) + metricValue.getValue());
+        }
+      }
+    }
+
+    long getTotal(String metricName) {
+      Long total = totals.get(metricName);
+      return total == null ? 0L : total;
+    }
+  }
 }
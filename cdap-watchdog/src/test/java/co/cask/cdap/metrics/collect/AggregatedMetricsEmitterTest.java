@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.collect;
+
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link AggregatedMetricsEmitter}.
+ */
+public class AggregatedMetricsEmitterTest {
+
+  @Test
+  public void testGaugeAndIncrement() {
+    AggregatedMetricsEmitter emitter = new AggregatedMetricsEmitter("metric");
+    emitter.increment(5);
+    emitter.increment(3);
+    assertMetric(emitter.emit(), MetricType.COUNTER, 8);
+    assertMetric(emitter.emit(), MetricType.COUNTER, 0);
+
+    // gauge replaces the increments before it, and is incremented by the increments after it
+    emitter.increment(10);
+    emitter.gauge(4);
+    emitter.increment(2);
+    assertMetric(emitter.emit(), MetricType.GAUGE, 6);
+
+    // the type resets to counter after emit
+    emitter.increment(1);
+    assertMetric(emitter.emit(), MetricType.COUNTER, 1);
+
+    emitter.gauge(0);
+    assertMetric(emitter.emit(), MetricType.GAUGE, 0);
+  }
+
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    final AggregatedMetricsEmitter emitter = new AggregatedMetricsEmitter("metric");
+    final int threads = 32;
+    final int increments = 100000;
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    final CountDownLatch completion = new CountDownLatch(threads);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int i = 0; i < threads; i++) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              barrier.await();
+              for (int j = 0; j < increments; j++) {
+                emitter.increment(1);
+              }
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            } finally {
+              completion.countDown();
+            }
+          }
+        });
+      }
+
+      // Emit concurrently with the increments. No increment should get lost.
+      long total = 0;
+      while (!completion.await(1, TimeUnit.MILLISECONDS)) {
+        MetricValue value = emitter.emit();
+        Assert.assertEquals(MetricType.COUNTER, value.getType());
+        total += value.getValue();
+      }
+      total += emitter.emit().getValue();
+      Assert.assertEquals((long) threads * increments, total);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void assertMetric(MetricValue metricValue, MetricType type, long value) {
+    Assert.assertEquals("metric", metricValue.getName());
+    Assert.assertEquals(type, metricValue.getType());
+    Assert.assertEquals(value, metricValue.getValue());
+  }
+}